@@ -0,0 +1,113 @@
+/*
+ * Copyright 2015-2025 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package sockslib.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import sockslib.common.AddressSet;
+import sockslib.common.IP;
+import sockslib.common.IPRange;
+import sockslib.common.IPv4;
+import sockslib.server.acl.CIDRTrie;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The class <code>AddressBenchmark</code> measures {@link IP}, {@link IPRange}, {@link IPv4},
+ * {@link AddressSet} and {@link CIDRTrie} operations which run for every connection checked by an
+ * address filter.
+ *
+ * @version 1.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AddressBenchmark {
+
+  private IP ip;
+  private IPRange range;
+  private InetAddress inetAddress;
+  private CIDRTrie<Boolean> trie;
+  private AddressSet addressSet;
+
+  @Setup
+  public void setup() throws UnknownHostException {
+    ip = IP.parseFromString("192.168.10.20");
+    range = IPRange.parseFromIPWithMask("192.168.0.0/16");
+    inetAddress = InetAddress.getByAddress(new byte[] {(byte) 192, (byte) 168, 10, 20});
+    trie = new CIDRTrie<>();
+    // 65536 prefixes of /24 from 172.0.0.0 to 172.255.255.0, plus the range above.
+    for (int i = 0; i < 65536; i++) {
+      trie.put(new byte[] {(byte) 172, (byte) (i >>> 8), (byte) i, 0}, 24, Boolean.FALSE);
+    }
+    trie.put("192.168.0.0/16", Boolean.TRUE);
+    addressSet = new AddressSet(65536);
+    for (int i = 0; i < 65536; i++) {
+      addressSet.add(IPv4.parse("10.0.0.0") + i * 256);
+    }
+  }
+
+  @Benchmark
+  public boolean rangeContainsIP() {
+    return range.contains(ip);
+  }
+
+  @Benchmark
+  public boolean rangeContainsInetAddress() {
+    return range.contains(inetAddress);
+  }
+
+  @Benchmark
+  public Boolean trieLookupInetAddress() {
+    return trie.lookup(inetAddress);
+  }
+
+  @Benchmark
+  public boolean addressSetContainsInetAddress() {
+    return addressSet.contains(inetAddress);
+  }
+
+  @Benchmark
+  public int parseIPv4() {
+    return IPv4.parse("192.168.10.20");
+  }
+
+  @Benchmark
+  public IP parseIP() {
+    return IP.parseFromString("192.168.10.20");
+  }
+
+  @Benchmark
+  public boolean ipIsLocal() {
+    return ip.isLocalIP();
+  }
+
+  @Benchmark
+  public int ipHashCode() {
+    return ip.hashCode();
+  }
+}
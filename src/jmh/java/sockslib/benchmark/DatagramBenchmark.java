@@ -0,0 +1,77 @@
+/*
+ * Copyright 2015-2025 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package sockslib.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import sockslib.common.Socks5DatagramPacketHandler;
+import sockslib.common.SocksException;
+
+import java.net.DatagramPacket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The class <code>DatagramBenchmark</code> measures the SOCKS5 UDP header handling of
+ * {@link Socks5DatagramPacketHandler}.
+ *
+ * @version 1.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DatagramBenchmark {
+
+  @Param({"64", "1400"})
+  private int payloadSize;
+
+  private Socks5DatagramPacketHandler handler;
+  private DatagramPacket packet;
+  private InetSocketAddress relayAddress;
+  private byte[] encapsulated;
+
+  @Setup
+  public void setup() throws Exception {
+    handler = new Socks5DatagramPacketHandler();
+    packet = new DatagramPacket(new byte[payloadSize], payloadSize,
+        InetAddress.getByAddress(new byte[] {93, (byte) 184, (byte) 216, 34}), 53);
+    relayAddress = new InetSocketAddress(InetAddress.getLoopbackAddress(), 1080);
+    encapsulated = handler.encapsulate(packet, relayAddress).getData();
+  }
+
+  @Benchmark
+  public DatagramPacket encapsulate() throws SocksException {
+    return handler.encapsulate(packet, relayAddress);
+  }
+
+  @Benchmark
+  public DatagramPacket decapsulate() throws SocksException {
+    DatagramPacket datagramPacket = new DatagramPacket(encapsulated, encapsulated.length);
+    handler.decapsulate(datagramPacket);
+    return datagramPacket;
+  }
+}
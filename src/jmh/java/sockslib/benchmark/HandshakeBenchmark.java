@@ -0,0 +1,101 @@
+/*
+ * Copyright 2015-2025 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package sockslib.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import sockslib.common.methods.NoAuthenticationRequiredMethod;
+import sockslib.common.methods.SocksMethod;
+import sockslib.common.methods.UsernamePasswordMethod;
+import sockslib.server.SocksMethodSelector;
+import sockslib.server.msg.CommandMessage;
+import sockslib.server.msg.MethodSelectionMessage;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The class <code>HandshakeBenchmark</code> measures decoding and encoding of SOCKS5 handshake
+ * messages.
+ *
+ * @version 1.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HandshakeBenchmark {
+
+  @Param({"IPV4", "DOMAIN"})
+  private String addressType;
+
+  private byte[] commandFrame;
+  private CommandMessage commandMessage;
+  private MethodSelectionMessage methodSelectionMessage;
+  private SocksMethodSelector methodSelector;
+
+  @Setup
+  public void setup() throws IOException {
+    if ("IPV4".equals(addressType)) {
+      commandFrame = new byte[] {5, 1, 0, 1, 93, (byte) 184, (byte) 216, 34, 0, 80};
+    } else {
+      byte[] host = "www.example.com".getBytes(StandardCharsets.UTF_8);
+      commandFrame = new byte[7 + host.length];
+      commandFrame[0] = 5;
+      commandFrame[1] = 1;
+      commandFrame[3] = 3;
+      commandFrame[4] = (byte) host.length;
+      System.arraycopy(host, 0, commandFrame, 5, host.length);
+      commandFrame[commandFrame.length - 1] = 80;
+    }
+    commandMessage = readCommand();
+
+    // A client which offers GSSAPI, username/password and no authentication in that order.
+    methodSelectionMessage = new MethodSelectionMessage();
+    methodSelectionMessage.read(new ByteArrayInputStream(new byte[] {5, 3, 1, 2, 0}));
+    methodSelector = new SocksMethodSelector();
+    methodSelector.setSupportMethod(new NoAuthenticationRequiredMethod(),
+        new UsernamePasswordMethod());
+  }
+
+  @Benchmark
+  public CommandMessage readCommand() throws IOException {
+    CommandMessage message = new CommandMessage();
+    message.read(new ByteArrayInputStream(commandFrame));
+    return message;
+  }
+
+  @Benchmark
+  public byte[] commandGetBytes() {
+    return commandMessage.getBytes();
+  }
+
+  @Benchmark
+  public SocksMethod selectMethod() {
+    return methodSelector.select(methodSelectionMessage);
+  }
+}
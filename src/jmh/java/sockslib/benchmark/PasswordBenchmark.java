@@ -0,0 +1,75 @@
+/*
+ * Copyright 2015-2025 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package sockslib.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import sockslib.server.manager.HashPasswordProtector;
+import sockslib.server.manager.User;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The class <code>PasswordBenchmark</code> measures {@link HashPasswordProtector#encrypt(User)}
+ * when the hash is cached and when it has to be computed.
+ *
+ * @version 1.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PasswordBenchmark {
+
+  /**
+   * More users than the protector caches, so that every lookup misses.
+   */
+  private static final int USERS = 4096;
+
+  private HashPasswordProtector protector;
+  private User cachedUser;
+  private User[] users;
+  private int next;
+
+  @Setup
+  public void setup() {
+    protector = new HashPasswordProtector(HashPasswordProtector.HashAlgorithm.SHA256);
+    cachedUser = new User("socks", "password");
+    users = new User[USERS];
+    for (int i = 0; i < USERS; i++) {
+      users[i] = new User("user" + i, "password" + i);
+    }
+  }
+
+  @Benchmark
+  public String encryptCached() {
+    return protector.encrypt(cachedUser);
+  }
+
+  @Benchmark
+  public String encryptUncached() {
+    next = (next + 1) % USERS;
+    return protector.encrypt(users[next]);
+  }
+}
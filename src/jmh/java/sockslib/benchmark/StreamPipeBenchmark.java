@@ -0,0 +1,106 @@
+/*
+ * Copyright 2015-2025 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package sockslib.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import sockslib.server.io.StreamPipe;
+import sockslib.utils.ResourceUtil;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The class <code>StreamPipeBenchmark</code> measures the throughput of a {@link StreamPipe}
+ * which relays between two loopback connections. Every operation writes one chunk into the pipe
+ * and reads it back on the other side.
+ *
+ * @version 1.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StreamPipeBenchmark {
+
+  @Param({"1024", "65536"})
+  private int chunkSize;
+
+  private Socket client;
+  private Socket target;
+  private Socket pipeSource;
+  private Socket pipeDestination;
+  private StreamPipe pipe;
+  private OutputStream clientOutput;
+  private InputStream targetInput;
+  private byte[] chunk;
+  private byte[] received;
+
+  @Setup
+  public void setup() throws IOException {
+    try (ServerSocket serverSocket = new ServerSocket(0, 2, InetAddress.getLoopbackAddress())) {
+      client = new Socket(serverSocket.getInetAddress(), serverSocket.getLocalPort());
+      pipeSource = serverSocket.accept();
+      pipeDestination = new Socket(serverSocket.getInetAddress(), serverSocket.getLocalPort());
+      target = serverSocket.accept();
+    }
+    pipe = new StreamPipe(pipeSource.getInputStream(), pipeDestination.getOutputStream(), "bench");
+    pipe.setDaemon(true);
+    pipe.start();
+    clientOutput = client.getOutputStream();
+    targetInput = target.getInputStream();
+    chunk = new byte[chunkSize];
+    received = new byte[chunkSize];
+  }
+
+  @TearDown
+  public void tearDown() {
+    pipe.close();
+    ResourceUtil.close(client);
+    ResourceUtil.close(pipeSource);
+    ResourceUtil.close(pipeDestination);
+    ResourceUtil.close(target);
+  }
+
+  @Benchmark
+  public int relay() throws IOException {
+    clientOutput.write(chunk);
+    int offset = 0;
+    while (offset < chunkSize) {
+      int length = targetInput.read(received, offset, chunkSize - offset);
+      if (length < 0) {
+        throw new IOException("Pipe closed");
+      }
+      offset += length;
+    }
+    return offset;
+  }
+}
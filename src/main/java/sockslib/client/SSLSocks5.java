@@ -17,12 +17,17 @@ package sockslib.client;
 import sockslib.common.SSLConfiguration;
 import sockslib.common.SSLConfigurationException;
 import sockslib.common.SocksException;
+import sockslib.utils.ResourceUtil;
 
+import javax.net.ssl.SSLSocket;
 import java.io.IOException;
 import java.net.InetAddress;
+import java.net.InetSocketAddress;
 import java.net.Socket;
 import java.net.SocketAddress;
 
+import static com.google.common.base.Preconditions.checkArgument;
+
 /**
  * The class <code>SSLSocks5</code> represents a SSL based SOCKS5 proxy. It will build a SSL based
  * connection between the client and SOCKS5 server.
@@ -34,11 +39,18 @@ import java.net.SocketAddress;
  */
 public class SSLSocks5 extends Socks5 {
 
+  /**
+   * Default timeout of the TLS handshake in milliseconds.
+   */
+  public static final int DEFAULT_HANDSHAKE_TIMEOUT = 10000;
+
   /**
    * SSL configuration.
    */
   private SSLConfiguration configuration;
 
+  private int handshakeTimeout = DEFAULT_HANDSHAKE_TIMEOUT;
+
   public SSLSocks5(SocketAddress address, SSLConfiguration configuration) {
     super(address);
     this.configuration = configuration;
@@ -51,14 +63,48 @@ public class SSLSocks5 extends Socks5 {
 
   @Override
   public Socket createProxySocket(InetAddress address, int port) throws IOException {
+    SSLSocket socket;
     try {
-      return configuration.getSSLSocketFactory().createSocket(address, port);
+      socket = (SSLSocket) configuration.getSSLSocketFactory().createSocket();
     } catch (SSLConfigurationException e) {
       throw new SocksException(e.getMessage());
     }
+    try {
+      socket.connect(new InetSocketAddress(address, port), handshakeTimeout);
+      startHandshake(socket);
+    } catch (IOException e) {
+      ResourceUtil.close(socket);
+      throw e;
+    }
+    return socket;
   }
 
+  @Override
+  public void buildConnection() throws SocksException, IOException {
+    // Connects an unconnected socket from createProxySocket() here to count its handshake.
+    Socket proxySocket = getProxySocket();
+    if (proxySocket instanceof SSLSocket && !proxySocket.isConnected()
+        && getInetAddress() != null) {
+      proxySocket.connect(new InetSocketAddress(getInetAddress(), getPort()), handshakeTimeout);
+      startHandshake((SSLSocket) proxySocket);
+    }
+    super.buildConnection();
+  }
 
+  /**
+   * Runs the TLS handshake, it's bounded by the handshake timeout unless the socket already has a
+   * read timeout.
+   */
+  private void startHandshake(SSLSocket socket) throws IOException {
+    int soTimeout = socket.getSoTimeout();
+    if (soTimeout == 0) {
+      socket.setSoTimeout(handshakeTimeout);
+    }
+    configuration.startHandshake(socket);
+    if (soTimeout == 0) {
+      socket.setSoTimeout(0);
+    }
+  }
 
   @Override
   public Socket createProxySocket() throws IOException {
@@ -77,6 +123,7 @@ public class SSLSocks5 extends Socks5 {
   @Override
   public SocksProxy copyWithoutChainProxy() {
     SSLSocks5 socks5 = new SSLSocks5(getInetAddress(), getPort(), configuration);
+    socks5.setHandshakeTimeout(handshakeTimeout);
     socks5.setAcceptableMethods(getAcceptableMethods()).setAlwaysResolveAddressLocally
         (isAlwaysResolveAddressLocally()).setCredentials(getCredentials()).setInetAddress
         (getInetAddress()).setPort(getPort()).setSocksMethodRequester(getSocksMethodRequester());
@@ -87,6 +134,22 @@ public class SSLSocks5 extends Socks5 {
     return configuration;
   }
 
+  public int getHandshakeTimeout() {
+    return handshakeTimeout;
+  }
+
+  /**
+   * Sets the timeout of connecting the server and the TLS handshake with it.
+   *
+   * @param handshakeTimeout Timeout in milliseconds.
+   * @return Instance of {@link SSLSocks5}.
+   */
+  public SSLSocks5 setHandshakeTimeout(int handshakeTimeout) {
+    checkArgument(handshakeTimeout > 0, "Argument [handshakeTimeout] must be greater than 0");
+    this.handshakeTimeout = handshakeTimeout;
+    return this;
+  }
+
   public void setConfiguration(SSLConfiguration configuration) {
     this.configuration = configuration;
   }
@@ -0,0 +1,370 @@
+/*
+ * Copyright 2015-2025 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package sockslib.common;
+
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.util.Arrays;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * The class <code>AddressMap</code> is a hash map whose keys are IPv4 and IPv6 addresses.
+ * <p>
+ * Keys are stored as packed primitives in open addressing tables with linear probing, IPv4 keys
+ * in an <code>int</code> array and IPv6 keys in a <code>long</code> array, so that neither keys
+ * nor entries are objects. Getting or putting an IPv4 key, including an {@link Inet4Address},
+ * never allocates memory.
+ * </p>
+ * <p>
+ * Values may not be <code>null</code>. This class is not thread safe.
+ * </p>
+ *
+ * @param <V> Type of values.
+ * @version 1.0
+ * @see AddressSet
+ */
+public class AddressMap<V> {
+
+  private static final int DEFAULT_CAPACITY = 16;
+
+  /**
+   * A table is at most half full, so that probe sequences are short.
+   */
+  private static final int MAX_LOAD_SHIFT = 1;
+
+  private int[] ipv4Keys;
+
+  private Object[] ipv4Values;
+
+  private int ipv4Size;
+
+  /**
+   * Key of slot <code>i</code> is at <code>2i</code> (high) and <code>2i + 1</code> (low).
+   */
+  private long[] ipv6Keys;
+
+  private Object[] ipv6Values;
+
+  private int ipv6Size;
+
+  public AddressMap() {
+    this(DEFAULT_CAPACITY);
+  }
+
+  /**
+   * Constructs an instance of {@link AddressMap}.
+   *
+   * @param expectedSize Expected number of IPv4 keys, the IPv4 table won't be resized until the
+   *                     size exceeds it.
+   */
+  public AddressMap(int expectedSize) {
+    checkArgument(expectedSize >= 0, "Argument [expectedSize] must not be negative");
+    int capacity = tableSizeFor(expectedSize);
+    ipv4Keys = new int[capacity];
+    ipv4Values = new Object[capacity];
+    ipv6Keys = new long[DEFAULT_CAPACITY * 2];
+    ipv6Values = new Object[DEFAULT_CAPACITY];
+  }
+
+  /**
+   * Returns the value of a packed IPv4 address.
+   *
+   * @param address Packed IPv4 address.
+   * @return Value, or <code>null</code> if the address is not a key.
+   */
+  @SuppressWarnings("unchecked")
+  public V get(int address) {
+    int index = indexOf(address);
+    return index < 0 ? null : (V) ipv4Values[index];
+  }
+
+  /**
+   * Returns the value of a packed IPv6 address.
+   *
+   * @param high First 64 bits of the address.
+   * @param low  Last 64 bits of the address.
+   * @return Value, or <code>null</code> if the address is not a key.
+   */
+  @SuppressWarnings("unchecked")
+  public V get(long high, long low) {
+    int index = indexOf(high, low);
+    return index < 0 ? null : (V) ipv6Values[index];
+  }
+
+  /**
+   * Returns the value of an address. Only an IPv4 address is looked up without allocating.
+   *
+   * @param address Address.
+   * @return Value, or <code>null</code> if the address is not a key.
+   */
+  public V get(InetAddress address) {
+    if (address instanceof Inet4Address) {
+      return get(IPv4.of(address));
+    }
+    byte[] bytes = address.getAddress();
+    return get(IPv6Address.highOf(bytes), IPv6Address.lowOf(bytes));
+  }
+
+  /**
+   * Returns the value of the address of a socket address.
+   *
+   * @param address Socket address.
+   * @return Value, or <code>null</code> if the address is not a key or is unresolved.
+   */
+  public V get(SocketAddress address) {
+    if (address instanceof InetSocketAddress
+        && ((InetSocketAddress) address).getAddress() != null) {
+      return get(((InetSocketAddress) address).getAddress());
+    }
+    return null;
+  }
+
+  public V get(IPv6Address address) {
+    return get(address.getHigh(), address.getLow());
+  }
+
+  public boolean containsKey(int address) {
+    return indexOf(address) >= 0;
+  }
+
+  public boolean containsKey(long high, long low) {
+    return indexOf(high, low) >= 0;
+  }
+
+  public boolean containsKey(InetAddress address) {
+    return get(address) != null;
+  }
+
+  /**
+   * Maps a packed IPv4 address to a value.
+   *
+   * @param address Packed IPv4 address.
+   * @param value   Value.
+   * @return Previous value, or <code>null</code> if the address was not a key.
+   */
+  @SuppressWarnings("unchecked")
+  public V put(int address, V value) {
+    checkNotNull(value, "Argument [value] may not be null");
+    int mask = ipv4Keys.length - 1;
+    int index = IPv4.hash(address) & mask;
+    while (ipv4Values[index] != null) {
+      if (ipv4Keys[index] == address) {
+        V previous = (V) ipv4Values[index];
+        ipv4Values[index] = value;
+        return previous;
+      }
+      index = (index + 1) & mask;
+    }
+    ipv4Keys[index] = address;
+    ipv4Values[index] = value;
+    if (++ipv4Size > ipv4Keys.length >>> MAX_LOAD_SHIFT) {
+      resizeIPv4(ipv4Keys.length * 2);
+    }
+    return null;
+  }
+
+  /**
+   * Maps a packed IPv6 address to a value.
+   *
+   * @param high  First 64 bits of the address.
+   * @param low   Last 64 bits of the address.
+   * @param value Value.
+   * @return Previous value, or <code>null</code> if the address was not a key.
+   */
+  @SuppressWarnings("unchecked")
+  public V put(long high, long low, V value) {
+    checkNotNull(value, "Argument [value] may not be null");
+    int mask = ipv6Values.length - 1;
+    int index = IPv6Address.hash(high, low) & mask;
+    while (ipv6Values[index] != null) {
+      if (ipv6Keys[2 * index] == high && ipv6Keys[2 * index + 1] == low) {
+        V previous = (V) ipv6Values[index];
+        ipv6Values[index] = value;
+        return previous;
+      }
+      index = (index + 1) & mask;
+    }
+    ipv6Keys[2 * index] = high;
+    ipv6Keys[2 * index + 1] = low;
+    ipv6Values[index] = value;
+    if (++ipv6Size > ipv6Values.length >>> MAX_LOAD_SHIFT) {
+      resizeIPv6(ipv6Values.length * 2);
+    }
+    return null;
+  }
+
+  public V put(InetAddress address, V value) {
+    if (address instanceof Inet4Address) {
+      return put(IPv4.of(address), value);
+    }
+    byte[] bytes = address.getAddress();
+    return put(IPv6Address.highOf(bytes), IPv6Address.lowOf(bytes), value);
+  }
+
+  public V put(IPv6Address address, V value) {
+    return put(address.getHigh(), address.getLow(), value);
+  }
+
+  /**
+   * Removes a packed IPv4 address.
+   *
+   * @param address Packed IPv4 address.
+   * @return Removed value, or <code>null</code> if the address was not a key.
+   */
+  @SuppressWarnings("unchecked")
+  public V remove(int address) {
+    int index = indexOf(address);
+    if (index < 0) {
+      return null;
+    }
+    V previous = (V) ipv4Values[index];
+    ipv4Size--;
+    // Moves back the following entries of the probe sequence instead of leaving a tombstone.
+    int mask = ipv4Keys.length - 1;
+    int hole = index;
+    int next = (hole + 1) & mask;
+    while (ipv4Values[next] != null) {
+      int home = IPv4.hash(ipv4Keys[next]) & mask;
+      if (((next - home) & mask) >= ((next - hole) & mask)) {
+        ipv4Keys[hole] = ipv4Keys[next];
+        ipv4Values[hole] = ipv4Values[next];
+        hole = next;
+      }
+      next = (next + 1) & mask;
+    }
+    ipv4Values[hole] = null;
+    return previous;
+  }
+
+  /**
+   * Removes a packed IPv6 address.
+   *
+   * @param high First 64 bits of the address.
+   * @param low  Last 64 bits of the address.
+   * @return Removed value, or <code>null</code> if the address was not a key.
+   */
+  @SuppressWarnings("unchecked")
+  public V remove(long high, long low) {
+    int index = indexOf(high, low);
+    if (index < 0) {
+      return null;
+    }
+    V previous = (V) ipv6Values[index];
+    ipv6Size--;
+    int mask = ipv6Values.length - 1;
+    int hole = index;
+    int next = (hole + 1) & mask;
+    while (ipv6Values[next] != null) {
+      int home = IPv6Address.hash(ipv6Keys[2 * next], ipv6Keys[2 * next + 1]) & mask;
+      if (((next - home) & mask) >= ((next - hole) & mask)) {
+        ipv6Keys[2 * hole] = ipv6Keys[2 * next];
+        ipv6Keys[2 * hole + 1] = ipv6Keys[2 * next + 1];
+        ipv6Values[hole] = ipv6Values[next];
+        hole = next;
+      }
+      next = (next + 1) & mask;
+    }
+    ipv6Values[hole] = null;
+    return previous;
+  }
+
+  public V remove(InetAddress address) {
+    if (address instanceof Inet4Address) {
+      return remove(IPv4.of(address));
+    }
+    byte[] bytes = address.getAddress();
+    return remove(IPv6Address.highOf(bytes), IPv6Address.lowOf(bytes));
+  }
+
+  public int size() {
+    return ipv4Size + ipv6Size;
+  }
+
+  public boolean isEmpty() {
+    return size() == 0;
+  }
+
+  public void clear() {
+    Arrays.fill(ipv4Values, null);
+    Arrays.fill(ipv6Values, null);
+    ipv4Size = 0;
+    ipv6Size = 0;
+  }
+
+  private int indexOf(int address) {
+    int mask = ipv4Keys.length - 1;
+    int index = IPv4.hash(address) & mask;
+    while (ipv4Values[index] != null) {
+      if (ipv4Keys[index] == address) {
+        return index;
+      }
+      index = (index + 1) & mask;
+    }
+    return -1;
+  }
+
+  private int indexOf(long high, long low) {
+    int mask = ipv6Values.length - 1;
+    int index = IPv6Address.hash(high, low) & mask;
+    while (ipv6Values[index] != null) {
+      if (ipv6Keys[2 * index] == high && ipv6Keys[2 * index + 1] == low) {
+        return index;
+      }
+      index = (index + 1) & mask;
+    }
+    return -1;
+  }
+
+  @SuppressWarnings("unchecked")
+  private void resizeIPv4(int capacity) {
+    int[] oldKeys = ipv4Keys;
+    Object[] oldValues = ipv4Values;
+    ipv4Keys = new int[capacity];
+    ipv4Values = new Object[capacity];
+    ipv4Size = 0;
+    for (int i = 0; i < oldValues.length; i++) {
+      if (oldValues[i] != null) {
+        put(oldKeys[i], (V) oldValues[i]);
+      }
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private void resizeIPv6(int capacity) {
+    long[] oldKeys = ipv6Keys;
+    Object[] oldValues = ipv6Values;
+    ipv6Keys = new long[capacity * 2];
+    ipv6Values = new Object[capacity];
+    ipv6Size = 0;
+    for (int i = 0; i < oldValues.length; i++) {
+      if (oldValues[i] != null) {
+        put(oldKeys[2 * i], oldKeys[2 * i + 1], (V) oldValues[i]);
+      }
+    }
+  }
+
+  private static int tableSizeFor(int expectedSize) {
+    int capacity = DEFAULT_CAPACITY;
+    while (capacity >>> MAX_LOAD_SHIFT < expectedSize) {
+      capacity <<= 1;
+    }
+    return capacity;
+  }
+
+}
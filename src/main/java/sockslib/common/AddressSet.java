@@ -0,0 +1,133 @@
+/*
+ * Copyright 2015-2025 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package sockslib.common;
+
+import java.net.InetAddress;
+import java.net.SocketAddress;
+
+/**
+ * The class <code>AddressSet</code> is a set of IPv4 and IPv6 addresses which is backed by an
+ * {@link AddressMap}. Checking whether an IPv4 address is in the set never allocates memory.
+ * <p>
+ * This class is not thread safe.
+ * </p>
+ *
+ * @version 1.0
+ */
+public class AddressSet {
+
+  private final AddressMap<Boolean> map;
+
+  public AddressSet() {
+    map = new AddressMap<>();
+  }
+
+  /**
+   * Constructs an instance of {@link AddressSet}.
+   *
+   * @param expectedSize Expected number of IPv4 addresses.
+   */
+  public AddressSet(int expectedSize) {
+    map = new AddressMap<>(expectedSize);
+  }
+
+  /**
+   * Adds a packed IPv4 address.
+   *
+   * @param address Packed IPv4 address.
+   * @return <code>true</code> if the address was not in the set.
+   */
+  public boolean add(int address) {
+    return map.put(address, Boolean.TRUE) == null;
+  }
+
+  /**
+   * Adds a packed IPv6 address.
+   *
+   * @param high First 64 bits of the address.
+   * @param low  Last 64 bits of the address.
+   * @return <code>true</code> if the address was not in the set.
+   */
+  public boolean add(long high, long low) {
+    return map.put(high, low, Boolean.TRUE) == null;
+  }
+
+  public boolean add(InetAddress address) {
+    return map.put(address, Boolean.TRUE) == null;
+  }
+
+  /**
+   * Adds an address which is a dotted decimal IPv4 address or an IPv6 address.
+   *
+   * @param address Address.
+   * @return <code>true</code> if the address was not in the set.
+   * @throws IllegalArgumentException If the address is invalid.
+   */
+  public boolean add(String address) {
+    if (address.indexOf(':') >= 0) {
+      IPv6Address ipv6Address = IPv6Address.parse(address);
+      return add(ipv6Address.getHigh(), ipv6Address.getLow());
+    }
+    return add(IPv4.parse(address));
+  }
+
+  public boolean contains(int address) {
+    return map.containsKey(address);
+  }
+
+  public boolean contains(long high, long low) {
+    return map.containsKey(high, low);
+  }
+
+  public boolean contains(InetAddress address) {
+    return map.containsKey(address);
+  }
+
+  /**
+   * Returns <code>true</code> if the address of a socket address is in the set.
+   *
+   * @param address Socket address.
+   * @return <code>true</code> if the address is in the set, an unresolved address is never in
+   * the set.
+   */
+  public boolean contains(SocketAddress address) {
+    return map.get(address) != null;
+  }
+
+  public boolean remove(int address) {
+    return map.remove(address) != null;
+  }
+
+  public boolean remove(long high, long low) {
+    return map.remove(high, low) != null;
+  }
+
+  public boolean remove(InetAddress address) {
+    return map.remove(address) != null;
+  }
+
+  public int size() {
+    return map.size();
+  }
+
+  public boolean isEmpty() {
+    return map.isEmpty();
+  }
+
+  public void clear() {
+    map.clear();
+  }
+
+}
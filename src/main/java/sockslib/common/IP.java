@@ -14,12 +14,9 @@
 
 package sockslib.common;
 
-import com.google.common.hash.Hashing;
 import sockslib.utils.UnsignedByte;
 
 import java.io.Serializable;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 import static com.google.common.base.Preconditions.checkArgument;
 
@@ -114,19 +111,7 @@ public class IP implements Comparable<IP>, Serializable {
    * @return Instance of <code>Ip</code>.
    */
   public static IP parseFromString(String ip) {
-    String regex = "\\s*(\\d{1,3})\\.(\\d{1,3})\\.(\\d{1,3})\\.(\\d{1,3})\\s*";
-
-    Pattern pattern = Pattern.compile(regex);
-    Matcher m = pattern.matcher(ip);
-
-    checkArgument(m.find(), "IP string should match the regex:%s", regex);
-
-    int a = Integer.parseInt(m.group(1));
-    int b = Integer.parseInt(m.group(2));
-    int c = Integer.parseInt(m.group(3));
-    int d = Integer.parseInt(m.group(4));
-
-    return new IP(a, b, c, d);
+    return new IP(IPv4.toUnsignedLong(IPv4.parse(ip.trim())));
   }
 
   /**
@@ -197,10 +182,7 @@ public class IP implements Comparable<IP>, Serializable {
    * @return <code>true</code> if the IP is local IP address.
    */
   public boolean isLocalIP() {
-
-    return IPRange.AClassLocalIPRange().contains(this)
-        || IPRange.BClassLocalIPRange().contains(this)
-        || IPRange.CClassLocalIPRange().contains(this);
+    return IPv4.isPrivate((int) value);
   }
 
   /**
@@ -237,7 +219,7 @@ public class IP implements Comparable<IP>, Serializable {
 
   @Override
   public String toString() {
-    return String.format("%s.%s.%s.%s", a, b, c, d);
+    return IPv4.toString((int) value);
   }
 
 
@@ -255,8 +237,7 @@ public class IP implements Comparable<IP>, Serializable {
 
   @Override
   public int hashCode() {
-    return Hashing.md5().newHasher().putInt(a).putChar('.').putInt(b).putChar('.').putInt(c)
-        .putChar('.').putInt(d).hash().hashCode();
+    return IPv4.hash((int) value);
   }
 
 
@@ -57,10 +57,8 @@ public class IPRange implements Iterable<IP>, Serializable {
    */
   public IPRange(IP startIp, IP endIp) {
 
-    int result = endIp.compareTo(startIp);
-    if (result > 0 || result == 0)
-      Preconditions.checkArgument(
-          result > 0 || result == 0, "maxIP must equal or bigger than minIP");
+    Preconditions.checkArgument(endIp.compareTo(startIp) >= 0,
+        "maxIP must equal or bigger than minIP");
 
     this.startIP = startIp;
     this.endIP = endIp;
@@ -93,11 +91,10 @@ public class IPRange implements Iterable<IP>, Serializable {
     String[] strs = ipWithMask.split("/");
 
     if (strs.length == 2) {
-      IP ip = IP.parseFromString(strs[0]);
-      int mask = Integer.parseInt(strs[1]);
-      long maskAsLong = 0xffffffff << (32 - mask);
-      minIpAsLong = ip.toLong();
-      maxIpAsLong = minIpAsLong | (~maskAsLong);
+      int ip = IPv4.parse(strs[0].trim());
+      int mask = IPv4.mask(Integer.parseInt(strs[1].trim()));
+      minIpAsLong = IPv4.toUnsignedLong(ip & mask);
+      maxIpAsLong = IPv4.toUnsignedLong(ip | ~mask);
     } else {
       throw new IllegalArgumentException(
           "The input String format error. For example" + " 192.168.1.1/24");
@@ -142,7 +139,7 @@ public class IPRange implements Iterable<IP>, Serializable {
    * @return If the IP is in the rang return <code>true</code>.
    */
   public boolean contains(IP ip) {
-    return ip.compareTo(startIP) >= 0 && ip.compareTo(endIP) <= 0;
+    return contains(ip.getValue());
   }
 
   public boolean contains(SocketAddress address) {
@@ -150,12 +147,12 @@ public class IPRange implements Iterable<IP>, Serializable {
         ((InetSocketAddress) address).getAddress());
   }
 
-  public boolean contains(InetAddress address){
-    if (address instanceof Inet4Address){
-      IP ip = new IP(address.getAddress());
-      return contains(ip);
-    }
-    return false;
+  public boolean contains(InetAddress address) {
+    return address instanceof Inet4Address && contains(IPv4.toUnsignedLong(IPv4.of(address)));
+  }
+
+  private boolean contains(long value) {
+    return value >= startIP.getValue() && value <= endIP.getValue();
   }
 
   /**
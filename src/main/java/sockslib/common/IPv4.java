@@ -0,0 +1,247 @@
+/*
+ * Copyright 2015-2025 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package sockslib.common;
+
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * The class <code>IPv4</code> is a tool class for IPv4 addresses which are packed in an
+ * <code>int</code>, the first octet is the most significant byte.
+ * <p>
+ * Unlike {@link IP}, a packed address needs no object, so it can be parsed, hashed, classified
+ * and stored in {@link AddressMap} without allocating anything.
+ * </p>
+ *
+ * @version 1.0
+ */
+public final class IPv4 {
+
+  private IPv4() {
+  }
+
+  /**
+   * Parses a dotted decimal address such as <code>"192.168.1.1"</code>.
+   *
+   * @param address Address.
+   * @return Packed address.
+   * @throws IllegalArgumentException If the address is invalid.
+   */
+  public static int parse(CharSequence address) {
+    return parse(address, 0, address.length());
+  }
+
+  /**
+   * Parses a dotted decimal address in a part of a string.
+   *
+   * @param address String which contains the address.
+   * @param start   Index of the first character, inclusive.
+   * @param end     Index of the last character, exclusive.
+   * @return Packed address.
+   * @throws IllegalArgumentException If the address is invalid.
+   */
+  public static int parse(CharSequence address, int start, int end) {
+    int result = 0;
+    int octets = 0;
+    int i = start;
+    while (i < end) {
+      int value = 0;
+      int digits = 0;
+      char ch;
+      while (i < end && (ch = address.charAt(i)) >= '0' && ch <= '9') {
+        value = value * 10 + (ch - '0');
+        digits++;
+        i++;
+      }
+      if (digits == 0 || digits > 3 || value > 255 || octets == 4) {
+        throw invalid(address, start, end);
+      }
+      result = (result << 8) | value;
+      octets++;
+      if (i < end) {
+        if (address.charAt(i) != '.' || i == end - 1) {
+          throw invalid(address, start, end);
+        }
+        i++;
+      }
+    }
+    if (octets != 4) {
+      throw invalid(address, start, end);
+    }
+    return result;
+  }
+
+  /**
+   * Returns <code>true</code> if a string is a valid dotted decimal address.
+   *
+   * @param address Address.
+   * @return <code>true</code> if the address is valid.
+   */
+  public static boolean isValid(CharSequence address) {
+    try {
+      parse(address);
+      return true;
+    } catch (IllegalArgumentException e) {
+      return false;
+    }
+  }
+
+  /**
+   * Packs four bytes of an address.
+   *
+   * @param address Bytes of the address.
+   * @param offset  Offset of the first byte.
+   * @return Packed address.
+   */
+  public static int fromBytes(byte[] address, int offset) {
+    return (address[offset] & 0xFF) << 24 | (address[offset + 1] & 0xFF) << 16
+        | (address[offset + 2] & 0xFF) << 8 | (address[offset + 3] & 0xFF);
+  }
+
+  /**
+   * Packs an {@link Inet4Address} without copying its bytes.
+   *
+   * @param address IPv4 address.
+   * @return Packed address.
+   * @throws IllegalArgumentException If the address is not an IPv4 address.
+   */
+  public static int of(InetAddress address) {
+    checkArgument(address instanceof Inet4Address, "Argument [address] must be IPv4 address");
+    // Hash code of an IPv4 address is the address itself.
+    return address.hashCode();
+  }
+
+  public static byte[] toBytes(int address) {
+    return new byte[] {(byte) (address >>> 24), (byte) (address >>> 16), (byte) (address >>> 8),
+        (byte) address};
+  }
+
+  public static InetAddress toInetAddress(int address) {
+    try {
+      return InetAddress.getByAddress(toBytes(address));
+    } catch (UnknownHostException e) {
+      // Never happens, the length of the address is always 4.
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * Returns the address as an unsigned value, it's the value used by {@link IP}.
+   *
+   * @param address Packed address.
+   * @return Unsigned value of the address.
+   */
+  public static long toUnsignedLong(int address) {
+    return address & 0xFFFFFFFFL;
+  }
+
+  public static String toString(int address) {
+    return new StringBuilder(15).append(address >>> 24).append('.')
+        .append((address >>> 16) & 0xFF).append('.').append((address >>> 8) & 0xFF).append('.')
+        .append(address & 0xFF).toString();
+  }
+
+  /**
+   * Returns the network mask of a prefix length, such as <code>0xFFFFFF00</code> for 24.
+   *
+   * @param prefixLength Prefix length, between 0 and 32.
+   * @return Network mask.
+   */
+  public static int mask(int prefixLength) {
+    checkArgument(prefixLength >= 0 && prefixLength <= 32,
+        "Argument [prefixLength] must be between 0 and 32");
+    return prefixLength == 0 ? 0 : -1 << (32 - prefixLength);
+  }
+
+  /**
+   * Returns <code>true</code> if an address is in a CIDR block.
+   *
+   * @param network      Address of the block.
+   * @param prefixLength Prefix length of the block.
+   * @param address      Address.
+   * @return <code>true</code> if the address is in the block.
+   */
+  public static boolean contains(int network, int prefixLength, int address) {
+    int mask = mask(prefixLength);
+    return (network & mask) == (address & mask);
+  }
+
+  /**
+   * Returns <code>true</code> if an address is a private address defined in RFC 1918, which is
+   * in 10.0.0.0/8, 172.16.0.0/12 or 192.168.0.0/16.
+   *
+   * @param address Packed address.
+   * @return <code>true</code> if the address is a private address.
+   */
+  public static boolean isPrivate(int address) {
+    return (address >>> 24) == 10 || (address >>> 20) == 0xAC1 || (address >>> 16) == 0xC0A8;
+  }
+
+  /**
+   * Returns <code>true</code> if an address is in 127.0.0.0/8.
+   *
+   * @param address Packed address.
+   * @return <code>true</code> if the address is a loopback address.
+   */
+  public static boolean isLoopback(int address) {
+    return (address >>> 24) == 127;
+  }
+
+  /**
+   * Returns <code>true</code> if an address is in 169.254.0.0/16.
+   *
+   * @param address Packed address.
+   * @return <code>true</code> if the address is a link local address.
+   */
+  public static boolean isLinkLocal(int address) {
+    return (address >>> 16) == 0xA9FE;
+  }
+
+  /**
+   * Returns <code>true</code> if an address is in 224.0.0.0/4.
+   *
+   * @param address Packed address.
+   * @return <code>true</code> if the address is a multicast address.
+   */
+  public static boolean isMulticast(int address) {
+    return (address >>> 28) == 0xE;
+  }
+
+  /**
+   * Spreads the bits of an address, so that addresses of the same network don't collide in hash
+   * tables. It's the finalizer of MurmurHash3.
+   *
+   * @param address Packed address.
+   * @return Hash of the address.
+   */
+  public static int hash(int address) {
+    int h = address;
+    h ^= h >>> 16;
+    h *= 0x85EBCA6B;
+    h ^= h >>> 13;
+    h *= 0xC2B2AE35;
+    h ^= h >>> 16;
+    return h;
+  }
+
+  private static IllegalArgumentException invalid(CharSequence address, int start, int end) {
+    return new IllegalArgumentException(
+        "Invalid IPv4 address: " + address.subSequence(start, end));
+  }
+
+}
@@ -0,0 +1,347 @@
+/*
+ * Copyright 2015-2025 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package sockslib.common;
+
+import java.io.Serializable;
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * The class <code>IPv6Address</code> represents an IPv6 address which is packed in two
+ * <code>long</code>s, <code>high</code> holds the first 64 bits.
+ * <p>
+ * Static methods work on the two <code>long</code>s directly, so that {@link AddressMap} can
+ * store addresses without any object.
+ * </p>
+ *
+ * @version 1.0
+ */
+public final class IPv6Address implements Comparable<IPv6Address>, Serializable {
+
+  private static final long serialVersionUID = 1L;
+
+  private final long high;
+
+  private final long low;
+
+  public IPv6Address(long high, long low) {
+    this.high = high;
+    this.low = low;
+  }
+
+  /**
+   * Parses an address such as <code>"2001:db8::1"</code> or <code>"::ffff:192.168.1.1"</code>.
+   * A zone index after <code>%</code> is ignored.
+   *
+   * @param address Address.
+   * @return Instance of {@link IPv6Address}.
+   * @throws IllegalArgumentException If the address is invalid.
+   */
+  public static IPv6Address parse(CharSequence address) {
+    checkNotNull(address, "Argument [address] may not be null");
+    int end = address.length();
+    for (int i = 0; i < end; i++) {
+      if (address.charAt(i) == '%') {
+        end = i;
+        break;
+      }
+    }
+    // Groups before "::" are put from the start, groups after it are put after them and moved
+    // to the end at last.
+    int[] groups = new int[8];
+    int count = 0;
+    int compressAt = -1;
+    int i = 0;
+    if (end >= 2 && address.charAt(0) == ':' && address.charAt(1) == ':') {
+      compressAt = 0;
+      i = 2;
+    } else if (end > 0 && address.charAt(0) == ':') {
+      throw invalid(address);
+    }
+    while (i < end) {
+      int start = i;
+      int value = 0;
+      int digits = 0;
+      int digit;
+      while (i < end && (digit = Character.digit(address.charAt(i), 16)) >= 0) {
+        value = (value << 4) | digit;
+        digits++;
+        i++;
+      }
+      if (i < end && address.charAt(i) == '.') {
+        // An IPv4 address takes the last two groups.
+        if (count > 6) {
+          throw invalid(address);
+        }
+        int ipv4 = IPv4.parse(address, start, end);
+        groups[count++] = ipv4 >>> 16;
+        groups[count++] = ipv4 & 0xFFFF;
+        i = end;
+        break;
+      }
+      if (digits == 0 || digits > 4 || count == 8) {
+        throw invalid(address);
+      }
+      groups[count++] = value;
+      if (i == end) {
+        break;
+      }
+      if (address.charAt(i) != ':' || i == end - 1) {
+        throw invalid(address);
+      }
+      i++;
+      if (address.charAt(i) == ':') {
+        if (compressAt >= 0) {
+          throw invalid(address);
+        }
+        compressAt = count;
+        i++;
+      }
+    }
+    if (compressAt >= 0) {
+      if (count > 7) {
+        throw invalid(address);
+      }
+      int shift = 8 - count;
+      for (int j = count - 1; j >= compressAt; j--) {
+        groups[j + shift] = groups[j];
+        groups[j] = 0;
+      }
+    } else if (count != 8) {
+      throw invalid(address);
+    }
+    long high = 0;
+    long low = 0;
+    for (int j = 0; j < 4; j++) {
+      high = (high << 16) | groups[j];
+      low = (low << 16) | groups[j + 4];
+    }
+    return new IPv6Address(high, low);
+  }
+
+  /**
+   * Creates an instance from 16 bytes.
+   *
+   * @param address Bytes of the address.
+   * @return Instance of {@link IPv6Address}.
+   */
+  public static IPv6Address fromBytes(byte[] address) {
+    checkArgument(address.length == 16, "Argument [address] must be 16 bytes");
+    return new IPv6Address(highOf(address), lowOf(address));
+  }
+
+  /**
+   * Creates an instance from an {@link Inet6Address}.
+   *
+   * @param address IPv6 address.
+   * @return Instance of {@link IPv6Address}.
+   */
+  public static IPv6Address of(InetAddress address) {
+    checkArgument(address instanceof Inet6Address, "Argument [address] must be IPv6 address");
+    return fromBytes(address.getAddress());
+  }
+
+  /**
+   * Returns the first 64 bits of 16 bytes.
+   *
+   * @param address Bytes of the address.
+   * @return First 64 bits.
+   */
+  public static long highOf(byte[] address) {
+    return toLong(address, 0);
+  }
+
+  /**
+   * Returns the last 64 bits of 16 bytes.
+   *
+   * @param address Bytes of the address.
+   * @return Last 64 bits.
+   */
+  public static long lowOf(byte[] address) {
+    return toLong(address, 8);
+  }
+
+  /**
+   * Returns a hash of a packed address.
+   *
+   * @param high First 64 bits.
+   * @param low  Last 64 bits.
+   * @return Hash of the address.
+   */
+  public static int hash(long high, long low) {
+    // Finalizer of MurmurHash3 over both halves.
+    long h = high * 0x9E3779B97F4A7C15L ^ low;
+    h ^= h >>> 33;
+    h *= 0xFF51AFD7ED558CCDL;
+    h ^= h >>> 33;
+    h *= 0xC4CEB9FE1A85EC53L;
+    h ^= h >>> 33;
+    return (int) h;
+  }
+
+  public long getHigh() {
+    return high;
+  }
+
+  public long getLow() {
+    return low;
+  }
+
+  public byte[] toBytes() {
+    byte[] bytes = new byte[16];
+    for (int i = 0; i < 8; i++) {
+      bytes[i] = (byte) (high >>> (56 - 8 * i));
+      bytes[i + 8] = (byte) (low >>> (56 - 8 * i));
+    }
+    return bytes;
+  }
+
+  public InetAddress toInetAddress() {
+    try {
+      return InetAddress.getByAddress(toBytes());
+    } catch (UnknownHostException e) {
+      // Never happens, the length of the address is always 16.
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * Returns <code>true</code> if the address is <code>::1</code>.
+   *
+   * @return <code>true</code> if the address is the loopback address.
+   */
+  public boolean isLoopback() {
+    return high == 0 && low == 1;
+  }
+
+  /**
+   * Returns <code>true</code> if the address is in fc00::/7, which is defined in RFC 4193.
+   *
+   * @return <code>true</code> if the address is a unique local address.
+   */
+  public boolean isUniqueLocal() {
+    return (high >>> 57) == 0x7E;
+  }
+
+  /**
+   * Returns <code>true</code> if the address is in fe80::/10.
+   *
+   * @return <code>true</code> if the address is a link local address.
+   */
+  public boolean isLinkLocal() {
+    return (high >>> 54) == 0x3FA;
+  }
+
+  /**
+   * Returns <code>true</code> if the address is an IPv4 mapped address such as
+   * <code>::ffff:192.168.1.1</code>.
+   *
+   * @return <code>true</code> if the address is an IPv4 mapped address.
+   */
+  public boolean isIPv4Mapped() {
+    return high == 0 && (low >>> 32) == 0xFFFF;
+  }
+
+  /**
+   * Returns the packed IPv4 address of an IPv4 mapped address.
+   *
+   * @return Packed IPv4 address.
+   * @throws IllegalStateException If the address is not an IPv4 mapped address.
+   */
+  public int toIPv4() {
+    if (!isIPv4Mapped()) {
+      throw new IllegalStateException(this + " is not an IPv4 mapped address");
+    }
+    return (int) low;
+  }
+
+  @Override
+  public int compareTo(IPv6Address address) {
+    int result = Long.compareUnsigned(high, address.high);
+    return result != 0 ? result : Long.compareUnsigned(low, address.low);
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (obj instanceof IPv6Address) {
+      IPv6Address address = (IPv6Address) obj;
+      return high == address.high && low == address.low;
+    }
+    return false;
+  }
+
+  @Override
+  public int hashCode() {
+    return hash(high, low);
+  }
+
+  /**
+   * Returns the address in the canonical format of RFC 5952, the longest run of zero groups is
+   * compressed.
+   *
+   * @return The address as a string.
+   */
+  @Override
+  public String toString() {
+    int bestStart = -1;
+    int bestLength = 1;
+    for (int i = 0; i < 8; i++) {
+      int length = 0;
+      while (i + length < 8 && group(i + length) == 0) {
+        length++;
+      }
+      if (length > bestLength) {
+        bestStart = i;
+        bestLength = length;
+      }
+      i += length;
+    }
+    StringBuilder builder = new StringBuilder(39);
+    for (int i = 0; i < 8; i++) {
+      if (i == bestStart) {
+        builder.append("::");
+        i += bestLength - 1;
+        continue;
+      }
+      if (builder.length() > 0 && builder.charAt(builder.length() - 1) != ':') {
+        builder.append(':');
+      }
+      builder.append(Integer.toHexString(group(i)));
+    }
+    return builder.toString();
+  }
+
+  private int group(int index) {
+    long half = index < 4 ? high : low;
+    return (int) (half >>> (48 - 16 * (index & 3))) & 0xFFFF;
+  }
+
+  private static long toLong(byte[] bytes, int offset) {
+    long value = 0;
+    for (int i = 0; i < 8; i++) {
+      value = (value << 8) | (bytes[offset + i] & 0xFF);
+    }
+    return value;
+  }
+
+  private static IllegalArgumentException invalid(CharSequence address) {
+    return new IllegalArgumentException("Invalid IPv6 address: " + address);
+  }
+
+}
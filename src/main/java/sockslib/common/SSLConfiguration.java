@@ -22,17 +22,26 @@ import org.slf4j.LoggerFactory;
 import javax.annotation.Nullable;
 import javax.net.ssl.KeyManagerFactory;
 import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLEngine;
 import javax.net.ssl.SSLServerSocketFactory;
+import javax.net.ssl.SSLSession;
+import javax.net.ssl.SSLSessionContext;
+import javax.net.ssl.SSLSocket;
 import javax.net.ssl.SSLSocketFactory;
 import javax.net.ssl.TrustManagerFactory;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStream;
+import java.net.Socket;
 import java.net.URL;
 import java.security.KeyStore;
 import java.util.Properties;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 
 /**
@@ -50,6 +59,35 @@ public class SSLConfiguration {
   private KeyStoreInfo trustKeyStoreInfo;
   private boolean needClientAuth = false;
 
+  /**
+   * Max number of cached TLS sessions, -1 means the JSSE default.
+   */
+  private int sessionCacheSize = -1;
+
+  /**
+   * Timeout in seconds of cached TLS sessions, -1 means the JSSE default.
+   */
+  private int sessionTimeout = -1;
+
+  private volatile long reloadCheckInterval = 0;
+
+  private final AtomicLong nextReloadCheck = new AtomicLong();
+
+  /**
+   * Modification times and sizes of the key store files which the contexts were built from.
+   */
+  private volatile String fingerprint = "";
+
+  private volatile SSLContext clientContext;
+
+  private volatile SSLContext serverContext;
+
+  private final LongAdder handshakeCount = new LongAdder();
+
+  private final LongAdder resumedHandshakeCount = new LongAdder();
+
+  private final LongAdder reloadCount = new LongAdder();
+
   public SSLConfiguration(KeyStoreInfo keyStoreInfo, KeyStoreInfo trustKeyStoreInfo) {
     this(keyStoreInfo, trustKeyStoreInfo, false);
   }
@@ -134,80 +172,352 @@ public class SSLConfiguration {
     return load(path);
   }
 
+  /**
+   * Returns the socket factory of the client side context.
+   *
+   * @return SSL socket factory.
+   * @throws SSLConfigurationException If the context can't be built.
+   */
   public SSLSocketFactory getSSLSocketFactory() throws SSLConfigurationException {
+    return getSSLContext().getSocketFactory();
+  }
+
+  /**
+   * Returns the server socket factory of the server side context.
+   *
+   * @return SSL server socket factory.
+   * @throws SSLConfigurationException If the context can't be built.
+   */
+  public SSLServerSocketFactory getSSLServerSocketFactory() throws SSLConfigurationException {
+    return getServerSSLContext().getServerSocketFactory();
+  }
+
+  /**
+   * Returns the client side context. It's built once and shared by all connections, so that TLS
+   * sessions can be resumed.
+   *
+   * @return Client side SSL context.
+   * @throws SSLConfigurationException If the context can't be built.
+   */
+  public SSLContext getSSLContext() throws SSLConfigurationException {
+    checkForUpdates();
+    SSLContext context = clientContext;
+    if (context == null) {
+      synchronized (this) {
+        if (clientContext == null) {
+          clientContext = buildClientContext();
+          updateFingerprint();
+        }
+        context = clientContext;
+      }
+    }
+    return context;
+  }
+
+  /**
+   * Returns the server side context. It's built once and shared by all connections, so that TLS
+   * sessions can be resumed.
+   *
+   * @return Server side SSL context.
+   * @throws SSLConfigurationException If the context can't be built.
+   */
+  public SSLContext getServerSSLContext() throws SSLConfigurationException {
+    checkForUpdates();
+    SSLContext context = serverContext;
+    if (context == null) {
+      synchronized (this) {
+        if (serverContext == null) {
+          serverContext = buildServerContext();
+          updateFingerprint();
+        }
+        context = serverContext;
+      }
+    }
+    return context;
+  }
+
+  /**
+   * Layers server side SSL over an accepted socket with the current server context.
+   *
+   * @param socket Accepted socket.
+   * @return SSL socket in server mode, which closes <code>socket</code> when it's closed.
+   * @throws IOException If the context can't be built or an I/O error occurs.
+   */
+  public SSLSocket wrapAcceptedSocket(Socket socket) throws IOException {
+    SSLContext context;
+    try {
+      context = getServerSSLContext();
+    } catch (SSLConfigurationException e) {
+      throw new IOException(e.getMessage(), e);
+    }
+    SSLSocket sslSocket = (SSLSocket) context.getSocketFactory().createSocket(socket, null, true);
+    sslSocket.setUseClientMode(false);
+    sslSocket.setNeedClientAuth(needClientAuth);
+    return sslSocket;
+  }
+
+  /**
+   * Does the SSL handshake of a socket and counts whether the session was resumed.
+   *
+   * @param socket SSL socket.
+   * @throws IOException If the handshake fails.
+   */
+  public void startHandshake(SSLSocket socket) throws IOException {
+    long startTime = System.currentTimeMillis();
+    socket.startHandshake();
+    handshakeFinished(socket.getSession(), startTime);
+  }
+
+  /**
+   * Creates a server side {@link SSLEngine} with the current server context. It's used by
+   * non-blocking servers which drive the handshake by themselves.
+   *
+   * @return SSL engine in server mode.
+   * @throws IOException If the context can't be built.
+   */
+  public SSLEngine createServerEngine() throws IOException {
+    SSLContext context;
+    try {
+      context = getServerSSLContext();
+    } catch (SSLConfigurationException e) {
+      throw new IOException(e.getMessage(), e);
+    }
+    SSLEngine engine = context.createSSLEngine();
+    engine.setUseClientMode(false);
+    engine.setNeedClientAuth(needClientAuth);
+    return engine;
+  }
+
+  /**
+   * Counts a finished handshake and whether the session was resumed.
+   *
+   * @param session   Session of the handshake.
+   * @param startTime Time in milliseconds when the handshake started.
+   */
+  public void handshakeFinished(SSLSession session, long startTime) {
+    handshakeCount.increment();
+    // A resumed session was created by an earlier handshake.
+    if (session.getCreationTime() < startTime) {
+      resumedHandshakeCount.increment();
+    }
+  }
+
+  /**
+   * Rebuilds the contexts which are in use from the key store files. Connections which are
+   * already established keep their sessions, new connections use the new contexts.
+   *
+   * @throws SSLConfigurationException If a context can't be built, the old contexts are kept.
+   */
+  public synchronized void reload() throws SSLConfigurationException {
+    SSLContext newClientContext = clientContext == null ? null : buildClientContext();
+    SSLContext newServerContext = serverContext == null ? null : buildServerContext();
+    clientContext = newClientContext;
+    serverContext = newServerContext;
+    updateFingerprint();
+    reloadCount.increment();
+    logger.info("SSL: Key stores reloaded");
+  }
+
+  /**
+   * Reloads the contexts if a key store file has changed and the reload check interval has
+   * elapsed since the last check.
+   */
+  private void checkForUpdates() {
+    long interval = reloadCheckInterval;
+    if (interval <= 0 || (clientContext == null && serverContext == null)) {
+      return;
+    }
+    long now = System.currentTimeMillis();
+    long next = nextReloadCheck.get();
+    if (now < next || !nextReloadCheck.compareAndSet(next, now + interval)) {
+      return;
+    }
+    if (!fingerprint().equals(fingerprint)) {
+      try {
+        reload();
+      } catch (SSLConfigurationException e) {
+        // Keeps the old contexts, and tries again after the next interval.
+        logger.error("SSL: Can't reload key stores: {}", e.getMessage());
+      }
+    }
+  }
+
+  private void updateFingerprint() {
+    fingerprint = fingerprint();
+  }
+
+  /**
+   * Returns the modification times and sizes of the key store files.
+   */
+  private String fingerprint() {
+    StringBuilder builder = new StringBuilder();
+    for (KeyStoreInfo info : new KeyStoreInfo[] {keyStoreInfo, trustKeyStoreInfo}) {
+      if (info != null && info.getKeyStorePath() != null) {
+        File file = new File(info.getKeyStorePath());
+        builder.append(file.lastModified()).append(':').append(file.length()).append(';');
+      }
+    }
+    return builder.toString();
+  }
+
+  private SSLContext buildClientContext() throws SSLConfigurationException {
     checkNotNull(trustKeyStoreInfo, "trustKeyStoreInfo may not be null");
-    KeyStore keyStore = null;
-    KeyStore trustKeyStore = null;
     try {
       SSLContext context = SSLContext.getInstance("SSL");
       TrustManagerFactory trustManagerFactory = TrustManagerFactory.getInstance("SunX509");
-      trustKeyStore = KeyStore.getInstance(trustKeyStoreInfo.getType());
-      trustKeyStore.load(new FileInputStream(trustKeyStoreInfo.getKeyStorePath()),
-          trustKeyStoreInfo.getPassword().toCharArray());
-      trustManagerFactory.init(trustKeyStore);
+      trustManagerFactory.init(loadKeyStore(trustKeyStoreInfo));
 
       if (keyStoreInfo != null && keyStoreInfo.getKeyStorePath() != null) {
         KeyManagerFactory keyManagerFactory = KeyManagerFactory.getInstance("SunX509");
-        keyStore = KeyStore.getInstance(keyStoreInfo.getType());
-        keyStore.load(new FileInputStream(keyStoreInfo.getKeyStorePath()), keyStoreInfo
-            .getPassword().toCharArray());
-        keyManagerFactory.init(keyStore, keyStoreInfo.getPassword().toCharArray());
-
+        keyManagerFactory.init(loadKeyStore(keyStoreInfo),
+            keyStoreInfo.getPassword().toCharArray());
         context.init(keyManagerFactory.getKeyManagers(), trustManagerFactory.getTrustManagers(),
             null);
+        logger.info("SSL: Key store:{}", keyStoreInfo.getKeyStorePath());
       } else {
         context.init(null, trustManagerFactory.getTrustManagers(), null);
       }
-
-      if (keyStore != null) {
-        logger.info("SSL: Key store:{}", keyStoreInfo.getKeyStorePath());
-      }
       logger.info("SSL: Trust key store:{}", trustKeyStoreInfo.getKeyStorePath());
-      return context.getSocketFactory();
+      configureSessionContext(context.getClientSessionContext());
+      return context;
     } catch (Exception e) {
       logger.error(e.getMessage(), e);
       throw new SSLConfigurationException(e.getMessage());
     }
   }
 
-  public SSLServerSocketFactory getSSLServerSocketFactory() throws SSLConfigurationException {
+  private SSLContext buildServerContext() throws SSLConfigurationException {
     checkNotNull(keyStoreInfo, "keyStoreInfo may not be null");
-    String KEY_STORE_PASSWORD = getKeyStoreInfo().getPassword();
-    String KEY_STORE_PATH = getKeyStoreInfo().getKeyStorePath();
-    KeyStore keyStore = null;
-    KeyStore trustKeyStore = null;
-
     try {
-      SSLContext ctx = SSLContext.getInstance("SSL");
+      SSLContext context = SSLContext.getInstance("SSL");
       KeyManagerFactory keyManagerFactory = KeyManagerFactory.getInstance("SunX509");
-      keyStore = KeyStore.getInstance("JKS");
-      keyStore.load(new FileInputStream(KEY_STORE_PATH), KEY_STORE_PASSWORD.toCharArray());
-      keyManagerFactory.init(keyStore, KEY_STORE_PASSWORD.toCharArray());
+      keyManagerFactory.init(loadKeyStore(keyStoreInfo), keyStoreInfo.getPassword().toCharArray());
 
       if (needClientAuth && trustKeyStoreInfo != null) {
-        String TRUST_KEY_STORE_PATH = getTrustKeyStoreInfo().getKeyStorePath();
-        String TRUST_KEY_STORE_PASSWORD = getTrustKeyStoreInfo().getPassword();
         TrustManagerFactory trustManagerFactory = TrustManagerFactory.getInstance("SunX509");
-        trustKeyStore = KeyStore.getInstance("JKS");
-        trustKeyStore.load(new FileInputStream(TRUST_KEY_STORE_PATH), TRUST_KEY_STORE_PASSWORD
-            .toCharArray());
-        trustManagerFactory.init(trustKeyStore);
-        ctx.init(keyManagerFactory.getKeyManagers(), trustManagerFactory.getTrustManagers(), null);
+        trustManagerFactory.init(loadKeyStore(trustKeyStoreInfo));
+        context.init(keyManagerFactory.getKeyManagers(), trustManagerFactory.getTrustManagers(),
+            null);
+        logger.info("SSL: Trust key store:{}", trustKeyStoreInfo.getKeyStorePath());
       } else {
-        ctx.init(keyManagerFactory.getKeyManagers(), null, null);
+        context.init(keyManagerFactory.getKeyManagers(), null, null);
       }
-
       logger.info("SSL: Key store:{}", keyStoreInfo.getKeyStorePath());
-      if (trustKeyStore != null) {
-        logger.info("SSL: Trust key store:{}", trustKeyStoreInfo.getKeyStorePath());
-      }
       logger.info("SSL: Client authentication:{}", needClientAuth);
-      ;
-      return ctx.getServerSocketFactory();
+      configureSessionContext(context.getServerSessionContext());
+      return context;
     } catch (Exception e) {
       throw new SSLConfigurationException(e.getMessage());
     }
+  }
+
+  private void configureSessionContext(SSLSessionContext sessionContext) {
+    if (sessionCacheSize >= 0) {
+      sessionContext.setSessionCacheSize(sessionCacheSize);
+    }
+    if (sessionTimeout >= 0) {
+      sessionContext.setSessionTimeout(sessionTimeout);
+    }
+  }
+
+  private static KeyStore loadKeyStore(KeyStoreInfo info) throws Exception {
+    KeyStore keyStore = KeyStore.getInstance(info.getType());
+    try (InputStream inputStream = new FileInputStream(info.getKeyStorePath())) {
+      keyStore.load(inputStream, info.getPassword().toCharArray());
+    }
+    return keyStore;
+  }
+
+  /**
+   * Drops the contexts, so that they are built with the current settings next time.
+   */
+  private synchronized void invalidate() {
+    clientContext = null;
+    serverContext = null;
+  }
+
+  public int getSessionCacheSize() {
+    return sessionCacheSize;
+  }
+
+  /**
+   * Sets the max number of cached TLS sessions of each context, 0 means no limit. By default, the
+   * JSSE default is used.
+   *
+   * @param sessionCacheSize Max number of cached sessions.
+   */
+  public void setSessionCacheSize(int sessionCacheSize) {
+    checkArgument(sessionCacheSize >= 0, "Argument [sessionCacheSize] must not be negative");
+    this.sessionCacheSize = sessionCacheSize;
+    invalidate();
+  }
+
+  public int getSessionTimeout() {
+    return sessionTimeout;
+  }
+
+  /**
+   * Sets how long a cached TLS session can be resumed, 0 means no limit. By default, the JSSE
+   * default is used.
+   *
+   * @param sessionTimeout Timeout in seconds.
+   */
+  public void setSessionTimeout(int sessionTimeout) {
+    checkArgument(sessionTimeout >= 0, "Argument [sessionTimeout] must not be negative");
+    this.sessionTimeout = sessionTimeout;
+    invalidate();
+  }
+
+  public long getReloadCheckInterval() {
+    return reloadCheckInterval;
+  }
+
+  /**
+   * Sets how often the key store files are checked for changes, 0 disables the check. The check
+   * is done when a context is used, and changed files are loaded with {@link #reload()}.
+   *
+   * @param reloadCheckInterval Interval in milliseconds.
+   */
+  public void setReloadCheckInterval(long reloadCheckInterval) {
+    checkArgument(reloadCheckInterval >= 0, "Argument [reloadCheckInterval] must not be negative");
+    this.reloadCheckInterval = reloadCheckInterval;
+  }
+
+  /**
+   * Returns the number of handshakes done by {@link #startHandshake(SSLSocket)}.
+   *
+   * @return Number of handshakes.
+   */
+  public long getHandshakeCount() {
+    return handshakeCount.sum();
+  }
 
+  /**
+   * Returns the number of handshakes which resumed a session.
+   *
+   * @return Number of resumed handshakes.
+   */
+  public long getResumedHandshakeCount() {
+    return resumedHandshakeCount.sum();
+  }
+
+  /**
+   * Returns the ratio of handshakes which resumed a session.
+   *
+   * @return Ratio between 0 and 1.
+   */
+  public double getResumptionRate() {
+    long handshakes = handshakeCount.sum();
+    return handshakes == 0 ? 0 : (double) resumedHandshakeCount.sum() / handshakes;
+  }
+
+  /**
+   * Returns how many times the contexts were reloaded.
+   *
+   * @return Number of reloads.
+   */
+  public long getReloadCount() {
+    return reloadCount.sum();
   }
 
   /**
@@ -224,6 +534,7 @@ public class SSLConfiguration {
    */
   public void setKeyStoreInfo(KeyStoreInfo keyStoreInfo) {
     this.keyStoreInfo = keyStoreInfo;
+    invalidate();
   }
 
   /**
@@ -238,6 +549,7 @@ public class SSLConfiguration {
    */
   public void setTrustKeyStoreInfo(KeyStoreInfo trustKeyStoreInfo) {
     this.trustKeyStoreInfo = trustKeyStoreInfo;
+    invalidate();
   }
 
   /**
@@ -254,6 +566,7 @@ public class SSLConfiguration {
    */
   public void setNeedClientAuth(boolean needClientAuth) {
     this.needClientAuth = needClientAuth;
+    invalidate();
   }
 
 }
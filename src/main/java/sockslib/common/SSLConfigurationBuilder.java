@@ -18,6 +18,9 @@ public class SSLConfigurationBuilder {
   private boolean clientAuth = false;
   private String keyStoreType = "JKS";
   private String trustKeyStoreType = "JKS";
+  private int sessionCacheSize = -1;
+  private int sessionTimeout = -1;
+  private long reloadCheckInterval = 0;
 
   private SSLConfigurationBuilder() {
   }
@@ -74,6 +77,42 @@ public class SSLConfigurationBuilder {
     return this;
   }
 
+  /**
+   * Sets the max number of cached TLS sessions.
+   *
+   * @param sessionCacheSize Max number of cached sessions, 0 means no limit.
+   * @return Instance of {@link SSLConfigurationBuilder}.
+   * @see SSLConfiguration#setSessionCacheSize(int)
+   */
+  public SSLConfigurationBuilder setSessionCacheSize(int sessionCacheSize) {
+    this.sessionCacheSize = sessionCacheSize;
+    return this;
+  }
+
+  /**
+   * Sets how long a cached TLS session can be resumed.
+   *
+   * @param sessionTimeout Timeout in seconds, 0 means no limit.
+   * @return Instance of {@link SSLConfigurationBuilder}.
+   * @see SSLConfiguration#setSessionTimeout(int)
+   */
+  public SSLConfigurationBuilder setSessionTimeout(int sessionTimeout) {
+    this.sessionTimeout = sessionTimeout;
+    return this;
+  }
+
+  /**
+   * Sets how often the key store files are checked for changes.
+   *
+   * @param reloadCheckInterval Interval in milliseconds, 0 disables the check.
+   * @return Instance of {@link SSLConfigurationBuilder}.
+   * @see SSLConfiguration#setReloadCheckInterval(long)
+   */
+  public SSLConfigurationBuilder setReloadCheckInterval(long reloadCheckInterval) {
+    this.reloadCheckInterval = reloadCheckInterval;
+    return this;
+  }
+
   public SSLConfiguration build() {
     KeyStoreInfo keyStore = null;
     if (keyStorePath != null) {
@@ -83,6 +122,14 @@ public class SSLConfigurationBuilder {
     if (trustKeyStorePath != null) {
       trustKeyStore = new KeyStoreInfo(trustKeyStorePath, trustKeyStorePassword, trustKeyStoreType);
     }
-    return new SSLConfiguration(keyStore, trustKeyStore, clientAuth);
+    SSLConfiguration configuration = new SSLConfiguration(keyStore, trustKeyStore, clientAuth);
+    if (sessionCacheSize >= 0) {
+      configuration.setSessionCacheSize(sessionCacheSize);
+    }
+    if (sessionTimeout >= 0) {
+      configuration.setSessionTimeout(sessionTimeout);
+    }
+    configuration.setReloadCheckInterval(reloadCheckInterval);
+    return configuration;
   }
 }
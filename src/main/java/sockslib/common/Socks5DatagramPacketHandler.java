@@ -26,6 +26,7 @@ import java.net.InetSocketAddress;
 import java.net.SocketAddress;
 import java.net.UnknownHostException;
 import java.util.Arrays;
+import java.util.function.Predicate;
 
 /**
  * The class <code>Socks5DatagramPacketHandler</code> represents a datagram packet handler.
@@ -46,6 +47,11 @@ public class Socks5DatagramPacketHandler implements DatagramPacketEncapsulation,
    */
   protected static final Logger logger = LoggerFactory.getLogger(Socks5DatagramPacketHandler.class);
 
+  /**
+   * Decides whether a datagram may be sent to a destination, <code>null</code> means any.
+   */
+  private Predicate<InetSocketAddress> destinationFilter;
+
   public Socks5DatagramPacketHandler() {
 
   }
@@ -100,6 +106,7 @@ public class Socks5DatagramPacketHandler implements DatagramPacketEncapsulation,
           logger.error(e.getMessage(), e);
         }
         remoteServerPort = SocksUtil.bytesToInt(data[8], data[9]);
+        checkDestination(new InetSocketAddress(remoteServerAddress, remoteServerPort));
         originalData = Arrays.copyOfRange(data, 10, packet.getLength());
         break;
 
@@ -110,18 +117,21 @@ public class Socks5DatagramPacketHandler implements DatagramPacketEncapsulation,
           throw new SocksException("Unknown host");
         }
         remoteServerPort = SocksUtil.bytesToInt(data[20], data[21]);
+        checkDestination(new InetSocketAddress(remoteServerAddress, remoteServerPort));
         originalData = Arrays.copyOfRange(data, 22, packet.getLength());
         break;
 
       case AddressType.DOMAIN_NAME:
-        final int DOMAIN_LENGTH = data[4];
+        final int DOMAIN_LENGTH = data[4] & 0xFF;
         String domainName = new String(data, 5, DOMAIN_LENGTH);
+        remoteServerPort = SocksUtil.bytesToInt(data[5 + DOMAIN_LENGTH], data[6 + DOMAIN_LENGTH]);
+        // Checks the name before it's resolved.
+        checkDestination(InetSocketAddress.createUnresolved(domainName, remoteServerPort));
         try {
           remoteServerAddress = InetAddress.getByName(domainName);
         } catch (UnknownHostException e) {
           logger.error(e.getMessage(), e);
         }
-        remoteServerPort = SocksUtil.bytesToInt(data[5 + DOMAIN_LENGTH], data[6 + DOMAIN_LENGTH]);
         originalData = Arrays.copyOfRange(data, 7 + DOMAIN_LENGTH, packet.getLength());
         break;
 
@@ -133,4 +143,26 @@ public class Socks5DatagramPacketHandler implements DatagramPacketEncapsulation,
     packet.setPort(remoteServerPort);
     packet.setData(originalData);
   }
+
+  private void checkDestination(InetSocketAddress destination) throws SocksException {
+    Predicate<InetSocketAddress> filter = destinationFilter;
+    if (filter != null && !filter.test(destination)) {
+      throw new SocksException("Destination " + destination + " is not allowed");
+    }
+  }
+
+  public Predicate<InetSocketAddress> getDestinationFilter() {
+    return destinationFilter;
+  }
+
+  /**
+   * Sets the filter of destinations, {@link #decapsulate(DatagramPacket)} throws
+   * {@link SocksException} if a destination is rejected. A destination which is a domain name is
+   * checked as an unresolved address before it's resolved.
+   *
+   * @param destinationFilter Filter of destinations, <code>null</code> means any.
+   */
+  public void setDestinationFilter(Predicate<InetSocketAddress> destinationFilter) {
+    this.destinationFilter = destinationFilter;
+  }
 }
@@ -1,10 +1,32 @@
 package sockslib.common.net;
 
+import java.util.Arrays;
+
 /**
  * @author Youchao Feng
  * @version 1.0
  * @date Sep 21, 2015 2:46 PM
  */
 public interface InputStreamMonitor {
+
+  /**
+   * This method will be called after bytes are read.
+   *
+   * @param b Bytes.
+   */
   void onRead(byte[] b);
+
+  /**
+   * This method will be called after bytes are read. The buffer is the caller's buffer, the
+   * monitor must not modify it or keep a reference to it. The default implementation copies the
+   * range and calls {@link #onRead(byte[])}, monitors which only need the range should override
+   * it to avoid the copy.
+   *
+   * @param buffer Buffer which holds the bytes.
+   * @param offset Offset of the bytes in the buffer.
+   * @param length Number of bytes.
+   */
+  default void onRead(byte[] buffer, int offset, int length) {
+    onRead(Arrays.copyOfRange(buffer, offset, offset + length));
+  }
 }
@@ -7,9 +7,11 @@ import java.net.InetAddress;
 import java.net.SocketAddress;
 import java.net.SocketException;
 import java.nio.channels.DatagramChannel;
-import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static com.google.common.base.Preconditions.checkNotNull;
 
 /**
  * @author Youchao Feng
@@ -18,28 +20,50 @@ import java.util.List;
  */
 public class MonitorDatagramSocketWrapper extends DatagramSocket {
 
-  private List<DatagramSocketMonitor> monitors;
+  /**
+   * Monitors are iterated on the relay thread for every packet, while they may be added or removed
+   * from other threads, so a copy-on-write list is used.
+   */
+  private volatile List<DatagramSocketMonitor> monitors;
 
   private DatagramSocket originalDatagramSocket;
 
+  /**
+   * Creates a wrapper without a wrapped socket.
+   *
+   * @throws SocketException If an I/O error occurs.
+   * @deprecated The wrapped socket must be set by {@link #setOriginalDatagramSocket(DatagramSocket)}
+   * before use, use {@link #MonitorDatagramSocketWrapper(DatagramSocket, DatagramSocketMonitor...)}
+   * instead.
+   */
+  @Deprecated
   public MonitorDatagramSocketWrapper() throws SocketException {
-
+    super((SocketAddress) null);
+    this.monitors = new CopyOnWriteArrayList<>();
   }
 
   public MonitorDatagramSocketWrapper(DatagramSocket datagramSocket) throws SocketException {
-    this.originalDatagramSocket = datagramSocket;
+    this(datagramSocket, new DatagramSocketMonitor[0]);
   }
 
 
   public MonitorDatagramSocketWrapper(DatagramSocket datagramSocket, DatagramSocketMonitor...
       monitors) throws SocketException {
-    this.originalDatagramSocket = datagramSocket;
-    this.monitors = new ArrayList<>(monitors.length);
-    Collections.addAll(this.monitors, monitors);
+    // Don't let the super class bind a port of its own, this class is only a wrapper.
+    super((SocketAddress) null);
+    this.originalDatagramSocket =
+        checkNotNull(datagramSocket, "Argument [datagramSocket] may not be null");
+    this.monitors = new CopyOnWriteArrayList<>(Arrays.asList(monitors));
+  }
+
+  public MonitorDatagramSocketWrapper addMonitor(DatagramSocketMonitor monitor) {
+    monitors.add(checkNotNull(monitor, "Argument [monitor] may not be null"));
+    return this;
   }
 
-  public static void main(String[] args) throws SocketException {
-    new MonitorDatagramSocketWrapper();
+  public MonitorDatagramSocketWrapper removeMonitor(DatagramSocketMonitor monitor) {
+    monitors.remove(monitor);
+    return this;
   }
 
   public DatagramSocket getOriginalDatagramSocket() {
@@ -55,26 +79,23 @@ public class MonitorDatagramSocketWrapper extends DatagramSocket {
   }
 
   public void setMonitors(List<DatagramSocketMonitor> monitors) {
-    this.monitors = monitors;
+    this.monitors = monitors == null ? new CopyOnWriteArrayList<>() :
+        new CopyOnWriteArrayList<>(monitors);
   }
 
   @Override
   public void send(DatagramPacket p) throws IOException {
     originalDatagramSocket.send(p);
-    if (monitors != null) {
-      for (DatagramSocketMonitor monitor : monitors) {
-        monitor.onSend(p);
-      }
+    for (DatagramSocketMonitor monitor : monitors) {
+      monitor.onSend(p);
     }
   }
 
   @Override
-  public synchronized void receive(DatagramPacket p) throws IOException {
+  public void receive(DatagramPacket p) throws IOException {
     originalDatagramSocket.receive(p);
-    if (monitors != null) {
-      for (DatagramSocketMonitor monitor : monitors) {
-        monitor.onReceive(p);
-      }
+    for (DatagramSocketMonitor monitor : monitors) {
+      monitor.onReceive(p);
     }
   }
 
@@ -201,6 +222,7 @@ public class MonitorDatagramSocketWrapper extends DatagramSocket {
   @Override
   public void close() {
     originalDatagramSocket.close();
+    super.close();
   }
 
   @Override
@@ -3,7 +3,6 @@ package sockslib.common.net;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 
@@ -19,6 +18,11 @@ public class MonitorInputStreamWrapper extends InputStream {
   private InputStream originalInputStream;
   private List<InputStreamMonitor> monitors;
 
+  /**
+   * Buffer that passes a single byte to monitors, so that {@link #read()} doesn't allocate.
+   */
+  private final byte[] singleByte = new byte[1];
+
   public MonitorInputStreamWrapper(InputStream inputStream) {
     this.originalInputStream = inputStream;
   }
@@ -64,8 +68,10 @@ public class MonitorInputStreamWrapper extends InputStream {
   @Override
   public int read() throws IOException {
     int b = originalInputStream.read();
-    byte[] array = {(byte) b};
-    informMonitor(array);
+    if (b >= 0) {
+      singleByte[0] = (byte) b;
+      informMonitor(singleByte, 0, 1);
+    }
     return b;
   }
 
@@ -125,18 +131,10 @@ public class MonitorInputStreamWrapper extends InputStream {
     return length;
   }
 
-  private void informMonitor(byte[] bytes) {
-    if (monitors != null) {
-      for (InputStreamMonitor monitor : monitors) {
-        monitor.onRead(bytes);
-      }
-    }
-  }
-
   private void informMonitor(byte[] bytes, int off, int len) {
     if (monitors != null) {
       for (InputStreamMonitor monitor : monitors) {
-        monitor.onRead(Arrays.copyOfRange(bytes, off, off + len));
+        monitor.onRead(bytes, off, len);
       }
     }
   }
@@ -3,7 +3,6 @@ package sockslib.common.net;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 
@@ -20,6 +19,11 @@ public class MonitorOutputStreamWrapper extends OutputStream {
 
   private List<OutputStreamMonitor> monitors;
 
+  /**
+   * Buffer that passes a single byte to monitors, so that {@link #write(int)} doesn't allocate.
+   */
+  private final byte[] singleByte = new byte[1];
+
   public MonitorOutputStreamWrapper(OutputStream outputStream, OutputStreamMonitor... monitors) {
     this.originalOutputStream = outputStream;
     this.monitors = new ArrayList<>(monitors.length);
@@ -65,8 +69,8 @@ public class MonitorOutputStreamWrapper extends OutputStream {
   @Override
   public void write(int b) throws IOException {
     originalOutputStream.write(b);
-    byte[] bytes = {(byte) b};
-    informMonitor(bytes);
+    singleByte[0] = (byte) b;
+    informMonitor(singleByte, 0, 1);
   }
 
   public List<OutputStreamMonitor> getMonitors() {
@@ -96,21 +100,13 @@ public class MonitorOutputStreamWrapper extends OutputStream {
   @Override
   public void write(byte[] b) throws IOException {
     originalOutputStream.write(b);
-    informMonitor(b);
-  }
-
-  private void informMonitor(byte[] bytes) {
-    if (monitors != null) {
-      for (OutputStreamMonitor monitor : monitors) {
-        monitor.onWrite(bytes);
-      }
-    }
+    informMonitor(b, 0, b.length);
   }
 
   private void informMonitor(byte[] bytes, int off, int length) {
     if (monitors != null) {
       for (OutputStreamMonitor monitor : monitors) {
-        monitor.onWrite(Arrays.copyOfRange(bytes, off, off + length));
+        monitor.onWrite(bytes, off, length);
       }
     }
   }
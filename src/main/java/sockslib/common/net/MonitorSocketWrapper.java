@@ -143,7 +143,8 @@ public class MonitorSocketWrapper extends Socket {
   }
 
   public InputStream getInputStreamFromSocket() throws IOException {
-    List<InputStreamMonitor> inputStreamMonitors = new ArrayList<>(monitors.size());
+    List<InputStreamMonitor> inputStreamMonitors =
+        new ArrayList<>(monitors == null ? 0 : monitors.size());
     if (monitors != null) {
       for (SocketMonitor socketMonitor : monitors) {
         inputStreamMonitors.add(socketMonitor);
@@ -161,7 +162,8 @@ public class MonitorSocketWrapper extends Socket {
   }
 
   public OutputStream getOutputStreamFromSocket() throws IOException {
-    List<OutputStreamMonitor> outputStreamMonitors = new ArrayList<>(monitors.size());
+    List<OutputStreamMonitor> outputStreamMonitors =
+        new ArrayList<>(monitors == null ? 0 : monitors.size());
     if (monitors != null) {
       for (SocketMonitor socketMonitor : monitors) {
         outputStreamMonitors.add(socketMonitor);
@@ -1,45 +1,149 @@
 package sockslib.common.net;
 
 import java.net.DatagramPacket;
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+import static com.google.common.base.Preconditions.checkNotNull;
 
 /**
+ * The class <code>NetworkMonitor</code> counts TCP and UDP traffic.
+ * <p>
+ * Counters are {@link LongAdder}s, so pipe threads of many sessions can update one monitor without
+ * contending on a single memory location, and reading sums the cells. A monitor can have parent
+ * monitors of wider scopes, such as a user's or the server's. Traffic counted by a monitor is also
+ * counted by its parents.
+ * </p>
+ *
  * @author Youchao Feng
  * @version 1.0
  * @date Sep 23, 2015 11:20 AM
  */
 public class NetworkMonitor implements SocketMonitor, DatagramSocketMonitor {
 
-  private long receiveTCP = 0;
-  private long receiveUDP = 0;
-  private long sendTCP = 0;
-  private long sendUDP = 0;
+  private static final NetworkMonitor[] NO_PARENTS = new NetworkMonitor[0];
+
+  private final LongAdder receiveTCP = new LongAdder();
+  private final LongAdder receiveUDP = new LongAdder();
+  private final LongAdder sendTCP = new LongAdder();
+  private final LongAdder sendUDP = new LongAdder();
+
+  /**
+   * Parent monitors, the array is replaced when a parent is added.
+   */
+  private volatile NetworkMonitor[] parents = NO_PARENTS;
+
+  public NetworkMonitor() {
+  }
+
+  /**
+   * Constructs a {@link NetworkMonitor} with parent monitors.
+   *
+   * @param parents Monitors which also count the traffic of this monitor.
+   */
+  public NetworkMonitor(NetworkMonitor... parents) {
+    for (NetworkMonitor parent : parents) {
+      addParent(parent);
+    }
+  }
+
+  /**
+   * Adds a parent monitor which also counts the traffic from now on.
+   *
+   * @param parent Parent monitor.
+   * @return This monitor.
+   */
+  public synchronized NetworkMonitor addParent(NetworkMonitor parent) {
+    checkNotNull(parent, "Argument [parent] may not be null");
+    NetworkMonitor[] newParents = Arrays.copyOf(parents, parents.length + 1);
+    newParents[parents.length] = parent;
+    parents = newParents;
+    return this;
+  }
+
+  /**
+   * Removes a parent monitor.
+   *
+   * @param parent Parent monitor.
+   * @return This monitor.
+   */
+  public synchronized NetworkMonitor removeParent(NetworkMonitor parent) {
+    for (int i = 0; i < parents.length; i++) {
+      if (parents[i] == parent) {
+        NetworkMonitor[] newParents = new NetworkMonitor[parents.length - 1];
+        System.arraycopy(parents, 0, newParents, 0, i);
+        System.arraycopy(parents, i + 1, newParents, i, parents.length - i - 1);
+        parents = newParents;
+        break;
+      }
+    }
+    return this;
+  }
+
+  @Override
+  public void onRead(byte[] b) {
+    addReceiveTCP(b.length);
+  }
 
   @Override
-  public void onRead(byte[] bytes) {
-    receiveTCP += bytes.length;
+  public void onRead(byte[] buffer, int offset, int length) {
+    addReceiveTCP(length);
   }
 
   @Override
   public void onWrite(byte[] bytes) {
-    sendTCP += bytes.length;
+    addSendTCP(bytes.length);
+  }
+
+  @Override
+  public void onWrite(byte[] buffer, int offset, int length) {
+    addSendTCP(length);
   }
 
   @Override
   public void onSend(DatagramPacket datagramPacket) {
-    sendUDP += datagramPacket.getLength();
+    addSendUDP(datagramPacket.getLength());
   }
 
   @Override
   public void onReceive(DatagramPacket datagramPacket) {
-    receiveUDP += datagramPacket.getLength();
+    addReceiveUDP(datagramPacket.getLength());
+  }
+
+  public void addReceiveTCP(long bytes) {
+    receiveTCP.add(bytes);
+    for (NetworkMonitor parent : parents) {
+      parent.addReceiveTCP(bytes);
+    }
+  }
+
+  public void addSendTCP(long bytes) {
+    sendTCP.add(bytes);
+    for (NetworkMonitor parent : parents) {
+      parent.addSendTCP(bytes);
+    }
+  }
+
+  public void addReceiveUDP(long bytes) {
+    receiveUDP.add(bytes);
+    for (NetworkMonitor parent : parents) {
+      parent.addReceiveUDP(bytes);
+    }
+  }
+
+  public void addSendUDP(long bytes) {
+    sendUDP.add(bytes);
+    for (NetworkMonitor parent : parents) {
+      parent.addSendUDP(bytes);
+    }
   }
 
   public long getTotalReceive() {
-    return receiveTCP + receiveUDP;
+    return getReceiveTCP() + getReceiveUDP();
   }
 
   public long getTotalSend() {
-    return sendTCP + sendUDP;
+    return getSendTCP() + getSendUDP();
   }
 
   public long getTotal() {
@@ -47,28 +151,38 @@ public class NetworkMonitor implements SocketMonitor, DatagramSocketMonitor {
   }
 
   public long getReceiveTCP() {
-    return receiveTCP;
+    return receiveTCP.sum();
   }
 
   public long getReceiveUDP() {
-    return receiveUDP;
+    return receiveUDP.sum();
   }
 
   public long getSendTCP() {
-    return sendTCP;
+    return sendTCP.sum();
   }
 
   public long getSendUDP() {
-    return sendUDP;
+    return sendUDP.sum();
+  }
+
+  /**
+   * Resets all counters of this monitor, parents are not affected.
+   */
+  public void reset() {
+    receiveTCP.reset();
+    receiveUDP.reset();
+    sendTCP.reset();
+    sendUDP.reset();
   }
 
   @Override
   public String toString() {
     return "NetworkMonitor{" +
-        "sendTCP=" + sendTCP +
-        ", receiveTCP=" + receiveTCP +
-        ", sendUDP=" + sendUDP +
-        ", receiveUDP=" + receiveUDP +
+        "sendTCP=" + getSendTCP() +
+        ", receiveTCP=" + getReceiveTCP() +
+        ", sendUDP=" + getSendUDP() +
+        ", receiveUDP=" + getReceiveUDP() +
         '}';
   }
 }
@@ -1,10 +1,32 @@
 package sockslib.common.net;
 
+import java.util.Arrays;
+
 /**
  * @author Youchao Feng
  * @version 1.0
  * @date Sep 21, 2015 2:44 PM
  */
 public interface OutputStreamMonitor {
+
+  /**
+   * This method will be called after bytes are written.
+   *
+   * @param bytes Bytes.
+   */
   void onWrite(byte[] bytes);
+
+  /**
+   * This method will be called after bytes are written. The buffer is the caller's buffer, the
+   * monitor must not modify it or keep a reference to it. The default implementation copies the
+   * range and calls {@link #onWrite(byte[])}, monitors which only need the range should override
+   * it to avoid the copy.
+   *
+   * @param buffer Buffer which holds the bytes.
+   * @param offset Offset of the bytes in the buffer.
+   * @param length Number of bytes.
+   */
+  default void onWrite(byte[] buffer, int offset, int length) {
+    onWrite(Arrays.copyOfRange(buffer, offset, offset + length));
+  }
 }
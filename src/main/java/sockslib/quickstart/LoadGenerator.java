@@ -0,0 +1,354 @@
+/*
+ * Copyright 2015-2025 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package sockslib.quickstart;
+
+import com.google.common.util.concurrent.RateLimiter;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.core.config.Configurator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import sockslib.client.Socks5;
+import sockslib.client.Socks5DatagramSocket;
+import sockslib.client.SocksProxy;
+import sockslib.client.SocksSocket;
+import sockslib.server.SocksProxyServer;
+import sockslib.server.SocksServerBuilder;
+import sockslib.utils.Arguments;
+import sockslib.utils.ResourceUtil;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.ThreadMXBean;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The class <code>LoadGenerator</code> drives a SOCKS5 server on the loopback interface with
+ * CONNECT and UDP ASSOCIATE sessions against a {@link TCPTimeServer} and a {@link UDPTimeServer}.
+ * <p>
+ * Every session does one handshake, sends a payload and waits for a response of the same size.
+ * When the load is finished, it reports sessions per second, handshake latency percentiles,
+ * payload throughput and how much heap and how many threads each concurrent session costs. The
+ * proxy server runs in the same JVM unless <code>--external</code> is given, so heap and threads
+ * include both sides of a session.
+ * </p>
+ *
+ * @version 1.0
+ */
+public class LoadGenerator {
+
+  private static final Logger logger = LoggerFactory.getLogger(LoadGenerator.class);
+
+  /**
+   * Receive buffer size of {@link UDPTimeServer}.
+   */
+  private static final int MAX_UDP_PAYLOAD = 1024;
+  private static final int SAMPLE_INTERVAL = 100;
+  private static final int TIMEOUT = 10000;
+
+  private int proxyPort = 1080;
+  private int tcpPort = 5051;
+  private int udpPort = 5050;
+  private int connections = 10000;
+  private int concurrency = 100;
+  private int rate = 0;
+  private int payloadSize = 64;
+  private int udpPercent = 0;
+  private boolean external = false;
+  private boolean nio = false;
+  private boolean virtual = false;
+
+  private final AtomicInteger nextSession = new AtomicInteger();
+  private final AtomicInteger activeSessions = new AtomicInteger();
+  private final AtomicInteger failedSessions = new AtomicInteger();
+  private final AtomicLong transferredBytes = new AtomicLong();
+  private final AtomicLong peakThreads = new AtomicLong();
+  private final AtomicLong peakHeap = new AtomicLong();
+  private final AtomicLong peakActiveSessions = new AtomicLong();
+  private AtomicLongArray handshakeTimes;
+
+  public static void main(@Nullable String[] args) throws Exception {
+    new LoadGenerator().start(args);
+  }
+
+  public void start(@Nullable String[] args) throws Exception {
+    Arguments arguments = new Arguments(args);
+    if (arguments.hasArgsIn("-h", "--help")) {
+      showHelp();
+      return;
+    }
+    proxyPort = arguments.getIntValue(Arrays.asList("-p", "--proxy-port"), proxyPort);
+    tcpPort = arguments.getIntValue("--tcp-port", tcpPort);
+    udpPort = arguments.getIntValue("--udp-port", udpPort);
+    connections = arguments.getIntValue(Arrays.asList("-c", "--connections"), connections);
+    concurrency = arguments.getIntValue(Arrays.asList("-n", "--concurrency"), concurrency);
+    rate = arguments.getIntValue(Arrays.asList("-r", "--rate"), rate);
+    payloadSize = arguments.getIntValue(Arrays.asList("-s", "--payload"), payloadSize);
+    udpPercent = arguments.getIntValue(Arrays.asList("-u", "--udp-percent"), udpPercent);
+    external = arguments.hasArgsIn("-e", "--external");
+    nio = arguments.hasArg("--nio");
+    virtual = arguments.hasArg("--virtual");
+    if (connections < 1 || concurrency < 1 || rate < 0 || payloadSize < 1 || udpPercent < 0
+        || udpPercent > 100) {
+      showHelp();
+      return;
+    }
+    if (udpPercent > 0 && payloadSize > MAX_UDP_PAYLOAD) {
+      logger.error("Payload of UDP sessions can't be larger than {} bytes", MAX_UDP_PAYLOAD);
+      return;
+    }
+    // Logging every session would measure the logger instead of the proxy.
+    Configurator.setLevel("sockslib", Level.WARN);
+    run();
+  }
+
+  public void showHelp() {
+    System.out.println("Usage: [Options]");
+    System.out.println("  -c, --connections <val>      Total sessions, default 10000");
+    System.out.println("  -n, --concurrency <val>      Concurrent sessions, default 100");
+    System.out.println("  -r, --rate <val>             New sessions per second, 0 (default) is");
+    System.out.println("                               unlimited");
+    System.out.println("  -s, --payload <val>          Payload bytes per direction, default 64");
+    System.out.println("  -u, --udp-percent <val>      Percentage of UDP ASSOCIATE sessions,");
+    System.out.println("                               default 0");
+    System.out.println("  -p, --proxy-port <val>       SOCKS5 server port, default 1080");
+    System.out.println("  -e, --external               Use a running SOCKS5 server at 127.0.0.1");
+    System.out.println("                               instead of starting one");
+    System.out.println("      --nio                    Start a NIO SOCKS5 server");
+    System.out.println("      --virtual                Start a SOCKS5 server with virtual threads");
+    System.out.println("      --tcp-port <val>         TCP time server port, default 5051");
+    System.out.println("      --udp-port <val>         UDP time server port, default 5050");
+    System.out.println("  -h, --help                   Show help");
+  }
+
+  private void run() throws Exception {
+    final String payload = newPayload();
+    TCPTimeServer tcpTimeServer = new TCPTimeServer();
+    tcpTimeServer.start(new String[] {"--port=" + tcpPort, "--always-response=" + payload});
+    UDPTimeServer udpTimeServer = null;
+    if (udpPercent > 0) {
+      udpTimeServer = new UDPTimeServer();
+      udpTimeServer.start(new String[] {"--port=" + udpPort, "--always-response=" + payload});
+    }
+    SocksProxyServer proxyServer = null;
+    if (!external) {
+      SocksServerBuilder builder = SocksServerBuilder.newSocks5ServerBuilder()
+          .setBindAddr(InetAddress.getLoopbackAddress()).setBindPort(proxyPort).setDaemon(true);
+      if (nio) {
+        builder.useNio();
+      } else if (virtual) {
+        builder.useVirtualThreads();
+      } else {
+        // The default fixed pool would cap concurrency.
+        builder.setExecutorService(Executors.newCachedThreadPool());
+      }
+      proxyServer = builder.build();
+      proxyServer.start();
+    }
+    waitForBinding(tcpTimeServer, udpTimeServer);
+
+    final SocksProxy proxy =
+        new Socks5(new InetSocketAddress(InetAddress.getLoopbackAddress(), proxyPort));
+    final InetSocketAddress tcpTarget =
+        new InetSocketAddress(InetAddress.getLoopbackAddress(), tcpTimeServer.getLocalPort());
+    final InetSocketAddress udpTarget = udpTimeServer == null ? null :
+        new InetSocketAddress(InetAddress.getLoopbackAddress(), udpTimeServer.getLocalPort());
+    final RateLimiter rateLimiter = rate > 0 ? RateLimiter.create(rate) : null;
+    final byte[] request = (payload + "\n").getBytes();
+    handshakeTimes = new AtomicLongArray(connections);
+
+    ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+    MemoryMXBean memoryMXBean = ManagementFactory.getMemoryMXBean();
+    System.gc();
+    final long baselineHeap = memoryMXBean.getHeapMemoryUsage().getUsed();
+    final int baselineThreads = threadMXBean.getThreadCount();
+    ScheduledExecutorService sampler = Executors.newSingleThreadScheduledExecutor(
+        new ThreadFactoryBuilder().setNameFormat("load-sampler").setDaemon(true).build());
+    sampler.scheduleAtFixedRate(() -> {
+      updateMax(peakThreads, threadMXBean.getThreadCount());
+      updateMax(peakHeap, memoryMXBean.getHeapMemoryUsage().getUsed());
+      updateMax(peakActiveSessions, activeSessions.get());
+    }, 0, SAMPLE_INTERVAL, TimeUnit.MILLISECONDS);
+
+    ExecutorService clients = Executors.newFixedThreadPool(concurrency,
+        new ThreadFactoryBuilder().setNameFormat("load-client-%d").setDaemon(true).build());
+    final CountDownLatch finished = new CountDownLatch(concurrency);
+    long start = System.nanoTime();
+    for (int i = 0; i < concurrency; i++) {
+      clients.execute(() -> {
+        int session;
+        while ((session = nextSession.getAndIncrement()) < connections) {
+          if (rateLimiter != null) {
+            rateLimiter.acquire();
+          }
+          activeSessions.incrementAndGet();
+          try {
+            if (udpTarget != null && ThreadLocalRandom.current().nextInt(100) < udpPercent) {
+              runUdpSession(session, proxy, udpTarget, request.length - 1);
+            } else {
+              runTcpSession(session, proxy, tcpTarget, request);
+            }
+          } catch (IOException e) {
+            failedSessions.incrementAndGet();
+            logger.debug(e.getMessage(), e);
+          } finally {
+            activeSessions.decrementAndGet();
+          }
+        }
+        finished.countDown();
+      });
+    }
+    finished.await();
+    long elapsed = System.nanoTime() - start;
+    sampler.shutdownNow();
+    clients.shutdown();
+
+    report(elapsed, baselineHeap, baselineThreads);
+
+    if (proxyServer != null) {
+      proxyServer.shutdown();
+    }
+    tcpTimeServer.shutdown();
+    if (udpTimeServer != null) {
+      udpTimeServer.shutdown();
+    }
+  }
+
+  private void runTcpSession(int session, SocksProxy proxy, InetSocketAddress target,
+                             byte[] request) throws IOException {
+    long start = System.nanoTime();
+    Socket socket = new SocksSocket(proxy, target);
+    handshakeTimes.set(session, System.nanoTime() - start);
+    try {
+      socket.setSoTimeout(TIMEOUT);
+      OutputStream outputStream = socket.getOutputStream();
+      outputStream.write(request);
+      outputStream.flush();
+      InputStream inputStream = socket.getInputStream();
+      byte[] buffer = new byte[request.length];
+      int received = 0;
+      while (received < buffer.length) {
+        int length = inputStream.read(buffer, received, buffer.length - received);
+        if (length < 0) {
+          throw new IOException("Connection closed after " + received + " bytes");
+        }
+        received += length;
+      }
+      transferredBytes.addAndGet(request.length + received);
+    } finally {
+      ResourceUtil.close(socket);
+    }
+  }
+
+  private void runUdpSession(int session, SocksProxy proxy, InetSocketAddress target, int size)
+      throws IOException {
+    long start = System.nanoTime();
+    DatagramSocket socket = new Socks5DatagramSocket(proxy);
+    handshakeTimes.set(session, System.nanoTime() - start);
+    try {
+      socket.setSoTimeout(TIMEOUT);
+      byte[] payload = new byte[size];
+      Arrays.fill(payload, (byte) 'x');
+      socket.send(new DatagramPacket(payload, payload.length, target));
+      DatagramPacket response = new DatagramPacket(new byte[MAX_UDP_PAYLOAD], MAX_UDP_PAYLOAD);
+      socket.receive(response);
+      transferredBytes.addAndGet(payload.length + response.getLength());
+    } finally {
+      ResourceUtil.close(socket);
+    }
+  }
+
+  private void report(long elapsed, long baselineHeap, int baselineThreads) {
+    long[] times = new long[connections];
+    int count = 0;
+    for (int i = 0; i < connections; i++) {
+      long time = handshakeTimes.get(i);
+      if (time > 0) {
+        times[count++] = time;
+      }
+    }
+    Arrays.sort(times, 0, count);
+    double seconds = elapsed / 1e9;
+    long peakSessions = Math.max(1, peakActiveSessions.get());
+
+    System.out.println("Sessions:        " + connections + " total, " + failedSessions.get()
+        + " failed, " + udpPercent + "% UDP");
+    System.out.println("Concurrency:     " + concurrency + ", peak " + peakActiveSessions.get());
+    System.out.printf("Elapsed:         %.2f s%n", seconds);
+    System.out.printf("Sessions/sec:    %.1f%n", connections / seconds);
+    System.out.printf("Handshake (ms):  p50=%.3f p90=%.3f p99=%.3f p999=%.3f max=%.3f%n",
+        percentile(times, count, 50), percentile(times, count, 90),
+        percentile(times, count, 99), percentile(times, count, 99.9),
+        count == 0 ? 0 : times[count - 1] / 1e6);
+    System.out.printf("Throughput:      %.2f MB/s (%d bytes payload)%n",
+        transferredBytes.get() / seconds / 1024 / 1024, payloadSize);
+    System.out.println("Threads:         " + baselineThreads + " idle, " + peakThreads.get()
+        + " peak, " + String.format("%.2f", (peakThreads.get() - baselineThreads) /
+        (double) peakSessions) + " per session");
+    System.out.println("Heap:            " + (peakHeap.get() - baselineHeap) / 1024
+        + " KB over idle at peak, ~" + (peakHeap.get() - baselineHeap) / peakSessions / 1024
+        + " KB per session (includes garbage)");
+  }
+
+  private static double percentile(long[] sorted, int count, double percentile) {
+    if (count == 0) {
+      return 0;
+    }
+    int index = (int) Math.ceil(percentile / 100 * count) - 1;
+    return sorted[Math.max(0, Math.min(index, count - 1))] / 1e6;
+  }
+
+  private static void updateMax(AtomicLong max, long value) {
+    long current;
+    while (value > (current = max.get()) && !max.compareAndSet(current, value)) {
+      // retry
+    }
+  }
+
+  private String newPayload() {
+    char[] chars = new char[payloadSize];
+    Arrays.fill(chars, 'x');
+    return new String(chars);
+  }
+
+  private void waitForBinding(TCPTimeServer tcpTimeServer, @Nullable UDPTimeServer udpTimeServer)
+      throws InterruptedException, IOException {
+    long deadline = System.currentTimeMillis() + TIMEOUT;
+    while (tcpTimeServer.getLocalPort() < 0 || (udpTimeServer != null
+        && udpTimeServer.getLocalPort() < 0)) {
+      if (System.currentTimeMillis() > deadline) {
+        throw new IOException("Time servers didn't start");
+      }
+      Thread.sleep(10);
+    }
+  }
+}
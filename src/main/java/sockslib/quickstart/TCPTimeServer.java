@@ -2,11 +2,14 @@ package sockslib.quickstart;
 
 import sockslib.client.SocksProxy;
 import sockslib.utils.Arguments;
+import sockslib.utils.ExecutorUtil;
+import sockslib.utils.ResourceUtil;
 import sockslib.utils.Timer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.annotation.Nullable;
+import java.io.BufferedInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
@@ -14,6 +17,8 @@ import java.io.OutputStream;
 import java.net.ServerSocket;
 import java.net.Socket;
 import java.util.Date;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * @author Youchao Feng
@@ -24,11 +29,12 @@ public class TCPTimeServer implements Runnable {
 
   private static final Logger logger = LoggerFactory.getLogger(TCPTimeServer.class);
   private static final int DEFAULT_PORT = 5051;
+  private static final int MAX_CLIENT_THREADS = 1000;
 
   private String[] args;
-  private boolean stop = false;
+  private volatile boolean stop = false;
   private Thread thread;
-  private ServerSocket server;
+  private volatile ServerSocket server;
 
   public static void main(@Nullable String[] args) {
     Timer.open();
@@ -93,40 +99,75 @@ public class TCPTimeServer implements Runnable {
       }
     }
 
+    ExecutorService executor = ExecutorUtil.newBoundedCachedThreadPool(MAX_CLIENT_THREADS,
+        "tcp-time-server-%d", true);
     try {
       server = new ServerSocket(port);
       logger.info("TCP time server created at {}", server.getInetAddress(), port);
       while (!stop) {
-        Socket socket = server.accept();
-        InputStream inputStream = socket.getInputStream();
-        OutputStream outputStream = socket.getOutputStream();
-        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
-        int b;
-        while ((b = (byte) inputStream.read()) != -1) {
-          if (b == '\n') {
-            break;
-          }
-          byteArrayOutputStream.write(b);
+        final Socket socket = server.accept();
+        final String response = alwaysResponse;
+        try {
+          executor.execute(new Runnable() {
+            @Override
+            public void run() {
+              handle(socket, response);
+            }
+          });
+        } catch (RejectedExecutionException e) {
+          logger.warn("Too many clients, close {}", socket.getRemoteSocketAddress());
+          ResourceUtil.close(socket);
         }
-        byte[] buffer = byteArrayOutputStream.toByteArray();
-        String receive = new String(buffer);
-        logger.info("Client from {} send:{}", socket.getRemoteSocketAddress(), receive);
-        if (receive.equals("shutdown")) {
+      }
+    } catch (IOException e) {
+      if (!stop) {
+        logger.error(e.getMessage(), e);
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  /**
+   * Returns the port which the server is listening on.
+   *
+   * @return Local port or <code>-1</code> if the server is not bound yet.
+   */
+  public int getLocalPort() {
+    ServerSocket serverSocket = server;
+    return serverSocket == null ? -1 : serverSocket.getLocalPort();
+  }
+
+  private void handle(Socket socket, @Nullable String alwaysResponse) {
+    try {
+      InputStream inputStream = new BufferedInputStream(socket.getInputStream());
+      OutputStream outputStream = socket.getOutputStream();
+      ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+      int b;
+      while ((b = (byte) inputStream.read()) != -1) {
+        if (b == '\n') {
           break;
         }
-        String response = new Date().toString();
-        if (alwaysResponse != null) {
-          response = alwaysResponse;
-        }
-        response += "\n";
-        outputStream.write(response.getBytes());
-        outputStream.flush();
-        inputStream.close();
-        outputStream.close();
-        socket.close();
+        byteArrayOutputStream.write(b);
+      }
+      byte[] buffer = byteArrayOutputStream.toByteArray();
+      String receive = new String(buffer);
+      logger.info("Client from {} send:{}", socket.getRemoteSocketAddress(), receive);
+      if (receive.equals("shutdown")) {
+        shutdown();
+        return;
+      }
+      String response = new Date().toString();
+      if (alwaysResponse != null) {
+        response = alwaysResponse;
       }
+      response += "\n";
+      outputStream.write(response.getBytes());
+      outputStream.flush();
     } catch (IOException e) {
       logger.error(e.getMessage(), e);
+    } finally {
+      ResourceUtil.close(socket);
     }
   }
 }
@@ -24,7 +24,8 @@ public class UDPTimeServer implements Runnable {
   private int port = 5050;
   private String[] args;
   private Thread thread;
-  private boolean stop = false;
+  private volatile boolean stop = false;
+  private volatile DatagramSocket server;
 
   public static void main(@Nullable String[] args) {
     Timer.open();
@@ -47,7 +48,7 @@ public class UDPTimeServer implements Runnable {
       byte[] sendBuffer = shutdownSignal.getBytes();
       DatagramPacket packet =
           new DatagramPacket(sendBuffer, sendBuffer.length, new InetSocketAddress("localhost",
-              port));
+              getLocalPort() > 0 ? getLocalPort() : port));
       clientSocket.send(packet);
     } catch (IOException e) {
       logger.error(e.getMessage(), e);
@@ -65,6 +66,16 @@ public class UDPTimeServer implements Runnable {
     System.out.println("    -h or --help             Show help");
   }
 
+  /**
+   * Returns the port which the server is listening on.
+   *
+   * @return Local port or <code>-1</code> if the server is not bound yet.
+   */
+  public int getLocalPort() {
+    DatagramSocket datagramSocket = server;
+    return datagramSocket == null ? -1 : datagramSocket.getLocalPort();
+  }
+
   public void startInCurrentThread(String[] args) {
     this.args = args;
     run();
@@ -96,7 +107,7 @@ public class UDPTimeServer implements Runnable {
 
     try {
       logger.info("Starting UDP Time server...");
-      DatagramSocket server = new DatagramSocket(port);
+      server = new DatagramSocket(port);
       logger.info("UDP Time server is created at port [{}]", server.getLocalPort());
       logger.info("This server will print client request message and response current server time");
       byte[] receiveBuffer = new byte[1024];
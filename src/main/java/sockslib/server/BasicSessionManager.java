@@ -1,16 +1,23 @@
 package sockslib.server;
 
+import sockslib.common.net.NetworkMonitor;
 import sockslib.server.listener.CloseSessionException;
 import sockslib.server.listener.CommandListener;
 import sockslib.server.listener.ExceptionListener;
 import sockslib.server.listener.SessionCloseListener;
 import sockslib.server.listener.SessionCreateListener;
+import sockslib.server.listener.SessionEventDispatcher;
 import sockslib.server.listener.SessionListener;
+import sockslib.server.listener.SynchronousListener;
+import sockslib.server.manager.User;
 import sockslib.server.msg.CommandMessage;
 
 import java.net.Socket;
-import java.util.HashMap;
+import java.util.Collections;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Consumer;
 
 /**
  * The class <code>BasicSessionManager</code> implements {@link SessionManager}
@@ -21,24 +28,30 @@ import java.util.Map;
  */
 public class BasicSessionManager implements SessionManager {
 
-  private static int nextSessionId = 0;
-  private Map<Long, Session> managedSessions = new HashMap<>();
-  private Map<String, SessionCreateListener> sessionCreateListenerMap = new HashMap<>();
-  private Map<String, SessionCloseListener> sessionCloseListenerMap = new HashMap<>();
-  private Map<String, CommandListener> commandListenerMap = new HashMap<>();
-  private Map<String, ExceptionListener> exceptionListenerMap = new HashMap<>();
+  private final SessionRegistry registry = new SessionRegistry();
+  private final ConcurrentMap<String, NetworkMonitor> userNetworkMonitors =
+      new ConcurrentHashMap<>();
+  private Map<String, SessionCreateListener> sessionCreateListenerMap = new ConcurrentHashMap<>();
+  private Map<String, SessionCloseListener> sessionCloseListenerMap = new ConcurrentHashMap<>();
+  private Map<String, CommandListener> commandListenerMap = new ConcurrentHashMap<>();
+  private Map<String, ExceptionListener> exceptionListenerMap = new ConcurrentHashMap<>();
+
+  /**
+   * Dispatcher of close and exception events, <code>null</code> calls listeners synchronously.
+   */
+  private volatile SessionEventDispatcher eventDispatcher;
 
   @Override
   public Session newSession(Socket socket) {
-    Session session = new SocksSession(++nextSessionId, socket, managedSessions);
-    managedSessions.put(session.getId(), session);
+    Session session = new SocksSession(registry.nextId(), socket, registry.asMap());
+    registry.add(session);
     return session;
   }
 
 
   @Override
   public Session getSession(long id) {
-    return managedSessions.get(id);
+    return registry.get(id);
   }
 
   @Override
@@ -51,23 +64,108 @@ public class BasicSessionManager implements SessionManager {
   @Override
   public void sessionOnCommand(Session session, CommandMessage message)
       throws CloseSessionException {
+    // Authentication is done before any command.
+    Object user = session.getAttribute(UsernamePasswordAuthenticator.USER_KEY);
+    if (user instanceof User) {
+      final String username = ((User) user).getUsername();
+      final NetworkMonitor monitor = session.getNetworkMonitor();
+      // Holds the entry of the user while indexing the session, so that the close of the user's
+      // last other session can't evict the monitor in the meantime.
+      userNetworkMonitors.compute(username, (key, userMonitor) -> {
+        registry.setUser(session, username);
+        if (monitor == null) {
+          return userMonitor;
+        }
+        if (userMonitor == null) {
+          userMonitor = new NetworkMonitor();
+        }
+        monitor.addParent(userMonitor);
+        return userMonitor;
+      });
+    }
     for (CommandListener listener : commandListenerMap.values()) {
       listener.onCommand(session, message);
     }
   }
 
   @Override
-  public void sessionOnException(Session session, Exception exception) {
-    for (ExceptionListener listener : exceptionListenerMap.values()) {
-      listener.onException(session, exception);
+  public void sessionOnException(final Session session, final Exception exception) {
+    SessionEventDispatcher dispatcher = eventDispatcher;
+    if (dispatcher == null) {
+      for (ExceptionListener listener : exceptionListenerMap.values()) {
+        listener.onException(session, exception);
+      }
+      return;
+    }
+    if (callSynchronousListeners(exceptionListenerMap.values(),
+        listener -> listener.onException(session, exception))) {
+      dispatcher.publish(session.getId(), () -> {
+        for (ExceptionListener listener : exceptionListenerMap.values()) {
+          if (!(listener instanceof SynchronousListener)) {
+            listener.onException(session, exception);
+          }
+        }
+      });
     }
   }
 
   @Override
-  public void sessionOnClose(Session session) {
-    for (SessionCloseListener listener : sessionCloseListenerMap.values()) {
-      listener.onClose(session);
+  public void sessionOnClose(final Session session) {
+    SessionEventDispatcher dispatcher = eventDispatcher;
+    if (dispatcher == null) {
+      for (SessionCloseListener listener : sessionCloseListenerMap.values()) {
+        listener.onClose(session);
+      }
+      releaseUserNetworkMonitor(session);
+      return;
+    }
+    if (callSynchronousListeners(sessionCloseListenerMap.values(),
+        listener -> listener.onClose(session))) {
+      dispatcher.publish(session.getId(), () -> {
+        for (SessionCloseListener listener : sessionCloseListenerMap.values()) {
+          if (!(listener instanceof SynchronousListener)) {
+            listener.onClose(session);
+          }
+        }
+      });
+    }
+    releaseUserNetworkMonitor(session);
+  }
+
+  /**
+   * Evicts the network monitor of the session's user if no other session of the user is open.
+   */
+  private void releaseUserNetworkMonitor(final Session session) {
+    Object user = session.getAttribute(UsernamePasswordAuthenticator.USER_KEY);
+    if (!(user instanceof User)) {
+      return;
+    }
+    final String username = ((User) user).getUsername();
+    userNetworkMonitors.computeIfPresent(username, (key, userMonitor) -> {
+      for (Session other : registry.getByUser(username)) {
+        if (other.getId() != session.getId()) {
+          return userMonitor;
+        }
+      }
+      return null;
+    });
+  }
+
+  /**
+   * Calls the listeners which are {@link SynchronousListener}.
+   *
+   * @return <code>true</code> if there are other listeners to call asynchronously.
+   */
+  private static <T> boolean callSynchronousListeners(Iterable<T> listeners, Consumer<T> call) {
+    boolean asynchronous = false;
+    for (T listener : listeners) {
+      if (listener instanceof SynchronousListener) {
+        call.accept(listener);
+      } else {
+        asynchronous = true;
+      }
     }
+    return asynchronous;
   }
 
   @Override
@@ -88,7 +186,53 @@ public class BasicSessionManager implements SessionManager {
 
   @Override
   public Map<Long, Session> getManagedSessions() {
-    return managedSessions;
+    return registry.asMap();
+  }
+
+  public SessionEventDispatcher getEventDispatcher() {
+    return eventDispatcher;
+  }
+
+  /**
+   * Sets the dispatcher which calls close and exception listeners in its own threads, except
+   * {@link SynchronousListener}s. Create and command listeners are always called synchronously
+   * because they may close the session by throwing {@link CloseSessionException}.
+   *
+   * @param eventDispatcher Instance of {@link SessionEventDispatcher}, <code>null</code> calls all
+   *                        listeners synchronously.
+   */
+  public void setEventDispatcher(SessionEventDispatcher eventDispatcher) {
+    this.eventDispatcher = eventDispatcher;
+  }
+
+  /**
+   * Returns the registry of sessions, which can find sessions by client IP address and by user.
+   *
+   * @return Registry of sessions.
+   */
+  public SessionRegistry getSessionRegistry() {
+    return registry;
+  }
+
+  /**
+   * Returns the monitor which counts the traffic of all open sessions a user authenticated. The
+   * monitor is dropped when the user's last session closes, the next session of the user starts
+   * counting from zero.
+   *
+   * @param username Username.
+   * @return Network monitor of the user, <code>null</code> if the user has no open session.
+   */
+  public NetworkMonitor getUserNetworkMonitor(String username) {
+    return userNetworkMonitors.get(username);
+  }
+
+  /**
+   * Returns the network monitors of users who have open sessions.
+   *
+   * @return Unmodifiable map from username to network monitor.
+   */
+  public Map<String, NetworkMonitor> getUserNetworkMonitors() {
+    return Collections.unmodifiableMap(userNetworkMonitors);
   }
 
   @Override
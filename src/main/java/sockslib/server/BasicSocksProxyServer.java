@@ -20,17 +20,34 @@ import sockslib.client.SocksProxy;
 import sockslib.common.methods.SocksMethod;
 import sockslib.common.net.MonitorSocketWrapper;
 import sockslib.common.net.NetworkMonitor;
+import sockslib.server.admission.AdmissionController;
+import sockslib.server.connector.Connector;
+import sockslib.server.connector.HappyEyeballsConnector;
+import sockslib.server.dns.CachingDnsResolver;
+import sockslib.server.dns.DnsResolver;
 import sockslib.server.listener.PipeInitializer;
+import sockslib.server.listener.SessionCloseListener;
+import sockslib.server.listener.SynchronousListener;
+import sockslib.server.routing.RoutingTable;
+import sockslib.utils.HashedWheelTimer;
+import sockslib.utils.ResourceUtil;
+import sockslib.utils.SocketUtil;
 
 import java.io.IOException;
+import java.lang.reflect.Constructor;
 import java.net.InetAddress;
+import java.net.InetSocketAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 
 /**
@@ -72,14 +89,19 @@ public class BasicSocksProxyServer implements SocksProxyServer, Runnable {
   private SessionManager sessionManager = new BasicSessionManager();
 
   /**
-   * The next session's ID.
+   * Server socket.
    */
-  private long nextSessionId = 0;
+  private ServerSocket serverSocket;
 
   /**
-   * Server socket.
+   * Server sockets of all acceptors, they are the same socket if SO_REUSEPORT is not used.
    */
-  private ServerSocket serverSocket;
+  private final List<ServerSocket> serverSockets = new CopyOnWriteArrayList<>();
+
+  /**
+   * Threads of the acceptors except the first one.
+   */
+  private final List<Thread> acceptorThreads = new CopyOnWriteArrayList<>();
 
   /**
    * SOCKS socket handler class.
@@ -87,14 +109,14 @@ public class BasicSocksProxyServer implements SocksProxyServer, Runnable {
   private Class<? extends SocksHandler> socksHandlerClass;
 
   /**
-   * Sessions that server managed.
+   * Cached no-arg constructor of {@link #socksHandlerClass}.
    */
-  private Map<Long, Session> sessions;
+  private volatile Constructor<? extends SocksHandler> socksHandlerConstructor;
 
   /**
    * A flag.
    */
-  private boolean stop = false;
+  private volatile boolean stop = false;
 
   /**
    * Thread that start the server.
@@ -108,15 +130,19 @@ public class BasicSocksProxyServer implements SocksProxyServer, Runnable {
 
   private boolean daemon = false;
 
+  private int backlog = DEFAULT_BACKLOG;
+
+  private int acceptorCount = 1;
+
   /**
    * Method selector.
    */
   private MethodSelector methodSelector = new SocksMethodSelector();
 
   /**
-   * Buffer size.
+   * Max buffer size of each direction of a relay pipe.
    */
-  private int bufferSize = 1024 * 1024 * 5;
+  private int bufferSize = 64 * 1024;
 
   private int bindPort = DEFAULT_SOCKS_PORT;
 
@@ -124,10 +150,56 @@ public class BasicSocksProxyServer implements SocksProxyServer, Runnable {
 
   private SocksProxy proxy;
 
+  private volatile RoutingTable routingTable;
+
   private NetworkMonitor networkMonitor = new NetworkMonitor();
 
   private PipeInitializer pipeInitializer;
 
+  /**
+   * Thread pool used to run relay pipes.
+   */
+  private ExecutorService relayExecutor;
+
+  /**
+   * Resolver of the hosts in CONNECT commands.
+   */
+  private DnsResolver dnsResolver = new CachingDnsResolver();
+
+  /**
+   * Connector of the destinations in CONNECT commands.
+   */
+  private Connector connector = new HappyEyeballsConnector();
+
+  /**
+   * Admission control of accepted connections, <code>null</code> admits all connections.
+   */
+  private AdmissionController admissionController;
+
+  /**
+   * Deadline in milliseconds of receiving a command, 0 means no deadline.
+   */
+  private long handshakeTimeout;
+
+  /**
+   * Milliseconds that a tunnel may transfer nothing before it's closed, 0 means no limit.
+   */
+  private long idleTimeout;
+
+  /**
+   * Max milliseconds that a session lives, 0 means no limit.
+   */
+  private long maxSessionLifetime;
+
+  /**
+   * Timer of session deadlines, it's created when the server starts if it's not set.
+   */
+  private HashedWheelTimer sessionTimer;
+
+  private boolean sessionTimerCreated = false;
+
+  private SessionDeadlines sessionDeadlines;
+
   /**
    * Constructs a {@link BasicSocksProxyServer} by a {@link SocksHandler} class. The bind port is
    * 1080.
@@ -175,71 +247,228 @@ public class BasicSocksProxyServer implements SocksProxyServer, Runnable {
     this.executorService =
         checkNotNull(executorService, "Argument [executorService] may not be null");
     this.bindPort = port;
-    sessions = new HashMap<>();
   }
 
   @Override
   public void run() {
     logger.info("Start proxy server at port:{}", bindPort);
+    accept(serverSocket);
+  }
+
+  /**
+   * Accepts connections until the server stops. Everything else about a new connection is done in
+   * {@link #executorService}, so that the acceptor gets back to <code>accept()</code> at once.
+   *
+   * @param serverSocket Server socket of this acceptor.
+   */
+  protected void accept(ServerSocket serverSocket) {
     while (!stop) {
+      final Socket socket;
       try {
-        Socket socket = serverSocket.accept();
-        socket = processSocketBeforeUse(socket);
-        socket.setSoTimeout(timeout);
-        Session session = sessionManager.newSession(socket);
-        SocksHandler socksHandler = createSocksHandler();
-        /* initialize socks handler */
-        socksHandler.setSession(session);
-        initializeSocksHandler(socksHandler);
-
-        executorService.execute(socksHandler);
-
+        socket = serverSocket.accept();
       } catch (IOException e) {
         // Catches the exception that cause by shutdown method.
-        if (e.getMessage().equals("Socket closed") && stop) {
+        if (stop) {
           logger.debug("Server shutdown");
           return;
         }
         logger.debug(e.getMessage(), e);
+        continue;
+      }
+      final AdmissionController admission = admissionController;
+      if (admission != null && !admission.tryAcquire(socket.getInetAddress())) {
+        logger.debug("Connection from {} is not admitted", socket.getRemoteSocketAddress());
+        admission.reject(socket);
+        continue;
       }
+      try {
+        executorService.execute(new Runnable() {
+          @Override
+          public void run() {
+            handle(socket, admission);
+          }
+        });
+      } catch (RejectedExecutionException e) {
+        logger.warn("Connection from {} rejected by executor", socket.getRemoteSocketAddress());
+        if (admission != null) {
+          admission.onHandshakeStarted();
+          admission.release(socket.getInetAddress());
+          admission.reject(socket);
+        } else {
+          ResourceUtil.close(socket);
+        }
+      }
+    }
+  }
+
+  private void handle(Socket socket, AdmissionController admission) {
+    InetAddress clientAddress = socket.getInetAddress();
+    if (admission != null) {
+      admission.onHandshakeStarted();
+    }
+    SocksHandler socksHandler;
+    Session session = null;
+    try {
+      socket = processSocketBeforeUse(socket);
+      socket.setSoTimeout(timeout);
+      session = sessionManager.newSession(socket);
+      socksHandler = createSocksHandler();
+      if (socksHandler == null) {
+        throw new IOException("Can't create SOCKS handler");
+      }
+      if (admission != null) {
+        // Released by AdmissionReleaser when the handler closes the session.
+        session.setAttribute(AdmissionController.class, clientAddress);
+      }
+      /* initialize socks handler */
+      socksHandler.setSession(session);
+      initializeSocksHandler(socksHandler);
+      if (sessionDeadlines != null) {
+        sessionDeadlines.track(session);
+      }
+    } catch (IOException | RuntimeException e) {
+      logger.debug(e.getMessage(), e);
+      if (session != null) {
+        // Also removes the session from the managed sessions.
+        session.close();
+      }
+      ResourceUtil.close(socket);
+      if (admission != null) {
+        admission.release(clientAddress);
+      }
+      return;
     }
+    socksHandler.run();
   }
 
   @Override
   public void shutdown() {
     stop = true;
     executorService.shutdown();
+    if (relayExecutor != null) {
+      relayExecutor.shutdown();
+    }
     if (thread != null) {
       thread.interrupt();
     }
-    try {
-      closeAllSession();
-      if (serverSocket != null && serverSocket.isBound()) {
-        serverSocket.close();
-      }
-    } catch (IOException e) {
-      logger.error(e.getMessage(), e);
+    for (Thread acceptorThread : acceptorThreads) {
+      acceptorThread.interrupt();
+    }
+    closeAllSession();
+    for (ServerSocket socket : serverSockets) {
+      ResourceUtil.close(socket);
+    }
+    if (sessionTimerCreated) {
+      sessionTimer.stop();
     }
   }
 
   @Override
   public void start() throws IOException {
-    serverSocket = createServerSocket(bindPort, bindAddr);
+    if (admissionController != null) {
+      sessionManager.onSessionClose(AdmissionReleaser.NAME, new AdmissionReleaser());
+    }
+    if (handshakeTimeout > 0 || idleTimeout > 0 || maxSessionLifetime > 0) {
+      if (sessionTimer == null) {
+        sessionTimer = new HashedWheelTimer("session-timer");
+        sessionTimerCreated = true;
+      }
+      sessionDeadlines = new SessionDeadlines(sessionTimer, sessionManager, handshakeTimeout,
+          idleTimeout, maxSessionLifetime);
+      sessionManager.onCommand(SessionDeadlines.NAME, sessionDeadlines);
+      sessionManager.onSessionClose(SessionDeadlines.NAME, sessionDeadlines);
+    }
+    boolean reusePort = acceptorCount > 1 && SocketUtil.isReusePortSupported();
+    serverSocket = createServerSocket(bindPort, bindAddr, reusePort);
+    serverSockets.add(serverSocket);
+    // Bind the other sockets to the port which the first one got if bind port is 0.
+    int port = serverSocket.getLocalPort();
+    try {
+      for (int i = 1; i < acceptorCount; i++) {
+        final ServerSocket acceptorSocket =
+            reusePort ? createServerSocket(port, bindAddr, true) : serverSocket;
+        if (acceptorSocket != serverSocket) {
+          serverSockets.add(acceptorSocket);
+        }
+        Thread acceptorThread = new Thread(new Runnable() {
+          @Override
+          public void run() {
+            accept(acceptorSocket);
+          }
+        });
+        acceptorThread.setName("fs-thread-" + i);
+        acceptorThread.setDaemon(daemon);
+        acceptorThreads.add(acceptorThread);
+      }
+    } catch (IOException e) {
+      for (ServerSocket socket : serverSockets) {
+        ResourceUtil.close(socket);
+      }
+      serverSockets.clear();
+      acceptorThreads.clear();
+      throw e;
+    }
+    if (acceptorCount > 1) {
+      logger.info("Start {} acceptors {}", acceptorCount,
+          reusePort ? "with SO_REUSEPORT" : "on a shared socket");
+    }
     thread = new Thread(this);
     thread.setName("fs-thread");
     thread.setDaemon(daemon);
     thread.start();
+    for (Thread acceptorThread : acceptorThreads) {
+      acceptorThread.start();
+    }
   }
 
   protected ServerSocket createServerSocket(int bindPort, InetAddress bindAddr) throws IOException {
-    return new ServerSocket(bindPort, 50, bindAddr);
+    return createServerSocket(bindPort, bindAddr, false);
+  }
+
+  /**
+   * Creates a bound server socket with {@link #getBacklog()}.
+   *
+   * @param bindPort  Bind port.
+   * @param bindAddr  Bind address, <code>null</code> means any local address.
+   * @param reusePort <code>true</code> to enable <code>SO_REUSEPORT</code>.
+   * @return Bound server socket.
+   * @throws IOException If any I/O error occurs.
+   */
+  protected ServerSocket createServerSocket(int bindPort, InetAddress bindAddr, boolean reusePort)
+      throws IOException {
+    ServerSocket socket = newServerSocket();
+    try {
+      if (reusePort) {
+        SocketUtil.setReusePort(socket);
+      }
+      socket.bind(new InetSocketAddress(bindAddr, bindPort), backlog);
+    } catch (IOException e) {
+      ResourceUtil.close(socket);
+      throw e;
+    }
+    return socket;
+  }
+
+  /**
+   * Creates an unbound server socket.
+   *
+   * @return Unbound server socket.
+   * @throws IOException If any I/O error occurs.
+   */
+  protected ServerSocket newServerSocket() throws IOException {
+    return new ServerSocket();
   }
 
   @Override
   public SocksHandler createSocksHandler() {
     try {
-      return socksHandlerClass.newInstance();
-    } catch (InstantiationException | IllegalAccessException e) {
+      Constructor<? extends SocksHandler> constructor = socksHandlerConstructor;
+      if (constructor == null) {
+        constructor = socksHandlerClass.getConstructor();
+        socksHandlerConstructor = constructor;
+      }
+      return constructor.newInstance();
+    } catch (ReflectiveOperationException e) {
       logger.error(e.getMessage(), e);
     }
     return null;
@@ -257,10 +486,10 @@ public class BasicSocksProxyServer implements SocksProxyServer, Runnable {
    * Closes all sessions.
    */
   protected void closeAllSession() {
-    for (long key : sessions.keySet()) {
-      sessions.get(key).close();
+    // Closing a session removes it from the map, so iterate over a copy.
+    for (Session session : new ArrayList<>(getManagedSessions().values())) {
+      session.close();
     }
-
   }
 
   public ExecutorService getExecutorService() {
@@ -271,14 +500,9 @@ public class BasicSocksProxyServer implements SocksProxyServer, Runnable {
     this.executorService = executorService;
   }
 
-  private synchronized long getNextSessionId() {
-    nextSessionId++;
-    return nextSessionId;
-  }
-
   @Override
   public Map<Long, Session> getManagedSessions() {
-    return sessions;
+    return sessionManager.getManagedSessions();
   }
 
   @Override
@@ -318,6 +542,16 @@ public class BasicSocksProxyServer implements SocksProxyServer, Runnable {
     this.proxy = proxy;
   }
 
+  @Override
+  public RoutingTable getRoutingTable() {
+    return routingTable;
+  }
+
+  @Override
+  public void setRoutingTable(RoutingTable routingTable) {
+    this.routingTable = routingTable;
+  }
+
   @Override
   public InetAddress getBindAddr() {
     return bindAddr;
@@ -348,6 +582,42 @@ public class BasicSocksProxyServer implements SocksProxyServer, Runnable {
     this.daemon = daemon;
   }
 
+  @Override
+  public int getBacklog() {
+    return backlog;
+  }
+
+  @Override
+  public void setBacklog(int backlog) {
+    checkArgument(backlog > 0, "Argument [backlog] must be greater than 0");
+    this.backlog = backlog;
+  }
+
+  @Override
+  public int getAcceptorCount() {
+    return acceptorCount;
+  }
+
+  @Override
+  public void setAcceptorCount(int acceptorCount) {
+    checkArgument(acceptorCount > 0, "Argument [acceptorCount] must be greater than 0");
+    this.acceptorCount = acceptorCount;
+  }
+
+  public AdmissionController getAdmissionController() {
+    return admissionController;
+  }
+
+  /**
+   * Sets admission control of accepted connections. It must be set before the server starts.
+   *
+   * @param admissionController Instance of {@link AdmissionController}, <code>null</code> admits
+   *                            all connections.
+   */
+  public void setAdmissionController(AdmissionController admissionController) {
+    this.admissionController = admissionController;
+  }
+
   public Thread getServerThread() {
     return thread;
   }
@@ -360,10 +630,78 @@ public class BasicSocksProxyServer implements SocksProxyServer, Runnable {
     this.networkMonitor = checkNotNull(networkMonitor);
   }
 
-  protected Socket processSocketBeforeUse(Socket socket) {
+  /**
+   * Prepares an accepted socket before a session is created for it. It runs in
+   * {@link #executorService}, not in the acceptor.
+   *
+   * @param socket Accepted socket.
+   * @return Socket of the session.
+   * @throws IOException If the socket can't be used.
+   */
+  protected Socket processSocketBeforeUse(Socket socket) throws IOException {
     return new MonitorSocketWrapper(socket, networkMonitor);
   }
 
+  public long getHandshakeTimeout() {
+    return handshakeTimeout;
+  }
+
+  /**
+   * Sets the deadline of a handshake, the session is closed if the client doesn't send a command
+   * in time. Unlike {@link #setTimeout(int)}, it limits the whole handshake rather than each read.
+   * It must be set before the server starts.
+   *
+   * @param handshakeTimeout Deadline in milliseconds, 0 means no deadline.
+   */
+  public void setHandshakeTimeout(long handshakeTimeout) {
+    checkArgument(handshakeTimeout >= 0, "Argument [handshakeTimeout] must not be negative");
+    this.handshakeTimeout = handshakeTimeout;
+  }
+
+  public long getIdleTimeout() {
+    return idleTimeout;
+  }
+
+  /**
+   * Sets how long a tunnel may transfer nothing before it's closed. If it's set, relay reads no
+   * longer time out after {@link #getTimeout()}. It must be set before the server starts.
+   *
+   * @param idleTimeout Timeout in milliseconds, 0 means no limit.
+   */
+  public void setIdleTimeout(long idleTimeout) {
+    checkArgument(idleTimeout >= 0, "Argument [idleTimeout] must not be negative");
+    this.idleTimeout = idleTimeout;
+  }
+
+  public long getMaxSessionLifetime() {
+    return maxSessionLifetime;
+  }
+
+  /**
+   * Sets the max time a session lives, whether it's busy or not. It must be set before the server
+   * starts.
+   *
+   * @param maxSessionLifetime Lifetime in milliseconds, 0 means no limit.
+   */
+  public void setMaxSessionLifetime(long maxSessionLifetime) {
+    checkArgument(maxSessionLifetime >= 0, "Argument [maxSessionLifetime] must not be negative");
+    this.maxSessionLifetime = maxSessionLifetime;
+  }
+
+  public HashedWheelTimer getSessionTimer() {
+    return sessionTimer;
+  }
+
+  /**
+   * Sets the timer of session deadlines, so that several servers can share one timer thread. A
+   * timer which is set is not stopped when the server shuts down.
+   *
+   * @param sessionTimer Instance of {@link HashedWheelTimer}.
+   */
+  public void setSessionTimer(HashedWheelTimer sessionTimer) {
+    this.sessionTimer = checkNotNull(sessionTimer, "Argument [sessionTimer] may not be null");
+  }
+
   @Override
   public SessionManager getSessionManager() {
     return sessionManager;
@@ -383,4 +721,50 @@ public class BasicSocksProxyServer implements SocksProxyServer, Runnable {
   public void setPipeInitializer(PipeInitializer pipeInitializer) {
     this.pipeInitializer = pipeInitializer;
   }
+
+  @Override
+  public ExecutorService getRelayExecutor() {
+    return relayExecutor;
+  }
+
+  @Override
+  public void setRelayExecutor(ExecutorService relayExecutor) {
+    this.relayExecutor = relayExecutor;
+  }
+
+  @Override
+  public DnsResolver getDnsResolver() {
+    return dnsResolver;
+  }
+
+  @Override
+  public void setDnsResolver(DnsResolver dnsResolver) {
+    this.dnsResolver = checkNotNull(dnsResolver, "Argument [dnsResolver] may not be null");
+  }
+
+  @Override
+  public Connector getConnector() {
+    return connector;
+  }
+
+  @Override
+  public void setConnector(Connector connector) {
+    this.connector = checkNotNull(connector, "Argument [connector] may not be null");
+  }
+
+  /**
+   * Releases the admission of a session when the session is closed.
+   */
+  private class AdmissionReleaser implements SessionCloseListener, SynchronousListener {
+
+    static final String NAME = "admission-controller";
+
+    @Override
+    public void onClose(Session session) {
+      Object clientAddress = session.getAttributes().remove(AdmissionController.class);
+      if (clientAddress != null && admissionController != null) {
+        admissionController.release((InetAddress) clientAddress);
+      }
+    }
+  }
 }
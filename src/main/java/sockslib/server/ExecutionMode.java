@@ -0,0 +1,38 @@
+/*
+ * Copyright 2015-2025 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package sockslib.server;
+
+/**
+ * The enumeration <code>ExecutionMode</code> represents which kind of threads a SOCKS server uses
+ * to run sessions, relay pipes and UDP relay servers.
+ *
+ * @version 1.0
+ * @see SocksServerBuilder#setExecutionMode(ExecutionMode)
+ */
+public enum ExecutionMode {
+
+  /**
+   * Platform threads. Sessions run in a fixed thread pool and each pipe creates its own threads
+   * unless a relay executor is set.
+   */
+  PLATFORM,
+
+  /**
+   * One virtual thread per session, pipe direction and UDP relay server. It requires Java 21 or
+   * later, otherwise the server falls back to {@link #PLATFORM}.
+   */
+  VIRTUAL
+
+}
@@ -14,13 +14,15 @@
 
 package sockslib.server;
 
+import com.google.common.primitives.Ints;
 import sockslib.common.SSLConfiguration;
-import sockslib.common.SocksException;
 
 import javax.net.ssl.SSLServerSocket;
+import javax.net.ssl.SSLSocket;
 import java.io.IOException;
 import java.net.InetAddress;
 import java.net.ServerSocket;
+import java.net.Socket;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
@@ -59,12 +61,13 @@ public class SSLSocksProxyServer extends BasicSocksProxyServer {
   }
 
   @Override
-  protected ServerSocket createServerSocket(int bindPort, InetAddress bindAddr) throws IOException {
-    try {
-      return createSSLServer(bindPort, bindAddr);
-    } catch (Exception e) {
-      throw new SocksException(e.getMessage());
-    }
+  protected Socket processSocketBeforeUse(Socket socket) throws IOException {
+    SSLSocket sslSocket = configuration.wrapAcceptedSocket(socket);
+    // Bounds the TLS handshake, the session sets its own timeout afterwards.
+    long handshakeTimeout = getHandshakeTimeout() > 0 ? getHandshakeTimeout() : getTimeout();
+    sslSocket.setSoTimeout(Ints.saturatedCast(handshakeTimeout));
+    configuration.startHandshake(sslSocket);
+    return super.processSocketBeforeUse(sslSocket);
   }
 
   public SSLConfiguration getConfiguration() {
@@ -75,14 +78,22 @@ public class SSLSocksProxyServer extends BasicSocksProxyServer {
     this.configuration = configuration;
   }
 
+  /**
+   * Creates a listening {@link SSLServerSocket}.
+   *
+   * @param port     Port to listen.
+   * @param bindAddr Address to bind, <code>null</code> means all addresses.
+   * @return Server socket.
+   * @throws Exception If the server socket can't be created.
+   * @deprecated The server listens on a plain socket and wraps every accepted socket with
+   * {@link SSLConfiguration#wrapAcceptedSocket(Socket)}, so that a reloaded configuration takes
+   * effect for new connections. This method is not used by the server any more.
+   */
+  @Deprecated
   public ServerSocket createSSLServer(int port, InetAddress bindAddr) throws Exception {
-    SSLServerSocket serverSocket =
-        (SSLServerSocket) configuration.getSSLServerSocketFactory().createServerSocket(port, 50, bindAddr);
-    if (configuration.isNeedClientAuth()) {
-      serverSocket.setNeedClientAuth(true);
-    } else {
-      serverSocket.setNeedClientAuth(false);
-    }
+    SSLServerSocket serverSocket = (SSLServerSocket) configuration.getSSLServerSocketFactory()
+        .createServerSocket(port, getBacklog(), bindAddr);
+    serverSocket.setNeedClientAuth(configuration.isNeedClientAuth());
     return serverSocket;
   }
 
@@ -134,6 +134,12 @@ public interface Session {
    */
   SocketAddress getClientAddress();
 
+  /**
+   * Sets an attribute. Attributes may be set and read by different threads.
+   *
+   * @param key   Key of the attribute.
+   * @param value Value of the attribute, <code>null</code> removes the attribute.
+   */
   void setAttribute(Object key, Object value);
 
   Object getAttribute(Object key);
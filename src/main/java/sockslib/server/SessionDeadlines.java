@@ -0,0 +1,203 @@
+/*
+ * Copyright 2015-2025 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package sockslib.server;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import sockslib.common.SocksCommand;
+import sockslib.common.net.NetworkMonitor;
+import sockslib.server.listener.CommandListener;
+import sockslib.server.listener.SessionCloseListener;
+import sockslib.server.listener.SynchronousListener;
+import sockslib.server.msg.CommandMessage;
+import sockslib.utils.HashedWheelTimer;
+import sockslib.utils.HashedWheelTimer.Timeout;
+
+import java.net.SocketException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The class <code>SessionDeadlines</code> closes sessions whose handshake, idle or lifetime
+ * deadline expired. All deadlines are timeouts in one {@link HashedWheelTimer}, so a session costs
+ * a few small objects and no thread.
+ * <p>
+ * Idle time is sampled from the network monitor of a session when the idle deadline expires
+ * instead of being recorded on every read, so a session is closed after being idle for between
+ * one and two idle timeouts. UDP associations are not checked for idleness because their control
+ * connection is idle by design.
+ * </p>
+ *
+ * @version 1.0
+ */
+class SessionDeadlines
+    implements CommandListener, SessionCloseListener, SynchronousListener {
+
+  static final String NAME = "session-deadlines";
+
+  private static final Logger logger = LoggerFactory.getLogger(SessionDeadlines.class);
+
+  /**
+   * Closes expired sessions, so that exception listeners and socket closes don't hold up the
+   * timer thread and delay other deadlines.
+   */
+  private static final ThreadPoolExecutor CLOSE_EXECUTOR;
+
+  static {
+    CLOSE_EXECUTOR = new ThreadPoolExecutor(2, 2, 60, TimeUnit.SECONDS,
+        new LinkedBlockingQueue<Runnable>(),
+        new ThreadFactoryBuilder().setNameFormat("session-closer-%d").setDaemon(true).build());
+    CLOSE_EXECUTOR.allowCoreThreadTimeOut(true);
+  }
+
+  private final HashedWheelTimer timer;
+
+  private final SessionManager sessionManager;
+
+  private final long handshakeTimeout;
+
+  private final long idleTimeout;
+
+  private final long maxSessionLifetime;
+
+  /**
+   * Constructs an instance, a timeout which is 0 is disabled.
+   */
+  SessionDeadlines(HashedWheelTimer timer, SessionManager sessionManager, long handshakeTimeout,
+                   long idleTimeout, long maxSessionLifetime) {
+    this.timer = timer;
+    this.sessionManager = sessionManager;
+    this.handshakeTimeout = handshakeTimeout;
+    this.idleTimeout = idleTimeout;
+    this.maxSessionLifetime = maxSessionLifetime;
+  }
+
+  /**
+   * Starts the handshake and lifetime deadlines of a new session.
+   *
+   * @param session New session.
+   */
+  void track(Session session) {
+    Deadlines deadlines = new Deadlines(session);
+    session.setAttribute(SessionDeadlines.class, deadlines);
+    if (handshakeTimeout > 0) {
+      deadlines.handshake = deadlines.schedule(SessionTimeoutException.Type.HANDSHAKE,
+          handshakeTimeout);
+    }
+    if (maxSessionLifetime > 0) {
+      deadlines.lifetime = deadlines.schedule(SessionTimeoutException.Type.LIFETIME,
+          maxSessionLifetime);
+    }
+  }
+
+  @Override
+  public void onCommand(Session session, CommandMessage message) {
+    Deadlines deadlines = (Deadlines) session.getAttribute(SessionDeadlines.class);
+    if (deadlines == null) {
+      return;
+    }
+    cancel(deadlines.handshake);
+    NetworkMonitor networkMonitor = session.getNetworkMonitor();
+    if (idleTimeout > 0 && networkMonitor != null
+        && message.getCommand() != SocksCommand.UDP_ASSOCIATE) {
+      try {
+        // Relay reads must not time out by themselves, the idle deadline takes over.
+        session.getSocket().setSoTimeout(0);
+      } catch (SocketException e) {
+        return;
+      }
+      deadlines.lastTotal = networkMonitor.getTotal();
+      deadlines.idle = timer.newTimeout(deadlines::checkIdle, idleTimeout, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  @Override
+  public void onClose(Session session) {
+    Deadlines deadlines = (Deadlines) session.getAttributes().remove(SessionDeadlines.class);
+    if (deadlines != null) {
+      deadlines.closed = true;
+      cancel(deadlines.handshake);
+      cancel(deadlines.idle);
+      cancel(deadlines.lifetime);
+    }
+  }
+
+  private static void cancel(Timeout timeout) {
+    if (timeout != null) {
+      timeout.cancel();
+    }
+  }
+
+  /**
+   * Timeouts of a session.
+   */
+  private class Deadlines {
+
+    private final Session session;
+
+    private volatile boolean closed;
+
+    private volatile Timeout handshake;
+
+    private volatile Timeout idle;
+
+    private volatile Timeout lifetime;
+
+    /**
+     * Total bytes of the session when the idle deadline was last checked, only used by the timer
+     * thread after the idle deadline is scheduled.
+     */
+    private long lastTotal;
+
+    Deadlines(Session session) {
+      this.session = session;
+    }
+
+    Timeout schedule(final SessionTimeoutException.Type type, final long timeout) {
+      return timer.newTimeout(() -> expire(type, timeout), timeout, TimeUnit.MILLISECONDS);
+    }
+
+    void checkIdle() {
+      if (closed) {
+        return;
+      }
+      long total = session.getNetworkMonitor().getTotal();
+      if (total != lastTotal) {
+        lastTotal = total;
+        idle = timer.newTimeout(this::checkIdle, idleTimeout, TimeUnit.MILLISECONDS);
+      } else {
+        expire(SessionTimeoutException.Type.IDLE, idleTimeout);
+      }
+    }
+
+    void expire(SessionTimeoutException.Type type, long timeout) {
+      if (closed) {
+        return;
+      }
+      closed = true;
+      final SessionTimeoutException cause = new SessionTimeoutException(type, timeout);
+      try {
+        CLOSE_EXECUTOR.execute(() -> sessionManager.closeSession(session, cause));
+      } catch (RejectedExecutionException e) {
+        logger.warn("SESSION[{}] can't be closed in background, close it on timer thread",
+            session.getId());
+        sessionManager.closeSession(session, cause);
+      }
+    }
+  }
+}
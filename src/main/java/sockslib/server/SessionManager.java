@@ -20,6 +20,12 @@ import java.util.Map;
  */
 public interface SessionManager {
 
+  /**
+   * Key of the session attribute which holds the cause of {@link #closeSession(Session,
+   * Exception)}.
+   */
+  String CLOSE_CAUSE_KEY = "CLOSE_CAUSE";
+
   /**
    * Create a new {@link Session}.
    *
@@ -44,6 +50,21 @@ public interface SessionManager {
 
   void sessionOnClose(Session session);
 
+  /**
+   * Closes a session from outside of its handler, such as when a deadline expires. Exception
+   * listeners are notified with the cause, and the handler notifies close listeners when it finds
+   * the session closed. The cause is kept in the attribute {@link #CLOSE_CAUSE_KEY}, so that the
+   * handler doesn't report the failure of its pending I/O as another exception.
+   *
+   * @param session Session to close.
+   * @param cause   Why the session is closed.
+   */
+  default void closeSession(Session session, Exception cause) {
+    session.setAttribute(CLOSE_CAUSE_KEY, cause);
+    sessionOnException(session, cause);
+    session.close();
+  }
+
   /**
    * Remove a {@link SessionListener} by name.
    *
@@ -0,0 +1,264 @@
+/*
+ * Copyright 2015-2025 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package sockslib.server;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * The class <code>SessionRegistry</code> is a thread safe registry of sessions.
+ * <p>
+ * Session IDs come from an atomic counter. Sessions are indexed by ID, by client IP address and
+ * by authenticated username, all lookups are O(1). The indexes are concurrent hash maps, so
+ * registering a session from the accept thread, removing it from a handler thread and querying
+ * from an admin thread don't block each other. Iteration is weakly consistent: it never throws
+ * {@link java.util.ConcurrentModificationException} and may or may not reflect concurrent
+ * changes.
+ * </p>
+ *
+ * @version 1.0
+ */
+public class SessionRegistry {
+
+  private final AtomicLong nextId = new AtomicLong();
+
+  private final ConcurrentMap<Long, Session> sessions = new ConcurrentHashMap<>();
+
+  private final ConcurrentMap<InetAddress, Set<Session>> sessionsByClientAddress =
+      new ConcurrentHashMap<>();
+
+  private final ConcurrentMap<String, Set<Session>> sessionsByUser = new ConcurrentHashMap<>();
+
+  /**
+   * Username of each authenticated session, indexed by session ID.
+   */
+  private final ConcurrentMap<Long, String> users = new ConcurrentHashMap<>();
+
+  private final Map<Long, Session> sessionMap = new SessionMap();
+
+  /**
+   * Returns a new session ID.
+   *
+   * @return A session ID which is greater than 0.
+   */
+  public long nextId() {
+    return nextId.incrementAndGet();
+  }
+
+  /**
+   * Registers a session.
+   *
+   * @param session Session.
+   */
+  public void add(Session session) {
+    checkNotNull(session, "Argument [session] may not be null");
+    sessions.put(session.getId(), session);
+    InetAddress clientAddress = getClientAddress(session);
+    if (clientAddress != null) {
+      addToIndex(sessionsByClientAddress, clientAddress, session);
+    }
+  }
+
+  /**
+   * Removes a session.
+   *
+   * @param id ID of the session.
+   * @return The removed session, <code>null</code> if there is no such session.
+   */
+  public Session remove(long id) {
+    Session session = sessions.remove(id);
+    if (session == null) {
+      return null;
+    }
+    InetAddress clientAddress = getClientAddress(session);
+    if (clientAddress != null) {
+      removeFromIndex(sessionsByClientAddress, clientAddress, session);
+    }
+    String username = users.remove(id);
+    if (username != null) {
+      removeFromIndex(sessionsByUser, username, session);
+    }
+    return session;
+  }
+
+  /**
+   * Indexes a session by the name of the user who authenticated it.
+   *
+   * @param session  A registered session.
+   * @param username Username.
+   */
+  public void setUser(Session session, String username) {
+    checkNotNull(session, "Argument [session] may not be null");
+    checkNotNull(username, "Argument [username] may not be null");
+    long id = session.getId();
+    if (!sessions.containsKey(id)) {
+      return;
+    }
+    String previous = users.put(id, username);
+    if (username.equals(previous)) {
+      return;
+    }
+    if (previous != null) {
+      removeFromIndex(sessionsByUser, previous, session);
+    }
+    addToIndex(sessionsByUser, username, session);
+    // The session may be removed at the same time.
+    if (!sessions.containsKey(id) && users.remove(id, username)) {
+      removeFromIndex(sessionsByUser, username, session);
+    }
+  }
+
+  /**
+   * Returns the name of the user who authenticated a session.
+   *
+   * @param id ID of the session.
+   * @return Username, <code>null</code> if the session is not authenticated by username.
+   */
+  public String getUser(long id) {
+    return users.get(id);
+  }
+
+  /**
+   * Returns a session by ID.
+   *
+   * @param id ID of the session.
+   * @return Session, <code>null</code> if there is no such session.
+   */
+  public Session get(long id) {
+    return sessions.get(id);
+  }
+
+  /**
+   * Returns the sessions from a client IP address.
+   *
+   * @param clientAddress IP address of clients.
+   * @return Snapshot of the sessions.
+   */
+  public List<Session> getByClientAddress(InetAddress clientAddress) {
+    return snapshot(sessionsByClientAddress.get(clientAddress));
+  }
+
+  /**
+   * Returns the sessions which a user authenticated.
+   *
+   * @param username Username.
+   * @return Snapshot of the sessions.
+   */
+  public List<Session> getByUser(String username) {
+    return snapshot(sessionsByUser.get(username));
+  }
+
+  /**
+   * Returns a snapshot of all sessions.
+   *
+   * @return Snapshot of all sessions.
+   */
+  public List<Session> getSessions() {
+    return new ArrayList<>(sessions.values());
+  }
+
+  public int size() {
+    return sessions.size();
+  }
+
+  /**
+   * Returns a map view of the registry. The view can't be modified except removing sessions, which
+   * removes them from all indexes.
+   *
+   * @return Map view of the registry.
+   */
+  public Map<Long, Session> asMap() {
+    return sessionMap;
+  }
+
+  private static <K> void addToIndex(ConcurrentMap<K, Set<Session>> index, K key,
+                                     final Session session) {
+    index.compute(key, (k, set) -> {
+      if (set == null) {
+        set = ConcurrentHashMap.newKeySet();
+      }
+      set.add(session);
+      return set;
+    });
+  }
+
+  private static <K> void removeFromIndex(ConcurrentMap<K, Set<Session>> index, K key,
+                                          final Session session) {
+    index.computeIfPresent(key, (k, set) -> {
+      set.remove(session);
+      return set.isEmpty() ? null : set;
+    });
+  }
+
+  private static List<Session> snapshot(Set<Session> set) {
+    if (set == null) {
+      return Collections.emptyList();
+    }
+    return new ArrayList<>(set);
+  }
+
+  private static InetAddress getClientAddress(Session session) {
+    SocketAddress address = session.getClientAddress();
+    if (address instanceof InetSocketAddress) {
+      return ((InetSocketAddress) address).getAddress();
+    }
+    return null;
+  }
+
+  /**
+   * Map view of the registry.
+   */
+  private class SessionMap extends AbstractMap<Long, Session> {
+
+    private final Map<Long, Session> view = Collections.unmodifiableMap(sessions);
+
+    @Override
+    public Session get(Object key) {
+      return view.get(key);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+      return view.containsKey(key);
+    }
+
+    @Override
+    public Session remove(Object key) {
+      return key instanceof Long ? SessionRegistry.this.remove((Long) key) : null;
+    }
+
+    @Override
+    public int size() {
+      return view.size();
+    }
+
+    @Override
+    public Set<Entry<Long, Session>> entrySet() {
+      return view.entrySet();
+    }
+  }
+
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2015-2025 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package sockslib.server;
+
+import java.net.SocketTimeoutException;
+
+/**
+ * The class <code>SessionTimeoutException</code> is passed to exception listeners when a session is
+ * closed because one of its deadlines expired.
+ *
+ * @version 1.0
+ * @see BasicSocksProxyServer#setHandshakeTimeout(long)
+ * @see BasicSocksProxyServer#setIdleTimeout(long)
+ * @see BasicSocksProxyServer#setMaxSessionLifetime(long)
+ */
+public class SessionTimeoutException extends SocketTimeoutException {
+
+  private static final long serialVersionUID = 1L;
+
+  /**
+   * Deadlines of a session.
+   */
+  public enum Type {
+
+    /**
+     * The client didn't send a command in time.
+     */
+    HANDSHAKE,
+
+    /**
+     * No data was transferred in time.
+     */
+    IDLE,
+
+    /**
+     * The session lived longer than the max lifetime.
+     */
+    LIFETIME
+  }
+
+  private final Type type;
+
+  private final long timeout;
+
+  public SessionTimeoutException(Type type, long timeout) {
+    super(type + " timeout after " + timeout + " ms");
+    this.type = type;
+    this.timeout = timeout;
+  }
+
+  public Type getType() {
+    return type;
+  }
+
+  /**
+   * Returns the deadline which expired.
+   *
+   * @return Deadline in milliseconds.
+   */
+  public long getTimeout() {
+    return timeout;
+  }
+}
@@ -15,27 +15,38 @@
 package sockslib.server;
 
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import sockslib.client.SocksProxy;
 import sockslib.client.SocksSocket;
+import sockslib.common.AddressType;
 import sockslib.common.ProtocolErrorException;
+import sockslib.common.SocksCommand;
 import sockslib.common.SocksException;
 import sockslib.common.methods.SocksMethod;
+import sockslib.server.connector.Connector;
+import sockslib.server.dns.DnsResolver;
 import sockslib.server.io.Pipe;
 import sockslib.server.io.PipeListener;
 import sockslib.server.io.SocketPipe;
+import sockslib.server.listener.CloseSessionException;
 import sockslib.server.msg.CommandMessage;
 import sockslib.server.msg.CommandResponseMessage;
 import sockslib.server.msg.MethodSelectionMessage;
 import sockslib.server.msg.MethodSelectionResponseMessage;
 import sockslib.server.msg.ServerReply;
+import sockslib.server.routing.Route;
+import sockslib.server.routing.RoutingTable;
+import sockslib.utils.ResourceUtil;
 
 import java.io.IOException;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.net.UnknownHostException;
 
 /**
  * The class <code>Socks5Handler</code> represents a handler that can handle SOCKS5 protocol.
@@ -74,6 +85,13 @@ public class Socks5Handler implements SocksHandler {
 
   private SessionManager sessionManager;
 
+  /**
+   * <code>true</code> if the session is handed over to a pipe running in the relay executor.
+   */
+  private boolean detached = false;
+
+  private final AtomicBoolean sessionClosed = new AtomicBoolean(false);
+
   @Override
   public void handle(Session session) throws Exception {
     sessionManager = getSocksProxyServer().getSessionManager();
@@ -110,8 +128,32 @@ public class Socks5Handler implements SocksHandler {
       return;
     }
 
+    // Resolve the destination before listeners run, so that they can check its address.
+    if (commandMessage.getCommand() == SocksCommand.CONNECT
+        && commandMessage.getAddressType() == AddressType.DOMAIN_NAME
+        && isResolvedLocally(session, commandMessage)) {
+      InetAddress[] resolvedAddresses;
+      try {
+        resolvedAddresses = resolveAll(commandMessage);
+      } catch (UnknownHostException e) {
+        session.write(new CommandResponseMessage(ServerReply.HOST_UNREACHABLE));
+        logger.info("SESSION[{}] can't resolve {} [{}]", session.getId(),
+            commandMessage.getHost(), ServerReply.HOST_UNREACHABLE);
+        return;
+      }
+      commandMessage.setInetAddress(resolvedAddresses[0]);
+      commandMessage.setResolvedAddresses(resolvedAddresses);
+    }
+
     /**************************** DO COMMAND ******************************************/
-    sessionManager.sessionOnCommand(session, commandMessage);
+    try {
+      sessionManager.sessionOnCommand(session, commandMessage);
+    } catch (CloseSessionException e) {
+      if (e.getServerReply() != null) {
+        session.write(new CommandResponseMessage(e.getServerReply()));
+      }
+      throw e;
+    }
     switch (commandMessage.getCommand()) {
       case BIND:
         doBind(session, commandMessage);
@@ -139,32 +181,59 @@ public class Socks5Handler implements SocksHandler {
     // set default bind address.
     byte[] defaultAddress = {0, 0, 0, 0};
     bindAddress = InetAddress.getByAddress(defaultAddress);
+    RoutingTable routingTable = getSocksProxyServer().getRoutingTable();
+    Route route = routingTable == null ? null : routingTable.route(session, commandMessage);
+    if (route != null && route.getType() == Route.Type.REJECT) {
+      reply = ServerReply.CONNECTION_NOT_ALLOWED_BY_RULESET;
+      session.write(new CommandResponseMessage(reply));
+      logger.info("SESSION[{}] connect {} [{}] rejected by routing table", session.getId(),
+          commandMessage.getSocketAddress(), reply);
+      session.close();
+      return;
+    }
     // DO connect
     try {
-      // Connect directly.
-      if (proxy == null) {
-        socket = new Socket(remoteServerAddress, remoteServerPort);
+      if (route != null && route.getUpstreamPool() != null) {
+        socket = route.getUpstreamPool()
+            .connect(remoteServerAddress, commandMessage.getHost(), remoteServerPort);
+      } else if (route != null && route.getType() == Route.Type.PROXY) {
+        // Let the upstream proxy resolve domain names.
+        socket = remoteServerAddress != null ?
+            new SocksSocket(route.getProxy(), remoteServerAddress, remoteServerPort) :
+            new SocksSocket(route.getProxy(), commandMessage.getHost(), remoteServerPort);
+      } else if (proxy == null || route != null) {
+        // Connect directly.
+        InetAddress[] addresses;
+        if (commandMessage.getResolvedAddresses() != null) {
+          addresses = commandMessage.getResolvedAddresses();
+        } else {
+          addresses = remoteServerAddress != null ?
+              new InetAddress[] {remoteServerAddress} : resolveAll(commandMessage);
+        }
+        Connector connector = getSocksProxyServer().getConnector();
+        socket = connector != null ? connector.connect(addresses, remoteServerPort) :
+            new Socket(addresses[0], remoteServerPort);
+        remoteServerAddress = socket.getInetAddress();
+        commandMessage.setInetAddress(remoteServerAddress);
       } else {
+        if (remoteServerAddress == null) {
+          remoteServerAddress = resolveAll(commandMessage)[0];
+          commandMessage.setInetAddress(remoteServerAddress);
+        }
         socket = new SocksSocket(proxy, remoteServerAddress, remoteServerPort);
       }
       bindAddress = socket.getLocalAddress();
       bindPort = socket.getLocalPort();
       reply = ServerReply.SUCCEEDED;
 
+    } catch (UnknownHostException e) {
+      reply = ServerReply.HOST_UNREACHABLE;
+      logger.info("SESSION[{}] can't resolve {} [{}]", session.getId(), commandMessage.getHost(),
+          reply);
     } catch (IOException e) {
-      if (e.getMessage().equals("Connection refused")) {
-        reply = ServerReply.CONNECTION_REFUSED;
-      } else if (e.getMessage().equals("Operation timed out")) {
-        reply = ServerReply.TTL_EXPIRED;
-      } else if (e.getMessage().equals("Network is unreachable")) {
-        reply = ServerReply.NETWORK_UNREACHABLE;
-      } else if (e.getMessage().equals("Connection timed out")) {
-        reply = ServerReply.TTL_EXPIRED;
-      } else {
-        reply = ServerReply.GENERAL_SOCKS_SERVER_FAILURE;
-      }
-      logger.info("SESSION[{}] connect {} [{}] exception:{}", session.getId(), new
-          InetSocketAddress(remoteServerAddress, remoteServerPort), reply, e.getMessage());
+      reply = ServerReply.fromConnectException(e);
+      logger.info("SESSION[{}] connect {} [{}] exception:{}", session.getId(), commandMessage
+          .getSocketAddress(), reply, e.getMessage());
     }
 
     CommandResponseMessage responseMessage =
@@ -175,14 +244,85 @@ public class Socks5Handler implements SocksHandler {
       return;
     }
 
-    Pipe pipe = new SocketPipe(session.getSocket(), socket);
+    ExecutorService relayExecutor = getSocksProxyServer().getRelayExecutor();
+    Pipe pipe = new SocketPipe(session.getSocket(), socket, relayExecutor);
     pipe.setName("SESSION[" + session.getId() + "]");
     pipe.setBufferSize(bufferSize);
     if(getSocksProxyServer().getPipeInitializer() != null){
       pipe = getSocksProxyServer().getPipeInitializer().initialize(pipe);
     }
 
-    waitForPipe(pipe, session);
+    if (relayExecutor == null) {
+      waitForPipe(pipe, session);
+    } else {
+      startDetachedPipe(pipe, socket);
+    }
+  }
+
+  /**
+   * Returns <code>true</code> if the destination of a CONNECT command will be resolved by this
+   * server, rather than an upstream proxy.
+   */
+  private boolean isResolvedLocally(Session session, CommandMessage commandMessage) {
+    RoutingTable routingTable = getSocksProxyServer().getRoutingTable();
+    if (routingTable == null) {
+      return true;
+    }
+    Route route = routingTable.route(session, commandMessage);
+    return route.getType() == Route.Type.DIRECT && route.getUpstreamPool() == null;
+  }
+
+  /**
+   * Resolves all addresses of the host in a command with the server's {@link DnsResolver}.
+   */
+  private InetAddress[] resolveAll(CommandMessage commandMessage) throws UnknownHostException {
+    DnsResolver dnsResolver = getSocksProxyServer().getDnsResolver();
+    return dnsResolver != null ? dnsResolver.resolveAll(commandMessage.getHost()) :
+        InetAddress.getAllByName(commandMessage.getHost());
+  }
+
+  /**
+   * Starts the pipe in the relay executor and returns immediately, so that the handler thread can
+   * be reused. The session will be closed when the pipe stops.
+   *
+   * @param pipe   A pipe that has not yet been started.
+   * @param socket The socket connected to remote server.
+   */
+  private void startDetachedPipe(final Pipe pipe, final Socket socket) {
+    pipe.addPipeListener(new PipeListener() {
+      @Override
+      public void onStart(Pipe pipe) {
+      }
+
+      @Override
+      public void onStop(Pipe pipe) {
+        closeSession();
+      }
+
+      @Override
+      public void onTransfer(Pipe pipe, byte[] buffer, int bufferLength) {
+      }
+
+      @Override
+      public void onError(Pipe pipe, Exception exception) {
+      }
+    });
+    if (pipe.start()) {
+      detached = true;
+    } else {
+      logger.warn("SESSION[{}] can't start relay, relay executor is busy", session.getId());
+      ResourceUtil.close(socket);
+    }
+  }
+
+  /**
+   * Closes the session and notifies session listeners only once.
+   */
+  private void closeSession() {
+    if (sessionClosed.compareAndSet(false, true)) {
+      session.close();
+      sessionManager.sessionOnClose(session);
+    }
   }
 
   /**
@@ -269,16 +409,25 @@ public class Socks5Handler implements SocksHandler {
     session.write(new CommandResponseMessage(VERSION, ServerReply.SUCCEEDED, serverSocket
         .getInetAddress(), bindPort));
 
-    socket = serverSocket.accept();
+    try {
+      socket = serverSocket.accept();
+    } finally {
+      // Only one incoming connection is accepted for a BIND request.
+      serverSocket.close();
+    }
     session.write(new CommandResponseMessage(VERSION, ServerReply.SUCCEEDED, socket
         .getLocalAddress(), socket.getLocalPort()));
 
-    Pipe pipe = new SocketPipe(session.getSocket(), socket);
+    ExecutorService relayExecutor = getSocksProxyServer().getRelayExecutor();
+    Pipe pipe = new SocketPipe(session.getSocket(), socket, relayExecutor);
+    pipe.setName("SESSION[" + session.getId() + "]");
     pipe.setBufferSize(bufferSize);
 
-    waitForPipe(pipe, session);
-    serverSocket.close();
-    // throw new NotImplementException("Not implement BIND command");
+    if (relayExecutor == null) {
+      waitForPipe(pipe, session);
+    } else {
+      startDetachedPipe(pipe, socket);
+    }
   }
 
   @Override
@@ -287,6 +436,8 @@ public class Socks5Handler implements SocksHandler {
     UDPRelayServer udpRelayServer =
         new UDPRelayServer(((InetSocketAddress) session.getClientAddress()).getAddress(),
             commandMessage.getPort());
+    udpRelayServer.setExecutor(getSocksProxyServer().getRelayExecutor());
+    udpRelayServer.useDestinationFilterOf(session);
     InetSocketAddress socketAddress = (InetSocketAddress) udpRelayServer.start();
     logger.info("Create UDP relay server at[{}] for {}", socketAddress, commandMessage
         .getSocketAddress());
@@ -320,11 +471,15 @@ public class Socks5Handler implements SocksHandler {
     try {
       handle(session);
     } catch (Exception e) {
-      sessionManager.sessionOnException(session, e);
+      // Listeners already know the cause if SessionManager.closeSession() closed the session.
+      if (session.getAttribute(SessionManager.CLOSE_CAUSE_KEY) == null) {
+        sessionManager.sessionOnException(session, e);
+      }
       //      logger.error("SESSION[{}]: {}", session.getId(), e.getMessage());
     } finally {
-      session.close();
-      sessionManager.sessionOnClose(session);
+      if (!detached) {
+        closeSession();
+      }
       //      logger.info("SESSION[{}] closed, {}", session.getId(), session.getNetworkMonitor().toString
       //          ());
     }
@@ -16,7 +16,10 @@ package sockslib.server;
 
 import sockslib.client.SocksProxy;
 import sockslib.common.methods.SocksMethod;
+import sockslib.server.connector.Connector;
+import sockslib.server.dns.DnsResolver;
 import sockslib.server.listener.PipeInitializer;
+import sockslib.server.routing.RoutingTable;
 
 import java.io.IOException;
 import java.net.InetAddress;
@@ -37,6 +40,11 @@ public interface SocksProxyServer {
    */
   int DEFAULT_SOCKS_PORT = 1080;
 
+  /**
+   * Default length of the queue of connections which are not accepted yet.
+   */
+  int DEFAULT_BACKLOG = 1024;
+
   /**
    * Starts a SOCKS server.
    *
@@ -185,4 +193,128 @@ public interface SocksProxyServer {
   PipeInitializer getPipeInitializer();
 
   void setPipeInitializer(PipeInitializer pipeInitializer);
+
+  /**
+   * Returns the table which routes CONNECT commands.
+   *
+   * @return Routing table, <code>null</code> if all commands go through {@link #getProxy()} or
+   * directly.
+   */
+  default RoutingTable getRoutingTable() {
+    return null;
+  }
+
+  /**
+   * Sets the table which routes CONNECT commands, it takes effect for new commands. If it's set,
+   * {@link #getProxy()} is ignored.
+   *
+   * @param routingTable Routing table.
+   * @throws UnsupportedOperationException If the server doesn't support routing.
+   */
+  default void setRoutingTable(RoutingTable routingTable) {
+    throw new UnsupportedOperationException("Routing table is not supported");
+  }
+
+  /**
+   * Returns the executor which runs relay pipes.
+   *
+   * @return The executor which runs relay pipes, <code>null</code> if each pipe creates its own
+   * threads.
+   */
+  default ExecutorService getRelayExecutor() {
+    return null;
+  }
+
+  /**
+   * Sets the executor which runs relay pipes. If it's set, a handler thread returns as soon as
+   * the tunnel is established and both directions of the tunnel run in this executor.
+   *
+   * @param relayExecutor The executor which runs relay pipes.
+   * @throws UnsupportedOperationException If the server doesn't support a relay executor.
+   */
+  default void setRelayExecutor(ExecutorService relayExecutor) {
+    throw new UnsupportedOperationException("Relay executor is not supported");
+  }
+
+  /**
+   * Returns the resolver which resolves the hosts in CONNECT commands.
+   *
+   * @return Instance of {@link DnsResolver}, <code>null</code> if hosts are resolved by
+   * {@link InetAddress#getAllByName(String)}.
+   */
+  default DnsResolver getDnsResolver() {
+    return null;
+  }
+
+  /**
+   * Sets the resolver which resolves the hosts in CONNECT commands.
+   *
+   * @param dnsResolver Instance of {@link DnsResolver}.
+   * @throws UnsupportedOperationException If the server doesn't support a DNS resolver.
+   */
+  default void setDnsResolver(DnsResolver dnsResolver) {
+    throw new UnsupportedOperationException("DNS resolver is not supported");
+  }
+
+  /**
+   * Returns the connector which connects the destinations of CONNECT commands.
+   *
+   * @return Instance of {@link Connector}, <code>null</code> if the server connects the first
+   * address of a destination with a plain socket.
+   */
+  default Connector getConnector() {
+    return null;
+  }
+
+  /**
+   * Sets the connector which connects the destinations of CONNECT commands.
+   *
+   * @param connector Instance of {@link Connector}.
+   * @throws UnsupportedOperationException If the server doesn't support a connector.
+   */
+  default void setConnector(Connector connector) {
+    throw new UnsupportedOperationException("Connector is not supported");
+  }
+
+  /**
+   * Returns the length of the queue of connections which are not accepted yet.
+   *
+   * @return Backlog of the listening socket.
+   */
+  default int getBacklog() {
+    return DEFAULT_BACKLOG;
+  }
+
+  /**
+   * Sets the length of the queue of connections which are not accepted yet. It must be set before
+   * the server starts. The operating system may cap it, such as <code>somaxconn</code> on Linux.
+   *
+   * @param backlog Backlog of the listening socket.
+   * @throws UnsupportedOperationException If the server doesn't support setting the backlog.
+   */
+  default void setBacklog(int backlog) {
+    throw new UnsupportedOperationException("Backlog is not supported");
+  }
+
+  /**
+   * Returns the number of threads which accept connections.
+   *
+   * @return Number of acceptor threads.
+   */
+  default int getAcceptorCount() {
+    return 1;
+  }
+
+  /**
+   * Sets the number of threads which accept connections. It must be set before the server starts.
+   * If <code>SO_REUSEPORT</code> is supported, every acceptor listens on its own socket and the
+   * kernel balances connections between them, otherwise the acceptors share one socket.
+   *
+   * @param acceptorCount Number of acceptor threads.
+   * @throws UnsupportedOperationException If the server doesn't support multiple acceptors.
+   * @see sockslib.utils.SocketUtil#isReusePortSupported()
+   */
+  default void setAcceptorCount(int acceptorCount) {
+    throw new UnsupportedOperationException("Acceptor count is not supported");
+  }
 }
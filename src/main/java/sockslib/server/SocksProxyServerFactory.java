@@ -35,7 +35,7 @@ public class SocksProxyServerFactory {
   /**
    * Default buffer size;
    */
-  private static final int BUFFER_SIZE = 1024 * 1024 * 5;
+  private static final int BUFFER_SIZE = 64 * 1024;
 
   private static final int DEFAULT_PORT = 1080;
 
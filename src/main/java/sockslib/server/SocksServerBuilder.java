@@ -7,11 +7,25 @@ import sockslib.common.SSLConfiguration;
 import sockslib.common.methods.NoAuthenticationRequiredMethod;
 import sockslib.common.methods.SocksMethod;
 import sockslib.common.methods.UsernamePasswordMethod;
+import sockslib.server.acl.AccessControlList;
+import sockslib.server.acl.AccessControlListener;
+import sockslib.server.acl.DomainAccessList;
+import sockslib.server.admission.AdmissionController;
+import sockslib.server.connector.Connector;
+import sockslib.server.connector.HappyEyeballsConnector;
+import sockslib.server.dns.DnsResolver;
 import sockslib.server.io.PipeListener;
 import sockslib.server.listener.PipeInitializer;
+import sockslib.server.listener.SessionEventDispatcher;
 import sockslib.server.listener.SessionListener;
 import sockslib.server.manager.MemoryBasedUserManager;
 import sockslib.server.manager.UserManager;
+import sockslib.server.nio.NioSocksProxyServer;
+import sockslib.server.routing.Route;
+import sockslib.server.routing.RoutingTable;
+import sockslib.server.routing.UpstreamPool;
+import sockslib.utils.ExecutorUtil;
+import sockslib.utils.HashedWheelTimer;
 
 import java.net.InetAddress;
 import java.util.ArrayList;
@@ -24,6 +38,7 @@ import java.util.Set;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.TimeUnit;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 
 /**
@@ -52,6 +67,27 @@ public class SocksServerBuilder {
   private SSLConfiguration sslConfiguration;
   private Map<String, SessionListener> sessionListeners = new HashMap<>();
   private PipeInitializer pipeInitializer;
+  private boolean nio = false;
+  private ExecutorService relayExecutor;
+  private DnsResolver dnsResolver;
+  private Connector connector;
+  private int connectTimeout = -1;
+  private int relayThreadNumber;
+  private ExecutionMode executionMode = ExecutionMode.PLATFORM;
+  private int eventLoopCount = Runtime.getRuntime().availableProcessors();
+  private int backlog = SocksProxyServer.DEFAULT_BACKLOG;
+  private int acceptorCount = 1;
+  private AdmissionController admissionController;
+  private long handshakeTimeout;
+  private long idleTimeout;
+  private long maxSessionLifetime;
+  private HashedWheelTimer sessionTimer;
+  private AccessControlList sourceAcl;
+  private AccessControlList destinationAcl;
+  private DomainAccessList domainAcl;
+  private RoutingTable routingTable;
+  private UpstreamPool upstreamPool;
+  private SessionEventDispatcher sessionEventDispatcher;
 
   /**
    * Creates a <code>SocksServerBuilder</code> with a <code>Class<? extends {@link
@@ -164,6 +200,14 @@ public class SocksServerBuilder {
     return this;
   }
 
+  /**
+   * Sets the manager which checks usernames and passwords. The server doesn't close it, a manager
+   * which holds resources, such as {@link sockslib.server.manager.JdbcBasedUserManager}, should be
+   * closed after the server shuts down.
+   *
+   * @param userManager Instance of {@link UserManager}.
+   * @return Instance of {@link SocksServerBuilder}.
+   */
   public SocksServerBuilder setUserManager(UserManager userManager) {
     this.userManager = checkNotNull(userManager, "Argument [userManager] may not be null");
     return this;
@@ -174,6 +218,31 @@ public class SocksServerBuilder {
     return this;
   }
 
+  /**
+   * Routes CONNECT commands with a routing table instead of the proxy set by
+   * {@link #setProxy(SocksProxy)}. NIO mode only supports direct and reject routes.
+   *
+   * @param routingTable Routing table.
+   * @return Instance of {@link SocksServerBuilder}.
+   */
+  public SocksServerBuilder setRoutingTable(RoutingTable routingTable) {
+    this.routingTable = routingTable;
+    return this;
+  }
+
+  /**
+   * Routes CONNECT commands through a pool of upstream proxies. To route only some destinations
+   * through the pool, use {@link sockslib.server.routing.Route#via(UpstreamPool)} in a routing
+   * table instead.
+   *
+   * @param upstreamPool Pool of upstream proxies.
+   * @return Instance of {@link SocksServerBuilder}.
+   */
+  public SocksServerBuilder setUpstreamPool(UpstreamPool upstreamPool) {
+    this.upstreamPool = upstreamPool;
+    return this;
+  }
+
   public SocksServerBuilder setTimeout(int timeout) {
     this.timeout = timeout;
     return this;
@@ -199,6 +268,215 @@ public class SocksServerBuilder {
     return this;
   }
 
+  /**
+   * Sets the executor which runs relay pipes. Both directions of a tunnel run in this executor
+   * and the handler thread is released as soon as the tunnel is established.
+   *
+   * @param relayExecutor The executor which runs relay pipes.
+   * @return Instance of {@link SocksServerBuilder}.
+   */
+  public SocksServerBuilder setRelayExecutor(ExecutorService relayExecutor) {
+    this.relayExecutor = checkNotNull(relayExecutor);
+    return this;
+  }
+
+  /**
+   * Sets the resolver which resolves the hosts in CONNECT commands. By default, each server uses a
+   * {@link sockslib.server.dns.CachingDnsResolver}.
+   *
+   * @param dnsResolver Instance of {@link DnsResolver}.
+   * @return Instance of {@link SocksServerBuilder}.
+   */
+  public SocksServerBuilder setDnsResolver(DnsResolver dnsResolver) {
+    this.dnsResolver = checkNotNull(dnsResolver);
+    return this;
+  }
+
+  /**
+   * Sets the connector which connects the destinations of CONNECT commands. By default, each
+   * server uses a {@link HappyEyeballsConnector}.
+   *
+   * @param connector Instance of {@link Connector}.
+   * @return Instance of {@link SocksServerBuilder}.
+   */
+  public SocksServerBuilder setConnector(Connector connector) {
+    this.connector = checkNotNull(connector);
+    return this;
+  }
+
+  /**
+   * Sets the deadline in milliseconds of connecting a destination, 0 means waiting until the
+   * operating system gives up. It's ignored if a connector is set, except in NIO mode where the
+   * event loops always use it.
+   *
+   * @param connectTimeout Deadline in milliseconds.
+   * @return Instance of {@link SocksServerBuilder}.
+   */
+  public SocksServerBuilder setConnectTimeout(int connectTimeout) {
+    checkArgument(connectTimeout >= 0, "Argument [connectTimeout] must not be negative");
+    this.connectTimeout = connectTimeout;
+    return this;
+  }
+
+  /**
+   * Sets the length of the queue of connections which are not accepted yet, default is
+   * {@link SocksProxyServer#DEFAULT_BACKLOG}.
+   *
+   * @param backlog Backlog of the listening socket.
+   * @return Instance of {@link SocksServerBuilder}.
+   */
+  public SocksServerBuilder setBacklog(int backlog) {
+    checkArgument(backlog > 0, "Argument [backlog] must be greater than 0");
+    this.backlog = backlog;
+    return this;
+  }
+
+  /**
+   * Sets the number of threads which accept connections, default is 1. With
+   * <code>SO_REUSEPORT</code> every acceptor gets its own listening socket on the same port.
+   *
+   * @param acceptorCount Number of acceptor threads.
+   * @return Instance of {@link SocksServerBuilder}.
+   * @see SocksProxyServer#setAcceptorCount(int)
+   */
+  public SocksServerBuilder setAcceptorCount(int acceptorCount) {
+    checkArgument(acceptorCount > 0, "Argument [acceptorCount] must be greater than 0");
+    this.acceptorCount = acceptorCount;
+    return this;
+  }
+
+  /**
+   * Sets admission control of accepted connections. NIO mode doesn't support it.
+   *
+   * @param admissionController Instance of {@link AdmissionController}.
+   * @return Instance of {@link SocksServerBuilder}.
+   */
+  public SocksServerBuilder setAdmissionController(AdmissionController admissionController) {
+    this.admissionController = admissionController;
+    return this;
+  }
+
+  /**
+   * Sets the deadline of the whole handshake, from accepting a connection to receiving its command.
+   * NIO mode doesn't support it.
+   *
+   * @param handshakeTimeout Deadline, 0 means no deadline.
+   * @param timeUnit         Unit of the deadline.
+   * @return Instance of {@link SocksServerBuilder}.
+   * @see BasicSocksProxyServer#setHandshakeTimeout(long)
+   */
+  public SocksServerBuilder setHandshakeTimeout(long handshakeTimeout, TimeUnit timeUnit) {
+    checkArgument(handshakeTimeout >= 0, "Argument [handshakeTimeout] must not be negative");
+    this.handshakeTimeout = timeUnit.toMillis(handshakeTimeout);
+    return this;
+  }
+
+  /**
+   * Sets how long a tunnel may transfer nothing before it's closed. NIO mode doesn't support it.
+   *
+   * @param idleTimeout Timeout, 0 means no limit.
+   * @param timeUnit    Unit of the timeout.
+   * @return Instance of {@link SocksServerBuilder}.
+   * @see BasicSocksProxyServer#setIdleTimeout(long)
+   */
+  public SocksServerBuilder setIdleTimeout(long idleTimeout, TimeUnit timeUnit) {
+    checkArgument(idleTimeout >= 0, "Argument [idleTimeout] must not be negative");
+    this.idleTimeout = timeUnit.toMillis(idleTimeout);
+    return this;
+  }
+
+  /**
+   * Sets the max time a session lives. NIO mode doesn't support it.
+   *
+   * @param maxSessionLifetime Lifetime, 0 means no limit.
+   * @param timeUnit           Unit of the lifetime.
+   * @return Instance of {@link SocksServerBuilder}.
+   * @see BasicSocksProxyServer#setMaxSessionLifetime(long)
+   */
+  public SocksServerBuilder setMaxSessionLifetime(long maxSessionLifetime, TimeUnit timeUnit) {
+    checkArgument(maxSessionLifetime >= 0, "Argument [maxSessionLifetime] must not be negative");
+    this.maxSessionLifetime = timeUnit.toMillis(maxSessionLifetime);
+    return this;
+  }
+
+  /**
+   * Sets the timer of session deadlines, so that several servers can share one timer thread.
+   *
+   * @param sessionTimer Instance of {@link HashedWheelTimer}.
+   * @return Instance of {@link SocksServerBuilder}.
+   */
+  public SocksServerBuilder setSessionTimer(HashedWheelTimer sessionTimer) {
+    this.sessionTimer = checkNotNull(sessionTimer);
+    return this;
+  }
+
+  /**
+   * Checks client addresses of new sessions and destination addresses of commands with access
+   * control lists. A session is closed if an address is denied.
+   *
+   * @param sourceAcl      List of client addresses, <code>null</code> means all are allowed.
+   * @param destinationAcl List of destination addresses, <code>null</code> means all are allowed.
+   * @return Instance of {@link SocksServerBuilder}.
+   * @see AccessControlListener
+   */
+  public SocksServerBuilder setAccessControl(AccessControlList sourceAcl,
+                                             AccessControlList destinationAcl) {
+    this.sourceAcl = sourceAcl;
+    this.destinationAcl = destinationAcl;
+    return this;
+  }
+
+  /**
+   * Checks destination domain names of commands and datagrams with a domain access list. A
+   * session is closed if the domain name of its command is denied, a datagram is dropped if its
+   * destination is denied.
+   *
+   * @param domainAcl List of domain names, <code>null</code> means all are allowed.
+   * @return Instance of {@link SocksServerBuilder}.
+   * @see AccessControlListener
+   */
+  public SocksServerBuilder setDomainAccessControl(DomainAccessList domainAcl) {
+    this.domainAcl = domainAcl;
+    return this;
+  }
+
+  /**
+   * Uses a shared relay executor which reuses idle threads and creates at most
+   * <code>relayThreadNumber</code> threads. Each tunnel takes two threads, a tunnel will be closed
+   * if no thread is available.
+   *
+   * @param relayThreadNumber Max number of relay threads.
+   * @return Instance of {@link SocksServerBuilder}.
+   */
+  public SocksServerBuilder setRelayThreadNumber(int relayThreadNumber) {
+    checkArgument(relayThreadNumber > 0, "Argument [relayThreadNumber] must be greater than 0");
+    this.relayThreadNumber = relayThreadNumber;
+    return this;
+  }
+
+  /**
+   * Sets which kind of threads the server uses. In {@link ExecutionMode#VIRTUAL} mode, every
+   * session, pipe direction and UDP relay server runs in its own virtual thread unless an executor
+   * is set explicitly. If the runtime doesn't support virtual threads, the server falls back to
+   * {@link ExecutionMode#PLATFORM}.
+   *
+   * @param executionMode Execution mode.
+   * @return Instance of {@link SocksServerBuilder}.
+   */
+  public SocksServerBuilder setExecutionMode(ExecutionMode executionMode) {
+    this.executionMode = checkNotNull(executionMode, "Argument [executionMode] may not be null");
+    return this;
+  }
+
+  /**
+   * Calls {@link #setExecutionMode(ExecutionMode)} with {@link ExecutionMode#VIRTUAL}.
+   *
+   * @return Instance of {@link SocksServerBuilder}.
+   */
+  public SocksServerBuilder useVirtualThreads() {
+    return setExecutionMode(ExecutionMode.VIRTUAL);
+  }
+
   public SocksServerBuilder setDaemon(boolean daemon) {
     this.daemon = daemon;
     return this;
@@ -215,6 +493,21 @@ public class SocksServerBuilder {
     return this;
   }
 
+  /**
+   * Calls close and exception listeners in the threads of a {@link SessionEventDispatcher}, so
+   * that slow listeners don't delay sessions. The session manager must be a
+   * {@link BasicSessionManager}.
+   *
+   * @param sessionEventDispatcher Instance of {@link SessionEventDispatcher}.
+   * @return Instance of {@link SocksServerBuilder}.
+   * @see BasicSessionManager#setEventDispatcher(SessionEventDispatcher)
+   */
+  public SocksServerBuilder setSessionEventDispatcher(
+      SessionEventDispatcher sessionEventDispatcher) {
+    this.sessionEventDispatcher = checkNotNull(sessionEventDispatcher);
+    return this;
+  }
+
   /**
    * Add a {@link SessionListener}.
    *
@@ -228,7 +521,8 @@ public class SocksServerBuilder {
   }
 
   /**
-   * Sets server in SSL mode.
+   * Sets server in SSL mode. In NIO mode, TLS is processed by {@link javax.net.ssl.SSLEngine} in
+   * the event loops.
    *
    * @param sslConfiguration instance of {@link SSLConfiguration}.
    * @return Instance of {@link SocksServerBuilder}.
@@ -238,6 +532,31 @@ public class SocksServerBuilder {
     return this;
   }
 
+  /**
+   * Sets server in NIO mode with one event loop per available processor.
+   *
+   * @return Instance of {@link SocksServerBuilder}.
+   * @see NioSocksProxyServer
+   */
+  public SocksServerBuilder useNio() {
+    this.nio = true;
+    return this;
+  }
+
+  /**
+   * Sets server in NIO mode with specified number of event loops.
+   *
+   * @param eventLoopCount Number of event loops.
+   * @return Instance of {@link SocksServerBuilder}.
+   * @see NioSocksProxyServer
+   */
+  public SocksServerBuilder useNio(int eventLoopCount) {
+    checkArgument(eventLoopCount > 0, "Argument [eventLoopCount] must be greater than 0");
+    this.nio = true;
+    this.eventLoopCount = eventLoopCount;
+    return this;
+  }
+
   /**
    * Builds a {@link SocksProxyServer} instance.
    *
@@ -245,7 +564,30 @@ public class SocksServerBuilder {
    */
   public SocksProxyServer build() {
     SocksProxyServer proxyServer = null;
-    if (sslConfiguration == null) {
+    RoutingTable routingTable = this.routingTable;
+    if (upstreamPool != null) {
+      if (proxy != null || routingTable != null) {
+        throw new IllegalStateException("Upstream pool can't be used with proxy or routing table");
+      }
+      routingTable = new RoutingTable(Collections.emptyList(), Route.via(upstreamPool));
+    }
+    if (nio) {
+      if (proxy != null || (routingTable != null && routingTable.hasProxyRoute())) {
+        throw new IllegalStateException("NIO mode doesn't support upstream proxy");
+      }
+      if (admissionController != null) {
+        throw new IllegalStateException("NIO mode doesn't support admission control");
+      }
+      if (handshakeTimeout > 0 || idleTimeout > 0 || maxSessionLifetime > 0) {
+        throw new IllegalStateException("NIO mode doesn't support session deadlines");
+      }
+      NioSocksProxyServer nioProxyServer = new NioSocksProxyServer(bindPort, eventLoopCount);
+      nioProxyServer.setSSLConfiguration(sslConfiguration);
+      if (connectTimeout >= 0) {
+        nioProxyServer.setConnectTimeout(connectTimeout);
+      }
+      proxyServer = nioProxyServer;
+    } else if (sslConfiguration == null) {
       proxyServer = new BasicSocksProxyServer(socksHandlerClass);
     } else {
       proxyServer = new SSLSocksProxyServer(socksHandlerClass, sslConfiguration);
@@ -254,7 +596,27 @@ public class SocksServerBuilder {
     proxyServer.setBindAddr(bindAddr);
     proxyServer.setBindPort(bindPort);
     proxyServer.setDaemon(daemon);
+    proxyServer.setBacklog(backlog);
+    proxyServer.setAcceptorCount(acceptorCount);
+    if (admissionController != null) {
+      ((BasicSocksProxyServer) proxyServer).setAdmissionController(admissionController);
+    }
+    if (!nio) {
+      BasicSocksProxyServer basicProxyServer = (BasicSocksProxyServer) proxyServer;
+      basicProxyServer.setHandshakeTimeout(handshakeTimeout);
+      basicProxyServer.setIdleTimeout(idleTimeout);
+      basicProxyServer.setMaxSessionLifetime(maxSessionLifetime);
+      if (sessionTimer != null) {
+        basicProxyServer.setSessionTimer(sessionTimer);
+      }
+    }
     proxyServer.setSessionManager(sessionManager);
+    if (sessionEventDispatcher != null) {
+      if (!(sessionManager instanceof BasicSessionManager)) {
+        throw new IllegalStateException("Session event dispatcher requires BasicSessionManager");
+      }
+      ((BasicSessionManager) sessionManager).setEventDispatcher(sessionEventDispatcher);
+    }
     proxyServer.setPipeInitializer(pipeInitializer);
     if (socksMethods == null) {
       socksMethods = new HashSet<>();
@@ -274,17 +636,63 @@ public class SocksServerBuilder {
       methods[i] = method;
       i++;
     }
+    boolean virtual = executionMode == ExecutionMode.VIRTUAL && isVirtualThreadAvailable();
     if (executorService != null) {
       proxyServer.setExecutorService(executorService);
+    } else if (virtual) {
+      proxyServer.setExecutorService(ExecutorUtil.newVirtualThreadPerTaskExecutor());
+    }
+    if (relayExecutor != null) {
+      proxyServer.setRelayExecutor(relayExecutor);
+    } else if (relayThreadNumber > 0) {
+      proxyServer.setRelayExecutor(
+          ExecutorUtil.newBoundedCachedThreadPool(relayThreadNumber, "relay-%d", daemon));
+    } else if (virtual && !nio) {
+      proxyServer.setRelayExecutor(ExecutorUtil.newVirtualThreadPerTaskExecutor());
+    }
+
+    if (dnsResolver != null) {
+      proxyServer.setDnsResolver(dnsResolver);
+    }
+    if (connector != null) {
+      proxyServer.setConnector(connector);
+    } else if (connectTimeout >= 0) {
+      HappyEyeballsConnector happyEyeballsConnector = new HappyEyeballsConnector();
+      happyEyeballsConnector.setConnectTimeout(connectTimeout);
+      proxyServer.setConnector(happyEyeballsConnector);
     }
 
     proxyServer.setSupportMethods(methods);
     if (proxy != null) {
       proxyServer.setProxy(proxy);
     }
+    if (routingTable != null) {
+      proxyServer.setRoutingTable(routingTable);
+    }
+    if (sourceAcl != null || destinationAcl != null || domainAcl != null) {
+      AccessControlListener accessControlListener =
+          new AccessControlListener(sourceAcl, destinationAcl);
+      accessControlListener.setDomainAcl(domainAcl);
+      accessControlListener.setDnsResolver(proxyServer.getDnsResolver());
+      accessControlListener.register(proxyServer.getSessionManager());
+    }
     for (String name : sessionListeners.keySet()) {
       proxyServer.getSessionManager().addSessionListener(name, sessionListeners.get(name));
     }
     return proxyServer;
   }
+
+  private boolean isVirtualThreadAvailable() {
+    if (ExecutorUtil.isVirtualThreadSupported()) {
+      try {
+        ExecutorUtil.newVirtualThreadPerTaskExecutor().shutdown();
+        return true;
+      } catch (UnsupportedOperationException e) {
+        logger.warn("Virtual threads are not available, fall back to platform threads", e);
+        return false;
+      }
+    }
+    logger.warn("Virtual threads require Java 21 or later, fall back to platform threads");
+    return false;
+  }
 }
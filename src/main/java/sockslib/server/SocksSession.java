@@ -18,6 +18,8 @@ import sockslib.common.Credentials;
 import sockslib.common.SocksException;
 import sockslib.common.net.MonitorSocketWrapper;
 import sockslib.common.net.NetworkMonitor;
+import sockslib.server.msg.FramedMessage;
+import sockslib.server.msg.HandshakeCodec;
 import sockslib.server.msg.ReadableMessage;
 import sockslib.server.msg.WritableMessage;
 import org.slf4j.Logger;
@@ -28,8 +30,8 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.Socket;
 import java.net.SocketAddress;
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * The class <code>SocksSession</code> represents
@@ -54,12 +56,21 @@ public class SocksSession implements Session {
 
   private SocketAddress clientAddress;
 
+  /**
+   * Attributes are shared by the handler, the relay threads and the threads which close sessions,
+   * such as the one of {@link SessionDeadlines}.
+   */
   private Map<Object, Object> attributes;
 
   private NetworkMonitor networkMonitor;
 
   private Credentials credentials;
 
+  /**
+   * Codec for handshake messages, created when the first handshake message is read.
+   */
+  private HandshakeCodec handshakeCodec;
+
   public SocksSession() {
   }
 
@@ -86,7 +97,7 @@ public class SocksSession implements Session {
     }
     clientAddress = socket.getRemoteSocketAddress();
 
-    attributes = new HashMap<Object, Object>();
+    attributes = new ConcurrentHashMap<Object, Object>();
   }
 
   @Override
@@ -111,6 +122,12 @@ public class SocksSession implements Session {
 
   @Override
   public int read(ReadableMessage message) throws SocksException, IOException {
+    if (message instanceof FramedMessage) {
+      if (handshakeCodec == null) {
+        handshakeCodec = new HandshakeCodec();
+      }
+      return handshakeCodec.read(inputStream, (FramedMessage) message);
+    }
     message.read(inputStream);
     return message.getLength();
   }
@@ -135,7 +152,9 @@ public class SocksSession implements Session {
     } catch (IOException e) {
       logger.error(e.getMessage(), e);
     } finally {
-      sessions.remove(id);
+      if (sessions != null) {
+        sessions.remove(id);
+      }
     }
   }
 
@@ -167,7 +186,11 @@ public class SocksSession implements Session {
 
   @Override
   public void setAttribute(Object key, Object value) {
-    attributes.put(key, value);
+    if (value == null) {
+      attributes.remove(key);
+    } else {
+      attributes.put(key, value);
+    }
   }
 
   @Override
@@ -15,8 +15,10 @@
 package sockslib.server;
 
 import sockslib.common.Socks5DatagramPacketHandler;
+import sockslib.common.SocksException;
 import sockslib.common.net.MonitorDatagramSocketWrapper;
 import sockslib.common.net.NetworkMonitor;
+import sockslib.server.io.HeapBufferPool;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -27,6 +29,11 @@ import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.SocketAddress;
 import java.net.SocketException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Predicate;
+
+import static com.google.common.base.Preconditions.checkNotNull;
 
 /**
  * The class <code>UDPRelayServer</code> represents a UDP relay server.
@@ -48,6 +55,14 @@ public class UDPRelayServer implements Runnable {
    */
   protected static final Logger logger = LoggerFactory.getLogger(UDPRelayServer.class);
 
+  /**
+   * Key of the session attribute which holds a <code>Predicate&lt;InetSocketAddress&gt;</code>.
+   * A listener can set it before UDP ASSOCIATE is done to filter destinations of datagrams.
+   *
+   * @see Socks5DatagramPacketHandler#setDestinationFilter(Predicate)
+   */
+  public static final String DESTINATION_FILTER_ATTRIBUTE = "udp.destinationFilter";
+
   /**
    * SOCKS5 datagram packet handle.
    */
@@ -61,7 +76,7 @@ public class UDPRelayServer implements Runnable {
   /**
    * Buffer size.
    */
-  private int bufferSize = 1024 * 1024 * 5;
+  private int bufferSize = 64 * 1024;
 
   /**
    * Running thread.
@@ -85,6 +100,16 @@ public class UDPRelayServer implements Runnable {
 
   private NetworkMonitor networkMonitor;
 
+  /**
+   * Pool which the buffer is borrowed from.
+   */
+  private HeapBufferPool bufferPool = HeapBufferPool.getDefault();
+
+  /**
+   * Executor used to run the server. If it's <code>null</code>, a new thread will be created.
+   */
+  private Executor executor;
+
   /**
    * Constructs a {@link UDPRelayServer} instance.
    */
@@ -111,6 +136,20 @@ public class UDPRelayServer implements Runnable {
     }
   }
 
+  /**
+   * Uses the destination filter which is set in the attributes of a session.
+   *
+   * @param session Session of the UDP ASSOCIATE command.
+   * @see #DESTINATION_FILTER_ATTRIBUTE
+   */
+  @SuppressWarnings("unchecked")
+  public void useDestinationFilterOf(Session session) {
+    Object filter = session.getAttribute(DESTINATION_FILTER_ATTRIBUTE);
+    if (filter instanceof Predicate) {
+      datagramPacketHandler.setDestinationFilter((Predicate<InetSocketAddress>) filter);
+    }
+  }
+
   /**
    * Starts a UDP relay server.
    *
@@ -124,8 +163,17 @@ public class UDPRelayServer implements Runnable {
       server = new MonitorDatagramSocketWrapper(server, networkMonitor);
     }
     SocketAddress socketAddress = server.getLocalSocketAddress();
-    thread = new Thread(this);
-    thread.start();
+    if (executor == null) {
+      thread = new Thread(this);
+      thread.start();
+    } else {
+      try {
+        executor.execute(this);
+      } catch (RejectedExecutionException e) {
+        stop();
+        throw new SocketException("UDP relay server is rejected by executor");
+      }
+    }
     return socketAddress;
   }
 
@@ -135,7 +183,9 @@ public class UDPRelayServer implements Runnable {
   public void stop() {
     if (running) {
       running = false;
-      thread.interrupt();
+      if (thread != null) {
+        thread.interrupt();
+      }
       if (!server.isClosed()) {
         server.close();
       }
@@ -144,13 +194,20 @@ public class UDPRelayServer implements Runnable {
 
   @Override
   public void run() {
+    // A datagram can't be read partially, so the buffer never grows.
+    byte[] buffer = bufferPool.acquire(bufferSize);
     try {
-      byte[] buffer = new byte[bufferSize];
       while (running) {
         DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
         server.receive(packet);
         if (isFromClient(packet)) {
-          datagramPacketHandler.decapsulate(packet);
+          try {
+            datagramPacketHandler.decapsulate(packet);
+          } catch (SocksException e) {
+            // Drops the datagram only.
+            logger.debug("Drop datagram: {}", e.getMessage());
+            continue;
+          }
           server.send(packet);
         } else {
           packet =
@@ -165,6 +222,8 @@ public class UDPRelayServer implements Runnable {
       } else {
         logger.error(e.getMessage(), e);
       }
+    } finally {
+      bufferPool.release(buffer);
     }
   }
 
@@ -285,6 +344,22 @@ public class UDPRelayServer implements Runnable {
     return running;
   }
 
+  public Executor getExecutor() {
+    return executor;
+  }
+
+  public void setExecutor(Executor executor) {
+    this.executor = executor;
+  }
+
+  public HeapBufferPool getBufferPool() {
+    return bufferPool;
+  }
+
+  public void setBufferPool(HeapBufferPool bufferPool) {
+    this.bufferPool = checkNotNull(bufferPool, "Argument [bufferPool] may not be null");
+  }
+
   public NetworkMonitor getNetworkMonitor() {
     return networkMonitor;
   }
@@ -0,0 +1,159 @@
+/*
+ * Copyright 2015-2025 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package sockslib.server.acl;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * The class <code>AccessControlList</code> is a compiled list of IPv4 and IPv6 CIDR rules. The
+ * rule of the longest matching prefix decides whether an address is allowed, an address which
+ * matches no rule gets the default action.
+ * <p>
+ * A list is immutable. To change the rules, load a new list and swap it in
+ * {@link AccessControlListener}.
+ * </p>
+ * <p>
+ * In a rule file, each line is a rule. A rule is a CIDR block or an address which is optionally
+ * prefixed by <code>allow</code> or <code>deny</code>. A rule without an action gets the opposite
+ * of the default action, so that a plain list of addresses is a whitelist if the default action
+ * is {@link Action#DENY} and a blacklist if it's {@link Action#ALLOW}. Empty lines and lines
+ * starting with <code>#</code> are ignored.
+ * </p>
+ * <pre>
+ * # Deny all private networks except one host.
+ * deny 10.0.0.0/8
+ * deny fc00::/7
+ * allow 10.1.2.3
+ * </pre>
+ *
+ * @version 1.0
+ * @see AccessControlListener
+ */
+public class AccessControlList {
+
+  /**
+   * Action of a rule.
+   */
+  public enum Action {
+    ALLOW, DENY
+  }
+
+  private final CIDRTrie<Action> rules;
+
+  private final Action defaultAction;
+
+  /**
+   * Constructs an instance of {@link AccessControlList}. The trie must not be modified any more.
+   *
+   * @param rules         Rules.
+   * @param defaultAction Action of addresses which match no rule.
+   */
+  public AccessControlList(CIDRTrie<Action> rules, Action defaultAction) {
+    this.rules = checkNotNull(rules, "Argument [rules] may not be null");
+    this.defaultAction = checkNotNull(defaultAction, "Argument [defaultAction] may not be null");
+  }
+
+  /**
+   * Parses rules from a reader.
+   *
+   * @param reader        Reader of rules, it's not closed by this method.
+   * @param defaultAction Action of addresses which match no rule.
+   * @return Instance of {@link AccessControlList}.
+   * @throws IOException              If an I/O error occurs.
+   * @throws IllegalArgumentException If a rule is invalid.
+   */
+  public static AccessControlList parse(Reader reader, Action defaultAction) throws IOException {
+    checkNotNull(defaultAction, "Argument [defaultAction] may not be null");
+    CIDRTrie<Action> rules = new CIDRTrie<>();
+    RuleReader.read(reader, defaultAction, rules::put);
+    return new AccessControlList(rules, defaultAction);
+  }
+
+  /**
+   * Loads rules from a UTF-8 file.
+   *
+   * @param filePath      Path of the rule file.
+   * @param defaultAction Action of addresses which match no rule.
+   * @return Instance of {@link AccessControlList}.
+   * @throws IOException              If the file can't be read.
+   * @throws IllegalArgumentException If a rule is invalid.
+   */
+  public static AccessControlList load(String filePath, Action defaultAction)
+      throws IOException {
+    checkNotNull(filePath, "Argument [filePath] may not be null");
+    try (Reader reader = Files.newBufferedReader(Paths.get(filePath), StandardCharsets.UTF_8)) {
+      return parse(reader, defaultAction);
+    }
+  }
+
+  /**
+   * Returns the action of an address.
+   *
+   * @param address Address.
+   * @return Action of the longest matching rule, or the default action.
+   */
+  public Action check(InetAddress address) {
+    Action action = rules.lookup(address);
+    return action == null ? defaultAction : action;
+  }
+
+  /**
+   * Returns <code>true</code> if an address is allowed.
+   *
+   * @param address Address.
+   * @return <code>true</code> if the address is allowed.
+   */
+  public boolean isAllowed(InetAddress address) {
+    return check(address) == Action.ALLOW;
+  }
+
+  /**
+   * Returns <code>true</code> if the address of a socket address is allowed. An unresolved
+   * address gets the default action.
+   *
+   * @param address Socket address.
+   * @return <code>true</code> if the address is allowed.
+   */
+  public boolean isAllowed(SocketAddress address) {
+    if (address instanceof InetSocketAddress
+        && ((InetSocketAddress) address).getAddress() != null) {
+      return isAllowed(((InetSocketAddress) address).getAddress());
+    }
+    return defaultAction == Action.ALLOW;
+  }
+
+  public Action getDefaultAction() {
+    return defaultAction;
+  }
+
+  /**
+   * Returns the number of rules.
+   *
+   * @return Number of rules.
+   */
+  public int size() {
+    return rules.size();
+  }
+
+}
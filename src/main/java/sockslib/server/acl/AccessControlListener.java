@@ -0,0 +1,246 @@
+/*
+ * Copyright 2015-2025 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package sockslib.server.acl;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import sockslib.common.AddressType;
+import sockslib.common.SocksCommand;
+import sockslib.server.Session;
+import sockslib.server.SessionManager;
+import sockslib.server.UDPRelayServer;
+import sockslib.server.dns.DnsResolver;
+import sockslib.server.listener.CloseSessionException;
+import sockslib.server.listener.CommandListener;
+import sockslib.server.listener.SessionCreateListener;
+import sockslib.server.msg.CommandMessage;
+import sockslib.server.msg.ServerReply;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+
+/**
+ * The class <code>AccessControlListener</code> checks the client address of a new session and
+ * the destination of a command with {@link AccessControlList}s and a {@link DomainAccessList},
+ * the session is closed if the client or the destination is denied.
+ * <p>
+ * A destination which is a domain name is checked by the domain list first. Then its address is
+ * checked by the destination list, the handler resolves the domain name before it runs command
+ * listeners unless an upstream proxy will resolve it. A domain name is denied if any of its
+ * addresses is denied, because the handler may connect any of them. A denied command gets the reply
+ * {@link ServerReply#CONNECTION_NOT_ALLOWED_BY_RULESET} before the session is closed.
+ * </p>
+ * <p>
+ * For UDP ASSOCIATE, the same checks are applied to the destination of every datagram. Domain
+ * names of datagrams are resolved by the {@link DnsResolver} in the thread of the UDP relay
+ * server, a datagram is dropped if its destination can't be resolved.
+ * </p>
+ * <pre>
+ * AccessControlList clients = AccessControlList.load("clients.acl", Action.DENY);
+ * AccessControlList destinations = AccessControlList.load("destinations.acl", Action.ALLOW);
+ * DomainAccessList domains = DomainAccessList.load("domains.acl", Action.ALLOW);
+ * SocksServerBuilder.newSocks5ServerBuilder().setAccessControl(clients, destinations)
+ *     .setDomainAccessControl(domains);
+ * </pre>
+ *
+ * @version 1.0
+ */
+public class AccessControlListener implements SessionCreateListener, CommandListener {
+
+  /**
+   * Name of the listener in {@link SessionManager}.
+   */
+  public static final String NAME = "access-control";
+
+  private static final Logger logger = LoggerFactory.getLogger(AccessControlListener.class);
+
+  private volatile AccessControlList sourceAcl;
+
+  private volatile AccessControlList destinationAcl;
+
+  private volatile DomainAccessList domainAcl;
+
+  private volatile DnsResolver dnsResolver;
+
+  private final LongAdder deniedSourceCount = new LongAdder();
+
+  private final LongAdder deniedDestinationCount = new LongAdder();
+
+  /**
+   * Constructs an instance of {@link AccessControlListener}.
+   *
+   * @param sourceAcl      List of client addresses, <code>null</code> means all are allowed.
+   * @param destinationAcl List of destination addresses, <code>null</code> means all are allowed.
+   */
+  public AccessControlListener(AccessControlList sourceAcl, AccessControlList destinationAcl) {
+    this.sourceAcl = sourceAcl;
+    this.destinationAcl = destinationAcl;
+  }
+
+  /**
+   * Registers this listener to a session manager.
+   *
+   * @param sessionManager Session manager.
+   */
+  public void register(SessionManager sessionManager) {
+    sessionManager.onSessionCreate(NAME, this);
+    sessionManager.onCommand(NAME, this);
+  }
+
+  @Override
+  public void onCreate(Session session) throws CloseSessionException {
+    AccessControlList acl = sourceAcl;
+    if (acl != null && !acl.isAllowed(session.getClientAddress())) {
+      deniedSourceCount.increment();
+      throw new CloseSessionException(
+          "Client address " + session.getClientAddress() + " is not allowed");
+    }
+  }
+
+  @Override
+  public void onCommand(Session session, CommandMessage message) throws CloseSessionException {
+    if (message.getCommand() == SocksCommand.UDP_ASSOCIATE) {
+      if (destinationAcl != null || domainAcl != null) {
+        session.setAttribute(UDPRelayServer.DESTINATION_FILTER_ATTRIBUTE,
+            (Predicate<InetSocketAddress>) this::isDatagramAllowed);
+      }
+      return;
+    }
+    DomainAccessList domains = domainAcl;
+    if (domains != null && message.getAddressType() == AddressType.DOMAIN_NAME
+        && !domains.isAllowed(message.getHost())) {
+      deniedDestinationCount.increment();
+      throw new CloseSessionException("Destination " + message.getSocketAddress()
+          + " is not allowed", ServerReply.CONNECTION_NOT_ALLOWED_BY_RULESET);
+    }
+    AccessControlList acl = destinationAcl;
+    if (acl == null) {
+      return;
+    }
+    // The handler resolves a domain name before listeners run, unless an upstream proxy will
+    // resolve it. It may connect any address of the name, so all of them are checked.
+    InetAddress[] addresses = message.getResolvedAddresses();
+    if (addresses == null) {
+      InetAddress address = message.getInetAddress();
+      addresses = address == null ? new InetAddress[0] : new InetAddress[] {address};
+    }
+    for (InetAddress address : addresses) {
+      if (!acl.isAllowed(address)) {
+        deniedDestinationCount.increment();
+        throw new CloseSessionException(
+            "Destination " + message.getSocketAddress() + " [" + address.getHostAddress()
+                + "] is not allowed", ServerReply.CONNECTION_NOT_ALLOWED_BY_RULESET);
+      }
+    }
+  }
+
+  private boolean isDatagramAllowed(InetSocketAddress destination) {
+    boolean allowed = true;
+    AccessControlList acl = destinationAcl;
+    if (destination.isUnresolved()) {
+      DomainAccessList domains = domainAcl;
+      allowed = domains == null || domains.isAllowed(destination.getHostString());
+      if (allowed && acl != null) {
+        allowed = isResolvedAllowed(acl, destination.getHostString());
+      }
+    } else if (acl != null) {
+      allowed = acl.isAllowed(destination.getAddress());
+    }
+    if (!allowed) {
+      deniedDestinationCount.increment();
+    }
+    return allowed;
+  }
+
+  /**
+   * Resolves a domain name of a datagram, it's called in the thread of the UDP relay server.
+   */
+  private boolean isResolvedAllowed(AccessControlList acl, String host) {
+    DnsResolver resolver = dnsResolver;
+    InetAddress[] addresses;
+    try {
+      addresses = resolver != null ? resolver.resolveAll(host) : InetAddress.getAllByName(host);
+    } catch (UnknownHostException e) {
+      logger.debug("Can't resolve destination {} of a datagram", host);
+      return false;
+    }
+    for (InetAddress address : addresses) {
+      if (!acl.isAllowed(address)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  public AccessControlList getSourceAcl() {
+    return sourceAcl;
+  }
+
+  /**
+   * Replaces the list of client addresses, it takes effect for new sessions.
+   *
+   * @param sourceAcl List of client addresses, <code>null</code> means all are allowed.
+   */
+  public void setSourceAcl(AccessControlList sourceAcl) {
+    this.sourceAcl = sourceAcl;
+  }
+
+  public AccessControlList getDestinationAcl() {
+    return destinationAcl;
+  }
+
+  /**
+   * Replaces the list of destination addresses, it takes effect for new commands.
+   *
+   * @param destinationAcl List of destination addresses, <code>null</code> means all are allowed.
+   */
+  public void setDestinationAcl(AccessControlList destinationAcl) {
+    this.destinationAcl = destinationAcl;
+  }
+
+  public DomainAccessList getDomainAcl() {
+    return domainAcl;
+  }
+
+  /**
+   * Replaces the list of destination domain names, it takes effect for new commands and
+   * datagrams.
+   *
+   * @param domainAcl List of domain names, <code>null</code> means all are allowed.
+   */
+  public void setDomainAcl(DomainAccessList domainAcl) {
+    this.domainAcl = domainAcl;
+  }
+
+  public DnsResolver getDnsResolver() {
+    return dnsResolver;
+  }
+
+  public void setDnsResolver(DnsResolver dnsResolver) {
+    this.dnsResolver = dnsResolver;
+  }
+
+  public long getDeniedSourceCount() {
+    return deniedSourceCount.sum();
+  }
+
+  public long getDeniedDestinationCount() {
+    return deniedDestinationCount.sum();
+  }
+
+}
@@ -0,0 +1,282 @@
+/*
+ * Copyright 2015-2025 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package sockslib.server.acl;
+
+import com.google.common.net.InetAddresses;
+
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * The class <code>CIDRTrie</code> maps IPv4 and IPv6 CIDR blocks to values and finds the value of
+ * the longest prefix which matches an address.
+ * <p>
+ * It's an uncompressed binary trie, one node per prefix bit, whose nodes are stored in flat
+ * arrays instead of objects. A node takes two <code>int</code> slots and one reference slot,
+ * about 12 to 16 bytes. Prefixes share the nodes of their common leading bits, so <i>n</i>
+ * prefixes take at most <i>n</i> &times; prefix length nodes, e.g. 32 per IPv4 prefix and 128 per
+ * IPv6 prefix when no bits are shared. {@link #getNodeCount()} reports the actual number. IPv4 and
+ * IPv6 prefixes are kept in two separate trees.
+ * </p>
+ * <p>
+ * A lookup walks at most 32 or 128 nodes. {@link #lookup(byte[])} and {@link #lookup(int)} don't
+ * allocate, neither does {@link #lookup(InetAddress)} for IPv4 addresses. IPv6 addresses have no
+ * accessor which doesn't copy their 16 bytes, so looking them up by {@link InetAddress} allocates
+ * one array.
+ * </p>
+ * <p>
+ * The trie is not thread safe while it's being built. Once it's built and safely published, any
+ * number of threads may look it up, which is how {@link AccessControlList} uses it.
+ * </p>
+ *
+ * @param <V> Type of values.
+ * @version 1.0
+ */
+public class CIDRTrie<V> {
+
+  private static final int IPV4_ROOT = 0;
+
+  private static final int IPV6_ROOT = 1;
+
+  /**
+   * Child index which means no child, a root is never a child.
+   */
+  private static final int NO_CHILD = 0;
+
+  private static final int INITIAL_CAPACITY = 64;
+
+  /**
+   * Children of node <code>n</code> are at <code>2n</code> (bit 0) and <code>2n + 1</code>
+   * (bit 1).
+   */
+  private int[] children;
+
+  private Object[] values;
+
+  private int nodeCount = 2;
+
+  private int size = 0;
+
+  public CIDRTrie() {
+    children = new int[INITIAL_CAPACITY * 2];
+    values = new Object[INITIAL_CAPACITY];
+  }
+
+  /**
+   * Maps a CIDR block to a value. An existing value of the same block is replaced.
+   *
+   * @param address      Address of the block, 4 bytes for IPv4 or 16 bytes for IPv6. Bits after
+   *                     the prefix are ignored.
+   * @param prefixLength Length of the prefix in bits.
+   * @param value        Value.
+   */
+  public void put(byte[] address, int prefixLength, V value) {
+    put(address, prefixLength, value, false);
+  }
+
+  /**
+   * Maps a CIDR block to a value unless the block already has a value.
+   *
+   * @param cidr  CIDR block, see {@link #put(String, Object)}.
+   * @param value Value.
+   * @return The existing value of the block, or <code>null</code> if the value is added.
+   * @throws IllegalArgumentException If <code>cidr</code> is not a valid CIDR block.
+   */
+  public V putIfAbsent(String cidr, V value) {
+    return put(cidr, value, true);
+  }
+
+  @SuppressWarnings("unchecked")
+  private V put(byte[] address, int prefixLength, V value, boolean onlyIfAbsent) {
+    checkNotNull(address, "Argument [address] may not be null");
+    checkNotNull(value, "Argument [value] may not be null");
+    checkArgument(address.length == 4 || address.length == 16,
+        "Argument [address] must be 4 or 16 bytes");
+    checkArgument(prefixLength >= 0 && prefixLength <= address.length * 8,
+        "Argument [prefixLength] must be between 0 and %s", address.length * 8);
+    int node = address.length == 4 ? IPV4_ROOT : IPV6_ROOT;
+    for (int i = 0; i < prefixLength; i++) {
+      int slot = 2 * node + bit(address, i);
+      int child = children[slot];
+      if (child == NO_CHILD) {
+        child = newNode();
+        children[slot] = child;
+      }
+      node = child;
+    }
+    Object existing = values[node];
+    if (existing == null) {
+      size++;
+    } else if (onlyIfAbsent) {
+      return (V) existing;
+    }
+    values[node] = value;
+    return (V) existing;
+  }
+
+  /**
+   * Maps a CIDR block to a value.
+   *
+   * @param cidr  CIDR block such as <code>"10.0.0.0/8"</code> or <code>"2001:db8::/32"</code>, an
+   *              address without prefix length means a single host.
+   * @param value Value.
+   * @throws IllegalArgumentException If <code>cidr</code> is not a valid CIDR block.
+   */
+  public void put(String cidr, V value) {
+    put(cidr, value, false);
+  }
+
+  private V put(String cidr, V value, boolean onlyIfAbsent) {
+    checkNotNull(cidr, "Argument [cidr] may not be null");
+    int slash = cidr.indexOf('/');
+    String host = slash < 0 ? cidr : cidr.substring(0, slash);
+    byte[] address = InetAddresses.forString(host.trim()).getAddress();
+    int prefixLength = address.length * 8;
+    if (slash >= 0) {
+      try {
+        prefixLength = Integer.parseInt(cidr.substring(slash + 1).trim());
+      } catch (NumberFormatException e) {
+        throw new IllegalArgumentException("Invalid CIDR block: " + cidr);
+      }
+    }
+    return put(address, prefixLength, value, onlyIfAbsent);
+  }
+
+  /**
+   * Returns the value of the longest prefix which matches an address.
+   *
+   * @param address Address, 4 bytes for IPv4 or 16 bytes for IPv6.
+   * @return Value, or <code>null</code> if no prefix matches.
+   */
+  @SuppressWarnings("unchecked")
+  public V lookup(byte[] address) {
+    checkArgument(address.length == 4 || address.length == 16,
+        "Argument [address] must be 4 or 16 bytes");
+    int node = address.length == 4 ? IPV4_ROOT : IPV6_ROOT;
+    Object match = values[node];
+    int bits = address.length * 8;
+    for (int i = 0; i < bits; i++) {
+      node = children[2 * node + bit(address, i)];
+      if (node == NO_CHILD) {
+        break;
+      }
+      if (values[node] != null) {
+        match = values[node];
+      }
+    }
+    return (V) match;
+  }
+
+  /**
+   * Returns the value of the longest prefix which matches an IPv4 address.
+   *
+   * @param address IPv4 address as an int, the first octet is the most significant byte.
+   * @return Value, or <code>null</code> if no prefix matches.
+   */
+  @SuppressWarnings("unchecked")
+  public V lookup(int address) {
+    int node = IPV4_ROOT;
+    Object match = values[node];
+    for (int i = 0; i < 32; i++) {
+      node = children[2 * node + ((address >>> (31 - i)) & 1)];
+      if (node == NO_CHILD) {
+        break;
+      }
+      if (values[node] != null) {
+        match = values[node];
+      }
+    }
+    return (V) match;
+  }
+
+  /**
+   * Returns the value of the longest prefix which matches an address. IPv4 addresses are looked
+   * up without copying their bytes, the bytes of IPv6 addresses are copied by
+   * {@link InetAddress#getAddress()}.
+   *
+   * @param address Address.
+   * @return Value, or <code>null</code> if no prefix matches.
+   */
+  public V lookup(InetAddress address) {
+    if (address instanceof Inet4Address) {
+      // Hash code of an IPv4 address is the address itself.
+      return lookup(address.hashCode());
+    }
+    return lookup(address.getAddress());
+  }
+
+  /**
+   * Passes the values of all prefixes which match an address to a consumer, from the shortest
+   * prefix to the longest one.
+   *
+   * @param address  Address.
+   * @param consumer Consumer of values.
+   */
+  @SuppressWarnings("unchecked")
+  public void forEachMatch(InetAddress address, Consumer<? super V> consumer) {
+    byte[] bytes = address.getAddress();
+    int node = bytes.length == 4 ? IPV4_ROOT : IPV6_ROOT;
+    if (values[node] != null) {
+      consumer.accept((V) values[node]);
+    }
+    int bits = bytes.length * 8;
+    for (int i = 0; i < bits; i++) {
+      node = children[2 * node + bit(bytes, i)];
+      if (node == NO_CHILD) {
+        break;
+      }
+      if (values[node] != null) {
+        consumer.accept((V) values[node]);
+      }
+    }
+  }
+
+  /**
+   * Returns the number of CIDR blocks.
+   *
+   * @return Number of CIDR blocks.
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Returns the number of nodes, it's useful to estimate the memory used by the trie.
+   *
+   * @return Number of nodes.
+   */
+  public int getNodeCount() {
+    return nodeCount;
+  }
+
+  private int newNode() {
+    if (nodeCount == values.length) {
+      int capacity = values.length * 2;
+      children = Arrays.copyOf(children, capacity * 2);
+      values = Arrays.copyOf(values, capacity);
+    }
+    return nodeCount++;
+  }
+
+  private static int bit(byte[] address, int index) {
+    return (address[index >>> 3] >>> (7 - (index & 7))) & 1;
+  }
+
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright 2015-2025 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package sockslib.server.acl;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import sockslib.server.acl.AccessControlList.Action;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * The class <code>DomainAccessList</code> is a compiled list of domain name rules, the most
+ * specific matching rule decides whether a host is allowed. Patterns are described in
+ * {@link DomainTrie} and rule files have the same format as {@link AccessControlList}:
+ * <pre>
+ * deny .example.com
+ * allow api.example.com
+ * deny *.ads.example.net
+ * </pre>
+ * <p>
+ * Decisions are cached per host in a bounded LRU cache, so a popular host is matched once. A list
+ * is immutable, to change the rules load a new list and swap it in
+ * {@link AccessControlListener}, the cache is dropped together with the old list.
+ * </p>
+ *
+ * @version 1.0
+ */
+public class DomainAccessList {
+
+  /**
+   * Default max number of cached decisions.
+   */
+  public static final int DEFAULT_CACHE_SIZE = 10000;
+
+  private final DomainTrie<Action> rules;
+
+  private final Action defaultAction;
+
+  private final Cache<String, Action> decisions;
+
+  /**
+   * Constructs an instance of {@link DomainAccessList}. The trie must not be modified any more.
+   *
+   * @param rules         Rules.
+   * @param defaultAction Action of hosts which match no rule.
+   */
+  public DomainAccessList(DomainTrie<Action> rules, Action defaultAction) {
+    this(rules, defaultAction, DEFAULT_CACHE_SIZE);
+  }
+
+  /**
+   * Constructs an instance of {@link DomainAccessList}. The trie must not be modified any more.
+   *
+   * @param rules         Rules.
+   * @param defaultAction Action of hosts which match no rule.
+   * @param cacheSize     Max number of cached decisions, <code>0</code> disables the cache.
+   */
+  public DomainAccessList(DomainTrie<Action> rules, Action defaultAction, int cacheSize) {
+    checkArgument(cacheSize >= 0, "Argument [cacheSize] must not be negative");
+    this.rules = checkNotNull(rules, "Argument [rules] may not be null");
+    this.defaultAction = checkNotNull(defaultAction, "Argument [defaultAction] may not be null");
+    this.decisions = CacheBuilder.newBuilder().maximumSize(cacheSize).recordStats().build();
+  }
+
+  /**
+   * Parses rules from a reader.
+   *
+   * @param reader        Reader of rules, it's not closed by this method.
+   * @param defaultAction Action of hosts which match no rule.
+   * @return Instance of {@link DomainAccessList}.
+   * @throws IOException              If an I/O error occurs.
+   * @throws IllegalArgumentException If a rule is invalid.
+   */
+  public static DomainAccessList parse(Reader reader, Action defaultAction) throws IOException {
+    checkNotNull(defaultAction, "Argument [defaultAction] may not be null");
+    DomainTrie<Action> rules = new DomainTrie<>();
+    RuleReader.read(reader, defaultAction, rules::put);
+    return new DomainAccessList(rules, defaultAction);
+  }
+
+  /**
+   * Loads rules from a UTF-8 file.
+   *
+   * @param filePath      Path of the rule file.
+   * @param defaultAction Action of hosts which match no rule.
+   * @return Instance of {@link DomainAccessList}.
+   * @throws IOException              If the file can't be read.
+   * @throws IllegalArgumentException If a rule is invalid.
+   */
+  public static DomainAccessList load(String filePath, Action defaultAction) throws IOException {
+    checkNotNull(filePath, "Argument [filePath] may not be null");
+    try (Reader reader = Files.newBufferedReader(Paths.get(filePath), StandardCharsets.UTF_8)) {
+      return parse(reader, defaultAction);
+    }
+  }
+
+  /**
+   * Returns the action of a host.
+   *
+   * @param host Domain name.
+   * @return Action of the most specific matching rule, or the default action.
+   */
+  public Action check(String host) {
+    Action action = decisions.getIfPresent(host);
+    if (action == null) {
+      action = rules.lookup(host);
+      if (action == null) {
+        action = defaultAction;
+      }
+      decisions.put(host, action);
+    }
+    return action;
+  }
+
+  public boolean isAllowed(String host) {
+    return check(host) == Action.ALLOW;
+  }
+
+  public Action getDefaultAction() {
+    return defaultAction;
+  }
+
+  /**
+   * Returns the number of rules.
+   *
+   * @return Number of rules.
+   */
+  public int size() {
+    return rules.size();
+  }
+
+  /**
+   * Returns statistics of the decision cache.
+   *
+   * @return Statistics of the decision cache.
+   */
+  public CacheStats getCacheStats() {
+    return decisions.stats();
+  }
+
+}
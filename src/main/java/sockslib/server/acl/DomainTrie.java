@@ -0,0 +1,242 @@
+/*
+ * Copyright 2015-2025 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package sockslib.server.acl;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * The class <code>DomainTrie</code> maps domain name patterns to values.
+ * <p>
+ * Patterns are:
+ * </p>
+ * <ul>
+ * <li><code>example.com</code> matches <code>example.com</code> only</li>
+ * <li><code>*.example.com</code> matches subdomains of <code>example.com</code> only</li>
+ * <li><code>.example.com</code> matches <code>example.com</code> and its subdomains</li>
+ * </ul>
+ * <p>
+ * Exact patterns are kept in a hash map, the others in a trie of reversed labels, so that a
+ * lookup costs one hash lookup plus one step per label of the host. An exact match wins,
+ * otherwise the longest matching suffix wins. Names are case insensitive and a trailing dot is
+ * ignored.
+ * </p>
+ * <p>
+ * The trie is not thread safe while it's being built. Once it's built and safely published, any
+ * number of threads may look it up.
+ * </p>
+ *
+ * @param <V> Type of values.
+ * @version 1.0
+ */
+public class DomainTrie<V> {
+
+  private final Map<String, V> exactValues = new HashMap<>();
+
+  private final Node<V> root = new Node<>();
+
+  private int size = 0;
+
+  /**
+   * Maps a pattern to a value. An existing value of the same pattern is replaced.
+   *
+   * @param pattern Pattern.
+   * @param value   Value.
+   * @throws IllegalArgumentException If the pattern is invalid.
+   */
+  public void put(String pattern, V value) {
+    put(pattern, value, false);
+  }
+
+  /**
+   * Maps a pattern to a value unless the pattern already has a value.
+   *
+   * @param pattern Pattern.
+   * @param value   Value.
+   * @return The existing value of the pattern, or <code>null</code> if the value is added.
+   * @throws IllegalArgumentException If the pattern is invalid.
+   */
+  public V putIfAbsent(String pattern, V value) {
+    return put(pattern, value, true);
+  }
+
+  private V put(String pattern, V value, boolean onlyIfAbsent) {
+    checkNotNull(pattern, "Argument [pattern] may not be null");
+    checkNotNull(value, "Argument [value] may not be null");
+    String name = normalize(pattern);
+    boolean wildcard = name.startsWith("*.");
+    boolean suffix = !wildcard && name.startsWith(".");
+    if (wildcard) {
+      name = name.substring(2);
+    } else if (suffix) {
+      name = name.substring(1);
+    }
+    checkArgument(!name.isEmpty() && !name.startsWith(".") && !name.contains("..")
+        && name.indexOf('*') < 0, "Invalid domain pattern: %s", pattern);
+    if (!wildcard && !suffix) {
+      V existing = onlyIfAbsent ? exactValues.putIfAbsent(name, value) : exactValues.put(name,
+          value);
+      if (existing == null) {
+        size++;
+      }
+      return existing;
+    }
+    Node<V> node = root;
+    int end = name.length();
+    while (end > 0) {
+      int dot = name.lastIndexOf('.', end - 1);
+      node = node.getOrCreateChild(name.substring(dot + 1, end));
+      end = dot < 0 ? 0 : dot;
+    }
+    V existing = wildcard ? node.subdomainValue : node.suffixValue;
+    if (existing == null) {
+      size++;
+    } else if (onlyIfAbsent) {
+      return existing;
+    }
+    if (wildcard) {
+      node.subdomainValue = value;
+    } else {
+      node.suffixValue = value;
+    }
+    return existing;
+  }
+
+  /**
+   * Returns the value of the most specific pattern which matches a host.
+   *
+   * @param host Domain name.
+   * @return Value, or <code>null</code> if no pattern matches.
+   */
+  public V lookup(String host) {
+    String name = normalize(host);
+    V value = exactValues.get(name);
+    if (value != null) {
+      return value;
+    }
+    Node<V> node = root;
+    V match = null;
+    int end = name.length();
+    while (end > 0) {
+      int dot = name.lastIndexOf('.', end - 1);
+      node = node.getChild(name.substring(dot + 1, end));
+      if (node == null) {
+        break;
+      }
+      if (node.suffixValue != null) {
+        match = node.suffixValue;
+      }
+      if (dot < 0) {
+        break;
+      }
+      // More labels remain, so the host is a subdomain of this node.
+      if (node.subdomainValue != null) {
+        match = node.subdomainValue;
+      }
+      end = dot;
+    }
+    return match;
+  }
+
+  /**
+   * Passes the values of all patterns which match a host to a consumer, from the shortest suffix
+   * to the exact name.
+   *
+   * @param host     Domain name.
+   * @param consumer Consumer of values.
+   */
+  public void forEachMatch(String host, Consumer<? super V> consumer) {
+    String name = normalize(host);
+    Node<V> node = root;
+    int end = name.length();
+    while (end > 0) {
+      int dot = name.lastIndexOf('.', end - 1);
+      node = node.getChild(name.substring(dot + 1, end));
+      if (node == null) {
+        break;
+      }
+      if (node.suffixValue != null) {
+        consumer.accept(node.suffixValue);
+      }
+      if (dot < 0) {
+        break;
+      }
+      if (node.subdomainValue != null) {
+        consumer.accept(node.subdomainValue);
+      }
+      end = dot;
+    }
+    V value = exactValues.get(name);
+    if (value != null) {
+      consumer.accept(value);
+    }
+  }
+
+  /**
+   * Returns the number of patterns.
+   *
+   * @return Number of patterns.
+   */
+  public int size() {
+    return size;
+  }
+
+  private static String normalize(String name) {
+    int length = name.length();
+    if (length > 0 && name.charAt(length - 1) == '.') {
+      name = name.substring(0, length - 1);
+    }
+    for (int i = 0; i < name.length(); i++) {
+      char ch = name.charAt(i);
+      if (ch >= 'A' && ch <= 'Z') {
+        return name.toLowerCase(Locale.ROOT);
+      }
+    }
+    return name;
+  }
+
+  private static final class Node<V> {
+
+    private Map<String, Node<V>> children;
+
+    /**
+     * Value of the domain and its subdomains.
+     */
+    private V suffixValue;
+
+    /**
+     * Value of subdomains only.
+     */
+    private V subdomainValue;
+
+    Node<V> getChild(String label) {
+      return children == null ? null : children.get(label);
+    }
+
+    Node<V> getOrCreateChild(String label) {
+      if (children == null) {
+        // Most nodes have a single child.
+        children = new HashMap<>(2);
+      }
+      return children.computeIfAbsent(label, key -> new Node<>());
+    }
+  }
+
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2015-2025 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package sockslib.server.acl;
+
+import sockslib.server.acl.AccessControlList.Action;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * The class <code>RuleReader</code> reads rule files of {@link AccessControlList} and
+ * {@link DomainAccessList}, each line is an optional action and a pattern.
+ *
+ * @version 1.0
+ */
+class RuleReader {
+
+  /**
+   * Receives rules which are read.
+   */
+  interface RuleHandler {
+
+    /**
+     * Handles a rule.
+     *
+     * @param pattern Pattern of the rule.
+     * @param action  Action of the rule.
+     * @throws IllegalArgumentException If the pattern is invalid.
+     */
+    void handle(String pattern, Action action);
+  }
+
+  private RuleReader() {
+  }
+
+  /**
+   * Reads rules. A rule without an action gets the opposite of the default action. Empty lines
+   * and lines starting with <code>#</code> are ignored.
+   *
+   * @param reader        Reader of rules, it's not closed by this method.
+   * @param defaultAction Action of the list.
+   * @param handler       Handler of rules.
+   * @throws IOException              If an I/O error occurs.
+   * @throws IllegalArgumentException If a rule is invalid.
+   */
+  static void read(Reader reader, Action defaultAction, RuleHandler handler) throws IOException {
+    Action bareAction = defaultAction == Action.ALLOW ? Action.DENY : Action.ALLOW;
+    BufferedReader bufferedReader =
+        reader instanceof BufferedReader ? (BufferedReader) reader : new BufferedReader(reader);
+    String line;
+    int lineNumber = 0;
+    while ((line = bufferedReader.readLine()) != null) {
+      lineNumber++;
+      line = line.trim();
+      if (line.isEmpty() || line.startsWith("#")) {
+        continue;
+      }
+      Action action = bareAction;
+      int space = indexOfWhitespace(line);
+      if (space > 0) {
+        String keyword = line.substring(0, space);
+        if (keyword.equalsIgnoreCase("allow")) {
+          action = Action.ALLOW;
+        } else if (keyword.equalsIgnoreCase("deny")) {
+          action = Action.DENY;
+        } else {
+          throw new IllegalArgumentException(
+              "Unknown action [" + keyword + "] at line " + lineNumber);
+        }
+        line = line.substring(space + 1).trim();
+      }
+      try {
+        handler.handle(line, action);
+      } catch (IllegalArgumentException e) {
+        throw new IllegalArgumentException(
+            "Invalid rule [" + line + "] at line " + lineNumber + ": " + e.getMessage(), e);
+      }
+    }
+  }
+
+  private static int indexOfWhitespace(String line) {
+    for (int i = 0; i < line.length(); i++) {
+      if (Character.isWhitespace(line.charAt(i))) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+}
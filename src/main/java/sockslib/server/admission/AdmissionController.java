@@ -0,0 +1,381 @@
+/*
+ * Copyright 2015-2025 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package sockslib.server.admission;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * The class <code>AdmissionController</code> decides whether an accepted connection may become a
+ * session. It's checked in the accept loop before anything else is done, so that an overloaded
+ * server rejects connections at once instead of letting them wait in the executor queue until
+ * the client gives up.
+ * <p>
+ * A connection is admitted if none of the {@link LoadShedder}s sheds it and all of these limits
+ * hold, a limit of <code>0</code> means unlimited:
+ * </p>
+ * <ul>
+ * <li>max number of sessions, including the ones waiting for a handshake thread</li>
+ * <li>max number of sessions waiting for a handshake thread</li>
+ * <li>max number of sessions from one client address</li>
+ * </ul>
+ * <pre>
+ * AdmissionController admissionController = new AdmissionController();
+ * admissionController.setMaxSessions(10000);
+ * admissionController.setMaxQueuedHandshakes(200);
+ * admissionController.setMaxSessionsPerAddress(50);
+ * admissionController.addLoadShedder(new HeapLoadShedder(0.9));
+ * SocksServerBuilder.newSocks5ServerBuilder().setAdmissionController(admissionController);
+ * </pre>
+ *
+ * @version 1.0
+ */
+public class AdmissionController {
+
+  private static final Logger logger = LoggerFactory.getLogger(AdmissionController.class);
+
+  /**
+   * How a rejected connection is closed.
+   */
+  public enum RejectMode {
+
+    /**
+     * Reset the connection, the client gets "connection reset" at once.
+     */
+    RESET,
+
+    /**
+     * Reply "no acceptable methods" to the client's greeting and close the connection. A SOCKS5
+     * reply with <code>GENERAL_SOCKS_SERVER_FAILURE</code> is only valid after a request, so this
+     * is the earliest failure a SOCKS5 client understands. The greeting is read and replied in a
+     * small pool of daemon threads, the connection is reset if the pool is busy.
+     */
+    REPLY
+  }
+
+  private static final byte[] NO_ACCEPTABLE_METHODS = {0x05, (byte) 0xFF};
+
+  /**
+   * How long a rejected client has to send its greeting, in milliseconds.
+   */
+  private static final int REPLY_TIMEOUT = 1000;
+
+  private static final int REPLY_THREADS = 2;
+
+  private static final int MAX_PENDING_REPLIES = 256;
+
+  /**
+   * Replies rejected connections, so that a slow client can't stall the accept loop.
+   */
+  private static final ThreadPoolExecutor REPLY_EXECUTOR;
+
+  static {
+    REPLY_EXECUTOR = new ThreadPoolExecutor(REPLY_THREADS, REPLY_THREADS, 60, TimeUnit.SECONDS,
+        new LinkedBlockingQueue<Runnable>(MAX_PENDING_REPLIES),
+        new ThreadFactoryBuilder().setNameFormat("admission-reply-%d").setDaemon(true).build());
+    REPLY_EXECUTOR.allowCoreThreadTimeOut(true);
+  }
+
+  private int maxSessions;
+
+  private int maxQueuedHandshakes;
+
+  private int maxSessionsPerAddress;
+
+  private RejectMode rejectMode = RejectMode.RESET;
+
+  private final List<LoadShedder> loadShedders = new CopyOnWriteArrayList<>();
+
+  private final AtomicInteger sessionCount = new AtomicInteger();
+
+  private final AtomicInteger queuedCount = new AtomicInteger();
+
+  private final ConcurrentMap<InetAddress, Integer> sessionCountByAddress =
+      new ConcurrentHashMap<>();
+
+  private final LongAdder rejectedCount = new LongAdder();
+
+  private final LongAdder shedCount = new LongAdder();
+
+  /**
+   * Tries to admit a connection. If it returns <code>true</code>, the caller must call
+   * {@link #onHandshakeStarted()} when a thread starts the handshake and
+   * {@link #release(InetAddress)} when the session is closed.
+   *
+   * @param clientAddress Address of the client.
+   * @return <code>true</code> if the connection is admitted.
+   */
+  public boolean tryAcquire(InetAddress clientAddress) {
+    checkNotNull(clientAddress, "Argument [clientAddress] may not be null");
+    for (LoadShedder loadShedder : loadShedders) {
+      if (loadShedder.shouldShed()) {
+        shedCount.increment();
+        return false;
+      }
+    }
+    if (!increment(sessionCount, maxSessions)) {
+      rejectedCount.increment();
+      return false;
+    }
+    if (!increment(queuedCount, maxQueuedHandshakes)) {
+      sessionCount.decrementAndGet();
+      rejectedCount.increment();
+      return false;
+    }
+    if (maxSessionsPerAddress > 0 && !incrementAddress(clientAddress)) {
+      queuedCount.decrementAndGet();
+      sessionCount.decrementAndGet();
+      rejectedCount.increment();
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   * Called when a thread starts the handshake of an admitted connection.
+   */
+  public void onHandshakeStarted() {
+    queuedCount.decrementAndGet();
+  }
+
+  /**
+   * Releases an admitted connection.
+   *
+   * @param clientAddress Address of the client.
+   */
+  public void release(InetAddress clientAddress) {
+    sessionCount.decrementAndGet();
+    if (maxSessionsPerAddress > 0) {
+      sessionCountByAddress.computeIfPresent(clientAddress,
+          (key, count) -> count <= 1 ? null : count - 1);
+    }
+  }
+
+  /**
+   * Closes a connection which is not admitted according to {@link #getRejectMode()}. It never
+   * blocks on the client.
+   *
+   * @param socket The connection.
+   */
+  public void reject(final Socket socket) {
+    if (rejectMode == RejectMode.REPLY) {
+      try {
+        REPLY_EXECUTOR.execute(() -> reply(socket));
+        return;
+      } catch (RejectedExecutionException e) {
+        logger.debug("Too many pending replies, reset connection from {}",
+            socket.getRemoteSocketAddress());
+      }
+    }
+    try {
+      socket.setSoLinger(true, 0);
+    } catch (IOException e) {
+      logger.debug(e.getMessage(), e);
+    } finally {
+      close(socket);
+    }
+  }
+
+  /**
+   * Reads the client's greeting and replies "no acceptable methods". A client which doesn't send
+   * a complete greeting in {@link #REPLY_TIMEOUT} is closed without a reply.
+   */
+  private static void reply(Socket socket) {
+    try {
+      socket.setSoTimeout(REPLY_TIMEOUT);
+      InputStream inputStream = socket.getInputStream();
+      // VER, NMETHODS and METHODS.
+      if (inputStream.read() != 0x05) {
+        return;
+      }
+      int methods = inputStream.read();
+      byte[] buffer = new byte[0xFF];
+      while (methods > 0) {
+        int read = inputStream.read(buffer, 0, methods);
+        if (read < 0) {
+          return;
+        }
+        methods -= read;
+      }
+      if (methods < 0) {
+        return;
+      }
+      OutputStream outputStream = socket.getOutputStream();
+      outputStream.write(NO_ACCEPTABLE_METHODS);
+      outputStream.flush();
+    } catch (IOException e) {
+      logger.debug(e.getMessage(), e);
+    } finally {
+      close(socket);
+    }
+  }
+
+  private static void close(Socket socket) {
+    try {
+      socket.close();
+    } catch (IOException e) {
+      logger.debug(e.getMessage(), e);
+    }
+  }
+
+  private boolean incrementAddress(InetAddress clientAddress) {
+    final boolean[] admitted = {false};
+    sessionCountByAddress.compute(clientAddress, (key, count) -> {
+      int current = count == null ? 0 : count;
+      if (current >= maxSessionsPerAddress) {
+        return count;
+      }
+      admitted[0] = true;
+      return current + 1;
+    });
+    return admitted[0];
+  }
+
+  private static boolean increment(AtomicInteger counter, int max) {
+    if (max <= 0) {
+      counter.incrementAndGet();
+      return true;
+    }
+    int current;
+    do {
+      current = counter.get();
+      if (current >= max) {
+        return false;
+      }
+    } while (!counter.compareAndSet(current, current + 1));
+    return true;
+  }
+
+  public AdmissionController addLoadShedder(LoadShedder loadShedder) {
+    loadShedders.add(checkNotNull(loadShedder, "Argument [loadShedder] may not be null"));
+    return this;
+  }
+
+  public AdmissionController removeLoadShedder(LoadShedder loadShedder) {
+    loadShedders.remove(loadShedder);
+    return this;
+  }
+
+  public List<LoadShedder> getLoadShedders() {
+    return loadShedders;
+  }
+
+  public int getMaxSessions() {
+    return maxSessions;
+  }
+
+  public void setMaxSessions(int maxSessions) {
+    checkArgument(maxSessions >= 0, "Argument [maxSessions] must not be negative");
+    this.maxSessions = maxSessions;
+  }
+
+  public int getMaxQueuedHandshakes() {
+    return maxQueuedHandshakes;
+  }
+
+  public void setMaxQueuedHandshakes(int maxQueuedHandshakes) {
+    checkArgument(maxQueuedHandshakes >= 0, "Argument [maxQueuedHandshakes] must not be negative");
+    this.maxQueuedHandshakes = maxQueuedHandshakes;
+  }
+
+  public int getMaxSessionsPerAddress() {
+    return maxSessionsPerAddress;
+  }
+
+  /**
+   * Sets max number of sessions from one client address. It must be set before the server starts.
+   *
+   * @param maxSessionsPerAddress Max number of sessions, <code>0</code> means unlimited.
+   */
+  public void setMaxSessionsPerAddress(int maxSessionsPerAddress) {
+    checkArgument(maxSessionsPerAddress >= 0,
+        "Argument [maxSessionsPerAddress] must not be negative");
+    this.maxSessionsPerAddress = maxSessionsPerAddress;
+  }
+
+  public RejectMode getRejectMode() {
+    return rejectMode;
+  }
+
+  public void setRejectMode(RejectMode rejectMode) {
+    this.rejectMode = checkNotNull(rejectMode, "Argument [rejectMode] may not be null");
+  }
+
+  /**
+   * Returns the number of admitted sessions which are not released yet.
+   *
+   * @return Number of sessions.
+   */
+  public int getSessionCount() {
+    return sessionCount.get();
+  }
+
+  /**
+   * Returns the number of admitted sessions which are waiting for a handshake thread.
+   *
+   * @return Number of queued handshakes.
+   */
+  public int getQueuedHandshakeCount() {
+    return queuedCount.get();
+  }
+
+  /**
+   * Returns the number of sessions from a client address.
+   *
+   * @param clientAddress Address of the client.
+   * @return Number of sessions, always <code>0</code> if there is no limit per address.
+   */
+  public int getSessionCount(InetAddress clientAddress) {
+    Integer count = sessionCountByAddress.get(clientAddress);
+    return count == null ? 0 : count;
+  }
+
+  /**
+   * Returns the number of connections rejected by the limits.
+   *
+   * @return Number of rejected connections.
+   */
+  public long getRejectedCount() {
+    return rejectedCount.sum();
+  }
+
+  /**
+   * Returns the number of connections rejected by the {@link LoadShedder}s.
+   *
+   * @return Number of shed connections.
+   */
+  public long getShedCount() {
+    return shedCount.sum();
+  }
+}
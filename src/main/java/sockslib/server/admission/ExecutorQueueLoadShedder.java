@@ -0,0 +1,53 @@
+/*
+ * Copyright 2015-2025 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package sockslib.server.admission;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * The class <code>ExecutorQueueLoadShedder</code> sheds connections when too many tasks are
+ * waiting in the queue of a thread pool, such as the session pool or the relay pool of a server.
+ *
+ * @version 1.0
+ */
+public class ExecutorQueueLoadShedder implements LoadShedder {
+
+  private final ThreadPoolExecutor executor;
+
+  private final int maxQueueSize;
+
+  /**
+   * Constructs an instance of {@link ExecutorQueueLoadShedder}.
+   *
+   * @param executor     The thread pool to watch.
+   * @param maxQueueSize Max number of waiting tasks.
+   */
+  public ExecutorQueueLoadShedder(ThreadPoolExecutor executor, int maxQueueSize) {
+    this.executor = checkNotNull(executor, "Argument [executor] may not be null");
+    checkArgument(maxQueueSize >= 0, "Argument [maxQueueSize] must not be negative");
+    this.maxQueueSize = maxQueueSize;
+  }
+
+  @Override
+  public boolean shouldShed() {
+    return executor.getQueue().size() > maxQueueSize;
+  }
+
+  public int getMaxQueueSize() {
+    return maxQueueSize;
+  }
+}
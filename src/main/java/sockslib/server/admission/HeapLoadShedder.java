@@ -0,0 +1,81 @@
+/*
+ * Copyright 2015-2025 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package sockslib.server.admission;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * The class <code>HeapLoadShedder</code> sheds connections when the tenured heap is still above a
+ * ratio of its max after a garbage collection.
+ * <p>
+ * It checks the collection usage of the heap pools which support usage thresholds, which are the
+ * tenured pools of the common collectors. The collection usage is measured right after a
+ * collection, so garbage which a collection would free doesn't count, unlike
+ * <code>totalMemory() - freeMemory()</code> which reaches the max regularly between collections.
+ * If the JVM has no such pool, the used heap of {@link Runtime} is checked instead.
+ * </p>
+ *
+ * @version 1.0
+ */
+public class HeapLoadShedder implements LoadShedder {
+
+  private final double maxUsedRatio;
+
+  private final List<MemoryPoolMXBean> tenuredPools = new ArrayList<>();
+
+  private final Runtime runtime = Runtime.getRuntime();
+
+  /**
+   * Constructs an instance of {@link HeapLoadShedder}.
+   *
+   * @param maxUsedRatio Ratio of max heap in <code>(0, 1]</code>, such as <code>0.9</code>.
+   */
+  public HeapLoadShedder(double maxUsedRatio) {
+    checkArgument(maxUsedRatio > 0 && maxUsedRatio <= 1,
+        "Argument [maxUsedRatio] must be in (0, 1]");
+    this.maxUsedRatio = maxUsedRatio;
+    for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+      if (pool.getType() == MemoryType.HEAP && pool.isUsageThresholdSupported()
+          && pool.isCollectionUsageThresholdSupported() && pool.getUsage().getMax() > 0) {
+        tenuredPools.add(pool);
+      }
+    }
+  }
+
+  @Override
+  public boolean shouldShed() {
+    if (tenuredPools.isEmpty()) {
+      long used = runtime.totalMemory() - runtime.freeMemory();
+      return used > runtime.maxMemory() * maxUsedRatio;
+    }
+    for (MemoryPoolMXBean pool : tenuredPools) {
+      MemoryUsage usage = pool.getCollectionUsage();
+      if (usage != null && usage.getMax() > 0 && usage.getUsed() > usage.getMax() * maxUsedRatio) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  public double getMaxUsedRatio() {
+    return maxUsedRatio;
+  }
+}
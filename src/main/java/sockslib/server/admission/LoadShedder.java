@@ -0,0 +1,32 @@
+/*
+ * Copyright 2015-2025 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package sockslib.server.admission;
+
+/**
+ * The interface <code>LoadShedder</code> decides whether a server is too busy to take a new
+ * connection. It's asked for every accepted connection, so it should be cheap.
+ *
+ * @version 1.0
+ * @see AdmissionController#addLoadShedder(LoadShedder)
+ */
+@FunctionalInterface
+public interface LoadShedder {
+
+  /**
+   * Returns <code>true</code> if a new connection should be rejected.
+   *
+   * @return <code>true</code> if a new connection should be rejected.
+   */
+  boolean shouldShed();
+}
@@ -0,0 +1,39 @@
+/*
+ * Copyright 2015-2025 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package sockslib.server.connector;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+
+/**
+ * The interface <code>Connector</code> opens the connections from a SOCKS server to the
+ * destinations which clients request.
+ *
+ * @version 1.0
+ * @see HappyEyeballsConnector
+ */
+public interface Connector {
+
+  /**
+   * Connects to a destination which has one or more addresses.
+   *
+   * @param addresses Addresses of the destination, in the order that the resolver returns.
+   * @param port      Port of the destination.
+   * @return A connected socket.
+   * @throws IOException If no address can be connected.
+   */
+  Socket connect(InetAddress[] addresses, int port) throws IOException;
+
+}
@@ -0,0 +1,421 @@
+/*
+ * Copyright 2015-2025 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package sockslib.server.connector;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import sockslib.utils.ResourceUtil;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * The class <code>HappyEyeballsConnector</code> connects to a destination with several addresses
+ * in the way of Happy Eyeballs (RFC 8305).
+ * <p>
+ * Addresses are sorted by the history of previous attempts and interleaved by address family.
+ * An attempt starts every {@link #getAttemptDelay()} milliseconds, or as soon as the previous one
+ * fails, and the first connected socket wins. All attempts together must finish within
+ * {@link #getConnectTimeout()} milliseconds.
+ * </p>
+ *
+ * @version 1.0
+ */
+public class HappyEyeballsConnector implements Connector {
+
+  private static final Logger logger = LoggerFactory.getLogger(HappyEyeballsConnector.class);
+
+  /**
+   * Default delay in milliseconds between two attempts, recommended by RFC 8305.
+   */
+  public static final int DEFAULT_ATTEMPT_DELAY = 250;
+
+  /**
+   * Default deadline in milliseconds of a connection.
+   */
+  public static final int DEFAULT_CONNECT_TIMEOUT = 10000;
+
+  /**
+   * Max number of addresses whose history is kept.
+   */
+  private static final int MAX_STATS_SIZE = 10000;
+
+  private final Executor executor;
+
+  private final Cache<InetAddress, AddressStats> stats =
+      CacheBuilder.newBuilder().maximumSize(MAX_STATS_SIZE).expireAfterAccess(10, TimeUnit.MINUTES)
+          .build();
+
+  private int attemptDelay = DEFAULT_ATTEMPT_DELAY;
+
+  private int connectTimeout = DEFAULT_CONNECT_TIMEOUT;
+
+  /**
+   * Constructs a {@link HappyEyeballsConnector} which runs concurrent attempts in daemon threads.
+   */
+  public HappyEyeballsConnector() {
+    this(Executors.newCachedThreadPool(
+        new ThreadFactoryBuilder().setNameFormat("connect-%d").setDaemon(true).build()));
+  }
+
+  /**
+   * Constructs a {@link HappyEyeballsConnector} which runs concurrent attempts in an executor.
+   *
+   * @param executor Executor.
+   */
+  public HappyEyeballsConnector(Executor executor) {
+    this.executor = checkNotNull(executor, "Argument [executor] may not be null");
+  }
+
+  @Override
+  public Socket connect(InetAddress[] addresses, int port) throws IOException {
+    checkNotNull(addresses, "Argument [addresses] may not be null");
+    checkArgument(addresses.length > 0, "Argument [addresses] may not be empty");
+    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(connectTimeout);
+    List<InetAddress> ordered = sort(addresses);
+    if (ordered.size() == 1) {
+      // Nothing to race, connect in the caller's thread.
+      Attempt attempt = new Attempt(ordered.get(0), port, remaining(deadline), null);
+      attempt.run();
+      if (attempt.error != null) {
+        throw attempt.error;
+      }
+      return attempt.socket;
+    }
+    return race(ordered, port, deadline);
+  }
+
+  private Socket race(List<InetAddress> addresses, int port, long deadline) throws IOException {
+    BlockingQueue<Attempt> results = new LinkedBlockingQueue<>();
+    List<Attempt> attempts = new ArrayList<>(addresses.size());
+    Attempt winner = null;
+    IOException error = null;
+    boolean interrupted = false;
+    int pending = 0;
+    try {
+      while (winner == null) {
+        int remaining = remaining(deadline);
+        if (connectTimeout > 0 && remaining <= 0) {
+          break;
+        }
+        if (attempts.size() < addresses.size()) {
+          Attempt attempt = new Attempt(addresses.get(attempts.size()), port, remaining, results);
+          attempts.add(attempt);
+          pending++;
+          try {
+            executor.execute(attempt);
+          } catch (RejectedExecutionException e) {
+            attempt.error = new IOException("Can't start connection attempt", e);
+            results.add(attempt);
+          }
+        }
+        if (pending == 0) {
+          break;
+        }
+        long wait;
+        if (attempts.size() < addresses.size()) {
+          wait = connectTimeout > 0 ? Math.min(attemptDelay, remaining) : attemptDelay;
+        } else {
+          wait = connectTimeout > 0 ? remaining : Long.MAX_VALUE;
+        }
+        Attempt done = results.poll(wait, TimeUnit.MILLISECONDS);
+        if (done == null) {
+          // Slow attempt, start the next one.
+          continue;
+        }
+        pending--;
+        if (done.error == null) {
+          winner = done;
+        } else {
+          if (error != null) {
+            done.error.addSuppressed(error);
+          }
+          error = done.error;
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      interrupted = true;
+    } finally {
+      for (Attempt attempt : attempts) {
+        if (attempt != winner) {
+          attempt.cancel();
+        }
+      }
+    }
+    if (winner != null) {
+      logger.debug("Connected to {} after {} attempts", winner.address, attempts.size());
+      return winner.socket;
+    }
+    if (interrupted) {
+      throw new InterruptedIOException("Interrupted while connecting");
+    }
+    if (error == null || pending > 0) {
+      SocketTimeoutException timeout = new SocketTimeoutException("connect timed out");
+      if (error != null) {
+        timeout.addSuppressed(error);
+      }
+      throw timeout;
+    }
+    throw error;
+  }
+
+  /**
+   * Sorts addresses for connecting. Addresses which were connected go first, faster ones before
+   * slower ones, addresses which failed last time go last. Then address families are interleaved
+   * starting with the family of the first address.
+   *
+   * @param addresses Addresses in the order that the resolver returns.
+   * @return Sorted addresses.
+   */
+  public List<InetAddress> sort(InetAddress[] addresses) {
+    List<InetAddress> sorted = new ArrayList<>(Arrays.asList(addresses));
+    if (sorted.size() < 2) {
+      return sorted;
+    }
+    Collections.sort(sorted, new Comparator<InetAddress>() {
+      @Override
+      public int compare(InetAddress address1, InetAddress address2) {
+        AddressStats stats1 = stats.getIfPresent(address1);
+        AddressStats stats2 = stats.getIfPresent(address2);
+        int rank = Integer.compare(rank(stats1), rank(stats2));
+        if (rank != 0 || stats1 == null || stats2 == null) {
+          return rank;
+        }
+        return Double.compare(stats1.getSmoothedConnectTime(), stats2.getSmoothedConnectTime());
+      }
+    });
+
+    List<InetAddress> preferred = new ArrayList<>();
+    List<InetAddress> others = new ArrayList<>();
+    boolean preferIPv6 = sorted.get(0) instanceof Inet6Address;
+    for (InetAddress address : sorted) {
+      if ((address instanceof Inet6Address) == preferIPv6) {
+        preferred.add(address);
+      } else {
+        others.add(address);
+      }
+    }
+    List<InetAddress> interleaved = new ArrayList<>(sorted.size());
+    for (int i = 0; i < Math.max(preferred.size(), others.size()); i++) {
+      if (i < preferred.size()) {
+        interleaved.add(preferred.get(i));
+      }
+      if (i < others.size()) {
+        interleaved.add(others.get(i));
+      }
+    }
+    return interleaved;
+  }
+
+  private static int rank(AddressStats stats) {
+    if (stats == null) {
+      return 1;
+    }
+    return stats.isLastFailed() ? 2 : 0;
+  }
+
+  private int remaining(long deadline) {
+    if (connectTimeout <= 0) {
+      return 0;
+    }
+    long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+    return (int) Math.max(remaining, 0);
+  }
+
+  private AddressStats getOrCreateStats(InetAddress address) {
+    AddressStats addressStats = stats.getIfPresent(address);
+    if (addressStats == null) {
+      addressStats = new AddressStats();
+      AddressStats previous = stats.asMap().putIfAbsent(address, addressStats);
+      if (previous != null) {
+        addressStats = previous;
+      }
+    }
+    return addressStats;
+  }
+
+  /**
+   * Returns the history of connecting an address.
+   *
+   * @param address Address.
+   * @return History of the address, <code>null</code> if it was not connected recently.
+   */
+  public AddressStats getStats(InetAddress address) {
+    return stats.getIfPresent(address);
+  }
+
+  public int getAttemptDelay() {
+    return attemptDelay;
+  }
+
+  /**
+   * Sets the delay in milliseconds between two attempts.
+   *
+   * @param attemptDelay Delay in milliseconds.
+   */
+  public void setAttemptDelay(int attemptDelay) {
+    checkArgument(attemptDelay > 0, "Argument [attemptDelay] must be greater than 0");
+    this.attemptDelay = attemptDelay;
+  }
+
+  public int getConnectTimeout() {
+    return connectTimeout;
+  }
+
+  /**
+   * Sets the deadline in milliseconds of a connection, 0 means waiting until the operating system
+   * gives up.
+   *
+   * @param connectTimeout Deadline in milliseconds.
+   */
+  public void setConnectTimeout(int connectTimeout) {
+    checkArgument(connectTimeout >= 0, "Argument [connectTimeout] must not be negative");
+    this.connectTimeout = connectTimeout;
+  }
+
+  public Executor getExecutor() {
+    return executor;
+  }
+
+  /**
+   * An attempt to connect an address.
+   */
+  private class Attempt implements Runnable {
+
+    private final InetAddress address;
+    private final int port;
+    private final int timeout;
+    private final BlockingQueue<Attempt> results;
+    private final Socket socket = new Socket();
+    private volatile boolean cancelled = false;
+    private IOException error;
+
+    Attempt(InetAddress address, int port, int timeout, BlockingQueue<Attempt> results) {
+      this.address = address;
+      this.port = port;
+      this.timeout = timeout;
+      this.results = results;
+    }
+
+    @Override
+    public void run() {
+      if (connectTimeout > 0 && timeout <= 0) {
+        // The deadline has passed, it's not the fault of the address.
+        error = new SocketTimeoutException("connect timed out");
+        ResourceUtil.close(socket);
+      } else {
+        long start = System.nanoTime();
+        try {
+          socket.connect(new InetSocketAddress(address, port), timeout);
+          getOrCreateStats(address).onSuccess(System.nanoTime() - start);
+        } catch (IOException e) {
+          error = e;
+          ResourceUtil.close(socket);
+          if (!cancelled) {
+            getOrCreateStats(address).onFailure();
+            logger.debug("Connect {}:{} failed: {}", address, port, e.getMessage());
+          }
+        }
+      }
+      if (results != null) {
+        results.add(this);
+      }
+    }
+
+    void cancel() {
+      cancelled = true;
+      ResourceUtil.close(socket);
+    }
+  }
+
+  /**
+   * The class <code>AddressStats</code> is the history of connecting an address.
+   */
+  public static final class AddressStats {
+
+    private long successCount;
+    private long failureCount;
+    private boolean lastFailed;
+    private double smoothedConnectTime;
+
+    synchronized void onSuccess(long nanos) {
+      double millis = nanos / 1e6;
+      // Same smoothing as TCP's SRTT.
+      smoothedConnectTime =
+          successCount == 0 ? millis : smoothedConnectTime * 7 / 8 + millis / 8;
+      successCount++;
+      lastFailed = false;
+    }
+
+    synchronized void onFailure() {
+      failureCount++;
+      lastFailed = true;
+    }
+
+    public synchronized long getSuccessCount() {
+      return successCount;
+    }
+
+    public synchronized long getFailureCount() {
+      return failureCount;
+    }
+
+    /**
+     * Returns <code>true</code> if the last attempt failed.
+     *
+     * @return <code>true</code> if the last attempt failed.
+     */
+    public synchronized boolean isLastFailed() {
+      return lastFailed;
+    }
+
+    /**
+     * Returns smoothed time in milliseconds of successful attempts.
+     *
+     * @return Smoothed connect time.
+     */
+    public synchronized double getSmoothedConnectTime() {
+      return smoothedConnectTime;
+    }
+
+    @Override
+    public synchronized String toString() {
+      return String.format("AddressStats[success=%d, failure=%d, srtt=%.2fms]", successCount,
+          failureCount, smoothedConnectTime);
+    }
+  }
+}
@@ -0,0 +1,375 @@
+/*
+ * Copyright 2015-2025 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package sockslib.server.dns;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.security.Security;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * The class <code>CachingDnsResolver</code> caches the results of another {@link DnsResolver}.
+ * <p>
+ * Resolved addresses are kept for {@link #getTtl()} seconds and failures for
+ * {@link #getNegativeTtl()} seconds. The defaults come from the security properties
+ * <code>networkaddress.cache.ttl</code> and <code>networkaddress.cache.negative.ttl</code>, like
+ * the cache of {@link InetAddress}. Concurrent lookups of the same host share one lookup of the
+ * underlying resolver.
+ * </p>
+ *
+ * @version 1.0
+ */
+public class CachingDnsResolver implements DnsResolver {
+
+  private static final Logger logger = LoggerFactory.getLogger(CachingDnsResolver.class);
+
+  /**
+   * TTL in seconds of resolved addresses if the security property is not set.
+   */
+  public static final long DEFAULT_TTL = 30;
+
+  /**
+   * TTL in seconds of failures if the security property is not set.
+   */
+  public static final long DEFAULT_NEGATIVE_TTL = 10;
+
+  /**
+   * Default max number of cached hosts.
+   */
+  public static final long DEFAULT_MAXIMUM_SIZE = 10000;
+
+  private final DnsResolver delegate;
+
+  private final long ttl;
+
+  private final long negativeTtl;
+
+  private final Cache<String, InetAddress[]> addresses;
+
+  private final Cache<String, UnknownHostException> failures;
+
+  /**
+   * Lookups in progress, indexed by host.
+   */
+  private final ConcurrentMap<String, CompletableFuture<InetAddress[]>> lookups =
+      new ConcurrentHashMap<>();
+
+  private final LongAdder hitCount = new LongAdder();
+
+  private final LongAdder negativeHitCount = new LongAdder();
+
+  private final LongAdder coalescedCount = new LongAdder();
+
+  private final LongAdder lookupCount = new LongAdder();
+
+  private final LongAdder failureCount = new LongAdder();
+
+  private final LongAdder totalLookupTime = new LongAdder();
+
+  private final AtomicLong maxLookupTime = new AtomicLong();
+
+  /**
+   * Constructs a {@link CachingDnsResolver} with a {@link SystemDnsResolver} and default settings.
+   */
+  public CachingDnsResolver() {
+    this(new SystemDnsResolver());
+  }
+
+  /**
+   * Constructs a {@link CachingDnsResolver} with default settings.
+   *
+   * @param delegate Resolver which does the lookups.
+   */
+  public CachingDnsResolver(DnsResolver delegate) {
+    this(delegate, getSecurityProperty("networkaddress.cache.ttl", DEFAULT_TTL),
+        getSecurityProperty("networkaddress.cache.negative.ttl", DEFAULT_NEGATIVE_TTL),
+        DEFAULT_MAXIMUM_SIZE);
+  }
+
+  /**
+   * Constructs a {@link CachingDnsResolver}.
+   *
+   * @param delegate    Resolver which does the lookups.
+   * @param ttl         Seconds to cache a resolved address, 0 disables the cache.
+   * @param negativeTtl Seconds to cache a failure, 0 disables negative caching.
+   * @param maximumSize Max number of cached hosts.
+   */
+  public CachingDnsResolver(DnsResolver delegate, long ttl, long negativeTtl, long maximumSize) {
+    this.delegate = checkNotNull(delegate, "Argument [delegate] may not be null");
+    checkArgument(ttl >= 0, "Argument [ttl] must not be negative");
+    checkArgument(negativeTtl >= 0, "Argument [negativeTtl] must not be negative");
+    checkArgument(maximumSize >= 0, "Argument [maximumSize] must not be negative");
+    this.ttl = ttl;
+    this.negativeTtl = negativeTtl;
+    addresses = CacheBuilder.newBuilder().maximumSize(maximumSize).expireAfterWrite(ttl, TimeUnit
+        .SECONDS).build();
+    failures = CacheBuilder.newBuilder().maximumSize(maximumSize).expireAfterWrite(negativeTtl,
+        TimeUnit.SECONDS).build();
+  }
+
+  @Override
+  public InetAddress resolve(String host) throws UnknownHostException {
+    return resolveAll(host)[0];
+  }
+
+  @Override
+  public CompletableFuture<InetAddress> resolveAsync(String host) {
+    return lookup(host, true).thenApply(addresses -> addresses[0]);
+  }
+
+  @Override
+  public InetAddress[] resolveAll(String host) throws UnknownHostException {
+    CompletableFuture<InetAddress[]> future = lookup(host, false);
+    try {
+      return future.get().clone();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new UnknownHostException("Interrupted while resolving " + host);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof UnknownHostException) {
+        throw (UnknownHostException) cause;
+      }
+      UnknownHostException exception = new UnknownHostException(host + ": " + cause.getMessage());
+      exception.initCause(cause);
+      throw exception;
+    }
+  }
+
+  @Override
+  public CompletableFuture<InetAddress[]> resolveAllAsync(String host) {
+    // Callers may reorder the array, don't share the cached one.
+    return lookup(host, true).thenApply(InetAddress[]::clone);
+  }
+
+  private CompletableFuture<InetAddress[]> lookup(final String host, boolean async) {
+    checkNotNull(host, "Argument [host] may not be null");
+    final String key = host.toLowerCase(Locale.ENGLISH);
+    InetAddress[] cached = addresses.getIfPresent(key);
+    if (cached != null) {
+      hitCount.increment();
+      return CompletableFuture.completedFuture(cached);
+    }
+    UnknownHostException failure = failures.getIfPresent(key);
+    if (failure != null) {
+      negativeHitCount.increment();
+      CompletableFuture<InetAddress[]> future = new CompletableFuture<>();
+      future.completeExceptionally(new UnknownHostException(failure.getMessage()));
+      return future;
+    }
+
+    final CompletableFuture<InetAddress[]> future = new CompletableFuture<>();
+    CompletableFuture<InetAddress[]> inProgress = lookups.putIfAbsent(key, future);
+    if (inProgress != null) {
+      coalescedCount.increment();
+      return inProgress;
+    }
+    lookupCount.increment();
+    final long start = System.nanoTime();
+    try {
+      if (async) {
+        delegate.resolveAllAsync(host).whenComplete((result, error) -> {
+          if (error instanceof CompletionException && error.getCause() != null) {
+            error = error.getCause();
+          }
+          complete(key, future, start, result, error);
+        });
+      } else {
+        complete(key, future, start, delegate.resolveAll(host), null);
+      }
+    } catch (UnknownHostException | RuntimeException e) {
+      complete(key, future, start, null, e);
+    }
+    return future;
+  }
+
+  private void complete(String key, CompletableFuture<InetAddress[]> future, long start,
+                        InetAddress[] result, Throwable error) {
+    long time = System.nanoTime() - start;
+    totalLookupTime.add(time);
+    long max = maxLookupTime.get();
+    while (time > max && !maxLookupTime.compareAndSet(max, time)) {
+      max = maxLookupTime.get();
+    }
+    if (error == null && (result == null || result.length == 0)) {
+      error = new UnknownHostException(key);
+    }
+    // Cache the result before removing the lookup, so that no caller starts a new lookup.
+    if (error == null) {
+      addresses.put(key, result);
+    } else {
+      failureCount.increment();
+      if (error instanceof UnknownHostException) {
+        failures.put(key, (UnknownHostException) error);
+      }
+      logger.debug("Can't resolve {}: {}", key, error.getMessage());
+    }
+    lookups.remove(key, future);
+    if (error == null) {
+      future.complete(result);
+    } else {
+      future.completeExceptionally(error);
+    }
+  }
+
+  /**
+   * Discards all cached results.
+   */
+  public void clear() {
+    addresses.invalidateAll();
+    failures.invalidateAll();
+  }
+
+  /**
+   * Returns the number of requests answered with a cached address.
+   *
+   * @return Number of hits.
+   */
+  public long getHitCount() {
+    return hitCount.sum();
+  }
+
+  /**
+   * Returns the number of requests answered with a cached failure.
+   *
+   * @return Number of negative hits.
+   */
+  public long getNegativeHitCount() {
+    return negativeHitCount.sum();
+  }
+
+  /**
+   * Returns the number of requests which joined a lookup in progress.
+   *
+   * @return Number of coalesced requests.
+   */
+  public long getCoalescedCount() {
+    return coalescedCount.sum();
+  }
+
+  /**
+   * Returns the number of lookups of the underlying resolver.
+   *
+   * @return Number of lookups.
+   */
+  public long getLookupCount() {
+    return lookupCount.sum();
+  }
+
+  /**
+   * Returns the number of lookups which failed.
+   *
+   * @return Number of failed lookups.
+   */
+  public long getFailureCount() {
+    return failureCount.sum();
+  }
+
+  /**
+   * Returns the number of requests.
+   *
+   * @return Number of requests.
+   */
+  public long getRequestCount() {
+    return getHitCount() + getNegativeHitCount() + getCoalescedCount() + getLookupCount();
+  }
+
+  /**
+   * Returns the ratio of requests which didn't start a lookup.
+   *
+   * @return Hit rate, <code>1.0</code> if there is no request.
+   */
+  public double getHitRate() {
+    long requests = getRequestCount();
+    return requests == 0 ? 1.0 : (double) (requests - getLookupCount()) / requests;
+  }
+
+  /**
+   * Returns the average time of lookups in milliseconds.
+   *
+   * @return Average lookup time.
+   */
+  public double getAverageLookupTime() {
+    long lookups = getLookupCount();
+    return lookups == 0 ? 0 : totalLookupTime.sum() / 1e6 / lookups;
+  }
+
+  /**
+   * Returns the longest time of lookups in milliseconds.
+   *
+   * @return Max lookup time.
+   */
+  public double getMaxLookupTime() {
+    return maxLookupTime.get() / 1e6;
+  }
+
+  /**
+   * Returns the number of cached hosts, including failures.
+   *
+   * @return Number of cached hosts.
+   */
+  public long getSize() {
+    return addresses.size() + failures.size();
+  }
+
+  public long getTtl() {
+    return ttl;
+  }
+
+  public long getNegativeTtl() {
+    return negativeTtl;
+  }
+
+  public DnsResolver getDelegate() {
+    return delegate;
+  }
+
+  @Override
+  public String toString() {
+    return String.format("CachingDnsResolver[requests=%d, hitRate=%.2f, lookups=%d, failures=%d, "
+            + "avgLookup=%.2fms, maxLookup=%.2fms]", getRequestCount(), getHitRate(),
+        getLookupCount(), getFailureCount(), getAverageLookupTime(), getMaxLookupTime());
+  }
+
+  private static long getSecurityProperty(String name, long defaultValue) {
+    String value = Security.getProperty(name);
+    if (value == null) {
+      return defaultValue;
+    }
+    try {
+      long seconds = Long.parseLong(value.trim());
+      // -1 means caching forever, a day is long enough for a proxy server.
+      return seconds < 0 ? TimeUnit.DAYS.toSeconds(1) : seconds;
+    } catch (NumberFormatException e) {
+      return defaultValue;
+    }
+  }
+
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2015-2025 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package sockslib.server.dns;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * The interface <code>DnsResolver</code> resolves the host names which clients send in SOCKS
+ * commands.
+ *
+ * @version 1.0
+ * @see SystemDnsResolver
+ * @see CachingDnsResolver
+ */
+public interface DnsResolver {
+
+  /**
+   * Resolves a host name and blocks until it's done.
+   *
+   * @param host Host name.
+   * @return IP address of the host.
+   * @throws UnknownHostException If the host can't be resolved.
+   */
+  InetAddress resolve(String host) throws UnknownHostException;
+
+  /**
+   * Resolves a host name without blocking the caller. The returned future fails with
+   * {@link UnknownHostException} if the host can't be resolved.
+   *
+   * @param host Host name.
+   * @return Future of the IP address.
+   */
+  CompletableFuture<InetAddress> resolveAsync(String host);
+
+  /**
+   * Resolves all IP addresses of a host name and blocks until it's done.
+   *
+   * @param host Host name.
+   * @return IP addresses of the host, never empty.
+   * @throws UnknownHostException If the host can't be resolved.
+   */
+  InetAddress[] resolveAll(String host) throws UnknownHostException;
+
+  /**
+   * Resolves all IP addresses of a host name without blocking the caller. The returned future
+   * fails with {@link UnknownHostException} if the host can't be resolved.
+   *
+   * @param host Host name.
+   * @return Future of the IP addresses.
+   */
+  CompletableFuture<InetAddress[]> resolveAllAsync(String host);
+
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2015-2025 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package sockslib.server.dns;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * The class <code>SystemDnsResolver</code> resolves host names with
+ * {@link InetAddress#getByName(String)}. Asynchronous lookups run in an executor, by default a
+ * small pool of daemon threads.
+ *
+ * @version 1.0
+ */
+public class SystemDnsResolver implements DnsResolver {
+
+  /**
+   * Default number of threads which run asynchronous lookups.
+   */
+  public static final int DEFAULT_THREAD_NUMBER = 4;
+
+  private final Executor executor;
+
+  /**
+   * Constructs a {@link SystemDnsResolver} with a pool of {@link #DEFAULT_THREAD_NUMBER} daemon
+   * threads.
+   */
+  public SystemDnsResolver() {
+    ThreadPoolExecutor pool =
+        new ThreadPoolExecutor(DEFAULT_THREAD_NUMBER, DEFAULT_THREAD_NUMBER, 60, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<Runnable>(),
+            new ThreadFactoryBuilder().setNameFormat("dns-%d").setDaemon(true).build());
+    pool.allowCoreThreadTimeOut(true);
+    executor = pool;
+  }
+
+  /**
+   * Constructs a {@link SystemDnsResolver} which runs asynchronous lookups in an executor.
+   *
+   * @param executor Executor.
+   */
+  public SystemDnsResolver(Executor executor) {
+    this.executor = checkNotNull(executor, "Argument [executor] may not be null");
+  }
+
+  @Override
+  public InetAddress resolve(String host) throws UnknownHostException {
+    return InetAddress.getByName(checkNotNull(host, "Argument [host] may not be null"));
+  }
+
+  @Override
+  public CompletableFuture<InetAddress> resolveAsync(String host) {
+    return resolveAllAsync(host).thenApply(addresses -> addresses[0]);
+  }
+
+  @Override
+  public InetAddress[] resolveAll(String host) throws UnknownHostException {
+    return InetAddress.getAllByName(checkNotNull(host, "Argument [host] may not be null"));
+  }
+
+  @Override
+  public CompletableFuture<InetAddress[]> resolveAllAsync(final String host) {
+    checkNotNull(host, "Argument [host] may not be null");
+    final CompletableFuture<InetAddress[]> future = new CompletableFuture<>();
+    try {
+      executor.execute(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            future.complete(InetAddress.getAllByName(host));
+          } catch (UnknownHostException | RuntimeException e) {
+            future.completeExceptionally(e);
+          }
+        }
+      });
+    } catch (RejectedExecutionException e) {
+      future.completeExceptionally(e);
+    }
+    return future;
+  }
+
+  public Executor getExecutor() {
+    return executor;
+  }
+
+}
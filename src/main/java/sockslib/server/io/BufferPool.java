@@ -0,0 +1,286 @@
+/*
+ * Copyright 2015-2025 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package sockslib.server.io;
+
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * The class <code>BufferPool</code> is a pool of buffers which are grouped in slab classes by
+ * size, such as 4 KB, 16 KB and 64 KB.
+ * <p>
+ * {@link #acquire(int)} returns a pooled buffer of the smallest slab class which is not less
+ * than the requested size. A buffer which is larger than the largest slab class is allocated
+ * but never pooled. Each slab class keeps at most a fixed number of idle buffers, the rest are
+ * discarded on {@link #release(Object)}.
+ * </p>
+ *
+ * @param <T> Type of buffer.
+ * @version 1.0
+ * @see HeapBufferPool
+ * @see DirectBufferPool
+ */
+public abstract class BufferPool<T> {
+
+  /**
+   * Default sizes of slab classes.
+   */
+  public static final int[] DEFAULT_SLAB_SIZES = {4 * 1024, 16 * 1024, 64 * 1024};
+
+  /**
+   * Default max number of idle buffers in each slab class.
+   */
+  public static final int DEFAULT_MAX_IDLE = 1024;
+
+  private final int[] slabSizes;
+
+  private final int maxIdle;
+
+  private final Queue<T>[] slabs;
+
+  private final AtomicInteger[] idleCounts;
+
+  private final AtomicLong acquireCount = new AtomicLong();
+
+  private final AtomicLong missCount = new AtomicLong();
+
+  private final AtomicLong releaseCount = new AtomicLong();
+
+  private final AtomicLong discardCount = new AtomicLong();
+
+  /**
+   * Constructs a pool with slab classes of 4 KB, 16 KB and 64 KB.
+   */
+  protected BufferPool() {
+    this(DEFAULT_SLAB_SIZES, DEFAULT_MAX_IDLE);
+  }
+
+  /**
+   * Constructs a pool.
+   *
+   * @param slabSizes Sizes of slab classes.
+   * @param maxIdle   Max number of idle buffers in each slab class.
+   */
+  @SuppressWarnings("unchecked")
+  protected BufferPool(int[] slabSizes, int maxIdle) {
+    checkNotNull(slabSizes, "Argument [slabSizes] may not be null");
+    checkArgument(slabSizes.length > 0, "Argument [slabSizes] may not be empty");
+    checkArgument(maxIdle >= 0, "Argument [maxIdle] may not be negative");
+    this.slabSizes = slabSizes.clone();
+    Arrays.sort(this.slabSizes);
+    checkArgument(this.slabSizes[0] > 0, "Size of slab class must be greater than 0");
+    this.maxIdle = maxIdle;
+    slabs = new Queue[slabSizes.length];
+    idleCounts = new AtomicInteger[slabSizes.length];
+    for (int i = 0; i < slabSizes.length; i++) {
+      slabs[i] = new ConcurrentLinkedQueue<>();
+      idleCounts[i] = new AtomicInteger();
+    }
+  }
+
+  /**
+   * Acquires a buffer whose capacity is not less than <code>minSize</code>.
+   *
+   * @param minSize Min capacity of the buffer.
+   * @return A buffer.
+   */
+  public T acquire(int minSize) {
+    acquireCount.incrementAndGet();
+    int index = slabIndexFor(minSize);
+    if (index < 0) {
+      missCount.incrementAndGet();
+      return allocate(minSize);
+    }
+    T buffer = slabs[index].poll();
+    if (buffer == null) {
+      missCount.incrementAndGet();
+      return allocate(slabSizes[index]);
+    }
+    idleCounts[index].decrementAndGet();
+    return buffer;
+  }
+
+  /**
+   * Returns a buffer to the pool. The buffer can't be used any more after it's released.
+   *
+   * @param buffer A buffer which is acquired from this pool.
+   */
+  public void release(T buffer) {
+    if (buffer == null) {
+      return;
+    }
+    releaseCount.incrementAndGet();
+    int index = Arrays.binarySearch(slabSizes, capacity(buffer));
+    if (index < 0 || idleCounts[index].incrementAndGet() > maxIdle) {
+      if (index >= 0) {
+        idleCounts[index].decrementAndGet();
+      }
+      discardCount.incrementAndGet();
+      return;
+    }
+    reset(buffer);
+    slabs[index].offer(buffer);
+  }
+
+  /**
+   * Returns the size of the next slab class which is larger than <code>size</code>.
+   *
+   * @param size Current size.
+   * @return Size of the next slab class, or <code>size</code> if there is no larger slab class.
+   */
+  public int nextSize(int size) {
+    for (int slabSize : slabSizes) {
+      if (slabSize > size) {
+        return slabSize;
+      }
+    }
+    return size;
+  }
+
+  /**
+   * Returns the size of the smallest slab class.
+   *
+   * @return Size of the smallest slab class.
+   */
+  public int getMinSize() {
+    return slabSizes[0];
+  }
+
+  private int slabIndexFor(int size) {
+    for (int i = 0; i < slabSizes.length; i++) {
+      if (slabSizes[i] >= size) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Allocates a new buffer.
+   *
+   * @param size Capacity of the buffer.
+   * @return New buffer.
+   */
+  protected abstract T allocate(int size);
+
+  /**
+   * Returns capacity of a buffer.
+   *
+   * @param buffer Buffer.
+   * @return Capacity of the buffer.
+   */
+  protected abstract int capacity(T buffer);
+
+  /**
+   * Resets a buffer before it's pooled.
+   *
+   * @param buffer Buffer.
+   */
+  protected void reset(T buffer) {
+  }
+
+  /**
+   * Returns number of {@link #acquire(int)} calls.
+   *
+   * @return Number of {@link #acquire(int)} calls.
+   */
+  public long getAcquireCount() {
+    return acquireCount.get();
+  }
+
+  /**
+   * Returns number of acquisitions which allocated a new buffer.
+   *
+   * @return Number of acquisitions which allocated a new buffer.
+   */
+  public long getMissCount() {
+    return missCount.get();
+  }
+
+  public long getReleaseCount() {
+    return releaseCount.get();
+  }
+
+  /**
+   * Returns number of released buffers which are not pooled.
+   *
+   * @return Number of released buffers which are not pooled.
+   */
+  public long getDiscardCount() {
+    return discardCount.get();
+  }
+
+  /**
+   * Returns number of idle buffers in the pool.
+   *
+   * @return Number of idle buffers.
+   */
+  public int getIdleCount() {
+    int count = 0;
+    for (AtomicInteger idleCount : idleCounts) {
+      count += idleCount.get();
+    }
+    return count;
+  }
+
+  /**
+   * Returns total bytes of idle buffers in the pool.
+   *
+   * @return Total bytes of idle buffers.
+   */
+  public long getIdleBytes() {
+    long bytes = 0;
+    for (int i = 0; i < slabSizes.length; i++) {
+      bytes += (long) slabSizes[i] * idleCounts[i].get();
+    }
+    return bytes;
+  }
+
+  /**
+   * Returns number of buffers which are acquired but not released yet.
+   *
+   * @return Number of buffers in use.
+   */
+  public long getInUseCount() {
+    return acquireCount.get() - releaseCount.get();
+  }
+
+  public int[] getSlabSizes() {
+    return slabSizes.clone();
+  }
+
+  public int getMaxIdle() {
+    return maxIdle;
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder builder = new StringBuilder(getClass().getSimpleName());
+    builder.append("[acquire=").append(getAcquireCount());
+    builder.append(", miss=").append(getMissCount());
+    builder.append(", release=").append(getReleaseCount());
+    builder.append(", discard=").append(getDiscardCount());
+    builder.append(", inUse=").append(getInUseCount());
+    builder.append(", idle=").append(getIdleCount());
+    builder.append(", idleBytes=").append(getIdleBytes()).append("]");
+    return builder.toString();
+  }
+}
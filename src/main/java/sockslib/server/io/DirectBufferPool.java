@@ -0,0 +1,61 @@
+/*
+ * Copyright 2015-2025 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package sockslib.server.io;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The class <code>DirectBufferPool</code> is a {@link BufferPool} of direct {@link ByteBuffer}.
+ * Direct buffers are expensive to allocate and are released by GC lazily, so they should always
+ * be pooled. It's used by {@link sockslib.server.nio.NioSocksProxyServer}.
+ *
+ * @version 1.0
+ */
+public class DirectBufferPool extends BufferPool<ByteBuffer> {
+
+  private static final DirectBufferPool DEFAULT = new DirectBufferPool();
+
+  public DirectBufferPool() {
+    super();
+  }
+
+  public DirectBufferPool(int[] slabSizes, int maxIdle) {
+    super(slabSizes, maxIdle);
+  }
+
+  /**
+   * Returns the pool shared by the whole JVM.
+   *
+   * @return The shared pool.
+   */
+  public static DirectBufferPool getDefault() {
+    return DEFAULT;
+  }
+
+  @Override
+  protected ByteBuffer allocate(int size) {
+    return ByteBuffer.allocateDirect(size);
+  }
+
+  @Override
+  protected int capacity(ByteBuffer buffer) {
+    return buffer.capacity();
+  }
+
+  @Override
+  protected void reset(ByteBuffer buffer) {
+    buffer.clear();
+  }
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright 2015-2025 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package sockslib.server.io;
+
+/**
+ * The class <code>HeapBufferPool</code> is a {@link BufferPool} of <code>byte[]</code>. It's used
+ * by {@link StreamPipe} and {@link sockslib.server.UDPRelayServer}.
+ *
+ * @version 1.0
+ */
+public class HeapBufferPool extends BufferPool<byte[]> {
+
+  private static final HeapBufferPool DEFAULT = new HeapBufferPool();
+
+  public HeapBufferPool() {
+    super();
+  }
+
+  public HeapBufferPool(int[] slabSizes, int maxIdle) {
+    super(slabSizes, maxIdle);
+  }
+
+  /**
+   * Returns the pool shared by the whole JVM.
+   *
+   * @return The shared pool.
+   */
+  public static HeapBufferPool getDefault() {
+    return DEFAULT;
+  }
+
+  @Override
+  protected byte[] allocate(int size) {
+    return new byte[size];
+  }
+
+  @Override
+  protected int capacity(byte[] buffer) {
+    return buffer.length;
+  }
+}
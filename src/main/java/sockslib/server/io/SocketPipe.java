@@ -21,6 +21,7 @@ import java.io.IOException;
 import java.net.Socket;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.Executor;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
@@ -74,7 +75,7 @@ public class SocketPipe implements Pipe {
   /**
    * flag.
    */
-  private boolean running = false;
+  private volatile boolean running = false;
 
   private PipeListener listener = new PipeListenerImp();
 
@@ -86,12 +87,27 @@ public class SocketPipe implements Pipe {
    * @throws IOException If an I/O error occurred.
    */
   public SocketPipe(Socket socket1, Socket socket2) throws IOException {
+    this(socket1, socket2, null);
+  }
+
+  /**
+   * Constructs SocketPipe instance by tow connected sockets and an executor which will run both
+   * directions of the pipe.
+   *
+   * @param socket1  A connected socket.
+   * @param socket2  Another connected socket.
+   * @param executor Executor, <code>null</code> means creating two new threads when it starts.
+   * @throws IOException If an I/O error occurred.
+   */
+  public SocketPipe(Socket socket1, Socket socket2, Executor executor) throws IOException {
     this.socket1 = checkNotNull(socket1, "Argument [socks1] may not be null");
     this.socket2 = checkNotNull(socket2, "Argument [socks1] may not be null");
-    pipe1 = new StreamPipe(socket1.getInputStream(), socket2.getOutputStream(), OUTPUT_PIPE_NAME);
+    StreamPipe pipe1 =
+        new StreamPipe(socket1.getInputStream(), socket2.getOutputStream(), OUTPUT_PIPE_NAME);
     pipe1.setAttribute(ATTR_SOURCE_SOCKET, socket1);
     pipe1.setAttribute(ATTR_DESTINATION_SOCKET, socket2);
-    pipe2 = new StreamPipe(socket2.getInputStream(), socket1.getOutputStream(), INPUT_PIPE_NAME);
+    StreamPipe pipe2 =
+        new StreamPipe(socket2.getInputStream(), socket1.getOutputStream(), INPUT_PIPE_NAME);
     pipe2.setAttribute(ATTR_SOURCE_SOCKET, socket2);
     pipe2.setAttribute(ATTR_DESTINATION_SOCKET, socket1);
 
@@ -99,11 +115,19 @@ public class SocketPipe implements Pipe {
     pipe2.addPipeListener(listener);
     pipe1.setAttribute(ATTR_PARENT_PIPE, this);
     pipe2.setAttribute(ATTR_PARENT_PIPE, this);
+    pipe1.setExecutor(executor);
+    pipe2.setExecutor(executor);
+    this.pipe1 = pipe1;
+    this.pipe2 = pipe2;
   }
 
   @Override
   public boolean start() {
-    running = pipe1.start() && pipe2.start();
+    running = pipe1.start();
+    if (running && !pipe2.start()) {
+      // Never leave a half-open pipe.
+      close();
+    }
     return running;
   }
 
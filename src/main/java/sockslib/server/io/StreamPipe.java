@@ -25,6 +25,8 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
@@ -45,9 +47,9 @@ public class StreamPipe implements Runnable, Pipe {
   protected static final Logger logger = LoggerFactory.getLogger(StreamPipe.class);
 
   /**
-   * Default buffer size.
+   * Default max buffer size.
    */
-  private static final int BUFFER_SIZE = 1024 * 1024 * 5;
+  private static final int BUFFER_SIZE = 64 * 1024;
 
   private Map<String, Object> attributes = new HashMap<>();
 
@@ -67,10 +69,15 @@ public class StreamPipe implements Runnable, Pipe {
   private OutputStream destination;
 
   /**
-   * Buffer size.
+   * Max buffer size. The buffer grows from the smallest slab class of the pool up to this size.
    */
   private int bufferSize = BUFFER_SIZE;
 
+  /**
+   * Pool which buffers are borrowed from.
+   */
+  private HeapBufferPool bufferPool = HeapBufferPool.getDefault();
+
   /**
    * Running thread.
    */
@@ -79,7 +86,7 @@ public class StreamPipe implements Runnable, Pipe {
   /**
    * A flag.
    */
-  private boolean running = false;
+  private volatile boolean running = false;
 
   /**
    * Name of the pipe.
@@ -88,6 +95,10 @@ public class StreamPipe implements Runnable, Pipe {
 
   private boolean daemon = false;
 
+  /**
+   * Executor used to run the pipe. If it's <code>null</code>, a new thread will be created.
+   */
+  private Executor executor;
 
   /**
    * Constructs a Pipe instance with a input stream and a output stream.
@@ -117,9 +128,19 @@ public class StreamPipe implements Runnable, Pipe {
   public boolean start() {
     if (!running) { // If the pipe is not running, run it.
       running = true;
-      runningThread = new Thread(this);
-      runningThread.setDaemon(daemon);
-      runningThread.start();
+      if (executor == null) {
+        runningThread = new Thread(this);
+        runningThread.setDaemon(daemon);
+        runningThread.start();
+      } else {
+        try {
+          executor.execute(this);
+        } catch (RejectedExecutionException e) {
+          running = false;
+          logger.warn("Pipe[{}] rejected by executor", name);
+          return false;
+        }
+      }
       for (PipeListener listener : getPipeListeners()) {
         listener.onStart(this);
       }
@@ -133,7 +154,9 @@ public class StreamPipe implements Runnable, Pipe {
   public boolean stop() {
     if (running) { // if the pipe is working, stop it.
       running = false;
-      if (runningThread != null) {
+      // A pooled thread is never interrupted because it may be running another task. The pipe
+      // will stop when its streams are closed.
+      if (runningThread != null && executor == null) {
         runningThread.interrupt();
       }
       for (PipeListener listener : getPipeListeners()) {
@@ -146,13 +169,30 @@ public class StreamPipe implements Runnable, Pipe {
 
   @Override
   public void run() {
-    byte[] buffer = new byte[bufferSize];
-    while (running) {
-      int size = doTransfer(buffer);
-      if (size == -1) {
-        stop();
+    // Start with a small buffer, only a pipe which fills its buffer gets a larger one.
+    byte[] buffer = bufferPool.acquire(Math.min(bufferPool.getMinSize(), bufferSize));
+    try {
+      while (running) {
+        int size = doTransfer(buffer);
+        if (size == -1) {
+          stop();
+        } else if (size == buffer.length && buffer.length < bufferSize) {
+          buffer = grow(buffer);
+        }
       }
+    } finally {
+      bufferPool.release(buffer);
+    }
+  }
+
+  private byte[] grow(byte[] buffer) {
+    int size = bufferPool.nextSize(buffer.length);
+    if (size == buffer.length) { // Larger than any slab class.
+      size = bufferSize;
     }
+    size = Math.min(size, bufferSize);
+    bufferPool.release(buffer);
+    return bufferPool.acquire(size);
   }
 
   /**
@@ -288,4 +328,25 @@ public class StreamPipe implements Runnable, Pipe {
   public void setDaemon(boolean daemon) {
     this.daemon = daemon;
   }
+
+  public HeapBufferPool getBufferPool() {
+    return bufferPool;
+  }
+
+  public void setBufferPool(HeapBufferPool bufferPool) {
+    this.bufferPool = checkNotNull(bufferPool, "Argument [bufferPool] may not be null");
+  }
+
+  public Executor getExecutor() {
+    return executor;
+  }
+
+  /**
+   * Sets an executor to run the pipe instead of creating a new thread.
+   *
+   * @param executor Executor, <code>null</code> means creating a new thread when it starts.
+   */
+  public void setExecutor(Executor executor) {
+    this.executor = executor;
+  }
 }
@@ -14,6 +14,8 @@
 
 package sockslib.server.listener;
 
+import sockslib.server.msg.ServerReply;
+
 /**
  * <code>CloseSessionException</code> is an exception to request
  * {@link sockslib.server.SocksHandler} to close current session.
@@ -24,6 +26,11 @@ package sockslib.server.listener;
  */
 public class CloseSessionException extends Exception {
 
+  /**
+   * Reply which is sent to the client before the session is closed.
+   */
+  private ServerReply serverReply;
+
   public CloseSessionException() {
     super("Stop Process");
   }
@@ -40,8 +47,30 @@ public class CloseSessionException extends Exception {
     super(message, cause);
   }
 
+  /**
+   * Constructs an instance of {@link CloseSessionException} thrown by a
+   * {@link CommandListener}, the handler sends <code>serverReply</code> to the client before it
+   * closes the session.
+   *
+   * @param message     Message.
+   * @param serverReply Reply of the command.
+   */
+  public CloseSessionException(String message, ServerReply serverReply) {
+    super(message);
+    this.serverReply = serverReply;
+  }
+
   protected CloseSessionException(String message, Throwable cause, boolean enableSuppression,
       boolean writableStackTrace) {
     super(message, cause, enableSuppression, writableStackTrace);
   }
+
+  /**
+   * Returns the reply which is sent to the client before the session is closed.
+   *
+   * @return Reply of the command, or <code>null</code> if no reply is sent.
+   */
+  public ServerReply getServerReply() {
+    return serverReply;
+  }
 }
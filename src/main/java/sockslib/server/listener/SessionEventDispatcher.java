@@ -0,0 +1,331 @@
+/*
+ * Copyright 2015-2025 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package sockslib.server.listener;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import sockslib.utils.RingBuffer;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * The class <code>SessionEventDispatcher</code> runs session listeners in dedicated worker
+ * threads, so that slow listeners don't add to the latency of handshakes.
+ * <p>
+ * Each worker consumes a bounded {@link RingBuffer}. Events of a session always go to the same
+ * worker, so they are dispatched in the order they are published. When a ring buffer is full, the
+ * event is dropped or the publisher waits, depending on the {@link OverflowPolicy}.
+ * </p>
+ *
+ * @version 1.0
+ * @see sockslib.server.BasicSessionManager#setEventDispatcher(SessionEventDispatcher)
+ */
+public class SessionEventDispatcher {
+
+  private static final Logger logger = LoggerFactory.getLogger(SessionEventDispatcher.class);
+
+  /**
+   * What to do when the ring buffer of a worker is full.
+   */
+  public enum OverflowPolicy {
+
+    /**
+     * Drops the event, listeners never see it.
+     */
+    DROP,
+
+    /**
+     * Waits until the worker takes an event.
+     */
+    BLOCK
+  }
+
+  /**
+   * Nanoseconds a blocked publisher waits before it tries again.
+   */
+  private static final long BLOCK_WAIT_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+
+  private final Worker[] workers;
+
+  private final OverflowPolicy overflowPolicy;
+
+  private volatile boolean shutdown = false;
+
+  private final LongAdder publishedCount = new LongAdder();
+
+  private final LongAdder dispatchedCount = new LongAdder();
+
+  private final LongAdder droppedCount = new LongAdder();
+
+  private final LongAdder totalLag = new LongAdder();
+
+  private final AtomicLong maxLag = new AtomicLong();
+
+  /**
+   * Constructs a dispatcher with 1 worker, 4096 slots and {@link OverflowPolicy#DROP}.
+   */
+  public SessionEventDispatcher() {
+    this(1, 4096, OverflowPolicy.DROP);
+  }
+
+  /**
+   * Constructs a dispatcher and starts its workers.
+   *
+   * @param workerCount    Number of worker threads.
+   * @param capacity       Capacity of the ring buffer of each worker.
+   * @param overflowPolicy What to do when a ring buffer is full.
+   */
+  public SessionEventDispatcher(int workerCount, int capacity, OverflowPolicy overflowPolicy) {
+    checkArgument(workerCount > 0, "Argument [workerCount] must be greater than 0");
+    this.overflowPolicy = checkNotNull(overflowPolicy, "Argument [overflowPolicy] may not be null");
+    ThreadFactory threadFactory =
+        new ThreadFactoryBuilder().setNameFormat("session-event-%d").setDaemon(true).build();
+    workers = new Worker[workerCount];
+    for (int i = 0; i < workerCount; i++) {
+      workers[i] = new Worker(new RingBuffer<Event>(capacity));
+      workers[i].thread = threadFactory.newThread(workers[i]);
+    }
+    for (Worker worker : workers) {
+      worker.thread.start();
+    }
+  }
+
+  /**
+   * Publishes an event. Events with the same key are dispatched in order. After the dispatcher is
+   * shut down, events run in the calling thread, and so may the events which are published while
+   * it shuts down.
+   *
+   * @param key   Key of the event, such as the ID of a session.
+   * @param event Event which calls listeners.
+   * @return <code>false</code> if the event is dropped.
+   */
+  public boolean publish(long key, Runnable event) {
+    if (shutdown) {
+      dispatch(new Event(event));
+      return true;
+    }
+    Worker worker = workers[(int) Math.floorMod(key, (long) workers.length)];
+    Event wrapper = new Event(event);
+    while (!worker.ringBuffer.offer(wrapper)) {
+      if (overflowPolicy == OverflowPolicy.DROP) {
+        droppedCount.increment();
+        logger.debug("Session event {} dropped, ring buffer is full", key);
+        return false;
+      }
+      if (shutdown) {
+        dispatch(wrapper);
+        return true;
+      }
+      LockSupport.parkNanos(BLOCK_WAIT_NANOS);
+    }
+    publishedCount.increment();
+    if (shutdown) {
+      // The worker may have found its ring buffer empty and stopped before the offer, drains it
+      // here so that the event isn't stranded.
+      drain(worker);
+    } else if (worker.sleeping) {
+      LockSupport.unpark(worker.thread);
+    }
+    return true;
+  }
+
+  /**
+   * Dispatches the events of a worker in the calling thread until its ring buffer is empty.
+   */
+  private void drain(Worker worker) {
+    Event event;
+    while ((event = worker.ringBuffer.poll()) != null) {
+      dispatch(event);
+    }
+  }
+
+  /**
+   * Stops the workers after they dispatch the events which are already published.
+   */
+  public void shutdown() {
+    shutdown = true;
+    for (Worker worker : workers) {
+      LockSupport.unpark(worker.thread);
+    }
+  }
+
+  /**
+   * Waits until all workers stop after {@link #shutdown()}.
+   *
+   * @param timeout Max time to wait.
+   * @param unit    Unit of <code>timeout</code>.
+   * @return <code>true</code> if all workers stopped.
+   * @throws InterruptedException If the current thread is interrupted.
+   */
+  public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+    long deadline = System.nanoTime() + unit.toNanos(timeout);
+    for (Worker worker : workers) {
+      long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+      if (remaining <= 0) {
+        return !worker.thread.isAlive();
+      }
+      worker.thread.join(remaining);
+    }
+    for (Worker worker : workers) {
+      if (worker.thread.isAlive()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  public boolean isShutdown() {
+    return shutdown;
+  }
+
+  public OverflowPolicy getOverflowPolicy() {
+    return overflowPolicy;
+  }
+
+  /**
+   * Returns the number of events which are put into ring buffers.
+   *
+   * @return Number of published events.
+   */
+  public long getPublishedCount() {
+    return publishedCount.sum();
+  }
+
+  /**
+   * Returns the number of events which workers have dispatched.
+   *
+   * @return Number of dispatched events.
+   */
+  public long getDispatchedCount() {
+    return dispatchedCount.sum();
+  }
+
+  /**
+   * Returns the number of events which are dropped because a ring buffer was full.
+   *
+   * @return Number of dropped events.
+   */
+  public long getDroppedCount() {
+    return droppedCount.sum();
+  }
+
+  /**
+   * Returns the number of events which wait in ring buffers.
+   *
+   * @return Number of pending events.
+   */
+  public int getPendingCount() {
+    int count = 0;
+    for (Worker worker : workers) {
+      count += worker.ringBuffer.size();
+    }
+    return count;
+  }
+
+  /**
+   * Returns the average time between publishing an event and dispatching it.
+   *
+   * @param unit Unit of the result.
+   * @return Average lag.
+   */
+  public long getAverageLag(TimeUnit unit) {
+    long count = dispatchedCount.sum();
+    return count == 0 ? 0 : unit.convert(totalLag.sum() / count, TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * Returns the max time between publishing an event and dispatching it.
+   *
+   * @param unit Unit of the result.
+   * @return Max lag.
+   */
+  public long getMaxLag(TimeUnit unit) {
+    return unit.convert(maxLag.get(), TimeUnit.NANOSECONDS);
+  }
+
+  private void dispatch(Event event) {
+    long lag = System.nanoTime() - event.publishTime;
+    totalLag.add(lag);
+    long max;
+    while (lag > (max = maxLag.get()) && !maxLag.compareAndSet(max, lag)) {
+      // Retries until the max lag is updated or another thread records a larger one.
+    }
+    try {
+      event.task.run();
+    } catch (Throwable t) {
+      logger.warn("Session listener threw an exception", t);
+    } finally {
+      dispatchedCount.increment();
+    }
+  }
+
+  private static final class Event {
+
+    private final Runnable task;
+
+    private final long publishTime = System.nanoTime();
+
+    Event(Runnable task) {
+      this.task = checkNotNull(task, "Argument [event] may not be null");
+    }
+  }
+
+  private final class Worker implements Runnable {
+
+    private final RingBuffer<Event> ringBuffer;
+
+    private Thread thread;
+
+    /**
+     * <code>true</code> if the worker may park, so that publishers must unpark it.
+     */
+    private volatile boolean sleeping = false;
+
+    Worker(RingBuffer<Event> ringBuffer) {
+      this.ringBuffer = ringBuffer;
+    }
+
+    @Override
+    public void run() {
+      while (true) {
+        Event event = ringBuffer.poll();
+        if (event != null) {
+          dispatch(event);
+          continue;
+        }
+        if (shutdown) {
+          if (ringBuffer.isEmpty()) {
+            return;
+          }
+          continue;
+        }
+        sleeping = true;
+        // Checks again after announcing, or an event published meanwhile would wait forever.
+        if (ringBuffer.isEmpty() && !shutdown) {
+          LockSupport.park(this);
+        }
+        sleeping = false;
+      }
+    }
+  }
+}
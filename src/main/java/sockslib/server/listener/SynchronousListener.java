@@ -0,0 +1,26 @@
+/*
+ * Copyright 2015-2025 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package sockslib.server.listener;
+
+/**
+ * The interface <code>SynchronousListener</code> marks a listener which is always called in the
+ * thread that raised the event, even if the session manager dispatches events with a
+ * {@link SessionEventDispatcher}. It's meant for cheap bookkeeping which must not be delayed or
+ * dropped.
+ *
+ * @version 1.0
+ */
+public interface SynchronousListener {
+}
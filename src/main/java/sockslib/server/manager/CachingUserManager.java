@@ -0,0 +1,311 @@
+/*
+ * Copyright 2015-2025 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package sockslib.server.manager;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.LoadingCache;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListenableFutureTask;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * The class <code>CachingUserManager</code> is a read-through cache in front of any
+ * {@link UserManager}, so that authenticating a client doesn't query a database every time.
+ * <p>
+ * Users are cached by username, including users which don't exist. A password which passed
+ * {@link #check(String, String)} is remembered as a salted SHA-256 digest, so later checks with
+ * the same password are answered from the cache, while any other password is checked by the
+ * underlying manager. Entries expire after a time to live and can be refreshed in the background
+ * before they expire. Changes made through this manager invalidate the cached user at once, changes
+ * made elsewhere are seen after a refresh.
+ * </p>
+ *
+ * @version 1.0
+ */
+public class CachingUserManager implements UserManager, Closeable {
+
+  private static final int SALT_LENGTH = 16;
+
+  private final UserManager userManager;
+
+  private final LoadingCache<String, Entry> cache;
+
+  private final byte[] salt = new byte[SALT_LENGTH];
+
+  private final LongAdder checkHitCount = new LongAdder();
+
+  private final LongAdder checkMissCount = new LongAdder();
+
+  private final LongAdder negativeHitCount = new LongAdder();
+
+  /**
+   * Constructs a cache of at most 10000 users which live 5 minutes and are refreshed after 1
+   * minute.
+   *
+   * @param userManager Underlying user manager.
+   */
+  public CachingUserManager(UserManager userManager) {
+    this(userManager, 10000, 5, 1, TimeUnit.MINUTES);
+  }
+
+  /**
+   * Constructs a cache which refreshes users in a daemon thread.
+   *
+   * @param userManager       Underlying user manager.
+   * @param maximumSize       Max number of cached users.
+   * @param expireAfterWrite  Time to live of a cached user.
+   * @param refreshAfterWrite Time after which a cached user is reloaded in background when it's
+   *                          used, 0 disables refreshing.
+   * @param unit              Unit of <code>expireAfterWrite</code> and
+   *                          <code>refreshAfterWrite</code>.
+   */
+  public CachingUserManager(UserManager userManager, long maximumSize, long expireAfterWrite,
+                            long refreshAfterWrite, TimeUnit unit) {
+    this(userManager, maximumSize, expireAfterWrite, refreshAfterWrite, unit,
+        Executors.newSingleThreadExecutor(
+            new ThreadFactoryBuilder().setNameFormat("user-cache-refresh-%d").setDaemon(true)
+                .build()));
+  }
+
+  /**
+   * Constructs a cache.
+   *
+   * @param userManager       Underlying user manager.
+   * @param maximumSize       Max number of cached users.
+   * @param expireAfterWrite  Time to live of a cached user.
+   * @param refreshAfterWrite Time after which a cached user is reloaded in background when it's
+   *                          used, 0 disables refreshing.
+   * @param unit              Unit of <code>expireAfterWrite</code> and
+   *                          <code>refreshAfterWrite</code>.
+   * @param refreshExecutor   Executor which reloads users.
+   */
+  public CachingUserManager(UserManager userManager, long maximumSize, long expireAfterWrite,
+                            long refreshAfterWrite, TimeUnit unit, Executor refreshExecutor) {
+    this.userManager = checkNotNull(userManager, "Argument [userManager] may not be null");
+    checkNotNull(unit, "Argument [unit] may not be null");
+    checkNotNull(refreshExecutor, "Argument [refreshExecutor] may not be null");
+    checkArgument(maximumSize > 0, "Argument [maximumSize] must be greater than 0");
+    checkArgument(expireAfterWrite > 0, "Argument [expireAfterWrite] must be greater than 0");
+    checkArgument(refreshAfterWrite >= 0, "Argument [refreshAfterWrite] must not be negative");
+    new SecureRandom().nextBytes(salt);
+
+    CacheBuilder<Object, Object> builder = CacheBuilder.newBuilder().maximumSize(maximumSize)
+        .expireAfterWrite(expireAfterWrite, unit).recordStats();
+    if (refreshAfterWrite > 0) {
+      builder.refreshAfterWrite(refreshAfterWrite, unit);
+    }
+    cache = builder.build(new CacheLoader<String, Entry>() {
+      @Override
+      public Entry load(String username) {
+        return new Entry(userManager.find(username));
+      }
+
+      @Override
+      public ListenableFuture<Entry> reload(final String username, final Entry oldEntry) {
+        ListenableFutureTask<Entry> task = ListenableFutureTask.create(() -> {
+          Entry entry = load(username);
+          // Keeps the checked password unless the stored one has changed.
+          if (entry.user != null && oldEntry.user != null && entry.user.getPassword() != null
+              && entry.user.getPassword().equals(oldEntry.user.getPassword())) {
+            entry.passwordDigest = oldEntry.passwordDigest;
+          }
+          return entry;
+        });
+        refreshExecutor.execute(task);
+        return task;
+      }
+    });
+  }
+
+  @Override
+  public void create(User user) {
+    userManager.create(user);
+    invalidate(user.getUsername());
+  }
+
+  @Override
+  public UserManager addUser(String username, String password) {
+    userManager.addUser(username, password);
+    invalidate(username);
+    return this;
+  }
+
+  @Override
+  public User check(String username, String password) {
+    if (username == null || password == null) {
+      return null;
+    }
+    Entry entry = cache.getUnchecked(username);
+    if (entry.user == null) {
+      negativeHitCount.increment();
+      return null;
+    }
+    byte[] digest = digest(password);
+    byte[] passwordDigest = entry.passwordDigest;
+    if (passwordDigest != null && MessageDigest.isEqual(passwordDigest, digest)) {
+      checkHitCount.increment();
+      return entry.user.copy();
+    }
+    checkMissCount.increment();
+    User user = userManager.check(username, password);
+    if (user != null) {
+      entry.passwordDigest = digest;
+    }
+    return user;
+  }
+
+  @Override
+  public void delete(String username) {
+    userManager.delete(username);
+    invalidate(username);
+  }
+
+  @Override
+  public List<User> findAll() {
+    return userManager.findAll();
+  }
+
+  @Override
+  public void update(User user) {
+    checkNotNull(user, "Argument [user] may not be null");
+    String username = user.getUsername();
+    userManager.update(user);
+    invalidate(username);
+  }
+
+  @Override
+  public User find(String username) {
+    User user = cache.getUnchecked(username).user;
+    return user == null ? null : user.copy();
+  }
+
+  /**
+   * Removes a user from the cache, so that it's loaded from the underlying manager next time.
+   *
+   * @param username Username.
+   */
+  public void invalidate(String username) {
+    if (username != null) {
+      cache.invalidate(username);
+    }
+  }
+
+  /**
+   * Removes all users from the cache.
+   */
+  public void invalidateAll() {
+    cache.invalidateAll();
+  }
+
+  /**
+   * Empties the cache and closes the underlying manager if it's {@link Closeable}.
+   *
+   * @throws IOException If the underlying manager fails to close.
+   */
+  @Override
+  public void close() throws IOException {
+    cache.invalidateAll();
+    if (userManager instanceof Closeable) {
+      ((Closeable) userManager).close();
+    }
+  }
+
+  public UserManager getUserManager() {
+    return userManager;
+  }
+
+  /**
+   * Returns statistics of loading users, such as hits and misses of finding a username.
+   *
+   * @return Statistics of the cache.
+   */
+  public CacheStats getStats() {
+    return cache.stats();
+  }
+
+  /**
+   * Returns the number of checks which are answered from the cache.
+   *
+   * @return Number of hits.
+   */
+  public long getCheckHitCount() {
+    return checkHitCount.sum();
+  }
+
+  /**
+   * Returns the number of checks which the underlying manager answered because the password was
+   * not checked before.
+   *
+   * @return Number of misses.
+   */
+  public long getCheckMissCount() {
+    return checkMissCount.sum();
+  }
+
+  /**
+   * Returns the number of checks which are rejected because the user is cached as unknown.
+   *
+   * @return Number of negative hits.
+   */
+  public long getNegativeHitCount() {
+    return negativeHitCount.sum();
+  }
+
+  public long size() {
+    return cache.size();
+  }
+
+  private byte[] digest(String password) {
+    try {
+      MessageDigest messageDigest = MessageDigest.getInstance("SHA-256");
+      messageDigest.update(salt);
+      return messageDigest.digest(password.getBytes(StandardCharsets.UTF_8));
+    } catch (NoSuchAlgorithmException e) {
+      // Every Java platform supports SHA-256.
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * A cached user, <code>user</code> is <code>null</code> if the user doesn't exist.
+   */
+  private static final class Entry {
+
+    private final User user;
+
+    private volatile byte[] passwordDigest;
+
+    Entry(User user) {
+      this.user = user;
+    }
+  }
+}
@@ -24,6 +24,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.sql.DataSource;
+import java.io.Closeable;
 import java.util.List;
 
 import static com.google.common.base.Preconditions.checkNotNull;
@@ -35,7 +36,7 @@ import static com.google.common.base.Preconditions.checkNotNull;
  * @version 1.0
  * @date Aug 28,2015
  */
-public class JdbcBasedUserManager implements UserManager {
+public class JdbcBasedUserManager implements UserManager, Closeable {
 
   public static final String USER_TABLE_NAME = "SOCKS_USERS";
   private static final Logger logger = LoggerFactory.getLogger(JdbcConfiguration.class);
@@ -132,12 +133,26 @@ public class JdbcBasedUserManager implements UserManager {
     return null;
   }
 
+  /**
+   * Closes the connections and statements which the {@link JdbcTemplate} keeps open. It should be
+   * called after the server which uses this manager shuts down.
+   */
+  @Override
+  public void close() {
+    if (jdbcTemplate != null) {
+      jdbcTemplate.close();
+    }
+  }
+
   public DataSource getDataSource() {
     return dataSource;
   }
 
   public void setDataSource(DataSource dataSource) {
     this.dataSource = dataSource;
+    if (jdbcTemplate != null) {
+      jdbcTemplate.close();
+    }
     jdbcTemplate = new JdbcTemplate(dataSource);
   }
 
@@ -18,17 +18,14 @@ import sockslib.common.AddressType;
 import sockslib.common.SocksCommand;
 import sockslib.common.SocksException;
 import sockslib.utils.SocksUtil;
-import sockslib.utils.StreamUtil;
 
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.SocketAddress;
-import java.net.UnknownHostException;
-import java.nio.charset.Charset;
-
-import static sockslib.utils.StreamUtil.checkEnd;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 
 /**
  * The class <code>RequestCommandMessage</code> represents a SOCKS5 command message.
@@ -37,7 +34,7 @@ import static sockslib.utils.StreamUtil.checkEnd;
  * @version 1.0
  * @date Apr 6, 2015 11:10:12 AM
  */
-public class CommandMessage implements ReadableMessage, WritableMessage {
+public class CommandMessage implements FramedMessage, WritableMessage {
 
   /**
    * Value of CONNECT command.
@@ -69,6 +66,12 @@ public class CommandMessage implements ReadableMessage, WritableMessage {
    */
   private InetAddress inetAddress;
 
+  /**
+   * All IP addresses of the destination host, if the handler resolved it before command
+   * listeners run.
+   */
+  private InetAddress[] resolvedAddresses;
+
   /**
    * Port of destination.
    */
@@ -127,12 +130,11 @@ public class CommandMessage implements ReadableMessage, WritableMessage {
         break;
 
       case AddressType.DOMAIN_NAME:
-        final int hostLength = host.getBytes().length;
+        final byte[] hostBytes = host.getBytes(StandardCharsets.UTF_8);
+        final int hostLength = hostBytes.length;
         bytes = new byte[7 + hostLength];
         bytes[4] = (byte) hostLength;
-        for (int i = 0; i < hostLength; i++) {
-          bytes[5 + i] = host.getBytes()[i];
-        }
+        System.arraycopy(hostBytes, 0, bytes, 5, hostLength);
         bytes[5 + hostLength] = SocksUtil.getFirstByteFromInt(port);
         bytes[6 + hostLength] = SocksUtil.getSecondByteFromInt(port);
         break;
@@ -152,9 +154,32 @@ public class CommandMessage implements ReadableMessage, WritableMessage {
 
   @Override
   public void read(InputStream inputStream) throws SocksException, IOException {
+    HandshakeCodec.forCurrentThread().read(inputStream, this);
+  }
+
+  @Override
+  public int getFrameLength(byte[] frame, int length) {
+    // VER, CMD, RSV, ATYP and the first byte of the address.
+    if (length < 5) {
+      return 5;
+    }
+    switch (frame[3]) {
+      case AddressType.IPV4:
+        return 10;
+      case AddressType.IPV6:
+        return 22;
+      case AddressType.DOMAIN_NAME:
+        return 7 + (frame[4] & 0xFF);
+      default:
+        // Unknown address, only the port follows.
+        return 6;
+    }
+  }
 
-    version = checkEnd(inputStream.read());
-    int cmd = checkEnd(inputStream.read());
+  @Override
+  public void decode(byte[] frame, int length) throws SocksException, IOException {
+    version = frame[0] & 0xFF;
+    int cmd = frame[1] & 0xFF;
 
     switch (cmd) {
       case CMD_CONNECT:
@@ -170,8 +195,8 @@ public class CommandMessage implements ReadableMessage, WritableMessage {
       default:
         socksException = SocksException.serverReplyException(ServerReply.COMMAND_NOT_SUPPORTED);
     }
-    reserved = checkEnd(inputStream.read());
-    addressType = checkEnd(inputStream.read());
+    reserved = frame[2] & 0xFF;
+    addressType = frame[3] & 0xFF;
 
     if (!AddressType.isSupport(addressType) && socksException == null) {
       socksException = SocksException.serverReplyException(ServerReply.ADDRESS_TYPE_NOT_SUPPORTED);
@@ -181,29 +206,20 @@ public class CommandMessage implements ReadableMessage, WritableMessage {
     switch (addressType) {
 
       case AddressType.IPV4:
-        byte[] addressBytes = StreamUtil.read(inputStream, 4);
-        inetAddress = InetAddress.getByAddress(addressBytes);
+        inetAddress = InetAddress.getByAddress(Arrays.copyOfRange(frame, 4, 8));
         break;
 
       case AddressType.IPV6:
-        byte[] addressBytes6 = StreamUtil.read(inputStream, 16);
-        inetAddress = InetAddress.getByAddress(addressBytes6);
+        inetAddress = InetAddress.getByAddress(Arrays.copyOfRange(frame, 4, 20));
         break;
 
       case AddressType.DOMAIN_NAME:
-        int domainLength = checkEnd(inputStream.read());
+        int domainLength = frame[4] & 0xFF;
         if (domainLength < 1) {
           throw new SocksException("Length of domain must great than 0");
         }
-        byte[] domainBytes = StreamUtil.read(inputStream, domainLength);
-        host = new String(domainBytes, Charset.forName("UTF-8"));
-        try {
-          inetAddress = InetAddress.getByName(host);
-        } catch (UnknownHostException e) {
-          if (socksException == null) {
-            socksException = SocksException.serverReplyException(ServerReply.HOST_UNREACHABLE);
-          }
-        }
+        // The host is resolved by the handler, see sockslib.server.dns.DnsResolver.
+        host = new String(frame, 5, domainLength, StandardCharsets.UTF_8);
         break;
       default:
         // TODO Implement later.
@@ -211,8 +227,7 @@ public class CommandMessage implements ReadableMessage, WritableMessage {
     }
 
     // Read port
-    byte[] portBytes = StreamUtil.read(inputStream, 2);
-    port = SocksUtil.bytesToInt(portBytes);
+    port = SocksUtil.bytesToInt(frame[length - 2], frame[length - 1]);
 
   }
 
@@ -238,6 +253,12 @@ public class CommandMessage implements ReadableMessage, WritableMessage {
     return socksException != null;
   }
 
+  /**
+   * Returns IP address of destination. If the destination is a host, it's <code>null</code> until
+   * the host is resolved.
+   *
+   * @return IP address of destination.
+   */
   public InetAddress getInetAddress() {
     return inetAddress;
   }
@@ -246,6 +267,21 @@ public class CommandMessage implements ReadableMessage, WritableMessage {
     this.inetAddress = inetAddress;
   }
 
+  /**
+   * Returns all IP addresses of the destination host. The handler may connect any of them, so a
+   * listener which checks the destination must check all of them.
+   *
+   * @return IP addresses of the destination host, or <code>null</code> if the destination isn't
+   * a host or the host is not resolved by this server.
+   */
+  public InetAddress[] getResolvedAddresses() {
+    return resolvedAddresses;
+  }
+
+  public void setResolvedAddresses(InetAddress[] resolvedAddresses) {
+    this.resolvedAddresses = resolvedAddresses;
+  }
+
   public int getPort() {
     return port;
   }
@@ -286,7 +322,16 @@ public class CommandMessage implements ReadableMessage, WritableMessage {
     this.addressType = addressType;
   }
 
+  /**
+   * Returns the socket address of destination. It's an unresolved address if the destination is
+   * a host which has not been resolved yet.
+   *
+   * @return Socket address of destination.
+   */
   public SocketAddress getSocketAddress() {
+    if (inetAddress == null && host != null) {
+      return InetSocketAddress.createUnresolved(host, port);
+    }
     return new InetSocketAddress(inetAddress, port);
   }
 
@@ -103,42 +103,25 @@ public class CommandResponseMessage implements WritableMessage {
 
   @Override
   public byte[] getBytes() {
-    byte[] bytes = null;
-
-    switch (addressType) {
-      case AddressType.IPV4:
-        bytes = new byte[10];
-        for (int i = 0; i < bindAddress.getAddress().length; i++) {
-          bytes[i + 4] = bindAddress.getAddress()[i];
-        }
-        bytes[8] = SocksUtil.getFirstByteFromInt(bindPort);
-        bytes[9] = SocksUtil.getSecondByteFromInt(bindPort);
-        break;
-      case AddressType.IPV6:
-        bytes = new byte[22];
-        for (int i = 0; i < bindAddress.getAddress().length; i++) {
-          bytes[i + 4] = bindAddress.getAddress()[i];
-        }
-        bytes[20] = SocksUtil.getFirstByteFromInt(bindPort);
-        bytes[21] = SocksUtil.getSecondByteFromInt(bindPort);
-        break;
-      case AddressType.DOMAIN_NAME:
-        throw new NotImplementException();
-      default:
-        break;
+    if (addressType == AddressType.DOMAIN_NAME) {
+      throw new NotImplementException();
     }
-
+    // InetAddress.getAddress() returns a copy every time, so call it only once.
+    byte[] address = bindAddress.getAddress();
+    byte[] bytes = new byte[6 + address.length];
     bytes[0] = (byte) version;
     bytes[1] = reply.getValue();
     bytes[2] = (byte) reserved;
     bytes[3] = (byte) addressType;
-
+    System.arraycopy(address, 0, bytes, 4, address.length);
+    bytes[4 + address.length] = SocksUtil.getFirstByteFromInt(bindPort);
+    bytes[5 + address.length] = SocksUtil.getSecondByteFromInt(bindPort);
     return bytes;
   }
 
   @Override
   public int getLength() {
-    return getBytes().length;
+    return 6 + bindAddress.getAddress().length;
   }
 
   /**
@@ -0,0 +1,50 @@
+/*
+ * Copyright 2015-2025 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package sockslib.server.msg;
+
+import sockslib.common.SocksException;
+
+import java.io.IOException;
+
+/**
+ * The interface <code>FramedMessage</code> represents a message whose length can be worked out
+ * from its first bytes, so that {@link HandshakeCodec} can read the whole frame with a few bulk
+ * reads and decode it in place.
+ *
+ * @version 1.0
+ */
+public interface FramedMessage extends ReadableMessage {
+
+  /**
+   * Returns the length of the frame according to the first <code>length</code> bytes. If the
+   * bytes are not enough to know the length, returns the number of bytes needed to know more,
+   * which is always greater than <code>length</code>.
+   *
+   * @param frame  Buffer which holds the beginning of the frame.
+   * @param length Number of bytes in the buffer.
+   * @return Length of the frame, or the number of bytes that should be read first.
+   */
+  int getFrameLength(byte[] frame, int length);
+
+  /**
+   * Decodes the message from a complete frame.
+   *
+   * @param frame  Buffer which holds the frame.
+   * @param length Length of the frame.
+   * @throws SocksException If a SOCKS protocol error occurred.
+   * @throws IOException    If an I/O error occurred.
+   */
+  void decode(byte[] frame, int length) throws SocksException, IOException;
+
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2015-2025 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package sockslib.server.msg;
+
+import sockslib.common.SocksException;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * The class <code>HandshakeCodec</code> reads SOCKS5 handshake frames into one reusable buffer.
+ * <p>
+ * A frame is read with bulk reads, the first one fetches the fixed header and the next one fetches
+ * the rest that the header announces, so a greeting or a request costs two reads instead of one
+ * read per byte. It never reads beyond the end of a frame, the bytes which follow the handshake
+ * stay in the stream for the relay.
+ * </p>
+ * <p>
+ * An instance is not thread safe, it should be used by one session.
+ * </p>
+ *
+ * @version 1.0
+ */
+public class HandshakeCodec {
+
+  /**
+   * Max length of a handshake frame, a username/password message with a 255 bytes username and a
+   * 255 bytes password.
+   */
+  public static final int MAX_FRAME_SIZE = 3 + 255 + 255;
+
+  /**
+   * Codecs used by {@link ReadableMessage#read(InputStream)} of framed messages. A handshake is
+   * read by the thread which handles the connection, so one codec per thread serves the whole
+   * handshake of a connection.
+   */
+  private static final ThreadLocal<HandshakeCodec> THREAD_CODEC =
+      ThreadLocal.withInitial(HandshakeCodec::new);
+
+  private final byte[] buffer = new byte[MAX_FRAME_SIZE];
+
+  /**
+   * Returns the codec of the current thread.
+   *
+   * @return Codec that is reused by all reads on the current thread.
+   */
+  public static HandshakeCodec forCurrentThread() {
+    return THREAD_CODEC.get();
+  }
+
+  /**
+   * Reads a frame from the input stream and decodes it into the message.
+   *
+   * @param inputStream Input stream.
+   * @param message     Message to decode.
+   * @return Length of the frame.
+   * @throws SocksException If a SOCKS protocol error occurred.
+   * @throws IOException    If an I/O error occurred or the stream ended before the frame.
+   */
+  public int read(InputStream inputStream, FramedMessage message) throws SocksException,
+      IOException {
+    checkNotNull(inputStream, "Argument [inputStream] may not be null");
+    checkNotNull(message, "Argument [message] may not be null");
+    int length = 0;
+    int frameLength = message.getFrameLength(buffer, length);
+    while (length < frameLength) {
+      if (frameLength > buffer.length) {
+        throw new SocksException("Frame is too long: " + frameLength);
+      }
+      int read = inputStream.read(buffer, length, frameLength - length);
+      if (read < 0) {
+        throw new IOException("End of stream");
+      }
+      length += read;
+      frameLength = message.getFrameLength(buffer, length);
+    }
+    message.decode(buffer, length);
+    return length;
+  }
+
+}
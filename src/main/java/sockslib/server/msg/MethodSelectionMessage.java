@@ -19,8 +19,6 @@ import sockslib.common.SocksException;
 import java.io.IOException;
 import java.io.InputStream;
 
-import static sockslib.utils.StreamUtil.checkEnd;
-
 /**
  * The class <code>MethodSelectionMessage</code> represents a method selection message.
  *
@@ -28,7 +26,7 @@ import static sockslib.utils.StreamUtil.checkEnd;
  * @version 1.0
  * @date Apr 5, 2015 10:47:05 AM
  */
-public class MethodSelectionMessage implements ReadableMessage, WritableMessage {
+public class MethodSelectionMessage implements FramedMessage, WritableMessage {
 
   private int version;
 
@@ -56,11 +54,24 @@ public class MethodSelectionMessage implements ReadableMessage, WritableMessage
 
   @Override
   public void read(InputStream inputStream) throws SocksException, IOException {
-    version = checkEnd(inputStream.read());
-    methodNum = checkEnd(inputStream.read());
+    HandshakeCodec.forCurrentThread().read(inputStream, this);
+  }
+
+  @Override
+  public int getFrameLength(byte[] frame, int length) {
+    if (length < 2) {
+      return 2;
+    }
+    return 2 + (frame[1] & 0xFF);
+  }
+
+  @Override
+  public void decode(byte[] frame, int length) throws SocksException, IOException {
+    version = frame[0] & 0xFF;
+    methodNum = frame[1] & 0xFF;
     methods = new int[methodNum];
     for (int i = 0; i < methodNum; i++) {
-      methods[i] = checkEnd(inputStream.read());
+      methods[i] = frame[2 + i] & 0xFF;
     }
   }
 
@@ -14,6 +14,9 @@
 
 package sockslib.server.msg;
 
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+
 /**
  * The enumeration <code>ServerReply</code> represents reply of servers will SOCKS client send a
  * command request to the SOCKS server.
@@ -92,4 +95,32 @@ public enum ServerReply {
     return value;
   }
 
+  /**
+   * Returns the reply which describes an error occurred while connecting a remote server.
+   *
+   * @param exception The error occurred while connecting.
+   * @return Reply that should be sent to client.
+   */
+  public static ServerReply fromConnectException(IOException exception) {
+    if (exception instanceof SocketTimeoutException) {
+      // Messages of timeouts differ between JDKs and connectors.
+      return TTL_EXPIRED;
+    }
+    String message = exception.getMessage();
+    if (message == null) {
+      return GENERAL_SOCKS_SERVER_FAILURE;
+    }
+    switch (message) {
+      case "Connection refused":
+        return CONNECTION_REFUSED;
+      case "Operation timed out":
+      case "Connection timed out":
+        return TTL_EXPIRED;
+      case "Network is unreachable":
+        return NETWORK_UNREACHABLE;
+      default:
+        return GENERAL_SOCKS_SERVER_FAILURE;
+    }
+  }
+
 }
@@ -19,9 +19,8 @@ import sockslib.common.UsernamePasswordCredentials;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 
-import static sockslib.utils.StreamUtil.checkEnd;
-import static sockslib.utils.StreamUtil.readString;
 
 
 /**
@@ -32,7 +31,7 @@ import static sockslib.utils.StreamUtil.readString;
  * @version 1.0
  * @date Apr 16, 2015 11:41:28 AM
  */
-public class UsernamePasswordMessage implements ReadableMessage, WritableMessage {
+public class UsernamePasswordMessage implements FramedMessage, WritableMessage {
 
   /**
    * Username password authentication.
@@ -74,8 +73,8 @@ public class UsernamePasswordMessage implements ReadableMessage, WritableMessage
   public UsernamePasswordMessage(String username, String password) {
     this.username = username;
     this.password = password;
-    usernameLength = username.getBytes().length;
-    passwordLength = password.getBytes().length;
+    usernameLength = username.getBytes(StandardCharsets.UTF_8).length;
+    passwordLength = password.getBytes(StandardCharsets.UTF_8).length;
   }
 
   @Override
@@ -87,15 +86,10 @@ public class UsernamePasswordMessage implements ReadableMessage, WritableMessage
 
     bytes[0] = (byte) version;
     bytes[1] = (byte) usernameLength;
-    for (int i = 0; i < usernameLength; i++) {
-      bytes[2 + i] = username.getBytes()[i];
-    }
-
+    System.arraycopy(username.getBytes(StandardCharsets.UTF_8), 0, bytes, 2, usernameLength);
     bytes[2 + usernameLength] = (byte) passwordLength;
-
-    for (int i = 0; i < passwordLength; i++) {
-      bytes[3 + usernameLength + i] = password.getBytes()[i];
-    }
+    System.arraycopy(password.getBytes(StandardCharsets.UTF_8), 0, bytes, 3 + usernameLength,
+        passwordLength);
 
     return bytes;
   }
@@ -107,11 +101,28 @@ public class UsernamePasswordMessage implements ReadableMessage, WritableMessage
 
   @Override
   public void read(InputStream inputStream) throws SocksException, IOException {
-    version = checkEnd(inputStream.read());
-    usernameLength = checkEnd(inputStream.read());
-    username = readString(inputStream, usernameLength);
-    passwordLength = checkEnd(inputStream.read());
-    password = readString(inputStream, passwordLength);
+    HandshakeCodec.forCurrentThread().read(inputStream, this);
+  }
+
+  @Override
+  public int getFrameLength(byte[] frame, int length) {
+    if (length < 2) {
+      return 2;
+    }
+    int passwordLengthOffset = 2 + (frame[1] & 0xFF);
+    if (length <= passwordLengthOffset) {
+      return passwordLengthOffset + 1;
+    }
+    return passwordLengthOffset + 1 + (frame[passwordLengthOffset] & 0xFF);
+  }
+
+  @Override
+  public void decode(byte[] frame, int length) throws SocksException, IOException {
+    version = frame[0] & 0xFF;
+    usernameLength = frame[1] & 0xFF;
+    username = new String(frame, 2, usernameLength, StandardCharsets.UTF_8);
+    passwordLength = frame[2 + usernameLength] & 0xFF;
+    password = new String(frame, 3 + usernameLength, passwordLength, StandardCharsets.UTF_8);
     credentials = new UsernamePasswordCredentials(username, password);
   }
 
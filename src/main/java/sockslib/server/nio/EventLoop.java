@@ -0,0 +1,216 @@
+/*
+ * Copyright 2015-2025 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package sockslib.server.nio;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * The class <code>EventLoop</code> represents a thread which owns a {@link Selector} and drives
+ * every connection registered on it.
+ * <p>
+ * All states of a connection are only touched by the thread of its event loop, other threads
+ * must submit their work by {@link #execute(Runnable)}.
+ * </p>
+ *
+ * @version 1.0
+ */
+public class EventLoop implements Runnable {
+
+  private static final Logger logger = LoggerFactory.getLogger(EventLoop.class);
+
+  /**
+   * Max time in milliseconds that a select operation will block.
+   */
+  private static final long SELECT_TIMEOUT = 1000;
+
+  private final NioSocksProxyServer server;
+
+  private final Selector selector;
+
+  private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+
+  /**
+   * Connections driven by this loop, only accessed in the loop thread.
+   */
+  private final Set<NioSocks5Connection> connections = new HashSet<>();
+
+  private final String name;
+
+  private Thread thread;
+
+  private volatile boolean running = false;
+
+  private long lastIdleCheckTime = System.currentTimeMillis();
+
+  /**
+   * Constructs an instance of {@link EventLoop}.
+   *
+   * @param server The server which the loop belongs to.
+   * @param name   Name of the loop thread.
+   * @throws IOException If the selector can't be opened.
+   */
+  public EventLoop(NioSocksProxyServer server, String name) throws IOException {
+    this.server = server;
+    this.name = name;
+    this.selector = Selector.open();
+  }
+
+  /**
+   * Starts the loop in a new thread.
+   *
+   * @param daemon <code>true</code> if the loop thread should be a daemon thread.
+   */
+  public void start(boolean daemon) {
+    running = true;
+    thread = new Thread(this, name);
+    thread.setDaemon(daemon);
+    thread.start();
+  }
+
+  /**
+   * Stops the loop. All connections of the loop will be closed.
+   */
+  public void shutdown() {
+    running = false;
+    selector.wakeup();
+  }
+
+  /**
+   * Submits a task which will be executed in the loop thread.
+   *
+   * @param task The task.
+   */
+  public void execute(Runnable task) {
+    tasks.add(task);
+    if (!inEventLoop()) {
+      selector.wakeup();
+    }
+  }
+
+  /**
+   * Returns <code>true</code> if current thread is the loop thread.
+   *
+   * @return <code>true</code> if current thread is the loop thread.
+   */
+  public boolean inEventLoop() {
+    return Thread.currentThread() == thread;
+  }
+
+  /**
+   * Hands an accepted channel over to this loop.
+   *
+   * @param channel A connected channel.
+   */
+  public void register(final SocketChannel channel) {
+    execute(() -> {
+      NioSocks5Connection connection = new NioSocks5Connection(server, this, channel);
+      connections.add(connection);
+      connection.open();
+    });
+  }
+
+  /**
+   * Removes a closed connection from this loop.
+   *
+   * @param connection Closed connection.
+   */
+  void remove(NioSocks5Connection connection) {
+    connections.remove(connection);
+  }
+
+  Selector getSelector() {
+    return selector;
+  }
+
+  @Override
+  public void run() {
+    while (running) {
+      try {
+        // A task submitted from the loop thread doesn't wake up the selector.
+        if (tasks.isEmpty()) {
+          selector.select(SELECT_TIMEOUT);
+        } else {
+          selector.selectNow();
+        }
+        runTasks();
+        processSelectedKeys();
+        closeIdleConnections();
+      } catch (IOException e) {
+        logger.error(e.getMessage(), e);
+      }
+    }
+    runTasks();
+    for (NioSocks5Connection connection : new ArrayList<>(connections)) {
+      connection.close();
+    }
+    // Run tasks submitted by closed connections, such as releasing buffers.
+    runTasks();
+    try {
+      selector.close();
+    } catch (IOException e) {
+      logger.error(e.getMessage(), e);
+    }
+    logger.debug("Event loop [{}] stopped", name);
+  }
+
+  private void runTasks() {
+    Runnable task;
+    while ((task = tasks.poll()) != null) {
+      try {
+        task.run();
+      } catch (RuntimeException e) {
+        logger.error(e.getMessage(), e);
+      }
+    }
+  }
+
+  private void processSelectedKeys() {
+    Iterator<SelectionKey> iterator = selector.selectedKeys().iterator();
+    while (iterator.hasNext()) {
+      SelectionKey key = iterator.next();
+      iterator.remove();
+      NioSocks5Connection connection = (NioSocks5Connection) key.attachment();
+      connection.handle(key);
+    }
+  }
+
+  private void closeIdleConnections() {
+    int timeout = server.getTimeout();
+    long now = System.currentTimeMillis();
+    if (timeout <= 0 || now - lastIdleCheckTime < SELECT_TIMEOUT) {
+      return;
+    }
+    lastIdleCheckTime = now;
+    for (NioSocks5Connection connection : new ArrayList<>(connections)) {
+      if (now - connection.getLastActiveTime() > timeout) {
+        logger.debug("{} is idle more than {}ms", connection, timeout);
+        connection.close();
+      }
+    }
+  }
+
+}
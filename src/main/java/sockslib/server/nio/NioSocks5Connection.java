@@ -0,0 +1,804 @@
+/*
+ * Copyright 2015-2025 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package sockslib.server.nio;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import sockslib.common.AddressType;
+import sockslib.common.AuthenticationException;
+import sockslib.common.ProtocolErrorException;
+import sockslib.common.SSLConfiguration;
+import sockslib.common.SocksCommand;
+import sockslib.common.UsernamePasswordCredentials;
+import sockslib.common.methods.NoAuthenticationRequiredMethod;
+import sockslib.common.methods.SocksMethod;
+import sockslib.common.methods.UsernamePasswordMethod;
+import sockslib.server.Session;
+import sockslib.server.SessionManager;
+import sockslib.server.UDPRelayServer;
+import sockslib.server.io.DirectBufferPool;
+import sockslib.server.listener.CloseSessionException;
+import sockslib.server.msg.CommandMessage;
+import sockslib.server.msg.CommandResponseMessage;
+import sockslib.server.msg.MethodSelectionMessage;
+import sockslib.server.msg.ServerReply;
+import sockslib.server.routing.Route;
+import sockslib.server.routing.RoutingTable;
+import sockslib.utils.HashedWheelTimer;
+import sockslib.utils.SocksUtil;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The class <code>NioSocks5Connection</code> drives a SOCKS5 connection in an {@link EventLoop}.
+ * <p>
+ * The handshake is implemented as a state machine which parses frames in place from the bytes
+ * read so far. Once the remote server is connected, bytes are relayed between two non-blocking
+ * channels without any dedicated thread. Blocking work such as authentication and domain name
+ * resolution is executed by the server's executor and then resumed in the event loop. If the
+ * server has a SSL configuration, the client side is encrypted by a {@link SSLTransport}.
+ * </p>
+ *
+ * @version 1.0
+ */
+class NioSocks5Connection {
+
+  private static final Logger logger = LoggerFactory.getLogger(NioSocks5Connection.class);
+
+  /**
+   * Protocol version.
+   */
+  private static final int VERSION = 0x5;
+
+  /**
+   * Version of USERNAME/PASSWORD sub negotiation.
+   */
+  private static final int AUTH_VERSION = 0x1;
+
+  private static final int CMD_CONNECT = 0x01;
+  private static final int CMD_BIND = 0x02;
+  private static final int CMD_UDP_ASSOCIATE = 0x03;
+
+  /**
+   * States of a connection.
+   */
+  enum State {
+    GREETING, AUTHENTICATION, AUTHENTICATING, REQUEST, RESOLVING, CONNECTING, RELAYING,
+    UDP_ASSOCIATED, CLOSED
+  }
+
+  private final NioSocksProxyServer server;
+
+  private final EventLoop loop;
+
+  private final SocketChannel clientChannel;
+
+  private final SessionManager sessionManager;
+
+  private final DirectBufferPool bufferPool;
+
+  /**
+   * Bytes read from client which will be sent to remote server. During the handshake, frames are
+   * parsed from this buffer.
+   */
+  private final ByteBuffer upstream;
+
+  /**
+   * Bytes which will be sent to client.
+   */
+  private final ByteBuffer downstream;
+
+  /**
+   * TLS layer of the client channel, it's <code>null</code> if SSL is not used.
+   */
+  private SSLTransport tls;
+
+  private SocketChannel remoteChannel;
+
+  private SelectionKey clientKey;
+
+  private SelectionKey remoteKey;
+
+  private Session session;
+
+  private State state = State.GREETING;
+
+  private UsernamePasswordMethod usernamePasswordMethod;
+
+  private CommandMessage commandMessage;
+
+  private UDPRelayServer udpRelayServer;
+
+  /**
+   * Deadline of connecting the remote server, it's <code>null</code> if there is no deadline.
+   */
+  private HashedWheelTimer.Timeout connectDeadline;
+
+  /**
+   * Close the connection when all bytes in {@link #downstream} are sent.
+   */
+  private boolean closeWhenFlushed = false;
+
+  private boolean clientEndOfStream = false;
+
+  private boolean remoteEndOfStream = false;
+
+  private long lastActiveTime = System.currentTimeMillis();
+
+  NioSocks5Connection(NioSocksProxyServer server, EventLoop loop, SocketChannel clientChannel) {
+    this.server = server;
+    this.loop = loop;
+    this.clientChannel = clientChannel;
+    this.sessionManager = server.getSessionManager();
+    this.bufferPool = server.getBufferPool();
+    int bufferSize = server.getBufferSize();
+    upstream = bufferPool.acquire(bufferSize);
+    downstream = bufferPool.acquire(bufferSize);
+  }
+
+  /**
+   * Creates a session for the connection and starts reading the greeting.
+   */
+  void open() {
+    try {
+      clientChannel.configureBlocking(false);
+      SSLConfiguration sslConfiguration = server.getSSLConfiguration();
+      if (sslConfiguration != null) {
+        tls = new SSLTransport(clientChannel, sslConfiguration, loop, server.getSSLTaskExecutor(),
+            bufferPool, this::resumeRead, this::fail);
+      }
+      session = sessionManager.newSession(clientChannel.socket());
+      clientKey = clientChannel.register(loop.getSelector(), SelectionKey.OP_READ, this);
+      sessionManager.sessionOnCreate(session);
+    } catch (IOException | CloseSessionException e) {
+      fail(e);
+    }
+  }
+
+  /**
+   * Handles a selected key of the client channel or the remote channel.
+   *
+   * @param key Selected key.
+   */
+  void handle(SelectionKey key) {
+    try {
+      if (!key.isValid()) {
+        return;
+      }
+      if (key == remoteKey && key.isConnectable()) {
+        finishConnect();
+        return;
+      }
+      if (key.isReadable()) {
+        if (key == clientKey) {
+          readClient();
+        } else {
+          readRemote();
+        }
+      }
+      if (key.isValid() && key.isWritable()) {
+        if (key == clientKey) {
+          flushDownstream();
+        } else {
+          flushUpstream();
+        }
+      }
+    } catch (IOException | CloseSessionException e) {
+      fail(e);
+    }
+  }
+
+  private void readClient() throws IOException, CloseSessionException {
+    int length = tls == null ? clientChannel.read(upstream) : tls.read(upstream);
+    if (tls != null && tls.hasPendingOutput()) {
+      // Handshake messages are waiting for the channel to be writable.
+      setInterest(clientKey, SelectionKey.OP_WRITE, true);
+    }
+    if (length < 0) {
+      clientEndOfStream = true;
+      setInterest(clientKey, SelectionKey.OP_READ, false);
+      if (state == State.RELAYING) {
+        flushUpstream();
+      } else {
+        close();
+      }
+      return;
+    }
+    if (length == 0) {
+      // Only TLS records without application data, such as handshake messages.
+      return;
+    }
+    touch();
+    switch (state) {
+      case GREETING:
+      case AUTHENTICATION:
+      case REQUEST:
+        processHandshake();
+        break;
+      case RELAYING:
+        flushUpstream();
+        break;
+      case UDP_ASSOCIATED:
+        // The client should never send any more data on the control connection.
+        logger.warn("Unexpected data on Session[{}]", session.getId());
+        close();
+        return;
+      default:
+        // Keep bytes until the connection goes on.
+        break;
+    }
+    if (state != State.CLOSED && !upstream.hasRemaining()) {
+      setInterest(clientKey, SelectionKey.OP_READ, false);
+    }
+  }
+
+  private void readRemote() throws IOException {
+    int length = remoteChannel.read(downstream);
+    if (length < 0) {
+      remoteEndOfStream = true;
+      setInterest(remoteKey, SelectionKey.OP_READ, false);
+      closeWhenFlushed = true;
+    } else {
+      touch();
+    }
+    flushDownstream();
+  }
+
+  /**
+   * Writes bytes in {@link #upstream} to the remote server.
+   */
+  private void flushUpstream() throws IOException {
+    upstream.flip();
+    remoteChannel.write(upstream);
+    upstream.compact();
+    boolean pending = upstream.position() > 0;
+    setInterest(remoteKey, SelectionKey.OP_WRITE, pending);
+    if (!pending && clientEndOfStream) {
+      // Same as the blocking pipes, the whole connection is closed if one side is closed.
+      close();
+      return;
+    }
+    if (!clientEndOfStream) {
+      setInterest(clientKey, SelectionKey.OP_READ, upstream.hasRemaining());
+      if (tls != null && tls.hasBufferedInput() && upstream.hasRemaining()) {
+        // Decrypted bytes are buffered by the transport, the selector won't report them.
+        loop.execute(this::resumeRead);
+      }
+    }
+  }
+
+  /**
+   * Reads the client again without the channel being readable, it's used when the TLS layer
+   * has buffered input or has finished its delegated tasks.
+   */
+  private void resumeRead() {
+    if (state == State.CLOSED || clientEndOfStream) {
+      return;
+    }
+    try {
+      readClient();
+      if (tls.hasPendingOutput() || downstream.position() > 0) {
+        flushDownstream();
+      }
+    } catch (IOException | CloseSessionException e) {
+      fail(e);
+    }
+  }
+
+  /**
+   * Writes bytes in {@link #downstream} to client.
+   */
+  private void flushDownstream() throws IOException {
+    downstream.flip();
+    if (tls == null) {
+      clientChannel.write(downstream);
+    } else {
+      tls.write(downstream);
+    }
+    downstream.compact();
+    boolean pending = downstream.position() > 0 || (tls != null && tls.hasPendingOutput());
+    setInterest(clientKey, SelectionKey.OP_WRITE, pending);
+    if (!pending && closeWhenFlushed) {
+      close();
+      return;
+    }
+    if (remoteKey != null && !remoteEndOfStream && state == State.RELAYING) {
+      setInterest(remoteKey, SelectionKey.OP_READ, downstream.hasRemaining());
+    }
+  }
+
+  private void processHandshake() throws IOException, CloseSessionException {
+    upstream.flip();
+    try {
+      boolean progress = true;
+      while (progress && upstream.hasRemaining()) {
+        switch (state) {
+          case GREETING:
+            progress = readGreeting();
+            break;
+          case AUTHENTICATION:
+            progress = readCredentials();
+            break;
+          case REQUEST:
+            progress = readCommand();
+            break;
+          default:
+            progress = false;
+        }
+      }
+    } finally {
+      upstream.compact();
+    }
+  }
+
+  /**
+   * Reads the method selection message.
+   *
+   * @return <code>true</code> if a whole frame is read.
+   */
+  private boolean readGreeting() throws IOException {
+    int position = upstream.position();
+    if (upstream.remaining() < 2) {
+      return false;
+    }
+    int version = unsigned(upstream.get(position));
+    int methodNum = unsigned(upstream.get(position + 1));
+    if (version != VERSION) {
+      throw new ProtocolErrorException();
+    }
+    if (upstream.remaining() < 2 + methodNum) {
+      return false;
+    }
+    int[] methods = new int[methodNum];
+    for (int i = 0; i < methodNum; i++) {
+      methods[i] = unsigned(upstream.get(position + 2 + i));
+    }
+    upstream.position(position + 2 + methodNum);
+
+    MethodSelectionMessage message = new MethodSelectionMessage();
+    message.setVersion(version);
+    message.setMethodNum(methodNum);
+    message.setMethods(methods);
+    SocksMethod method = server.getMethodSelector().select(message);
+
+    if (method instanceof NoAuthenticationRequiredMethod) {
+      state = State.REQUEST;
+    } else if (method instanceof UsernamePasswordMethod) {
+      usernamePasswordMethod = (UsernamePasswordMethod) method;
+      state = State.AUTHENTICATION;
+    } else {
+      // Other methods need blocking sub negotiation which is not supported here.
+      logger.debug("SESSION[{}] no acceptable method in NIO mode", session.getId());
+      reply(VERSION, 0xFF);
+      closeWhenFlushed();
+      return false;
+    }
+    logger.debug("SESSION[{}] Response client:{}", session.getId(), method.getMethodName());
+    reply(VERSION, method.getByte());
+    return true;
+  }
+
+  /**
+   * Reads USERNAME/PASSWORD credentials which is defined in RFC 1929.
+   *
+   * @return <code>true</code> if a whole frame is read.
+   */
+  private boolean readCredentials() throws IOException {
+    int position = upstream.position();
+    int available = upstream.remaining();
+    if (available < 2) {
+      return false;
+    }
+    if (unsigned(upstream.get(position)) != AUTH_VERSION) {
+      throw new ProtocolErrorException();
+    }
+    int usernameLength = unsigned(upstream.get(position + 1));
+    if (available < 3 + usernameLength) {
+      return false;
+    }
+    int passwordLength = unsigned(upstream.get(position + 2 + usernameLength));
+    if (available < 3 + usernameLength + passwordLength) {
+      return false;
+    }
+    String username = readString(position + 2, usernameLength);
+    String password = readString(position + 3 + usernameLength, passwordLength);
+    upstream.position(position + 3 + usernameLength + passwordLength);
+
+    final UsernamePasswordCredentials credentials =
+        new UsernamePasswordCredentials(username, password);
+    state = State.AUTHENTICATING;
+    server.getExecutorService().execute(() -> {
+      AuthenticationException exception = null;
+      try {
+        usernamePasswordMethod.getAuthenticator().doAuthenticate(credentials, session);
+      } catch (AuthenticationException e) {
+        exception = e;
+      }
+      final AuthenticationException result = exception;
+      loop.execute(() -> onAuthenticated(result));
+    });
+    return false;
+  }
+
+  private void onAuthenticated(AuthenticationException exception) {
+    if (state != State.AUTHENTICATING) {
+      return;
+    }
+    try {
+      if (exception != null) {
+        reply(AUTH_VERSION, 0x01);
+        sessionManager.sessionOnException(session, exception);
+        closeWhenFlushed();
+        return;
+      }
+      reply(AUTH_VERSION, 0x00);
+      state = State.REQUEST;
+      // The client may send the command request before receiving the reply.
+      processHandshake();
+    } catch (IOException | CloseSessionException e) {
+      fail(e);
+    }
+  }
+
+  /**
+   * Reads command request.
+   *
+   * @return <code>true</code> if a whole frame is read.
+   */
+  private boolean readCommand() throws IOException {
+    int position = upstream.position();
+    int available = upstream.remaining();
+    if (available < 5) {
+      return false;
+    }
+    if (unsigned(upstream.get(position)) != VERSION) {
+      throw new ProtocolErrorException();
+    }
+    int cmd = unsigned(upstream.get(position + 1));
+    int addressType = unsigned(upstream.get(position + 3));
+    int addressLength;
+    switch (addressType) {
+      case AddressType.IPV4:
+        addressLength = 4;
+        break;
+      case AddressType.IPV6:
+        addressLength = 16;
+        break;
+      case AddressType.DOMAIN_NAME:
+        addressLength = 1 + unsigned(upstream.get(position + 4));
+        break;
+      default:
+        replyCommand(ServerReply.ADDRESS_TYPE_NOT_SUPPORTED);
+        return false;
+    }
+    if (available < 6 + addressLength) {
+      return false;
+    }
+    commandMessage = new CommandMessage();
+    commandMessage.setVersion(unsigned(upstream.get(position)));
+    commandMessage.setReserved(unsigned(upstream.get(position + 2)));
+    commandMessage.setAddressType(addressType);
+    int portOffset = position + 4 + addressLength;
+    commandMessage.setPort(
+        SocksUtil.bytesToInt(upstream.get(portOffset), upstream.get(portOffset + 1)));
+
+    byte[] address = null;
+    if (addressType == AddressType.DOMAIN_NAME) {
+      if (addressLength < 2) {
+        throw new ProtocolErrorException("Length of domain must great than 0");
+      }
+      commandMessage.setHost(readString(position + 5, addressLength - 1));
+    } else {
+      address = new byte[addressLength];
+      for (int i = 0; i < addressLength; i++) {
+        address[i] = upstream.get(position + 4 + i);
+      }
+    }
+    upstream.position(portOffset + 2);
+
+    switch (cmd) {
+      case CMD_CONNECT:
+        commandMessage.setCommand(SocksCommand.CONNECT);
+        break;
+      case CMD_BIND:
+        commandMessage.setCommand(SocksCommand.BIND);
+        break;
+      case CMD_UDP_ASSOCIATE:
+        commandMessage.setCommand(SocksCommand.UDP_ASSOCIATE);
+        break;
+      default:
+        replyCommand(ServerReply.COMMAND_NOT_SUPPORTED);
+        return false;
+    }
+
+    state = State.RESOLVING;
+    if (address != null) {
+      commandMessage.setInetAddress(InetAddress.getByAddress(address));
+      // Continue after the handshake buffer is compacted.
+      loop.execute(() -> onResolved(null));
+    } else {
+      final String host = commandMessage.getHost();
+      server.getDnsResolver().resolveAsync(host).whenComplete((result, error) -> {
+        if (error != null) {
+          logger.debug("SESSION[{}] can't resolve {}: {}", session.getId(), host,
+              error.getMessage());
+        }
+        loop.execute(() -> onResolved(result));
+      });
+    }
+    return false;
+  }
+
+  private void onResolved(InetAddress resolvedAddress) {
+    if (state != State.RESOLVING) {
+      return;
+    }
+    try {
+      if (commandMessage.getAddressType() == AddressType.DOMAIN_NAME) {
+        if (resolvedAddress == null) {
+          replyCommand(ServerReply.HOST_UNREACHABLE);
+          return;
+        }
+        commandMessage.setInetAddress(resolvedAddress);
+      }
+      try {
+        sessionManager.sessionOnCommand(session, commandMessage);
+      } catch (CloseSessionException e) {
+        if (e.getServerReply() == null) {
+          throw e;
+        }
+        sessionManager.sessionOnException(session, e);
+        replyCommand(e.getServerReply());
+        return;
+      }
+      switch (commandMessage.getCommand()) {
+        case CONNECT:
+          connect();
+          break;
+        case UDP_ASSOCIATE:
+          associate();
+          break;
+        default:
+          replyCommand(ServerReply.COMMAND_NOT_SUPPORTED);
+          break;
+      }
+    } catch (IOException | CloseSessionException e) {
+      fail(e);
+    }
+  }
+
+  private void connect() throws IOException {
+    RoutingTable routingTable = server.getRoutingTable();
+    if (routingTable != null
+        && routingTable.route(session, commandMessage).getType() == Route.Type.REJECT) {
+      replyCommand(ServerReply.CONNECTION_NOT_ALLOWED_BY_RULESET);
+      return;
+    }
+    state = State.CONNECTING;
+    InetSocketAddress address =
+        new InetSocketAddress(commandMessage.getInetAddress(), commandMessage.getPort());
+    try {
+      remoteChannel = SocketChannel.open();
+      remoteChannel.configureBlocking(false);
+      boolean connected = remoteChannel.connect(address);
+      remoteKey = remoteChannel.register(loop.getSelector(), connected ? 0 : SelectionKey
+          .OP_CONNECT, this);
+      if (connected) {
+        onConnected();
+      } else {
+        connectDeadline = server.newConnectDeadline(() -> loop.execute(this::onConnectTimeout));
+      }
+    } catch (IOException e) {
+      onConnectFailed(e);
+    }
+  }
+
+  private void finishConnect() throws IOException {
+    try {
+      remoteChannel.finishConnect();
+    } catch (IOException e) {
+      onConnectFailed(e);
+      return;
+    }
+    onConnected();
+  }
+
+  private void onConnectTimeout() {
+    if (state != State.CONNECTING) {
+      return;
+    }
+    logger.info("SESSION[{}] connect {} timed out after {}ms", session.getId(),
+        commandMessage.getSocketAddress(), server.getConnectTimeout());
+    try {
+      replyCommand(ServerReply.TTL_EXPIRED);
+    } catch (IOException e) {
+      fail(e);
+    }
+  }
+
+  private void cancelConnectDeadline() {
+    if (connectDeadline != null) {
+      connectDeadline.cancel();
+      connectDeadline = null;
+    }
+  }
+
+  private void onConnected() throws IOException {
+    cancelConnectDeadline();
+    InetSocketAddress localAddress =
+        (InetSocketAddress) remoteChannel.socket().getLocalSocketAddress();
+    write(new CommandResponseMessage(VERSION, ServerReply.SUCCEEDED, localAddress.getAddress(),
+        localAddress.getPort()).getBytes());
+    state = State.RELAYING;
+    touch();
+    remoteKey.interestOps(SelectionKey.OP_READ);
+    // Relay bytes which the client sent before the connection was established.
+    flushUpstream();
+  }
+
+  private void onConnectFailed(IOException e) throws IOException {
+    cancelConnectDeadline();
+    ServerReply reply = ServerReply.fromConnectException(e);
+    logger.info("SESSION[{}] connect {} [{}] exception:{}", session.getId(), commandMessage
+        .getSocketAddress(), reply, e.getMessage());
+    replyCommand(reply);
+  }
+
+  private void associate() throws IOException {
+    InetAddress clientAddress = ((InetSocketAddress) session.getClientAddress()).getAddress();
+    udpRelayServer = new UDPRelayServer(clientAddress, commandMessage.getPort());
+    udpRelayServer.useDestinationFilterOf(session);
+    InetSocketAddress socketAddress = (InetSocketAddress) udpRelayServer.start();
+    logger.info("Create UDP relay server at[{}] for {}", socketAddress, commandMessage
+        .getSocketAddress());
+    state = State.UDP_ASSOCIATED;
+    write(new CommandResponseMessage(VERSION, ServerReply.SUCCEEDED, server.getLocalHost(),
+        socketAddress.getPort()).getBytes());
+  }
+
+  /**
+   * Sends a command reply without bind address and closes the connection.
+   *
+   * @param reply Reply.
+   */
+  private void replyCommand(ServerReply reply) throws IOException {
+    write(new CommandResponseMessage(reply).getBytes());
+    logger.info("SESSION[{}] will close, because {}", session.getId(), reply);
+    closeWhenFlushed();
+  }
+
+  private void reply(int version, int value) throws IOException {
+    write(new byte[] {(byte) version, (byte) value});
+  }
+
+  private void write(byte[] bytes) throws IOException {
+    downstream.put(bytes);
+    flushDownstream();
+  }
+
+  private void closeWhenFlushed() throws IOException {
+    closeWhenFlushed = true;
+    setInterest(clientKey, SelectionKey.OP_READ, false);
+    flushDownstream();
+  }
+
+  /**
+   * Closes the connection because of an exception.
+   *
+   * @param exception The exception.
+   */
+  private void fail(Exception exception) {
+    if (state == State.CLOSED) {
+      return;
+    }
+    if (session != null && !(exception instanceof ClosedChannelException)) {
+      sessionManager.sessionOnException(session, exception);
+    }
+    close();
+  }
+
+  /**
+   * Closes the connection, the remote channel and the UDP relay server.
+   */
+  void close() {
+    if (state == State.CLOSED) {
+      return;
+    }
+    state = State.CLOSED;
+    loop.remove(this);
+    cancelConnectDeadline();
+    if (clientKey != null) {
+      clientKey.cancel();
+    }
+    if (remoteKey != null) {
+      remoteKey.cancel();
+    }
+    if (remoteChannel != null) {
+      try {
+        remoteChannel.close();
+      } catch (IOException e) {
+        logger.error(e.getMessage(), e);
+      }
+    }
+    if (udpRelayServer != null) {
+      udpRelayServer.stop();
+    }
+    if (tls != null) {
+      tls.closeOutbound();
+    }
+    if (session != null) {
+      session.close();
+      sessionManager.sessionOnClose(session);
+    } else {
+      try {
+        clientChannel.close();
+      } catch (IOException e) {
+        logger.error(e.getMessage(), e);
+      }
+    }
+    // The buffers may still be touched by the current call stack, release them later.
+    loop.execute(() -> {
+      bufferPool.release(upstream);
+      bufferPool.release(downstream);
+      if (tls != null) {
+        tls.release();
+      }
+    });
+  }
+
+  long getLastActiveTime() {
+    return lastActiveTime;
+  }
+
+  private void touch() {
+    lastActiveTime = System.currentTimeMillis();
+  }
+
+  private String readString(int offset, int length) {
+    byte[] bytes = new byte[length];
+    for (int i = 0; i < length; i++) {
+      bytes[i] = upstream.get(offset + i);
+    }
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  private static int unsigned(byte b) {
+    return b & 0xFF;
+  }
+
+  private static void setInterest(SelectionKey key, int operation, boolean enable) {
+    if (key == null || !key.isValid()) {
+      return;
+    }
+    int ops = key.interestOps();
+    int newOps = enable ? ops | operation : ops & ~operation;
+    if (newOps != ops) {
+      key.interestOps(newOps);
+    }
+  }
+
+  @Override
+  public String toString() {
+    return session != null ? session.toString() : clientChannel.toString();
+  }
+
+}
@@ -0,0 +1,656 @@
+/*
+ * Copyright 2015-2025 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package sockslib.server.nio;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import sockslib.client.SocksProxy;
+import sockslib.common.SSLConfiguration;
+import sockslib.common.SSLConfigurationException;
+import sockslib.common.methods.SocksMethod;
+import sockslib.server.BasicSessionManager;
+import sockslib.server.MethodSelector;
+import sockslib.server.Session;
+import sockslib.server.SessionManager;
+import sockslib.server.Socks5Handler;
+import sockslib.server.SocksHandler;
+import sockslib.server.SocksMethodSelector;
+import sockslib.server.SocksProxyServer;
+import sockslib.server.connector.Connector;
+import sockslib.server.connector.HappyEyeballsConnector;
+import sockslib.server.dns.CachingDnsResolver;
+import sockslib.server.dns.DnsResolver;
+import sockslib.server.io.DirectBufferPool;
+import sockslib.server.listener.PipeInitializer;
+import sockslib.server.routing.RoutingTable;
+import sockslib.utils.ExecutorUtil;
+import sockslib.utils.HashedWheelTimer;
+import sockslib.utils.SocketUtil;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * The class <code>NioSocksProxyServer</code> is a SOCKS5 server based on non-blocking I/O.
+ * <p>
+ * Unlike {@link sockslib.server.BasicSocksProxyServer} which uses two threads for every relayed
+ * connection, this server multiplexes all connections on a small number of {@link EventLoop}s. An
+ * acceptor thread accepts connections and hands them over to the loops in round robin.
+ * </p>
+ * <pre>
+ * SocksProxyServer proxyServer = SocksServerBuilder.newSocks5ServerBuilder().useNio().build();
+ * proxyServer.start();
+ * </pre>
+ * <p>
+ * BIND command, upstream proxy and {@link PipeInitializer} are not supported by this server. A
+ * {@link RoutingTable} may only route destinations directly or reject them.
+ * </p>
+ * <p>
+ * If a {@link SSLConfiguration} is set, the server accepts TLS connections just like
+ * {@link sockslib.server.SSLSocksProxyServer}, but the TLS records are processed by an
+ * {@link javax.net.ssl.SSLEngine} in the event loops. Delegated tasks of the handshake are run by
+ * a separate bounded thread pool.
+ * </p>
+ *
+ * @version 1.0
+ */
+public class NioSocksProxyServer implements SocksProxyServer, Runnable {
+
+  private static final Logger logger = LoggerFactory.getLogger(NioSocksProxyServer.class);
+
+  /**
+   * Number of threads used to do blocking work, such as authentication and DNS lookup.
+   */
+  protected static final int THREAD_NUMBER = 16;
+
+  /**
+   * Default buffer size of each direction of a connection.
+   */
+  public static final int DEFAULT_BUFFER_SIZE = 16 * 1024;
+
+  /**
+   * Max number of queued delegated tasks, the event loop runs a task by itself if it's full.
+   */
+  private static final int SSL_TASK_QUEUE_CAPACITY = 1024;
+
+  private ExecutorService executorService;
+
+  private SessionManager sessionManager = new BasicSessionManager();
+
+  private MethodSelector methodSelector = new SocksMethodSelector();
+
+  private ServerSocketChannel serverSocketChannel;
+
+  /**
+   * Channels of all acceptors, there is only one if SO_REUSEPORT is not used.
+   */
+  private final List<ServerSocketChannel> serverSocketChannels = new CopyOnWriteArrayList<>();
+
+  /**
+   * Threads of the acceptors except the first one.
+   */
+  private final List<Thread> acceptorThreads = new CopyOnWriteArrayList<>();
+
+  private EventLoop[] eventLoops;
+
+  private int eventLoopCount;
+
+  private final AtomicInteger nextEventLoop = new AtomicInteger();
+
+  private volatile boolean stop = false;
+
+  private Thread thread;
+
+  private int timeout = 10000;
+
+  private boolean daemon = false;
+
+  private int backlog = DEFAULT_BACKLOG;
+
+  private int acceptorCount = 1;
+
+  private int bufferSize = DEFAULT_BUFFER_SIZE;
+
+  private int bindPort = DEFAULT_SOCKS_PORT;
+
+  private InetAddress bindAddr;
+
+  private DirectBufferPool bufferPool = DirectBufferPool.getDefault();
+
+  private DnsResolver dnsResolver = new CachingDnsResolver();
+
+  private SSLConfiguration sslConfiguration;
+
+  private volatile RoutingTable routingTable;
+
+  /**
+   * Connector of {@link SocksHandler}s which are created by {@link #createSocksHandler()}.
+   */
+  private Connector connector = new HappyEyeballsConnector();
+
+  /**
+   * Deadline in milliseconds of connecting a remote server, <code>0</code> means no deadline.
+   */
+  private int connectTimeout = HappyEyeballsConnector.DEFAULT_CONNECT_TIMEOUT;
+
+  /**
+   * Timer of connect deadlines, it's created when the server starts.
+   */
+  private volatile HashedWheelTimer timer;
+
+  /**
+   * Address of the local host which is replied to UDP ASSOCIATE commands. It's looked up once
+   * when the server starts, so that the event loops never wait for DNS.
+   */
+  private InetAddress localHost;
+
+  /**
+   * Thread pool which runs delegated tasks of SSL handshakes.
+   */
+  private ExecutorService sslTaskExecutor;
+
+  private boolean sslTaskExecutorCreated = false;
+
+  /**
+   * Constructs a {@link NioSocksProxyServer} bind at 1080 with one event loop per available
+   * processor.
+   */
+  public NioSocksProxyServer() {
+    this(DEFAULT_SOCKS_PORT);
+  }
+
+  /**
+   * Constructs a {@link NioSocksProxyServer} with one event loop per available processor.
+   *
+   * @param port The port that SOCKS server will listen.
+   */
+  public NioSocksProxyServer(int port) {
+    this(port, Runtime.getRuntime().availableProcessors());
+  }
+
+  /**
+   * Constructs a {@link NioSocksProxyServer}.
+   *
+   * @param port           The port that SOCKS server will listen.
+   * @param eventLoopCount Number of event loops.
+   */
+  public NioSocksProxyServer(int port, int eventLoopCount) {
+    checkArgument(eventLoopCount > 0, "Argument [eventLoopCount] must be greater than 0");
+    this.bindPort = port;
+    this.eventLoopCount = eventLoopCount;
+    this.executorService = Executors.newFixedThreadPool(THREAD_NUMBER);
+  }
+
+  @Override
+  public void start() throws IOException {
+    if (sslConfiguration != null) {
+      try {
+        // Fails fast if the key store can't be loaded.
+        sslConfiguration.getServerSSLContext();
+      } catch (SSLConfigurationException e) {
+        throw new IOException(e.getMessage(), e);
+      }
+      if (sslTaskExecutor == null) {
+        int threads = Math.max(2, Runtime.getRuntime().availableProcessors());
+        sslTaskExecutor = ExecutorUtil.newBoundedThreadPool(threads, SSL_TASK_QUEUE_CAPACITY,
+            "ssl-task-%d", true);
+        sslTaskExecutorCreated = true;
+      }
+    }
+    localHost = InetAddress.getLocalHost();
+    timer = new HashedWheelTimer("nio-timer");
+    boolean reusePort = acceptorCount > 1 && SocketUtil.isReusePortSupported();
+    serverSocketChannel = openServerSocketChannel(bindPort, reusePort);
+    serverSocketChannels.add(serverSocketChannel);
+    int port = serverSocketChannel.socket().getLocalPort();
+    try {
+      for (int i = 1; i < acceptorCount; i++) {
+        final ServerSocketChannel channel =
+            reusePort ? openServerSocketChannel(port, true) : serverSocketChannel;
+        if (channel != serverSocketChannel) {
+          serverSocketChannels.add(channel);
+        }
+        Thread acceptorThread = new Thread(new Runnable() {
+          @Override
+          public void run() {
+            accept(channel);
+          }
+        });
+        acceptorThread.setName("fs-nio-acceptor-" + i);
+        acceptorThread.setDaemon(daemon);
+        acceptorThreads.add(acceptorThread);
+      }
+    } catch (IOException e) {
+      for (ServerSocketChannel channel : serverSocketChannels) {
+        channel.close();
+      }
+      serverSocketChannels.clear();
+      acceptorThreads.clear();
+      throw e;
+    }
+    eventLoops = new EventLoop[eventLoopCount];
+    for (int i = 0; i < eventLoopCount; i++) {
+      eventLoops[i] = new EventLoop(this, "nio-loop-" + i);
+      eventLoops[i].start(daemon);
+    }
+    thread = new Thread(this);
+    thread.setName("fs-nio-acceptor");
+    thread.setDaemon(daemon);
+    thread.start();
+    for (Thread acceptorThread : acceptorThreads) {
+      acceptorThread.start();
+    }
+  }
+
+  private ServerSocketChannel openServerSocketChannel(int port, boolean reusePort)
+      throws IOException {
+    ServerSocketChannel channel = ServerSocketChannel.open();
+    try {
+      channel.socket().setReuseAddress(true);
+      if (reusePort) {
+        SocketUtil.setReusePort(channel);
+      }
+      channel.bind(new InetSocketAddress(bindAddr, port), backlog);
+    } catch (IOException e) {
+      channel.close();
+      throw e;
+    }
+    return channel;
+  }
+
+  @Override
+  public void run() {
+    logger.info("Start NIO proxy server at port:{} with {} event loops and {} acceptors", bindPort,
+        eventLoopCount, acceptorCount);
+    accept(serverSocketChannel);
+  }
+
+  private void accept(ServerSocketChannel serverSocketChannel) {
+    while (!stop) {
+      try {
+        SocketChannel channel = serverSocketChannel.accept();
+        channel.socket().setTcpNoDelay(true);
+        int index = nextEventLoop.getAndIncrement() & Integer.MAX_VALUE;
+        eventLoops[index % eventLoops.length].register(channel);
+      } catch (ClosedChannelException e) {
+        if (stop) {
+          logger.debug("Server shutdown");
+          return;
+        }
+        logger.error(e.getMessage(), e);
+        return;
+      } catch (IOException e) {
+        logger.warn("Failed to accept connection: {}", e.getMessage(), e);
+      }
+    }
+  }
+
+  @Override
+  public void shutdown() {
+    stop = true;
+    for (ServerSocketChannel channel : serverSocketChannels) {
+      try {
+        channel.close();
+      } catch (IOException e) {
+        logger.error(e.getMessage(), e);
+      }
+    }
+    if (eventLoops != null) {
+      for (EventLoop eventLoop : eventLoops) {
+        eventLoop.shutdown();
+      }
+    }
+    executorService.shutdown();
+    if (timer != null) {
+      timer.stop();
+      timer = null;
+    }
+    if (sslTaskExecutorCreated) {
+      sslTaskExecutor.shutdown();
+      sslTaskExecutor = null;
+      sslTaskExecutorCreated = false;
+    }
+  }
+
+  /**
+   * Creates a blocking {@link Socks5Handler}. The event loops don't use handlers, but a handler
+   * can serve a {@link Session} in the calling thread with the configuration of this server.
+   *
+   * @return Instance of {@link Socks5Handler}.
+   */
+  @Override
+  public SocksHandler createSocksHandler() {
+    return new Socks5Handler();
+  }
+
+  @Override
+  public void initializeSocksHandler(SocksHandler socksHandler) {
+    socksHandler.setMethodSelector(methodSelector);
+    socksHandler.setBufferSize(bufferSize);
+    socksHandler.setProxy(null);
+    socksHandler.setSocksProxyServer(this);
+  }
+
+  @Override
+  public void setSupportMethods(SocksMethod... methods) {
+    methodSelector.setSupportMethod(methods);
+  }
+
+  @Override
+  public Map<Long, Session> getManagedSessions() {
+    return sessionManager.getManagedSessions();
+  }
+
+  @Override
+  public int getBufferSize() {
+    return bufferSize;
+  }
+
+  @Override
+  public void setBufferSize(int bufferSize) {
+    this.bufferSize = bufferSize;
+  }
+
+  /**
+   * Returns idle timeout in milliseconds, <code>0</code> means never timeout.
+   *
+   * @return Idle timeout.
+   */
+  @Override
+  public int getTimeout() {
+    return timeout;
+  }
+
+  @Override
+  public void setTimeout(int timeout) {
+    this.timeout = timeout;
+  }
+
+  @Override
+  public SocksProxy getProxy() {
+    return null;
+  }
+
+  /**
+   * Upstream proxy is not supported by this server.
+   *
+   * @param proxy Must be <code>null</code>.
+   * @throws UnsupportedOperationException If proxy is not <code>null</code>.
+   */
+  @Override
+  public void setProxy(SocksProxy proxy) {
+    if (proxy != null) {
+      throw new UnsupportedOperationException("NIO server doesn't support upstream proxy");
+    }
+  }
+
+  @Override
+  public RoutingTable getRoutingTable() {
+    return routingTable;
+  }
+
+  /**
+   * Sets the routing table, upstream proxy routes are not supported by this server.
+   *
+   * @param routingTable Routing table without {@link sockslib.server.routing.Route.Type#PROXY}
+   *                     routes.
+   * @throws UnsupportedOperationException If the table has an upstream proxy route.
+   */
+  @Override
+  public void setRoutingTable(RoutingTable routingTable) {
+    if (routingTable != null && routingTable.hasProxyRoute()) {
+      throw new UnsupportedOperationException("NIO server doesn't support upstream proxy");
+    }
+    this.routingTable = routingTable;
+  }
+
+  /**
+   * Sets the thread pool which is used to do blocking work, such as authentication and DNS
+   * lookup.
+   *
+   * @param executorService Thread pool.
+   */
+  @Override
+  public void setExecutorService(ExecutorService executorService) {
+    this.executorService = checkNotNull(executorService);
+  }
+
+  public ExecutorService getExecutorService() {
+    return executorService;
+  }
+
+  @Override
+  public InetAddress getBindAddr() {
+    return bindAddr;
+  }
+
+  @Override
+  public int getBindPort() {
+    return bindPort;
+  }
+
+  @Override
+  public void setBindAddr(InetAddress bindAddr) {
+    this.bindAddr = bindAddr;
+  }
+
+  @Override
+  public void setBindPort(int bindPort) {
+    this.bindPort = bindPort;
+  }
+
+  @Override
+  public boolean isDaemon() {
+    return daemon;
+  }
+
+  @Override
+  public void setDaemon(boolean daemon) {
+    this.daemon = daemon;
+  }
+
+  @Override
+  public SessionManager getSessionManager() {
+    return sessionManager;
+  }
+
+  @Override
+  public void setSessionManager(SessionManager sessionManager) {
+    this.sessionManager = checkNotNull(sessionManager);
+  }
+
+  /**
+   * {@link PipeInitializer} is not supported by this server.
+   *
+   * @return <code>null</code>.
+   */
+  @Override
+  public PipeInitializer getPipeInitializer() {
+    return null;
+  }
+
+  @Override
+  public void setPipeInitializer(PipeInitializer pipeInitializer) {
+    if (pipeInitializer != null) {
+      logger.warn("PipeInitializer is ignored by NIO server");
+    }
+  }
+
+  /**
+   * This server doesn't use relay pipes.
+   *
+   * @return <code>null</code>.
+   */
+  @Override
+  public ExecutorService getRelayExecutor() {
+    return null;
+  }
+
+  @Override
+  public void setRelayExecutor(ExecutorService relayExecutor) {
+    if (relayExecutor != null) {
+      logger.warn("Relay executor is ignored by NIO server");
+    }
+  }
+
+  @Override
+  public DnsResolver getDnsResolver() {
+    return dnsResolver;
+  }
+
+  @Override
+  public void setDnsResolver(DnsResolver dnsResolver) {
+    this.dnsResolver = checkNotNull(dnsResolver, "Argument [dnsResolver] may not be null");
+  }
+
+  /**
+   * Returns the connector of handlers which are created by {@link #createSocksHandler()}. The
+   * event loops connect destinations with non-blocking channels and {@link #getConnectTimeout()}.
+   *
+   * @return Instance of {@link Connector}.
+   */
+  @Override
+  public Connector getConnector() {
+    return connector;
+  }
+
+  @Override
+  public void setConnector(Connector connector) {
+    this.connector = checkNotNull(connector, "Argument [connector] may not be null");
+  }
+
+  public int getConnectTimeout() {
+    return connectTimeout;
+  }
+
+  /**
+   * Sets the deadline of connecting a remote server. The client gets
+   * {@link sockslib.server.msg.ServerReply#TTL_EXPIRED} if the deadline passes.
+   *
+   * @param connectTimeout Deadline in milliseconds, <code>0</code> means no deadline.
+   */
+  public void setConnectTimeout(int connectTimeout) {
+    checkArgument(connectTimeout >= 0, "Argument [connectTimeout] must not be negative");
+    this.connectTimeout = connectTimeout;
+  }
+
+  /**
+   * Schedules a task which runs when the deadline of connecting a remote server passes.
+   *
+   * @param task Task, it runs in the timer thread.
+   * @return Handle of the deadline, or <code>null</code> if there is no deadline.
+   */
+  HashedWheelTimer.Timeout newConnectDeadline(Runnable task) {
+    HashedWheelTimer currentTimer = timer;
+    if (connectTimeout <= 0 || currentTimer == null) {
+      return null;
+    }
+    try {
+      return currentTimer.newTimeout(task, connectTimeout, TimeUnit.MILLISECONDS);
+    } catch (IllegalStateException e) {
+      // The server is shutting down.
+      return null;
+    }
+  }
+
+  InetAddress getLocalHost() {
+    return localHost;
+  }
+
+  public DirectBufferPool getBufferPool() {
+    return bufferPool;
+  }
+
+  public void setBufferPool(DirectBufferPool bufferPool) {
+    this.bufferPool = checkNotNull(bufferPool);
+  }
+
+  public SSLConfiguration getSSLConfiguration() {
+    return sslConfiguration;
+  }
+
+  /**
+   * Sets the SSL configuration, the server accepts TLS connections only if it's set.
+   *
+   * @param sslConfiguration SSL configuration, <code>null</code> means plain connections.
+   */
+  public void setSSLConfiguration(SSLConfiguration sslConfiguration) {
+    this.sslConfiguration = sslConfiguration;
+  }
+
+  public ExecutorService getSSLTaskExecutor() {
+    return sslTaskExecutor;
+  }
+
+  /**
+   * Sets the thread pool which runs delegated tasks of SSL handshakes. If it's not set, a bounded
+   * pool is created when the server starts and shut down with the server.
+   *
+   * @param sslTaskExecutor Thread pool.
+   */
+  public void setSSLTaskExecutor(ExecutorService sslTaskExecutor) {
+    this.sslTaskExecutor =
+        checkNotNull(sslTaskExecutor, "Argument [sslTaskExecutor] may not be null");
+    this.sslTaskExecutorCreated = false;
+  }
+
+  public MethodSelector getMethodSelector() {
+    return methodSelector;
+  }
+
+  public int getEventLoopCount() {
+    return eventLoopCount;
+  }
+
+  public Thread getServerThread() {
+    return thread;
+  }
+
+  @Override
+  public int getBacklog() {
+    return backlog;
+  }
+
+  @Override
+  public void setBacklog(int backlog) {
+    checkArgument(backlog > 0, "Argument [backlog] must be greater than 0");
+    this.backlog = backlog;
+  }
+
+  @Override
+  public int getAcceptorCount() {
+    return acceptorCount;
+  }
+
+  @Override
+  public void setAcceptorCount(int acceptorCount) {
+    checkArgument(acceptorCount > 0, "Argument [acceptorCount] must be greater than 0");
+    this.acceptorCount = acceptorCount;
+  }
+}
@@ -0,0 +1,376 @@
+/*
+ * Copyright 2015-2025 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package sockslib.server.nio;
+
+import sockslib.common.SSLConfiguration;
+import sockslib.server.io.DirectBufferPool;
+
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLEngineResult;
+import javax.net.ssl.SSLEngineResult.HandshakeStatus;
+import javax.net.ssl.SSLEngineResult.Status;
+import javax.net.ssl.SSLException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Consumer;
+
+/**
+ * The class <code>SSLTransport</code> layers TLS over a non-blocking client channel with an
+ * {@link SSLEngine}.
+ * <p>
+ * It's driven by {@link NioSocks5Connection} in the event loop. Application bytes are read and
+ * written with {@link #read(ByteBuffer)} and {@link #write(ByteBuffer)}, which also advance the
+ * handshake. Delegated tasks of the engine, such as certificate validation and key exchange, are
+ * run by a separate executor so that they never block the event loop. All network and
+ * application buffers are direct buffers borrowed from a {@link DirectBufferPool}.
+ * </p>
+ *
+ * @version 1.0
+ */
+class SSLTransport {
+
+  private static final ByteBuffer EMPTY_BUFFER = ByteBuffer.allocate(0);
+
+  private final SocketChannel channel;
+
+  private final SSLEngine engine;
+
+  private final SSLConfiguration configuration;
+
+  private final EventLoop loop;
+
+  private final Executor taskExecutor;
+
+  private final DirectBufferPool bufferPool;
+
+  /**
+   * Invoked in the event loop after delegated tasks are finished.
+   */
+  private final Runnable resume;
+
+  /**
+   * Invoked in the event loop when delegated tasks fail.
+   */
+  private final Consumer<Exception> failure;
+
+  /**
+   * Encrypted bytes read from the channel, in write mode.
+   */
+  private final ByteBuffer netIn;
+
+  /**
+   * Encrypted bytes which will be written to the channel, in write mode.
+   */
+  private final ByteBuffer netOut;
+
+  /**
+   * Decrypted bytes which are not consumed yet, in write mode.
+   */
+  private final ByteBuffer appIn;
+
+  private final long handshakeStartTime = System.currentTimeMillis();
+
+  private boolean handshaking = true;
+
+  private boolean runningTasks = false;
+
+  /**
+   * The last read stopped because the destination was full, more input may be buffered.
+   */
+  private boolean inputBuffered = false;
+
+  private boolean endOfStream = false;
+
+  /**
+   * Constructs an instance of {@link SSLTransport}.
+   *
+   * @param channel       Client channel.
+   * @param configuration SSL configuration which creates the engine and counts handshakes.
+   * @param loop          Event loop which drives the channel.
+   * @param taskExecutor  Executor of delegated tasks.
+   * @param bufferPool    Pool of direct buffers.
+   * @param resume        Invoked in the event loop after delegated tasks are finished.
+   * @param failure       Invoked in the event loop when delegated tasks fail.
+   * @throws IOException If the engine can't be created.
+   */
+  SSLTransport(SocketChannel channel, SSLConfiguration configuration, EventLoop loop,
+               Executor taskExecutor, DirectBufferPool bufferPool, Runnable resume,
+               Consumer<Exception> failure) throws IOException {
+    this.channel = channel;
+    this.configuration = configuration;
+    this.loop = loop;
+    this.taskExecutor = taskExecutor;
+    this.bufferPool = bufferPool;
+    this.resume = resume;
+    this.failure = failure;
+    engine = configuration.createServerEngine();
+    engine.beginHandshake();
+    int packetSize = engine.getSession().getPacketBufferSize();
+    netIn = bufferPool.acquire(packetSize);
+    netOut = bufferPool.acquire(packetSize);
+    appIn = bufferPool.acquire(engine.getSession().getApplicationBufferSize());
+  }
+
+  /**
+   * Reads decrypted bytes into <code>dst</code>. It may read nothing while the handshake is in
+   * progress.
+   *
+   * @param dst Destination buffer.
+   * @return Number of bytes read, or <code>-1</code> if the client closed the connection.
+   * @throws IOException If an I/O error occurs or the TLS data is invalid.
+   */
+  int read(ByteBuffer dst) throws IOException {
+    int start = dst.position();
+    inputBuffered = false;
+    while (true) {
+      drainAppIn(dst);
+      if (!dst.hasRemaining()) {
+        inputBuffered = appIn.position() > 0 || netIn.position() > 0;
+        break;
+      }
+      if (runningTasks || engine.isInboundDone()) {
+        break;
+      }
+      HandshakeStatus handshakeStatus = engine.getHandshakeStatus();
+      if (handshakeStatus == HandshakeStatus.NEED_TASK) {
+        runDelegatedTasks();
+        break;
+      }
+      if (handshakeStatus == HandshakeStatus.NEED_WRAP) {
+        if (!wrap(EMPTY_BUFFER)) {
+          break;
+        }
+        continue;
+      }
+      Status status = unwrap();
+      if (status == Status.OK) {
+        continue;
+      }
+      if (status != Status.BUFFER_UNDERFLOW) {
+        // The buffer overflows only if appIn is not drained, or the engine is closed.
+        break;
+      }
+      int length = channel.read(netIn);
+      if (length < 0) {
+        endOfStream = true;
+        break;
+      }
+      if (length == 0) {
+        break;
+      }
+    }
+    int count = dst.position() - start;
+    if (count == 0 && appIn.position() == 0 && (endOfStream || engine.isInboundDone())) {
+      return -1;
+    }
+    return count;
+  }
+
+  /**
+   * Encrypts bytes of <code>src</code> and writes them to the channel. Encrypted bytes which
+   * can't be written immediately are kept until the next call.
+   *
+   * @param src Source buffer.
+   * @return Number of bytes consumed from <code>src</code>.
+   * @throws IOException If an I/O error occurs.
+   */
+  int write(ByteBuffer src) throws IOException {
+    int start = src.position();
+    flushNetOut();
+    while (!runningTasks) {
+      HandshakeStatus handshakeStatus = engine.getHandshakeStatus();
+      if (handshakeStatus == HandshakeStatus.NEED_TASK) {
+        runDelegatedTasks();
+        break;
+      }
+      ByteBuffer source;
+      if (handshakeStatus == HandshakeStatus.NEED_WRAP) {
+        source = EMPTY_BUFFER;
+      } else if (src.hasRemaining() && !(handshaking
+          && handshakeStatus == HandshakeStatus.NEED_UNWRAP)) {
+        source = src;
+      } else {
+        break;
+      }
+      if (!wrap(source)) {
+        break;
+      }
+    }
+    return src.position() - start;
+  }
+
+  /**
+   * Returns <code>true</code> if some encrypted bytes are waiting for the channel to be
+   * writable.
+   *
+   * @return <code>true</code> if there are encrypted bytes to be written.
+   */
+  boolean hasPendingOutput() {
+    return netOut.position() > 0;
+  }
+
+  /**
+   * Returns <code>true</code> if the last read stopped because the destination buffer was full
+   * while more bytes were buffered. The selector won't report them, so the caller should read
+   * again once the destination has room.
+   *
+   * @return <code>true</code> if more bytes may be read without the channel being readable.
+   */
+  boolean hasBufferedInput() {
+    return inputBuffered;
+  }
+
+  /**
+   * Sends close_notify on a best effort basis.
+   */
+  void closeOutbound() {
+    engine.closeOutbound();
+    try {
+      while (!runningTasks && engine.getHandshakeStatus() == HandshakeStatus.NEED_WRAP) {
+        if (!wrap(EMPTY_BUFFER)) {
+          break;
+        }
+      }
+    } catch (IOException ignored) {
+      // The connection is being closed anyway.
+    }
+  }
+
+  /**
+   * Returns the buffers to the pool, the transport can't be used any more.
+   */
+  void release() {
+    bufferPool.release(netIn);
+    bufferPool.release(netOut);
+    bufferPool.release(appIn);
+  }
+
+  private void drainAppIn(ByteBuffer dst) {
+    if (appIn.position() == 0) {
+      return;
+    }
+    appIn.flip();
+    if (appIn.remaining() <= dst.remaining()) {
+      dst.put(appIn);
+    } else {
+      ByteBuffer slice = appIn.duplicate();
+      slice.limit(slice.position() + dst.remaining());
+      dst.put(slice);
+      appIn.position(slice.position());
+    }
+    appIn.compact();
+  }
+
+  private Status unwrap() throws IOException {
+    netIn.flip();
+    SSLEngineResult result;
+    try {
+      result = engine.unwrap(netIn, appIn);
+    } finally {
+      netIn.compact();
+    }
+    checkHandshakeFinished(result);
+    HandshakeStatus handshakeStatus = result.getHandshakeStatus();
+    if (result.getStatus() == Status.OK && result.bytesConsumed() == 0
+        && result.bytesProduced() == 0 && handshakeStatus != HandshakeStatus.NEED_TASK
+        && handshakeStatus != HandshakeStatus.NEED_WRAP) {
+      // Nothing happened, more bytes are needed.
+      return Status.BUFFER_UNDERFLOW;
+    }
+    return result.getStatus();
+  }
+
+  /**
+   * Wraps bytes of <code>src</code> into {@link #netOut} and flushes it.
+   *
+   * @return <code>true</code> if some progress is made and the caller may wrap again.
+   */
+  private boolean wrap(ByteBuffer src) throws IOException {
+    SSLEngineResult result = engine.wrap(src, netOut);
+    checkHandshakeFinished(result);
+    switch (result.getStatus()) {
+      case OK:
+        flushNetOut();
+        return result.bytesConsumed() > 0 || result.bytesProduced() > 0;
+      case BUFFER_OVERFLOW:
+        flushNetOut();
+        // Wrap again only if the channel took some bytes.
+        return netOut.position() == 0;
+      case CLOSED:
+        flushNetOut();
+        if (src.hasRemaining()) {
+          throw new SSLException("SSL engine is closed");
+        }
+        return false;
+      default:
+        return false;
+    }
+  }
+
+  private void flushNetOut() throws IOException {
+    if (netOut.position() == 0) {
+      return;
+    }
+    netOut.flip();
+    try {
+      channel.write(netOut);
+    } finally {
+      netOut.compact();
+    }
+  }
+
+  private void checkHandshakeFinished(SSLEngineResult result) {
+    if (handshaking && result.getHandshakeStatus() == HandshakeStatus.FINISHED) {
+      handshaking = false;
+      configuration.handshakeFinished(engine.getSession(), handshakeStartTime);
+    }
+  }
+
+  private void runDelegatedTasks() throws SSLException {
+    runningTasks = true;
+    Runnable tasks = () -> {
+      Throwable error = null;
+      try {
+        Runnable task;
+        while ((task = engine.getDelegatedTask()) != null) {
+          task.run();
+        }
+      } catch (Throwable e) {
+        error = e;
+      } finally {
+        Throwable cause = error;
+        loop.execute(() -> {
+          runningTasks = false;
+          if (cause == null) {
+            resume.run();
+          } else {
+            failure.accept(new SSLException("Delegated task failed", cause));
+          }
+        });
+      }
+    };
+    try {
+      taskExecutor.execute(tasks);
+    } catch (RejectedExecutionException e) {
+      runningTasks = false;
+      throw new SSLException("Delegated tasks rejected", e);
+    }
+  }
+
+
+}
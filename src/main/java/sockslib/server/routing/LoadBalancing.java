@@ -0,0 +1,47 @@
+/*
+ * Copyright 2015-2025 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package sockslib.server.routing;
+
+/**
+ * The enumeration <code>LoadBalancing</code> represents how an {@link UpstreamPool} selects an
+ * upstream proxy for a connection. Unavailable upstreams are always skipped.
+ *
+ * @version 1.0
+ */
+public enum LoadBalancing {
+
+  /**
+   * Upstreams take turns.
+   */
+  ROUND_ROBIN,
+
+  /**
+   * The upstream with the fewest active connections.
+   */
+  LEAST_CONNECTIONS,
+
+  /**
+   * The upstream with the lowest EWMA of connect latency, weighted by its active connections.
+   * Upstreams without measured latency are tried first.
+   */
+  EWMA_LATENCY,
+
+  /**
+   * A consistent hash of the destination, so that a destination keeps using the same upstream
+   * while the upstream is available, and moves to the next upstream on the ring otherwise.
+   */
+  CONSISTENT_HASH
+
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2015-2025 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package sockslib.server.routing;
+
+import sockslib.client.SocksProxy;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * The class <code>Route</code> represents how a SOCKS server reaches a destination: directly,
+ * through an upstream proxy (which may have chain proxies) or an {@link UpstreamPool}, or not at
+ * all.
+ *
+ * @version 1.0
+ * @see RoutingTable
+ */
+public final class Route {
+
+  public enum Type {
+    DIRECT, PROXY, REJECT
+  }
+
+  /**
+   * Connects to destinations directly.
+   */
+  public static final Route DIRECT = new Route(Type.DIRECT, null, null);
+
+  /**
+   * Refuses destinations, clients get
+   * {@link sockslib.server.msg.ServerReply#CONNECTION_NOT_ALLOWED_BY_RULESET}.
+   */
+  public static final Route REJECT = new Route(Type.REJECT, null, null);
+
+  private final Type type;
+
+  private final SocksProxy proxy;
+
+  private final UpstreamPool upstreamPool;
+
+  private Route(Type type, SocksProxy proxy, UpstreamPool upstreamPool) {
+    this.type = type;
+    this.proxy = proxy;
+    this.upstreamPool = upstreamPool;
+  }
+
+  /**
+   * Returns a route through an upstream proxy. To go through a chain of proxies, set the chain
+   * proxy of <code>proxy</code> with {@link SocksProxy#setChainProxy(SocksProxy)}.
+   *
+   * @param proxy Upstream proxy.
+   * @return Instance of {@link Route}.
+   */
+  public static Route via(SocksProxy proxy) {
+    return new Route(Type.PROXY, checkNotNull(proxy, "Argument [proxy] may not be null"), null);
+  }
+
+  /**
+   * Returns a route through one of the upstream proxies of a pool.
+   *
+   * @param upstreamPool Pool of upstream proxies.
+   * @return Instance of {@link Route}.
+   */
+  public static Route via(UpstreamPool upstreamPool) {
+    return new Route(Type.PROXY, null,
+        checkNotNull(upstreamPool, "Argument [upstreamPool] may not be null"));
+  }
+
+  public Type getType() {
+    return type;
+  }
+
+  /**
+   * Returns the upstream proxy.
+   *
+   * @return Upstream proxy, or <code>null</code> if the route isn't {@link Type#PROXY} or goes
+   * through an {@link UpstreamPool}.
+   */
+  public SocksProxy getProxy() {
+    return proxy;
+  }
+
+  public UpstreamPool getUpstreamPool() {
+    return upstreamPool;
+  }
+
+  @Override
+  public String toString() {
+    if (upstreamPool != null) {
+      return type + " " + upstreamPool.getUpstreams();
+    }
+    return proxy == null ? type.name() : type + " " + proxy.getInetAddress() + ":" + proxy
+        .getPort();
+  }
+
+}
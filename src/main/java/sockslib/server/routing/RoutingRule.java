@@ -0,0 +1,150 @@
+/*
+ * Copyright 2015-2025 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package sockslib.server.routing;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * The class <code>RoutingRule</code> selects a {@link Route} for destinations which match all of
+ * its conditions:
+ * <ul>
+ * <li>The destination address is in one of the CIDR blocks, or the destination domain name matches
+ * one of the domain patterns. See {@link sockslib.server.acl.DomainTrie} for patterns.</li>
+ * <li>The destination port is in one of the port ranges.</li>
+ * <li>The authenticated user is one of the users.</li>
+ * </ul>
+ * A kind of condition which is not set matches everything. CIDR blocks only match destinations
+ * which are IP addresses, domain names are not resolved for routing.
+ * <pre>
+ * new RoutingRule(Route.via(proxy)).addDomain(".corp.example.com").addCidr("10.0.0.0/8")
+ *     .addPort(443).addUser("alice");
+ * </pre>
+ *
+ * @version 1.0
+ * @see RoutingTable
+ */
+public class RoutingRule {
+
+  private final Route route;
+
+  private final List<String> cidrs = new ArrayList<>();
+
+  private final List<String> domains = new ArrayList<>();
+
+  private final List<int[]> portRanges = new ArrayList<>();
+
+  private final Set<String> users = new HashSet<>();
+
+  public RoutingRule(Route route) {
+    this.route = checkNotNull(route, "Argument [route] may not be null");
+  }
+
+  /**
+   * Adds a destination CIDR block.
+   *
+   * @param cidr CIDR block such as <code>"10.0.0.0/8"</code>, an address without prefix length
+   *             means a single host.
+   * @return This rule.
+   */
+  public RoutingRule addCidr(String cidr) {
+    cidrs.add(checkNotNull(cidr, "Argument [cidr] may not be null"));
+    return this;
+  }
+
+  /**
+   * Adds a destination domain pattern.
+   *
+   * @param pattern Pattern such as <code>".example.com"</code>.
+   * @return This rule.
+   */
+  public RoutingRule addDomain(String pattern) {
+    domains.add(checkNotNull(pattern, "Argument [pattern] may not be null"));
+    return this;
+  }
+
+  public RoutingRule addPort(int port) {
+    return addPortRange(port, port);
+  }
+
+  /**
+   * Adds a destination port range.
+   *
+   * @param from First port of the range.
+   * @param to   Last port of the range, inclusive.
+   * @return This rule.
+   */
+  public RoutingRule addPortRange(int from, int to) {
+    checkArgument(from >= 0 && from <= to && to <= 0xFFFF,
+        "Argument [from] and [to] must be a range of ports");
+    portRanges.add(new int[] {from, to});
+    return this;
+  }
+
+  public RoutingRule addUser(String username) {
+    users.add(checkNotNull(username, "Argument [username] may not be null"));
+    return this;
+  }
+
+  public Route getRoute() {
+    return route;
+  }
+
+  public List<String> getCidrs() {
+    return Collections.unmodifiableList(cidrs);
+  }
+
+  public List<String> getDomains() {
+    return Collections.unmodifiableList(domains);
+  }
+
+  public Set<String> getUsers() {
+    return Collections.unmodifiableSet(users);
+  }
+
+  /**
+   * Returns <code>true</code> if the rule has no CIDR block and no domain pattern.
+   *
+   * @return <code>true</code> if the rule matches all destinations.
+   */
+  boolean matchesAnyDestination() {
+    return cidrs.isEmpty() && domains.isEmpty();
+  }
+
+  /**
+   * Returns <code>true</code> if the port and the user match the rule.
+   */
+  boolean matches(String username, int port) {
+    if (!users.isEmpty() && (username == null || !users.contains(username))) {
+      return false;
+    }
+    if (portRanges.isEmpty()) {
+      return true;
+    }
+    for (int[] range : portRanges) {
+      if (port >= range[0] && port <= range[1]) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+}
@@ -0,0 +1,320 @@
+/*
+ * Copyright 2015-2025 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package sockslib.server.routing;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import sockslib.common.AddressType;
+import sockslib.server.Session;
+import sockslib.server.UsernamePasswordAuthenticator;
+import sockslib.server.acl.CIDRTrie;
+import sockslib.server.acl.DomainTrie;
+import sockslib.server.manager.User;
+import sockslib.server.msg.CommandMessage;
+
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * The class <code>RoutingTable</code> selects a {@link Route} for every CONNECT command, so that
+ * most traffic goes directly while some destinations go through upstream proxies or are
+ * rejected.
+ * <p>
+ * Rules are evaluated in order and the first matching rule wins, destinations which match no rule
+ * take the default route. The table is compiled when it's constructed: the destination conditions
+ * of all rules are indexed in a {@link CIDRTrie} and a {@link DomainTrie}, so a lookup only checks
+ * the ports and users of the rules whose destinations match. Routes are cached per user and
+ * destination in a bounded LRU cache.
+ * </p>
+ * <p>
+ * A domain name is routed by its name. If the server has resolved it to connect it directly,
+ * every resolved address is also routed by the CIDR rules, and the domain name is rejected if any
+ * of its addresses is rejected, so a name can't be used to reach a rejected network. Other routes
+ * of addresses don't apply to domain names.
+ * </p>
+ * <p>
+ * A table is immutable and thread safe, to change the rules build a new table and set it to the
+ * server with {@link sockslib.server.SocksProxyServer#setRoutingTable(RoutingTable)}.
+ * </p>
+ * <pre>
+ * List&lt;RoutingRule&gt; rules = new ArrayList&lt;&gt;();
+ * rules.add(new RoutingRule(Route.REJECT).addCidr("10.0.0.0/8"));
+ * rules.add(new RoutingRule(Route.via(corporateProxy)).addDomain(".corp.example.com"));
+ * SocksServerBuilder.newSocks5ServerBuilder()
+ *     .setRoutingTable(new RoutingTable(rules, Route.DIRECT));
+ * </pre>
+ *
+ * @version 1.0
+ */
+public class RoutingTable {
+
+  /**
+   * Default max number of cached routes.
+   */
+  public static final int DEFAULT_CACHE_SIZE = 10000;
+
+  private final RoutingRule[] rules;
+
+  private final Route defaultRoute;
+
+  /**
+   * Indexes of the rules of every CIDR block and domain pattern, in ascending order.
+   */
+  private final CIDRTrie<int[]> cidrIndex = new CIDRTrie<>();
+
+  private final DomainTrie<int[]> domainIndex = new DomainTrie<>();
+
+  /**
+   * Indexes of the rules which match all destinations.
+   */
+  private final int[] anyDestinationRules;
+
+  private final Cache<DecisionKey, Route> decisions;
+
+  /**
+   * Constructs an instance of {@link RoutingTable}. Rules must not be modified any more.
+   *
+   * @param rules        Rules in order of precedence.
+   * @param defaultRoute Route of destinations which match no rule.
+   * @throws IllegalArgumentException If a CIDR block or a domain pattern is invalid.
+   */
+  public RoutingTable(List<RoutingRule> rules, Route defaultRoute) {
+    this(rules, defaultRoute, DEFAULT_CACHE_SIZE);
+  }
+
+  /**
+   * Constructs an instance of {@link RoutingTable}. Rules must not be modified any more.
+   *
+   * @param rules        Rules in order of precedence.
+   * @param defaultRoute Route of destinations which match no rule.
+   * @param cacheSize    Max number of cached routes, <code>0</code> disables the cache.
+   * @throws IllegalArgumentException If a CIDR block or a domain pattern is invalid.
+   */
+  public RoutingTable(List<RoutingRule> rules, Route defaultRoute, int cacheSize) {
+    checkNotNull(rules, "Argument [rules] may not be null");
+    checkArgument(cacheSize >= 0, "Argument [cacheSize] must not be negative");
+    this.rules = rules.toArray(new RoutingRule[0]);
+    this.defaultRoute = checkNotNull(defaultRoute, "Argument [defaultRoute] may not be null");
+    List<Integer> anyDestination = new ArrayList<>();
+    for (int i = 0; i < this.rules.length; i++) {
+      RoutingRule rule = checkNotNull(this.rules[i], "Argument [rules] may not contain null");
+      if (rule.matchesAnyDestination()) {
+        anyDestination.add(i);
+      }
+      for (String cidr : rule.getCidrs()) {
+        int[] indexes = cidrIndex.putIfAbsent(cidr, new int[] {i});
+        if (indexes != null && indexes[indexes.length - 1] != i) {
+          cidrIndex.put(cidr, append(indexes, i));
+        }
+      }
+      for (String domain : rule.getDomains()) {
+        int[] indexes = domainIndex.putIfAbsent(domain, new int[] {i});
+        if (indexes != null && indexes[indexes.length - 1] != i) {
+          domainIndex.put(domain, append(indexes, i));
+        }
+      }
+    }
+    anyDestinationRules = anyDestination.stream().mapToInt(Integer::intValue).toArray();
+    decisions = CacheBuilder.newBuilder().maximumSize(cacheSize).recordStats().build();
+  }
+
+  /**
+   * Returns the route of a command. A domain name is routed by its name, and by its addresses if
+   * the command has been resolved, see
+   * {@link #routeResolved(String, String, InetAddress[], int)}.
+   *
+   * @param session Session, its user is the user which is authenticated by
+   *                {@link UsernamePasswordAuthenticator}.
+   * @param message Command.
+   * @return Route.
+   */
+  public Route route(Session session, CommandMessage message) {
+    Object user = session.getAttribute(UsernamePasswordAuthenticator.USER_KEY);
+    String username = user instanceof User ? ((User) user).getUsername() : null;
+    if (message.getAddressType() != AddressType.DOMAIN_NAME) {
+      return route(username, message.getInetAddress(), null, message.getPort());
+    }
+    InetAddress[] addresses = message.getResolvedAddresses();
+    if (addresses == null && message.getInetAddress() != null) {
+      addresses = new InetAddress[] {message.getInetAddress()};
+    }
+    return routeResolved(username, message.getHost(), addresses, message.getPort());
+  }
+
+  /**
+   * Returns the route of a domain name which may have been resolved by the server. The route of
+   * the name is returned, unless an address of the name is rejected.
+   *
+   * @param username  Authenticated user, or <code>null</code> if the client isn't authenticated.
+   * @param host      Destination domain name.
+   * @param addresses Resolved addresses of the domain name, or <code>null</code> if it's not
+   *                  resolved.
+   * @param port      Destination port.
+   * @return Route.
+   */
+  public Route routeResolved(String username, String host, InetAddress[] addresses, int port) {
+    checkNotNull(host, "Argument [host] may not be null");
+    Route route = route(username, null, host, port);
+    if (addresses == null || route.getType() == Route.Type.REJECT) {
+      return route;
+    }
+    for (InetAddress address : addresses) {
+      Route addressRoute = route(username, address, null, port);
+      if (addressRoute.getType() == Route.Type.REJECT) {
+        return addressRoute;
+      }
+    }
+    return route;
+  }
+
+  /**
+   * Returns the route of a destination.
+   *
+   * @param username Authenticated user, or <code>null</code> if the client isn't authenticated.
+   * @param address  Destination address, or <code>null</code> if the destination is a domain
+   *                 name.
+   * @param host     Destination domain name, it's ignored if <code>address</code> isn't
+   *                 <code>null</code>.
+   * @param port     Destination port.
+   * @return Route.
+   */
+  public Route route(String username, InetAddress address, String host, int port) {
+    checkArgument(address != null || host != null,
+        "Argument [address] and [host] may not both be null");
+    DecisionKey key = new DecisionKey(username, address != null ? address : host, port);
+    Route route = decisions.getIfPresent(key);
+    if (route == null) {
+      route = evaluate(username, address, host, port);
+      decisions.put(key, route);
+    }
+    return route;
+  }
+
+  private Route evaluate(String username, InetAddress address, String host, int port) {
+    int[] match = {Integer.MAX_VALUE};
+    checkRules(anyDestinationRules, username, port, match);
+    if (address != null) {
+      cidrIndex.forEachMatch(address, indexes -> checkRules(indexes, username, port, match));
+    } else {
+      domainIndex.forEachMatch(host, indexes -> checkRules(indexes, username, port, match));
+    }
+    return match[0] == Integer.MAX_VALUE ? defaultRoute : rules[match[0]].getRoute();
+  }
+
+  /**
+   * Lowers <code>match[0]</code> to the first rule in <code>indexes</code> which matches the user
+   * and the port.
+   */
+  private void checkRules(int[] indexes, String username, int port, int[] match) {
+    for (int index : indexes) {
+      if (index >= match[0]) {
+        return;
+      }
+      if (rules[index].matches(username, port)) {
+        match[0] = index;
+        return;
+      }
+    }
+  }
+
+  /**
+   * Returns <code>true</code> if any rule routes through an upstream proxy.
+   *
+   * @return <code>true</code> if any rule routes through an upstream proxy.
+   */
+  public boolean hasProxyRoute() {
+    if (defaultRoute.getType() == Route.Type.PROXY) {
+      return true;
+    }
+    for (RoutingRule rule : rules) {
+      if (rule.getRoute().getType() == Route.Type.PROXY) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  public Route getDefaultRoute() {
+    return defaultRoute;
+  }
+
+  /**
+   * Returns the number of rules.
+   *
+   * @return Number of rules.
+   */
+  public int size() {
+    return rules.length;
+  }
+
+  /**
+   * Returns statistics of the route cache.
+   *
+   * @return Statistics of the route cache.
+   */
+  public CacheStats getCacheStats() {
+    return decisions.stats();
+  }
+
+  private static int[] append(int[] indexes, int index) {
+    int[] result = Arrays.copyOf(indexes, indexes.length + 1);
+    result[indexes.length] = index;
+    return result;
+  }
+
+  private static final class DecisionKey {
+
+    private final String username;
+
+    /**
+     * An {@link InetAddress} or a domain name.
+     */
+    private final Object destination;
+
+    private final int port;
+
+    DecisionKey(String username, Object destination, int port) {
+      this.username = username;
+      this.destination = destination;
+      this.port = port;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof DecisionKey)) {
+        return false;
+      }
+      DecisionKey that = (DecisionKey) o;
+      return port == that.port && destination.equals(that.destination) && Objects.equals(
+          username, that.username);
+    }
+
+    @Override
+    public int hashCode() {
+      return (31 * destination.hashCode() + port) * 31 + Objects.hashCode(username);
+    }
+  }
+
+}
@@ -0,0 +1,205 @@
+/*
+ * Copyright 2015-2025 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package sockslib.server.routing;
+
+import sockslib.client.SocksProxy;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The class <code>Upstream</code> is an upstream proxy of an {@link UpstreamPool}, with its
+ * circuit breaker and metrics.
+ * <p>
+ * The circuit is {@link State#CLOSED} while the upstream works. After a number of consecutive
+ * failures it's {@link State#OPEN} and the upstream is ejected for a while. When the ejection
+ * time is over, the next health probe or connection is a trial: the circuit is
+ * {@link State#HALF_OPEN} until the trial ends, and the upstream is re-admitted if it succeeds or
+ * ejected again if it fails.
+ * </p>
+ *
+ * @version 1.0
+ */
+public class Upstream {
+
+  public enum State {
+    CLOSED, OPEN, HALF_OPEN
+  }
+
+  /**
+   * Weight of a new latency sample in the moving average.
+   */
+  private static final double EWMA_ALPHA = 0.3;
+
+  private final SocksProxy proxy;
+
+  private final AtomicReference<State> state = new AtomicReference<>(State.CLOSED);
+
+  private final AtomicInteger consecutiveFailures = new AtomicInteger();
+
+  private final AtomicInteger activeConnections = new AtomicInteger();
+
+  private final LongAdder totalConnections = new LongAdder();
+
+  private final LongAdder failedConnections = new LongAdder();
+
+  private final LongAdder failedProbes = new LongAdder();
+
+  private final LongAdder ejectionCount = new LongAdder();
+
+  private volatile long ejectedUntil;
+
+  /**
+   * EWMA of latency in nanoseconds, <code>0</code> if no latency is measured yet.
+   */
+  private volatile double latency;
+
+  Upstream(SocksProxy proxy) {
+    this.proxy = proxy;
+  }
+
+  /**
+   * Returns <code>true</code> if new connections may use the upstream.
+   */
+  boolean isAvailable(long now) {
+    State current = state.get();
+    return current == State.CLOSED || (current == State.OPEN && now - ejectedUntil >= 0);
+  }
+
+  /**
+   * Returns <code>true</code> if the upstream may be tried now. An ejected upstream whose ejection
+   * time is over is half open, so that only one caller tries it.
+   */
+  boolean tryAdmit(long now) {
+    State current = state.get();
+    if (current == State.CLOSED) {
+      return true;
+    }
+    return current == State.OPEN && now - ejectedUntil >= 0
+        && state.compareAndSet(State.OPEN, State.HALF_OPEN);
+  }
+
+  /**
+   * Starts a connection through the upstream.
+   *
+   * @return <code>false</code> if the upstream is unavailable.
+   */
+  boolean tryAcquire(long now) {
+    if (!tryAdmit(now)) {
+      return false;
+    }
+    activeConnections.incrementAndGet();
+    totalConnections.increment();
+    return true;
+  }
+
+  void release() {
+    activeConnections.decrementAndGet();
+  }
+
+  void onSuccess(long latencyNanos) {
+    double average = latency;
+    latency = average == 0 ? latencyNanos : average + EWMA_ALPHA * (latencyNanos - average);
+    consecutiveFailures.set(0);
+    state.set(State.CLOSED);
+  }
+
+  /**
+   * Ends a trial connection which neither succeeded nor failed, so that the upstream can be tried
+   * again.
+   */
+  void abortTrial() {
+    state.compareAndSet(State.HALF_OPEN, State.OPEN);
+  }
+
+  void onFailure(long now, int failureThreshold, long ejectionNanos) {
+    failedConnections.increment();
+    fail(now, failureThreshold, ejectionNanos);
+  }
+
+  void onProbeFailure(long now, int failureThreshold, long ejectionNanos) {
+    failedProbes.increment();
+    fail(now, failureThreshold, ejectionNanos);
+  }
+
+  private void fail(long now, int failureThreshold, long ejectionNanos) {
+    if (state.get() == State.HALF_OPEN
+        || consecutiveFailures.incrementAndGet() >= failureThreshold) {
+      ejectedUntil = now + ejectionNanos;
+      if (state.getAndSet(State.OPEN) != State.OPEN) {
+        ejectionCount.increment();
+      }
+    }
+  }
+
+  /**
+   * Score of {@link LoadBalancing#EWMA_LATENCY}, lower is better.
+   */
+  double getLoadScore() {
+    return latency * (activeConnections.get() + 1);
+  }
+
+  public SocksProxy getProxy() {
+    return proxy;
+  }
+
+  public State getState() {
+    return state.get();
+  }
+
+  public int getActiveConnections() {
+    return activeConnections.get();
+  }
+
+  public long getTotalConnections() {
+    return totalConnections.sum();
+  }
+
+  public long getFailedConnections() {
+    return failedConnections.sum();
+  }
+
+  public long getFailedProbes() {
+    return failedProbes.sum();
+  }
+
+  /**
+   * Returns how many times the upstream has been ejected.
+   *
+   * @return Number of ejections.
+   */
+  public long getEjectionCount() {
+    return ejectionCount.sum();
+  }
+
+  /**
+   * Returns the EWMA of the time to connect a destination through the upstream, or to finish a
+   * health probe.
+   *
+   * @param unit Time unit of the result.
+   * @return Latency, <code>0</code> if no latency is measured yet.
+   */
+  public double getLatency(TimeUnit unit) {
+    return latency / unit.toNanos(1);
+  }
+
+  @Override
+  public String toString() {
+    return proxy.getInetAddress() + ":" + proxy.getPort() + " " + state.get();
+  }
+
+}
@@ -0,0 +1,455 @@
+/*
+ * Copyright 2015-2025 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package sockslib.server.routing;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import sockslib.client.SocksProxy;
+import sockslib.client.SocksSocket;
+import sockslib.common.SocksException;
+import sockslib.common.net.MonitorSocketWrapper;
+import sockslib.utils.ResourceUtil;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * The class <code>UpstreamPool</code> balances connections across upstream proxies, such as
+ * {@link sockslib.client.Socks5} and {@link sockslib.client.SSLSocks5}, so that a slow or dead
+ * upstream doesn't take the server with it.
+ * <p>
+ * Every {@link Upstream} has a circuit breaker: it's ejected after a number of consecutive
+ * failures and re-admitted once a trial connection or health probe succeeds. A connection which
+ * can't reach its upstream, or doesn't finish the SOCKS handshake within the connect timeout, is
+ * retried on other upstreams. A health probe connects an upstream and negotiates the SOCKS method
+ * (and TLS if it's an SSL upstream), the chain proxies of an upstream are not probed.
+ * </p>
+ * <pre>
+ * UpstreamPool pool = new UpstreamPool(Arrays.asList(proxy1, proxy2), LoadBalancing.EWMA_LATENCY);
+ * pool.startHealthCheck(10, TimeUnit.SECONDS);
+ * SocksServerBuilder.newSocks5ServerBuilder().setUpstreamPool(pool);
+ * </pre>
+ *
+ * @version 1.0
+ * @see Route#via(UpstreamPool)
+ */
+public class UpstreamPool {
+
+  private static final Logger logger = LoggerFactory.getLogger(UpstreamPool.class);
+
+  public static final int DEFAULT_FAILURE_THRESHOLD = 3;
+
+  /**
+   * Default ejection time in milliseconds.
+   */
+  public static final long DEFAULT_EJECTION_TIME = 30000;
+
+  /**
+   * Default timeout of health probes in milliseconds.
+   */
+  public static final int DEFAULT_PROBE_TIMEOUT = 5000;
+
+  /**
+   * Default timeout of connecting an upstream and finishing the SOCKS handshake, in milliseconds.
+   */
+  public static final int DEFAULT_CONNECT_TIMEOUT = 10000;
+
+  /**
+   * Max number of upstreams which a connection tries.
+   */
+  private static final int MAX_ATTEMPTS = 3;
+
+  /**
+   * Points of each upstream on the consistent hash ring.
+   */
+  private static final int VIRTUAL_NODES = 100;
+
+  private static final HashFunction HASH_FUNCTION = Hashing.murmur3_32();
+
+  private final Upstream[] upstreams;
+
+  private final LoadBalancing loadBalancing;
+
+  private final AtomicInteger nextIndex = new AtomicInteger();
+
+  /**
+   * Sorted hashes of the consistent hash ring and the upstream index of each hash.
+   */
+  private final int[] ringHashes;
+
+  private final int[] ringIndexes;
+
+  private volatile int failureThreshold = DEFAULT_FAILURE_THRESHOLD;
+
+  private volatile long ejectionNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_EJECTION_TIME);
+
+  private volatile int probeTimeout = DEFAULT_PROBE_TIMEOUT;
+
+  private volatile int connectTimeout = DEFAULT_CONNECT_TIMEOUT;
+
+  private ScheduledExecutorService healthChecker;
+
+  /**
+   * Constructs an instance of {@link UpstreamPool}.
+   *
+   * @param proxies       Upstream proxies.
+   * @param loadBalancing How to select an upstream.
+   */
+  public UpstreamPool(List<? extends SocksProxy> proxies, LoadBalancing loadBalancing) {
+    checkNotNull(proxies, "Argument [proxies] may not be null");
+    checkArgument(!proxies.isEmpty(), "Argument [proxies] must not be empty");
+    this.loadBalancing = checkNotNull(loadBalancing, "Argument [loadBalancing] may not be null");
+    upstreams = new Upstream[proxies.size()];
+    for (int i = 0; i < upstreams.length; i++) {
+      upstreams[i] =
+          new Upstream(checkNotNull(proxies.get(i), "Argument [proxies] may not contain null"));
+    }
+    if (loadBalancing == LoadBalancing.CONSISTENT_HASH) {
+      long[] ring = new long[upstreams.length * VIRTUAL_NODES];
+      for (int i = 0; i < upstreams.length; i++) {
+        SocksProxy proxy = upstreams[i].getProxy();
+        for (int j = 0; j < VIRTUAL_NODES; j++) {
+          int hash = hash(proxy.getInetAddress() + ":" + proxy.getPort() + "#" + j);
+          // Sorts by hash and keeps the upstream index in the low bits.
+          ring[i * VIRTUAL_NODES + j] = ((long) hash << 32) | i;
+        }
+      }
+      Arrays.sort(ring);
+      ringHashes = new int[ring.length];
+      ringIndexes = new int[ring.length];
+      for (int i = 0; i < ring.length; i++) {
+        ringHashes[i] = (int) (ring[i] >> 32);
+        ringIndexes[i] = (int) ring[i];
+      }
+    } else {
+      ringHashes = null;
+      ringIndexes = null;
+    }
+  }
+
+  /**
+   * Connects a destination through an upstream.
+   *
+   * @param address Destination address, or <code>null</code> if the destination is a domain
+   *                name.
+   * @param host    Destination domain name, it's ignored if <code>address</code> isn't
+   *                <code>null</code>.
+   * @param port    Destination port.
+   * @return Socket which is connected to the destination. Closing it releases the upstream.
+   * @throws SocksException If no upstream is available or an upstream refuses the destination.
+   * @throws IOException    If no upstream can be reached.
+   */
+  public Socket connect(InetAddress address, String host, int port) throws IOException {
+    checkArgument(address != null || host != null,
+        "Argument [address] and [host] may not both be null");
+    String key = address != null ? address.getHostAddress() : host;
+    boolean[] tried = new boolean[upstreams.length];
+    IOException lastException = null;
+    for (int attempt = 0; attempt < Math.min(MAX_ATTEMPTS, upstreams.length); attempt++) {
+      int index = select(key, tried);
+      if (index < 0) {
+        break;
+      }
+      tried[index] = true;
+      Upstream upstream = upstreams[index];
+      long start = System.nanoTime();
+      try {
+        Socket socket = connect(upstream, address, host, port);
+        upstream.onSuccess(System.nanoTime() - start);
+        return new UpstreamSocket(socket, upstream);
+      } catch (SocksException e) {
+        // The upstream works but refuses the destination, it also ends a trial connection.
+        upstream.release();
+        upstream.onSuccess(System.nanoTime() - start);
+        throw e;
+      } catch (RuntimeException e) {
+        upstream.release();
+        upstream.abortTrial();
+        throw e;
+      } catch (IOException e) {
+        upstream.release();
+        upstream.onFailure(System.nanoTime(), failureThreshold, ejectionNanos);
+        logger.info("Upstream {} failed: {}", upstream, e.getMessage());
+        lastException = e;
+      }
+    }
+    if (lastException != null) {
+      throw lastException;
+    }
+    throw new SocksException("No upstream proxy is available");
+  }
+
+  /**
+   * Connects a destination through an upstream, both connecting the upstream and the SOCKS
+   * handshake are bounded by the connect timeout.
+   */
+  private Socket connect(Upstream upstream, InetAddress address, String host, int port)
+      throws IOException {
+    SocksProxy proxy = upstream.getProxy();
+    int timeout = connectTimeout;
+    Socket proxySocket = proxy.createProxySocket();
+    try {
+      SocksSocket socket = new SocksSocket(proxy, proxySocket);
+      proxySocket.connect(new InetSocketAddress(proxy.getInetAddress(), proxy.getPort()), timeout);
+      proxySocket.setSoTimeout(timeout);
+      if (address != null) {
+        socket.connect(new InetSocketAddress(address, port), timeout);
+      } else {
+        socket.connect(host, port);
+      }
+      proxySocket.setSoTimeout(0);
+      return socket;
+    } catch (IOException | RuntimeException e) {
+      ResourceUtil.close(proxySocket);
+      throw e;
+    }
+  }
+
+  /**
+   * Selects and acquires an upstream which isn't tried yet.
+   *
+   * @return Index of the upstream, or <code>-1</code> if no upstream is available.
+   */
+  private int select(String key, boolean[] tried) {
+    long now = System.nanoTime();
+    int count = upstreams.length;
+    switch (loadBalancing) {
+      case ROUND_ROBIN: {
+        int start = Math.floorMod(nextIndex.getAndIncrement(), count);
+        for (int i = 0; i < count; i++) {
+          int index = (start + i) % count;
+          if (!tried[index] && upstreams[index].tryAcquire(now)) {
+            return index;
+          }
+        }
+        return -1;
+      }
+      case CONSISTENT_HASH: {
+        int position = Arrays.binarySearch(ringHashes, hash(key));
+        if (position < 0) {
+          position = -position - 1;
+        }
+        for (int i = 0; i < ringIndexes.length; i++) {
+          int index = ringIndexes[(position + i) % ringIndexes.length];
+          if (!tried[index]) {
+            if (upstreams[index].tryAcquire(now)) {
+              return index;
+            }
+            tried[index] = true;
+          }
+        }
+        return -1;
+      }
+      default: {
+        // Starts from a rotating offset so that ties are spread.
+        int start = Math.floorMod(nextIndex.getAndIncrement(), count);
+        while (true) {
+          int best = -1;
+          double bestScore = Double.MAX_VALUE;
+          for (int i = 0; i < count; i++) {
+            int index = (start + i) % count;
+            Upstream upstream = upstreams[index];
+            if (tried[index] || !upstream.isAvailable(now)) {
+              continue;
+            }
+            double score = loadBalancing == LoadBalancing.LEAST_CONNECTIONS ?
+                upstream.getActiveConnections() : upstream.getLoadScore();
+            if (score < bestScore) {
+              best = index;
+              bestScore = score;
+            }
+          }
+          if (best < 0 || upstreams[best].tryAcquire(now)) {
+            return best;
+          }
+          tried[best] = true;
+        }
+      }
+    }
+  }
+
+  /**
+   * Probes every upstream which isn't ejected, it's called periodically after
+   * {@link #startHealthCheck(long, TimeUnit)}.
+   */
+  public void checkHealth() {
+    for (Upstream upstream : upstreams) {
+      if (upstream.tryAdmit(System.nanoTime())) {
+        probe(upstream);
+      }
+    }
+  }
+
+  private void probe(Upstream upstream) {
+    SocksProxy proxy = upstream.getProxy().copyWithoutChainProxy();
+    Socket socket = null;
+    long start = System.nanoTime();
+    try {
+      socket = proxy.createProxySocket();
+      socket.connect(new InetSocketAddress(proxy.getInetAddress(), proxy.getPort()),
+          probeTimeout);
+      socket.setSoTimeout(probeTimeout);
+      proxy.setProxySocket(socket);
+      proxy.buildConnection();
+      upstream.onSuccess(System.nanoTime() - start);
+    } catch (IOException e) {
+      upstream.onProbeFailure(System.nanoTime(), failureThreshold, ejectionNanos);
+      logger.info("Upstream {} failed health probe: {}", upstream, e.getMessage());
+    } finally {
+      ResourceUtil.close(socket);
+    }
+  }
+
+  /**
+   * Starts probing upstreams in a daemon thread.
+   *
+   * @param interval Interval between two rounds of probes.
+   * @param unit     Time unit of <code>interval</code>.
+   */
+  public synchronized void startHealthCheck(long interval, TimeUnit unit) {
+    checkArgument(interval > 0, "Argument [interval] must be greater than 0");
+    if (healthChecker != null) {
+      throw new IllegalStateException("Health check is already started");
+    }
+    healthChecker = Executors.newSingleThreadScheduledExecutor(
+        new ThreadFactoryBuilder().setNameFormat("upstream-health-%d").setDaemon(true).build());
+    healthChecker.scheduleWithFixedDelay(this::checkHealth, 0, interval, unit);
+  }
+
+  /**
+   * Stops probing upstreams.
+   */
+  public synchronized void shutdown() {
+    if (healthChecker != null) {
+      healthChecker.shutdownNow();
+      healthChecker = null;
+    }
+  }
+
+  /**
+   * Returns the upstreams, whose metrics can be read.
+   *
+   * @return Upstreams.
+   */
+  public List<Upstream> getUpstreams() {
+    return Collections.unmodifiableList(Arrays.asList(upstreams));
+  }
+
+  public LoadBalancing getLoadBalancing() {
+    return loadBalancing;
+  }
+
+  public int getFailureThreshold() {
+    return failureThreshold;
+  }
+
+  /**
+   * Sets the number of consecutive failures which eject an upstream.
+   *
+   * @param failureThreshold Number of consecutive failures.
+   */
+  public void setFailureThreshold(int failureThreshold) {
+    checkArgument(failureThreshold > 0, "Argument [failureThreshold] must be greater than 0");
+    this.failureThreshold = failureThreshold;
+  }
+
+  /**
+   * Sets how long an ejected upstream is not used before it's tried again.
+   *
+   * @param ejectionTime Ejection time.
+   * @param unit         Time unit of <code>ejectionTime</code>.
+   */
+  public void setEjectionTime(long ejectionTime, TimeUnit unit) {
+    checkArgument(ejectionTime >= 0, "Argument [ejectionTime] must not be negative");
+    this.ejectionNanos = unit.toNanos(ejectionTime);
+  }
+
+  public int getProbeTimeout() {
+    return probeTimeout;
+  }
+
+  /**
+   * Sets the timeout of health probes.
+   *
+   * @param probeTimeout Timeout in milliseconds.
+   */
+  public void setProbeTimeout(int probeTimeout) {
+    checkArgument(probeTimeout > 0, "Argument [probeTimeout] must be greater than 0");
+    this.probeTimeout = probeTimeout;
+  }
+
+  public int getConnectTimeout() {
+    return connectTimeout;
+  }
+
+  /**
+   * Sets the timeout of connecting an upstream and finishing the SOCKS handshake with it. An
+   * upstream which times out counts as a failure.
+   *
+   * @param connectTimeout Timeout in milliseconds.
+   */
+  public void setConnectTimeout(int connectTimeout) {
+    checkArgument(connectTimeout > 0, "Argument [connectTimeout] must be greater than 0");
+    this.connectTimeout = connectTimeout;
+  }
+
+  private static int hash(String key) {
+    return HASH_FUNCTION.hashString(key, StandardCharsets.UTF_8).asInt();
+  }
+
+  /**
+   * A socket which releases its upstream when it's closed.
+   */
+  private static final class UpstreamSocket extends MonitorSocketWrapper {
+
+    private final Upstream upstream;
+
+    private final AtomicBoolean released = new AtomicBoolean(false);
+
+    UpstreamSocket(Socket socket, Upstream upstream) {
+      super(socket);
+      this.upstream = upstream;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+      try {
+        super.close();
+      } finally {
+        if (released.compareAndSet(false, true)) {
+          upstream.release();
+        }
+      }
+    }
+  }
+
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2015-2025 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package sockslib.utils;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * The class <code>ExecutorUtil</code> is a tool class to create thread pools.
+ *
+ * @version 1.0
+ */
+public class ExecutorUtil {
+
+  /**
+   * Seconds that an idle thread will wait before terminating.
+   */
+  private static final long KEEP_ALIVE_SECONDS = 60;
+
+  /**
+   * <code>Executors.newVirtualThreadPerTaskExecutor()</code>, it's <code>null</code> if the
+   * runtime doesn't support virtual threads. Reflection keeps the library runnable on Java 8.
+   */
+  private static final Method NEW_VIRTUAL_THREAD_EXECUTOR = findVirtualThreadExecutorFactory();
+
+  /**
+   * Creates a thread pool that creates new threads as needed but never more than
+   * <code>maxThreads</code> threads. Idle threads are reused and terminated after 60 seconds. A
+   * task which is submitted when all threads are busy is rejected with
+   * {@link java.util.concurrent.RejectedExecutionException}.
+   *
+   * @param maxThreads Max number of threads.
+   * @param nameFormat Name format of threads, such as <code>"relay-%d"</code>.
+   * @param daemon     <code>true</code> if threads should be daemon threads.
+   * @return Instance of {@link ExecutorService}.
+   */
+  public static ExecutorService newBoundedCachedThreadPool(int maxThreads, String nameFormat,
+                                                           boolean daemon) {
+    checkArgument(maxThreads > 0, "Argument [maxThreads] must be greater than 0");
+    return new ThreadPoolExecutor(0, maxThreads, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+        new SynchronousQueue<>(),
+        new ThreadFactoryBuilder().setNameFormat(nameFormat).setDaemon(daemon).build());
+  }
+
+  /**
+   * Creates a thread pool with at most <code>threads</code> threads and a bounded task queue.
+   * Idle threads are terminated after 60 seconds. A task which is submitted when the queue is
+   * full is run by the submitting thread, so that work is slowed down instead of dropped.
+   *
+   * @param threads       Max number of threads.
+   * @param queueCapacity Max number of queued tasks.
+   * @param nameFormat    Name format of threads, such as <code>"ssl-task-%d"</code>.
+   * @param daemon        <code>true</code> if threads should be daemon threads.
+   * @return Instance of {@link ExecutorService}.
+   */
+  public static ExecutorService newBoundedThreadPool(int threads, int queueCapacity,
+                                                     String nameFormat, boolean daemon) {
+    checkArgument(threads > 0, "Argument [threads] must be greater than 0");
+    checkArgument(queueCapacity > 0, "Argument [queueCapacity] must be greater than 0");
+    ThreadPoolExecutor executor =
+        new ThreadPoolExecutor(threads, threads, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(queueCapacity),
+            new ThreadFactoryBuilder().setNameFormat(nameFormat).setDaemon(daemon).build(),
+            new ThreadPoolExecutor.CallerRunsPolicy());
+    executor.allowCoreThreadTimeOut(true);
+    return executor;
+  }
+
+  /**
+   * Returns <code>true</code> if the runtime supports virtual threads (Java 21 or later).
+   *
+   * @return <code>true</code> if the runtime supports virtual threads.
+   */
+  public static boolean isVirtualThreadSupported() {
+    return NEW_VIRTUAL_THREAD_EXECUTOR != null;
+  }
+
+  /**
+   * Creates an executor which starts a new virtual thread for each task.
+   *
+   * @return Instance of {@link ExecutorService}.
+   * @throws UnsupportedOperationException If the runtime doesn't support virtual threads.
+   */
+  public static ExecutorService newVirtualThreadPerTaskExecutor() {
+    if (NEW_VIRTUAL_THREAD_EXECUTOR == null) {
+      throw new UnsupportedOperationException("Virtual threads require Java 21 or later");
+    }
+    try {
+      return (ExecutorService) NEW_VIRTUAL_THREAD_EXECUTOR.invoke(null);
+    } catch (IllegalAccessException | InvocationTargetException e) {
+      throw new UnsupportedOperationException("Can't create virtual thread executor", e);
+    }
+  }
+
+  private static Method findVirtualThreadExecutorFactory() {
+    try {
+      return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+    } catch (NoSuchMethodException e) {
+      return null;
+    }
+  }
+
+}
@@ -0,0 +1,385 @@
+/*
+ * Copyright 2015-2025 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package sockslib.utils;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * The class <code>HashedWheelTimer</code> is a timer for a large number of timeouts which are
+ * mostly cancelled before they expire, such as deadlines of sessions.
+ * <p>
+ * Timeouts are hashed into a wheel of buckets by their deadlines, so that scheduling and cancelling
+ * a timeout are O(1) and a single thread advances the wheel one bucket per tick. A timeout expires
+ * within one tick after its deadline. Tasks run in the thread of the timer, so they must be short
+ * and must not block.
+ * </p>
+ *
+ * @version 1.0
+ */
+public class HashedWheelTimer {
+
+  private static final Logger logger = LoggerFactory.getLogger(HashedWheelTimer.class);
+
+  /**
+   * Max number of new timeouts moved into the wheel in one tick, so that a burst of new timeouts
+   * doesn't delay expiring the current bucket.
+   */
+  private static final int MAX_TRANSFERS_PER_TICK = 100000;
+
+  private static final int STATE_INIT = 0;
+  private static final int STATE_STARTED = 1;
+  private static final int STATE_STOPPED = 2;
+
+  private static final AtomicIntegerFieldUpdater<Timeout> STATE_UPDATER =
+      AtomicIntegerFieldUpdater.newUpdater(Timeout.class, "state");
+
+  private final AtomicInteger state = new AtomicInteger(STATE_INIT);
+
+  private final Thread workerThread;
+
+  private final long tickNanos;
+
+  private final Bucket[] wheel;
+
+  private final int mask;
+
+  /**
+   * Timeouts which are not in the wheel yet. Only the worker thread touches the buckets.
+   */
+  private final Queue<Timeout> newTimeouts = new ConcurrentLinkedQueue<>();
+
+  private final Queue<Timeout> cancelledTimeouts = new ConcurrentLinkedQueue<>();
+
+  private final AtomicLong pendingTimeouts = new AtomicLong();
+
+  private final CountDownLatch startLatch = new CountDownLatch(1);
+
+  private volatile long startTime;
+
+  /**
+   * Constructs a timer with 100 milliseconds ticks and 512 buckets.
+   *
+   * @param name Name of the timer thread.
+   */
+  public HashedWheelTimer(String name) {
+    this(name, 100, TimeUnit.MILLISECONDS, 512);
+  }
+
+  /**
+   * Constructs a timer.
+   *
+   * @param name          Name of the timer thread.
+   * @param tickDuration  Duration between ticks.
+   * @param unit          Unit of <code>tickDuration</code>.
+   * @param ticksPerWheel Number of buckets, it's rounded up to a power of two.
+   */
+  public HashedWheelTimer(String name, long tickDuration, TimeUnit unit, int ticksPerWheel) {
+    checkNotNull(name, "Argument [name] may not be null");
+    checkNotNull(unit, "Argument [unit] may not be null");
+    checkArgument(tickDuration > 0, "Argument [tickDuration] must be greater than 0");
+    checkArgument(ticksPerWheel > 0 && ticksPerWheel <= 1 << 30,
+        "Argument [ticksPerWheel] must be in range (0, 2^30]");
+    int size = Integer.highestOneBit(ticksPerWheel);
+    if (size < ticksPerWheel) {
+      size <<= 1;
+    }
+    wheel = new Bucket[size];
+    for (int i = 0; i < size; i++) {
+      wheel[i] = new Bucket();
+    }
+    mask = size - 1;
+    tickNanos = unit.toNanos(tickDuration);
+    workerThread = new Thread(new Worker(), name);
+    workerThread.setDaemon(true);
+  }
+
+  /**
+   * Schedules a task which runs once after the given delay. The timer thread is started by the
+   * first call.
+   *
+   * @param task  Task to run, it runs in the timer thread.
+   * @param delay Delay.
+   * @param unit  Unit of <code>delay</code>.
+   * @return Handle of the timeout which can cancel it.
+   * @throws IllegalStateException If the timer is stopped.
+   */
+  public Timeout newTimeout(Runnable task, long delay, TimeUnit unit) {
+    checkNotNull(task, "Argument [task] may not be null");
+    checkNotNull(unit, "Argument [unit] may not be null");
+    start();
+    long deadline = System.nanoTime() + unit.toNanos(Math.max(delay, 0)) - startTime;
+    Timeout timeout = new Timeout(task, deadline);
+    pendingTimeouts.incrementAndGet();
+    newTimeouts.add(timeout);
+    return timeout;
+  }
+
+  /**
+   * Starts the timer thread if it's not started. It's not necessary to call this method because
+   * {@link #newTimeout(Runnable, long, TimeUnit)} starts the timer.
+   *
+   * @throws IllegalStateException If the timer is stopped.
+   */
+  public void start() {
+    if (state.get() == STATE_INIT && state.compareAndSet(STATE_INIT, STATE_STARTED)) {
+      workerThread.start();
+    }
+    if (state.get() == STATE_STOPPED) {
+      throw new IllegalStateException("Timer is stopped");
+    }
+    while (startTime == 0) {
+      try {
+        startLatch.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      }
+    }
+  }
+
+  /**
+   * Stops the timer thread. Timeouts which haven't expired never run.
+   */
+  public void stop() {
+    if (state.getAndSet(STATE_STOPPED) != STATE_STARTED) {
+      return;
+    }
+    workerThread.interrupt();
+    if (Thread.currentThread() != workerThread) {
+      try {
+        workerThread.join();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  /**
+   * Returns the number of timeouts which are neither expired nor cancelled.
+   *
+   * @return Number of pending timeouts.
+   */
+  public long getPendingTimeouts() {
+    return pendingTimeouts.get();
+  }
+
+  /**
+   * A task scheduled by {@link HashedWheelTimer#newTimeout(Runnable, long, TimeUnit)}.
+   */
+  public final class Timeout {
+
+    private static final int INIT = 0;
+    private static final int CANCELLED = 1;
+    private static final int EXPIRED = 2;
+
+    private final Runnable task;
+
+    /**
+     * Deadline in nanoseconds since the timer started.
+     */
+    private final long deadline;
+
+    // Not private, the field updater can't access private fields of a nested class.
+    volatile int state = INIT;
+
+    /**
+     * Number of wheel rounds left before it expires, only used by the worker thread.
+     */
+    private long remainingRounds;
+
+    private Bucket bucket;
+    private Timeout prev;
+    private Timeout next;
+
+    private Timeout(Runnable task, long deadline) {
+      this.task = task;
+      this.deadline = deadline;
+    }
+
+    /**
+     * Cancels the timeout, the task will not run if it's not running yet.
+     *
+     * @return <code>true</code> if the timeout is cancelled by this call.
+     */
+    public boolean cancel() {
+      if (!STATE_UPDATER.compareAndSet(this, INIT, CANCELLED)) {
+        return false;
+      }
+      pendingTimeouts.decrementAndGet();
+      cancelledTimeouts.add(this);
+      return true;
+    }
+
+    public boolean isCancelled() {
+      return state == CANCELLED;
+    }
+
+    public boolean isExpired() {
+      return state == EXPIRED;
+    }
+
+    private void expire() {
+      if (!STATE_UPDATER.compareAndSet(this, INIT, EXPIRED)) {
+        return;
+      }
+      pendingTimeouts.decrementAndGet();
+      try {
+        task.run();
+      } catch (Throwable t) {
+        logger.warn("Timer task {} threw an exception", task, t);
+      }
+    }
+  }
+
+  /**
+   * A doubly linked list of timeouts, only used by the worker thread.
+   */
+  private static final class Bucket {
+
+    private Timeout head;
+    private Timeout tail;
+
+    void add(Timeout timeout) {
+      timeout.bucket = this;
+      if (head == null) {
+        head = tail = timeout;
+      } else {
+        tail.next = timeout;
+        timeout.prev = tail;
+        tail = timeout;
+      }
+    }
+
+    Timeout remove(Timeout timeout) {
+      Timeout next = timeout.next;
+      if (timeout.prev != null) {
+        timeout.prev.next = next;
+      }
+      if (timeout.next != null) {
+        timeout.next.prev = timeout.prev;
+      }
+      if (timeout == head) {
+        head = next;
+      }
+      if (timeout == tail) {
+        tail = timeout.prev;
+      }
+      timeout.prev = null;
+      timeout.next = null;
+      timeout.bucket = null;
+      return next;
+    }
+
+    void expire(long deadline) {
+      Timeout timeout = head;
+      while (timeout != null) {
+        if (timeout.isCancelled()) {
+          timeout = remove(timeout);
+        } else if (timeout.remainingRounds <= 0 && timeout.deadline <= deadline) {
+          Timeout next = remove(timeout);
+          timeout.expire();
+          timeout = next;
+        } else {
+          timeout.remainingRounds--;
+          timeout = timeout.next;
+        }
+      }
+    }
+  }
+
+  private final class Worker implements Runnable {
+
+    private long tick;
+
+    @Override
+    public void run() {
+      long now = System.nanoTime();
+      // 0 means the timer isn't started.
+      startTime = now == 0 ? 1 : now;
+      startLatch.countDown();
+
+      while (state.get() == STATE_STARTED) {
+        long deadline = waitForNextTick();
+        if (deadline > 0) {
+          removeCancelledTimeouts();
+          transferNewTimeouts();
+          wheel[(int) (tick & mask)].expire(deadline);
+          tick++;
+        }
+      }
+    }
+
+    private void transferNewTimeouts() {
+      for (int i = 0; i < MAX_TRANSFERS_PER_TICK; i++) {
+        Timeout timeout = newTimeouts.poll();
+        if (timeout == null) {
+          return;
+        }
+        if (timeout.isCancelled()) {
+          continue;
+        }
+        long expireTick = timeout.deadline / tickNanos;
+        timeout.remainingRounds = (expireTick - tick) / wheel.length;
+        // Puts an overdue timeout into the current bucket.
+        wheel[(int) (Math.max(expireTick, tick) & mask)].add(timeout);
+      }
+    }
+
+    private void removeCancelledTimeouts() {
+      Timeout timeout;
+      while ((timeout = cancelledTimeouts.poll()) != null) {
+        if (timeout.bucket != null) {
+          timeout.bucket.remove(timeout);
+        }
+      }
+    }
+
+    /**
+     * Sleeps until the next tick.
+     *
+     * @return Nanoseconds since the timer started, or a negative number if the timer is stopped.
+     */
+    private long waitForNextTick() {
+      long deadline = tickNanos * (tick + 1);
+      while (true) {
+        long current = System.nanoTime() - startTime;
+        long sleepMillis = (deadline - current + 999999) / 1000000;
+        if (sleepMillis <= 0) {
+          return current == 0 ? 1 : current;
+        }
+        try {
+          Thread.sleep(sleepMillis);
+        } catch (InterruptedException e) {
+          if (state.get() == STATE_STOPPED) {
+            return -1;
+          }
+        }
+      }
+    }
+  }
+
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright 2015-2025 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package sockslib.utils;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * The class <code>RingBuffer</code> is a bounded lock-free queue for multiple producers and
+ * consumers.
+ * <p>
+ * Each slot has a sequence number which tells whether the slot is ready to be written or read in
+ * the current lap, so producers and consumers only compete for the head or the tail with a CAS and
+ * never lock. Offering to a full buffer and polling an empty buffer return at once.
+ * </p>
+ *
+ * @param <E> Type of elements.
+ * @version 1.0
+ */
+public class RingBuffer<E> {
+
+  private final Object[] buffer;
+
+  private final AtomicLongArray sequences;
+
+  private final int mask;
+
+  /**
+   * Position of the next slot to write.
+   */
+  private final AtomicLong tail = new AtomicLong();
+
+  /**
+   * Position of the next slot to read.
+   */
+  private final AtomicLong head = new AtomicLong();
+
+  /**
+   * Constructs a ring buffer.
+   *
+   * @param capacity Capacity, it's rounded up to a power of two.
+   */
+  public RingBuffer(int capacity) {
+    checkArgument(capacity > 0 && capacity <= 1 << 30,
+        "Argument [capacity] must be in range (0, 2^30]");
+    int size = Integer.highestOneBit(capacity);
+    if (size < capacity) {
+      size <<= 1;
+    }
+    buffer = new Object[size];
+    sequences = new AtomicLongArray(size);
+    for (int i = 0; i < size; i++) {
+      sequences.set(i, i);
+    }
+    mask = size - 1;
+  }
+
+  /**
+   * Adds an element if the buffer is not full.
+   *
+   * @param element Element to add.
+   * @return <code>true</code> if the element is added, <code>false</code> if the buffer is full.
+   */
+  public boolean offer(E element) {
+    checkNotNull(element, "Argument [element] may not be null");
+    while (true) {
+      long position = tail.get();
+      int index = (int) (position & mask);
+      long difference = sequences.get(index) - position;
+      if (difference == 0) {
+        if (tail.compareAndSet(position, position + 1)) {
+          buffer[index] = element;
+          // Publishes the element to consumers.
+          sequences.set(index, position + 1);
+          return true;
+        }
+      } else if (difference < 0) {
+        return false;
+      }
+    }
+  }
+
+  /**
+   * Removes the oldest element.
+   *
+   * @return The oldest element, or <code>null</code> if the buffer is empty.
+   */
+  @SuppressWarnings("unchecked")
+  public E poll() {
+    while (true) {
+      long position = head.get();
+      int index = (int) (position & mask);
+      long difference = sequences.get(index) - (position + 1);
+      if (difference == 0) {
+        if (head.compareAndSet(position, position + 1)) {
+          E element = (E) buffer[index];
+          buffer[index] = null;
+          // Hands the slot over to producers of the next lap.
+          sequences.set(index, position + buffer.length);
+          return element;
+        }
+      } else if (difference < 0) {
+        return null;
+      }
+    }
+  }
+
+  /**
+   * Returns the number of elements. It's an estimate while other threads are using the buffer.
+   *
+   * @return Number of elements.
+   */
+  public int size() {
+    long size = tail.get() - head.get();
+    return (int) Math.max(0, Math.min(size, buffer.length));
+  }
+
+  public boolean isEmpty() {
+    return size() == 0;
+  }
+
+  public int capacity() {
+    return buffer.length;
+  }
+}
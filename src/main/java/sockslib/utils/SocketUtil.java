@@ -0,0 +1,121 @@
+/*
+ * Copyright 2015-2025 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package sockslib.utils;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.ServerSocket;
+import java.net.SocketOption;
+import java.net.StandardSocketOptions;
+import java.nio.channels.ServerSocketChannel;
+
+/**
+ * The class <code>SocketUtil</code> is a tool class for socket options which are not available
+ * on every runtime.
+ *
+ * @version 1.0
+ */
+public class SocketUtil {
+
+  /**
+   * <code>StandardSocketOptions.SO_REUSEPORT</code>, it's <code>null</code> if the runtime doesn't
+   * have it. Reflection keeps the library runnable on Java 8.
+   */
+  private static final SocketOption<Boolean> SO_REUSEPORT = findReusePortOption();
+
+  /**
+   * <code>ServerSocket.setOption(SocketOption, Object)</code> which was added in Java 9.
+   */
+  private static final Method SERVER_SOCKET_SET_OPTION = findServerSocketSetOption();
+
+  private static final boolean REUSE_PORT_SUPPORTED = checkReusePortSupported();
+
+  /**
+   * Returns <code>true</code> if several server sockets can listen on the same port with
+   * <code>SO_REUSEPORT</code>, the kernel then balances new connections between them. It requires
+   * Java 9 or later and an operating system which supports it, such as Linux.
+   *
+   * @return <code>true</code> if <code>SO_REUSEPORT</code> is supported.
+   */
+  public static boolean isReusePortSupported() {
+    return REUSE_PORT_SUPPORTED;
+  }
+
+  /**
+   * Enables <code>SO_REUSEPORT</code> on an unbound server socket.
+   *
+   * @param serverSocket Unbound server socket.
+   * @throws IOException                   If the option can't be set.
+   * @throws UnsupportedOperationException If <code>SO_REUSEPORT</code> is not supported.
+   */
+  public static void setReusePort(ServerSocket serverSocket) throws IOException {
+    if (!REUSE_PORT_SUPPORTED) {
+      throw new UnsupportedOperationException("SO_REUSEPORT is not supported");
+    }
+    try {
+      SERVER_SOCKET_SET_OPTION.invoke(serverSocket, SO_REUSEPORT, Boolean.TRUE);
+    } catch (IllegalAccessException e) {
+      throw new UnsupportedOperationException("Can't set SO_REUSEPORT", e);
+    } catch (InvocationTargetException e) {
+      if (e.getCause() instanceof IOException) {
+        throw (IOException) e.getCause();
+      }
+      throw new UnsupportedOperationException("Can't set SO_REUSEPORT", e.getCause());
+    }
+  }
+
+  /**
+   * Enables <code>SO_REUSEPORT</code> on an unbound server socket channel.
+   *
+   * @param channel Unbound server socket channel.
+   * @throws IOException                   If the option can't be set.
+   * @throws UnsupportedOperationException If <code>SO_REUSEPORT</code> is not supported.
+   */
+  public static void setReusePort(ServerSocketChannel channel) throws IOException {
+    if (!REUSE_PORT_SUPPORTED) {
+      throw new UnsupportedOperationException("SO_REUSEPORT is not supported");
+    }
+    channel.setOption(SO_REUSEPORT, true);
+  }
+
+  @SuppressWarnings("unchecked")
+  private static SocketOption<Boolean> findReusePortOption() {
+    try {
+      return (SocketOption<Boolean>) StandardSocketOptions.class.getField("SO_REUSEPORT")
+          .get(null);
+    } catch (NoSuchFieldException | IllegalAccessException e) {
+      return null;
+    }
+  }
+
+  private static Method findServerSocketSetOption() {
+    try {
+      return ServerSocket.class.getMethod("setOption", SocketOption.class, Object.class);
+    } catch (NoSuchMethodException e) {
+      return null;
+    }
+  }
+
+  private static boolean checkReusePortSupported() {
+    if (SO_REUSEPORT == null || SERVER_SOCKET_SET_OPTION == null) {
+      return false;
+    }
+    try (ServerSocketChannel channel = ServerSocketChannel.open()) {
+      return channel.supportedOptions().contains(SO_REUSEPORT);
+    } catch (IOException e) {
+      return false;
+    }
+  }
+}
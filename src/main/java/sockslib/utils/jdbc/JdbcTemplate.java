@@ -20,6 +20,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.sql.DataSource;
+import java.io.Closeable;
 import java.io.InputStream;
 import java.math.BigDecimal;
 import java.sql.Array;
@@ -31,25 +32,60 @@ import java.sql.NClob;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 
 /**
  * The class <code>JdbcTemplate</code> is a template for JDBC operation. This class provides some
  * easy methods to do JDBC work.
+ * <p>
+ * By default, a template keeps up to {@link #DEFAULT_MAX_IDLE_CONNECTIONS} connections open and
+ * caches the prepared statements of each connection by SQL, so that a statement which runs again
+ * costs neither a new connection nor a new prepare. Call {@link #close()} to release them, or set
+ * the statement cache size to 0 to get and close a connection for every call.
+ * </p>
  *
  * @author Youchao Feng
  * @version 1.0
  * @date Sep 07, 2015
  */
-public class JdbcTemplate {
+public class JdbcTemplate implements Closeable {
 
   private static final Logger logger = LoggerFactory.getLogger(JdbcTemplate.class);
 
+  /**
+   * Default max number of prepared statements cached for each connection.
+   */
+  public static final int DEFAULT_STATEMENT_CACHE_SIZE = 32;
+
+  /**
+   * Default max number of idle connections kept open.
+   */
+  public static final int DEFAULT_MAX_IDLE_CONNECTIONS = 4;
+
   private DataSource dataSource;
 
+  private volatile int statementCacheSize = DEFAULT_STATEMENT_CACHE_SIZE;
+
+  private volatile int maxIdleConnections = DEFAULT_MAX_IDLE_CONNECTIONS;
+
+  /**
+   * Open connections which are not in use, with their cached statements.
+   */
+  private final Queue<CachedConnection> idleConnections = new ConcurrentLinkedQueue<>();
+
+  private final AtomicInteger idleConnectionCount = new AtomicInteger();
+
   /**
    * Constructs an instance of {@link JdbcTemplate} with specified <code>java.sql.DataSource</code>
    *
@@ -69,53 +105,210 @@ public class JdbcTemplate {
   }
 
   public int execute(final String sql, final Object[] args) {
-    Connection connection = null;
-    PreparedStatement preparedStatement = null;
     try {
-      connection = dataSource.getConnection();
-      connection.setAutoCommit(false);
-      preparedStatement = connection.prepareStatement(sql);
-      setParameter(preparedStatement, args);
-      int result = preparedStatement.executeUpdate();
-      connection.commit();
-      connection.rollback();
-      return result;
+      return run(sql, preparedStatement -> {
+        setParameter(preparedStatement, args);
+        return preparedStatement.executeUpdate();
+      });
     } catch (SQLException e) {
       logger.error(e.getMessage(), e);
-    } finally {
-      close(preparedStatement);
-      close(connection);
     }
     return 0;
   }
 
+  /**
+   * Executes a statement once for each group of arguments in a single batch and transaction.
+   *
+   * @param sql      SQL.
+   * @param argsList Arguments of each execution.
+   * @return Update counts of each execution, or an empty array if it fails.
+   */
+  public int[] batchExecute(final String sql, final List<Object[]> argsList) {
+    checkNotNull(argsList, "Argument [argsList] may not be null");
+    if (argsList.isEmpty()) {
+      return new int[0];
+    }
+    try {
+      return run(sql, preparedStatement -> {
+        try {
+          for (Object[] args : argsList) {
+            setParameter(preparedStatement, args);
+            preparedStatement.addBatch();
+          }
+          return preparedStatement.executeBatch();
+        } catch (SQLException | RuntimeException e) {
+          // The statement may be cached, it must not keep the batch.
+          preparedStatement.clearBatch();
+          throw e;
+        }
+      });
+    } catch (SQLException e) {
+      logger.error(e.getMessage(), e);
+    }
+    return new int[0];
+  }
+
   public <T> List<T> query(final String sql, RowMapper<T> rowMapper) {
     return query(sql, null, rowMapper);
   }
 
   public <T> List<T> query(final String sql, final Object[] args, RowMapper<T> rowMapper) {
     List<T> entities = new ArrayList<>();
-    Connection connection = null;
-    PreparedStatement preparedStatement = null;
-    ResultSet resultSet = null;
+    query(sql, args, rowMapper, entities::add);
+    return entities;
+  }
+
+  /**
+   * Runs a query and passes every mapped row to a consumer as soon as it's read, so that the
+   * result is never held in memory as a whole.
+   *
+   * @param sql       SQL.
+   * @param args      Arguments, it can be <code>null</code>.
+   * @param rowMapper Mapper of rows.
+   * @param consumer  Consumer of mapped rows.
+   * @param <T>       Type of mapped rows.
+   * @return Number of rows passed to the consumer.
+   */
+  public <T> int query(final String sql, final Object[] args, final RowMapper<T> rowMapper,
+                       final Consumer<? super T> consumer) {
+    checkNotNull(rowMapper, "Argument [rowMapper] may not be null");
+    checkNotNull(consumer, "Argument [consumer] may not be null");
+    final int[] count = {0};
     try {
-      connection = dataSource.getConnection();
-      connection.setAutoCommit(false);
-      preparedStatement = connection.prepareStatement(sql);
-      setParameter(preparedStatement, args);
-      resultSet = preparedStatement.executeQuery();
-      while (resultSet.next()) {
-        entities.add(rowMapper.map(new ReadOnlyResultSet(resultSet)));
-      }
-      connection.commit();
+      run(sql, preparedStatement -> {
+        setParameter(preparedStatement, args);
+        try (ResultSet resultSet = preparedStatement.executeQuery()) {
+          ReadOnlyResultSet row = new ReadOnlyResultSet(resultSet);
+          while (resultSet.next()) {
+            consumer.accept(rowMapper.map(row));
+            count[0]++;
+          }
+        }
+        return null;
+      });
     } catch (SQLException e) {
       logger.error(e.getMessage(), e);
-    } finally {
-      close(resultSet);
-      close(preparedStatement);
+    }
+    return count[0];
+  }
+
+  /**
+   * Closes the idle connections and their cached statements.
+   */
+  @Override
+  public void close() {
+    CachedConnection cachedConnection;
+    while ((cachedConnection = idleConnections.poll()) != null) {
+      idleConnectionCount.decrementAndGet();
+      cachedConnection.close();
+    }
+  }
+
+  /**
+   * Prepares a statement and runs the callback with it in a transaction, which is committed if
+   * the callback returns and rolled back if it throws.
+   */
+  private <R> R run(String sql, StatementCallback<R> callback) throws SQLException {
+    if (statementCacheSize <= 0) {
+      try (Connection connection = dataSource.getConnection()) {
+        connection.setAutoCommit(false);
+        try (PreparedStatement preparedStatement = connection.prepareStatement(sql)) {
+          R result = callback.doInStatement(preparedStatement);
+          connection.commit();
+          return result;
+        } catch (SQLException | RuntimeException e) {
+          rollback(connection);
+          throw e;
+        }
+      }
+    }
+    return run(acquire(), sql, callback);
+  }
+
+  /**
+   * Returns an idle connection which is still valid, or a new connection. A connection may break
+   * while it's idle, for example because the database closed it, so it's validated before it's
+   * used rather than retrying a callback which may already have passed rows to a consumer.
+   */
+  private CachedConnection acquire() throws SQLException {
+    CachedConnection cachedConnection;
+    while ((cachedConnection = idleConnections.poll()) != null) {
+      idleConnectionCount.decrementAndGet();
+      if (cachedConnection.isValid()) {
+        return cachedConnection;
+      }
+      logger.debug("Cached connection is broken, discard it");
+      cachedConnection.close();
+    }
+    return newCachedConnection();
+  }
+
+  /**
+   * Runs the callback with a cached connection. The connection is discarded if it turns out to be
+   * broken.
+   */
+  private <R> R run(CachedConnection cachedConnection, String sql, StatementCallback<R> callback)
+      throws SQLException {
+    R result;
+    try {
+      result = callback.doInStatement(cachedConnection.prepare(sql));
+      cachedConnection.connection.commit();
+    } catch (SQLException e) {
+      if (cachedConnection.isValid() && rollback(cachedConnection.connection)) {
+        release(cachedConnection);
+      } else {
+        cachedConnection.close();
+      }
+      throw e;
+    } catch (RuntimeException e) {
+      if (rollback(cachedConnection.connection)) {
+        release(cachedConnection);
+      } else {
+        cachedConnection.close();
+      }
+      throw e;
+    }
+    release(cachedConnection);
+    return result;
+  }
+
+  /**
+   * Gets a connection from the data source and turns off its auto-commit, so that
+   * {@link #run(CachedConnection, String, StatementCallback)} decides every transaction.
+   */
+  private CachedConnection newCachedConnection() throws SQLException {
+    Connection connection = dataSource.getConnection();
+    try {
+      connection.setAutoCommit(false);
+    } catch (SQLException | RuntimeException e) {
       close(connection);
+      throw e;
+    }
+    return new CachedConnection(connection);
+  }
+
+  /**
+   * Rolls back the current transaction of a connection.
+   *
+   * @return <code>true</code> if the rollback succeeded.
+   */
+  private boolean rollback(Connection connection) {
+    try {
+      connection.rollback();
+      return true;
+    } catch (SQLException e) {
+      logger.debug("Rollback failed", e);
+      return false;
+    }
+  }
+
+  private void release(CachedConnection cachedConnection) {
+    if (idleConnectionCount.incrementAndGet() <= maxIdleConnections) {
+      idleConnections.add(cachedConnection);
+    } else {
+      idleConnectionCount.decrementAndGet();
+      cachedConnection.close();
     }
-    return entities;
   }
 
   private void setParameter(PreparedStatement preparedStatement, Object[] args) throws
@@ -164,16 +357,6 @@ public class JdbcTemplate {
     }
   }
 
-  private void close(ResultSet resultSet) {
-    try {
-      if (resultSet != null) {
-        resultSet.close();
-      }
-    } catch (SQLException e) {
-      logger.error(e.getMessage(), e);
-    }
-  }
-
   private void close(PreparedStatement preparedStatement) {
     try {
       if (preparedStatement != null) {
@@ -200,5 +383,100 @@ public class JdbcTemplate {
 
   public void setDataSource(DataSource dataSource) {
     this.dataSource = dataSource;
+    close();
+  }
+
+  public int getStatementCacheSize() {
+    return statementCacheSize;
+  }
+
+  /**
+   * Sets the max number of prepared statements cached for each connection, 0 disables caching so
+   * that every call gets and closes its own connection.
+   *
+   * @param statementCacheSize Max number of cached statements per connection.
+   */
+  public void setStatementCacheSize(int statementCacheSize) {
+    checkArgument(statementCacheSize >= 0, "Argument [statementCacheSize] must not be negative");
+    this.statementCacheSize = statementCacheSize;
+    if (statementCacheSize == 0) {
+      close();
+    }
+  }
+
+  public int getMaxIdleConnections() {
+    return maxIdleConnections;
+  }
+
+  /**
+   * Sets the max number of idle connections kept open with their cached statements.
+   *
+   * @param maxIdleConnections Max number of idle connections.
+   */
+  public void setMaxIdleConnections(int maxIdleConnections) {
+    checkArgument(maxIdleConnections > 0, "Argument [maxIdleConnections] must be greater than 0");
+    this.maxIdleConnections = maxIdleConnections;
+  }
+
+  private interface StatementCallback<R> {
+
+    R doInStatement(PreparedStatement preparedStatement) throws SQLException;
+  }
+
+  /**
+   * A connection with its prepared statements, it's used by one thread at a time.
+   */
+  private class CachedConnection {
+
+    private final Connection connection;
+
+    private final Map<String, PreparedStatement> statements;
+
+    CachedConnection(Connection connection) {
+      this.connection = connection;
+      final int cacheSize = statementCacheSize;
+      this.statements = new LinkedHashMap<String, PreparedStatement>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+          if (size() > cacheSize) {
+            JdbcTemplate.this.close(eldest.getValue());
+            return true;
+          }
+          return false;
+        }
+      };
+    }
+
+    PreparedStatement prepare(String sql) throws SQLException {
+      PreparedStatement preparedStatement = statements.get(sql);
+      if (preparedStatement == null || preparedStatement.isClosed()) {
+        preparedStatement = connection.prepareStatement(sql);
+        statements.put(sql, preparedStatement);
+      } else {
+        preparedStatement.clearParameters();
+      }
+      return preparedStatement;
+    }
+
+    boolean isValid() {
+      try {
+        try {
+          return connection.isValid(1);
+        } catch (SQLFeatureNotSupportedException | AbstractMethodError e) {
+          // Drivers and pools older than JDBC 4 can't validate, only check it's open.
+          return !connection.isClosed();
+        }
+      } catch (SQLException e) {
+        return false;
+      }
+    }
+
+    void close() {
+      for (PreparedStatement preparedStatement : statements.values()) {
+        JdbcTemplate.this.close(preparedStatement);
+      }
+      statements.clear();
+      JdbcTemplate.this.close(connection);
+    }
   }
 }
@@ -0,0 +1,222 @@
+/*
+ * Copyright 2015-2025 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package sockslib.example;
+
+import sockslib.client.Socks5;
+import sockslib.client.SocksProxy;
+import sockslib.client.SocksSocket;
+import sockslib.server.ExecutionMode;
+import sockslib.server.SocksProxyServer;
+import sockslib.server.SocksServerBuilder;
+import sockslib.utils.ExecutorUtil;
+import sockslib.utils.ResourceUtil;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The class <code>ExecutionModeBenchmark</code> compares {@link ExecutionMode#PLATFORM} and
+ * {@link ExecutionMode#VIRTUAL} by holding a large number of concurrent tunnels.
+ * <p>
+ * Usage: <code>ExecutionModeBenchmark [PLATFORM|VIRTUAL] [tunnels]</code>, default is
+ * <code>VIRTUAL 10000</code>. Every tunnel needs four file descriptors, so raise
+ * <code>ulimit -n</code> before running it. Run each mode in a fresh JVM.
+ * </p>
+ *
+ * @version 1.0
+ */
+public class ExecutionModeBenchmark {
+
+  private static final int PROXY_PORT = 1090;
+  private static final int CLIENT_THREADS = 64;
+  private static final byte[] MESSAGE = "ping\n".getBytes();
+
+  public static void main(String[] args) throws Exception {
+    ExecutionMode requested =
+        args.length > 0 ? ExecutionMode.valueOf(args[0]) : ExecutionMode.VIRTUAL;
+    // VIRTUAL falls back to platform threads on JVMs without virtual threads.
+    ExecutionMode mode = ExecutorUtil.isVirtualThreadSupported() ? requested :
+        ExecutionMode.PLATFORM;
+    int tunnels = args.length > 1 ? Integer.parseInt(args[1]) : 10000;
+
+    EchoServer echoServer = new EchoServer();
+    echoServer.start();
+
+    SocksServerBuilder builder =
+        SocksServerBuilder.newSocks5ServerBuilder().setBindPort(PROXY_PORT).setDaemon(true)
+            .setExecutionMode(requested);
+    if (mode == ExecutionMode.PLATFORM) {
+      // A fixed pool would cap the number of concurrent tunnels.
+      builder.setExecutorService(Executors.newCachedThreadPool())
+          .setRelayExecutor(Executors.newCachedThreadPool());
+    }
+    SocksProxyServer proxyServer = builder.build();
+    proxyServer.start();
+
+    final SocksProxy proxy = new Socks5(new InetSocketAddress("127.0.0.1", PROXY_PORT));
+    final InetSocketAddress target = new InetSocketAddress("127.0.0.1", echoServer.getPort());
+    final List<Socket> sockets = new ArrayList<>(tunnels);
+    ExecutorService clients = Executors.newFixedThreadPool(CLIENT_THREADS);
+    ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+
+    long start = System.nanoTime();
+    List<Future<Socket>> connecting = new ArrayList<>(tunnels);
+    for (int i = 0; i < tunnels; i++) {
+      connecting.add(clients.submit(() -> new SocksSocket(proxy, target)));
+    }
+    int failed = 0;
+    for (Future<Socket> future : connecting) {
+      try {
+        sockets.add(future.get());
+      } catch (Exception e) {
+        failed++;
+      }
+    }
+    long openTime = System.nanoTime() - start;
+    int peakThreads = threadMXBean.getThreadCount();
+    System.gc();
+    long usedHeap = Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory();
+
+    start = System.nanoTime();
+    List<Future<Boolean>> echoing = new ArrayList<>(sockets.size());
+    for (final Socket socket : sockets) {
+      echoing.add(clients.submit(() -> echo(socket)));
+    }
+    int mismatched = 0;
+    for (Future<Boolean> future : echoing) {
+      if (!future.get()) {
+        mismatched++;
+      }
+    }
+    long echoTime = System.nanoTime() - start;
+
+    System.out.println("Mode:         " + mode + (mode != requested ?
+        " (" + requested + " is not supported by this JVM)" : ""));
+    System.out.println("Tunnels:      " + sockets.size() + " opened, " + failed + " failed");
+    System.out.println("Open time:    " + TimeUnit.NANOSECONDS.toMillis(openTime) + " ms");
+    System.out.println("Echo time:    " + TimeUnit.NANOSECONDS.toMillis(echoTime) + " ms, "
+        + mismatched + " mismatched");
+    System.out.println("Live threads: " + peakThreads);
+    System.out.println("Used heap:    " + usedHeap / 1024 / 1024 + " MB");
+
+    for (Socket socket : sockets) {
+      ResourceUtil.close(socket);
+    }
+    clients.shutdown();
+    proxyServer.shutdown();
+    echoServer.shutdown();
+  }
+
+  private static boolean echo(Socket socket) throws IOException {
+    socket.getOutputStream().write(MESSAGE);
+    socket.getOutputStream().flush();
+    InputStream inputStream = socket.getInputStream();
+    byte[] buffer = new byte[MESSAGE.length];
+    int offset = 0;
+    while (offset < buffer.length) {
+      int length = inputStream.read(buffer, offset, buffer.length - offset);
+      if (length < 0) {
+        return false;
+      }
+      offset += length;
+    }
+    return new String(buffer).equals(new String(MESSAGE));
+  }
+
+  /**
+   * A single thread echo server, so that it doesn't disturb the comparison.
+   */
+  private static class EchoServer implements Runnable {
+
+    private final Selector selector;
+    private final ServerSocketChannel serverChannel;
+    private volatile boolean running = true;
+
+    EchoServer() throws IOException {
+      selector = Selector.open();
+      serverChannel = ServerSocketChannel.open();
+      serverChannel.bind(new InetSocketAddress("127.0.0.1", 0), 1024);
+      serverChannel.configureBlocking(false);
+      serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+    }
+
+    void start() {
+      Thread thread = new Thread(this, "echo-server");
+      thread.setDaemon(true);
+      thread.start();
+    }
+
+    void shutdown() throws IOException {
+      running = false;
+      selector.wakeup();
+      serverChannel.close();
+    }
+
+    int getPort() {
+      return serverChannel.socket().getLocalPort();
+    }
+
+    @Override
+    public void run() {
+      ByteBuffer buffer = ByteBuffer.allocate(1024);
+      while (running) {
+        try {
+          selector.select();
+          Iterator<SelectionKey> iterator = selector.selectedKeys().iterator();
+          while (iterator.hasNext()) {
+            SelectionKey key = iterator.next();
+            iterator.remove();
+            if (key.isAcceptable()) {
+              SocketChannel channel = serverChannel.accept();
+              if (channel != null) {
+                channel.configureBlocking(false);
+                channel.register(selector, SelectionKey.OP_READ);
+              }
+            } else if (key.isReadable()) {
+              SocketChannel channel = (SocketChannel) key.channel();
+              buffer.clear();
+              if (channel.read(buffer) < 0) {
+                key.cancel();
+                channel.close();
+                continue;
+              }
+              buffer.flip();
+              // Messages are tiny, a single write is enough.
+              channel.write(buffer);
+            }
+          }
+        } catch (IOException e) {
+          e.printStackTrace();
+        }
+      }
+    }
+  }
+}
@@ -21,11 +21,15 @@ import sockslib.server.SocksProxyServer;
 import sockslib.server.SocksServerBuilder;
 import socklib.test.SSLResource;
 import org.junit.After;
+import org.junit.Assert;
 import org.junit.Test;
 
 import java.io.IOException;
+import java.net.InetAddress;
 import java.net.InetSocketAddress;
+import java.net.ServerSocket;
 import java.net.SocketAddress;
+import java.net.SocketTimeoutException;
 
 /**
  * The class <code>TestSSLSocks5</code> is a test class for {@link SSLSocks5}.
@@ -72,6 +76,25 @@ public final class TestSSLSocks5 {
     SocksTester.checkConnect(proxy);
   }
 
+  @Test
+  public void testHandshakeTimeout() throws IOException {
+    SSLConfigurationBuilder builder = SSLConfigurationBuilder.newBuilder();
+    builder.setTrustKeyStorePath(SSLResource.getClientTrustStorePath());
+    builder.setTrustKeyStorePassword(SSLResource.PASSWORD);
+    // A server which accepts connections by its backlog but never answers the handshake.
+    try (ServerSocket silent = new ServerSocket(0, 50, InetAddress.getLoopbackAddress())) {
+      SSLSocks5 proxy = new SSLSocks5(silent.getLocalSocketAddress(), builder.build());
+      proxy.setHandshakeTimeout(300);
+      long start = System.currentTimeMillis();
+      try {
+        proxy.createProxySocket(silent.getInetAddress(), silent.getLocalPort());
+        Assert.fail("A handshake with a silent server should time out");
+      } catch (SocketTimeoutException e) {
+        Assert.assertTrue(System.currentTimeMillis() - start < 5000);
+      }
+    }
+  }
+
   public void startNoAuthSSLServer() throws IOException {
     SSLConfigurationBuilder builder = SSLConfigurationBuilder.newBuilder();
     builder.setClientAuth(false);
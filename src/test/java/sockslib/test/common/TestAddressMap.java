@@ -0,0 +1,89 @@
+/*
+ * Copyright 2015-2025 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package sockslib.test.common;
+
+import org.junit.Test;
+import sockslib.common.AddressMap;
+import sockslib.common.AddressSet;
+
+import java.net.InetAddress;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The class <code>TestAddressMap</code> tests {@link AddressMap} and {@link AddressSet}.
+ *
+ * @version 1.0
+ */
+public class TestAddressMap {
+
+  @Test
+  public void testRandomOperations() {
+    AddressMap<Integer> map = new AddressMap<>();
+    Map<Long, Integer> expected = new HashMap<>();
+    Random random = new Random(42);
+    for (int i = 0; i < 200000; i++) {
+      // A small key space makes collisions and removals frequent.
+      int key = random.nextInt(4096) * 7919;
+      boolean ipv6 = random.nextBoolean();
+      long expectedKey = ipv6 ? key | (1L << 40) : key;
+      switch (random.nextInt(3)) {
+        case 0:
+          assertEquals(expected.put(expectedKey, i), ipv6 ? map.put(7L, key, i) : map.put(key, i));
+          break;
+        case 1:
+          assertEquals(expected.remove(expectedKey), ipv6 ? map.remove(7L, key) : map.remove(key));
+          break;
+        default:
+          assertEquals(expected.get(expectedKey), ipv6 ? map.get(7L, key) : map.get(key));
+          break;
+      }
+    }
+    assertEquals(expected.size(), map.size());
+    for (Map.Entry<Long, Integer> entry : expected.entrySet()) {
+      long key = entry.getKey();
+      Integer value = (key & (1L << 40)) != 0 ? map.get(7L, (int) key) : map.get((int) key);
+      assertEquals(entry.getValue(), value);
+    }
+  }
+
+  @Test
+  public void testInetAddress() throws Exception {
+    AddressSet set = new AddressSet();
+    assertTrue(set.add("127.0.0.1"));
+    assertTrue(set.add("::1"));
+    assertFalse(set.add(InetAddress.getByName("127.0.0.1")));
+    assertEquals(2, set.size());
+    assertTrue(set.contains(InetAddress.getByName("127.0.0.1")));
+    assertTrue(set.contains(InetAddress.getByName("0:0:0:0:0:0:0:1")));
+    assertFalse(set.contains(InetAddress.getByName("127.0.0.2")));
+    assertTrue(set.remove(InetAddress.getByName("::1")));
+    assertFalse(set.contains(InetAddress.getByName("::1")));
+
+    AddressMap<String> map = new AddressMap<>();
+    map.put(InetAddress.getByName("0.0.0.0"), "zero");
+    assertEquals("zero", map.get(0));
+    map.clear();
+    assertNull(map.get(0));
+    assertTrue(map.isEmpty());
+  }
+
+}
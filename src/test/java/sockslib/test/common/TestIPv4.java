@@ -0,0 +1,135 @@
+/*
+ * Copyright 2015-2025 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package sockslib.test.common;
+
+import org.junit.Test;
+import sockslib.common.IP;
+import sockslib.common.IPRange;
+import sockslib.common.IPv4;
+
+import java.net.InetAddress;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * The class <code>TestIPv4</code> tests the parser of {@link IPv4} and {@link IPRange}.
+ *
+ * @version 1.0
+ */
+public class TestIPv4 {
+
+  @Test
+  public void testParse() {
+    assertEquals(0, IPv4.parse("0.0.0.0"));
+    assertEquals(-1, IPv4.parse("255.255.255.255"));
+    assertEquals(0x7F000001, IPv4.parse("127.0.0.1"));
+    assertEquals(0x0A000001, IPv4.parse("010.000.000.001"));
+    assertEquals(0xC0A80001, IPv4.parse("host 192.168.0.1:80", 5, 16));
+    assertEquals("255.255.255.255", IPv4.toString(-1));
+    assertEquals(0xFFFFFFFFL, IPv4.toUnsignedLong(-1));
+  }
+
+  @Test
+  public void testParseMalformed() {
+    String[] malformed = {"", ".", "...", "1", "1.2.3", "1.2.3.4.5", "1.2.3.", ".1.2.3",
+        "1.2.3.4.", "1..2.3", "1.2.3.256", "256.0.0.0", "999.1.1.1", "0001.2.3.4", "1.2.3.4 ",
+        " 1.2.3.4", "1.2.3.4/24", "-1.2.3.4", "+1.2.3.4", "1.2.3.a", "a.b.c.d", "1,2,3,4",
+        "::1"};
+    for (String address : malformed) {
+      try {
+        IPv4.parse(address);
+        fail("Parsing \"" + address + "\" should fail");
+      } catch (IllegalArgumentException e) {
+        assertTrue(e.getMessage().startsWith("Invalid IPv4 address"));
+      }
+      assertFalse(address, IPv4.isValid(address));
+    }
+  }
+
+  @Test
+  public void testMask() {
+    assertEquals(0, IPv4.mask(0));
+    assertEquals(0x80000000, IPv4.mask(1));
+    assertEquals(0xFFFFFF00, IPv4.mask(24));
+    assertEquals(-1, IPv4.mask(32));
+    assertTrue(IPv4.contains(IPv4.parse("10.0.0.0"), 8, IPv4.parse("10.255.0.1")));
+    assertFalse(IPv4.contains(IPv4.parse("10.0.0.0"), 8, IPv4.parse("11.0.0.1")));
+    assertTrue(IPv4.contains(IPv4.parse("1.2.3.4"), 0, IPv4.parse("255.255.255.255")));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testMaskTooLong() {
+    IPv4.mask(33);
+  }
+
+  @Test
+  public void testRangeOfWholeSpace() throws Exception {
+    // The mask of /0 must not wrap around to the mask of /32.
+    IPRange range = IPRange.parseFromIPWithMask("10.1.2.3/0");
+    assertEquals("0.0.0.0", range.getStartIP().toString());
+    assertEquals("255.255.255.255", range.getEndIP().toString());
+    assertEquals(1L << 32, range.size());
+    assertTrue(range.contains(InetAddress.getByName("0.0.0.0")));
+    assertTrue(range.contains(InetAddress.getByName("255.255.255.255")));
+    assertTrue(range.contains(IP.parseFromString("128.0.0.0")));
+  }
+
+  @Test
+  public void testRangeMasksNetworkAddress() throws Exception {
+    IPRange range = IPRange.parseFromIPWithMask("172.16.200.9/12");
+    assertEquals("172.16.0.0-172.31.255.255", range.toString());
+    assertFalse(range.contains(InetAddress.getByName("172.15.255.255")));
+    assertTrue(range.contains(InetAddress.getByName("172.16.0.0")));
+    assertTrue(range.contains(InetAddress.getByName("172.31.255.255")));
+    assertFalse(range.contains(InetAddress.getByName("172.32.0.0")));
+
+    IPRange host = IPRange.parseFromIPWithMask("192.168.1.7/32");
+    assertEquals("192.168.1.7-192.168.1.7", host.toString());
+    assertEquals(1, host.size());
+    // An IPv6 address is never in a range.
+    assertFalse(host.contains(InetAddress.getByName("::1")));
+  }
+
+  @Test
+  public void testRangeRejectsReversedAddresses() {
+    IP low = IP.parseFromString("10.0.0.1");
+    IP high = IP.parseFromString("10.0.0.2");
+    assertEquals(1, new IPRange(low, low).size());
+    assertEquals(2, new IPRange(low, high).size());
+    try {
+      new IPRange(high, low);
+      fail("A reversed range should be rejected");
+    } catch (IllegalArgumentException e) {
+      // Expected.
+    }
+    try {
+      IPRange.parse("10.0.0.2-10.0.0.1");
+      fail("A reversed range should be rejected");
+    } catch (IllegalArgumentException e) {
+      // Expected.
+    }
+    // The highest address must not compare as a negative value.
+    assertEquals(2, IPRange.parse("255.255.255.254-255.255.255.255").size());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testRangeRejectsMalformedMask() {
+    IPRange.parseFromIPWithMask("10.0.0.1/33");
+  }
+
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2015-2025 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package sockslib.test.common;
+
+import org.junit.Test;
+import sockslib.common.IP;
+import sockslib.common.IPRange;
+import sockslib.common.IPv4;
+import sockslib.common.IPv6Address;
+
+import java.net.InetAddress;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The class <code>TestIPv6Address</code> tests parsing and formatting of {@link IPv4} and
+ * {@link IPv6Address}.
+ *
+ * @version 1.0
+ */
+public class TestIPv6Address {
+
+  @Test
+  public void testIPv4() throws Exception {
+    int address = IPv4.parse("192.168.10.20");
+    assertEquals("192.168.10.20", IPv4.toString(address));
+    assertEquals(address, IPv4.of(InetAddress.getByName("192.168.10.20")));
+    assertTrue(IPv4.isPrivate(address));
+    assertTrue(IPv4.isPrivate(IPv4.parse("172.31.0.1")));
+    assertFalse(IPv4.isPrivate(IPv4.parse("172.32.0.1")));
+    for (String invalid : new String[] {"", "1.2.3", "1.2.3.4.5", "1.2.3.256", "1..2.3",
+        "1.2.3.4.", " 1.2.3.4", "a.b.c.d"}) {
+      assertFalse(invalid, IPv4.isValid(invalid));
+    }
+
+    IP ip = IP.parseFromString(" 10.0.0.1 ");
+    assertEquals("10.0.0.1", ip.toString());
+    assertTrue(ip.isLocalIP());
+    assertEquals(ip.hashCode(), new IP(10, 0, 0, 1).hashCode());
+    IPRange range = IPRange.parseFromIPWithMask("192.168.70.1/24");
+    assertEquals("192.168.70.0-192.168.70.255", range.toString());
+    assertTrue(range.contains(InetAddress.getByName("192.168.70.200")));
+    assertEquals(1L << 32, IPRange.parseFromIPWithMask("0.0.0.0/0").size());
+  }
+
+  @Test
+  public void testParse() throws Exception {
+    String[] addresses = {"::", "::1", "1::", "2001:db8::1", "2001:db8:0:0:1:0:0:1",
+        "fe80::1:2:3:4", "1:2:3:4:5:6:7:8", "::ffff:192.168.1.1", "2001:DB8::ABCD",
+        "1:0:0:2::3", "64:ff9b::10.0.0.1"};
+    for (String text : addresses) {
+      IPv6Address address = IPv6Address.parse(text);
+      InetAddress expected = InetAddress.getByName(text);
+      byte[] bytes = expected.getAddress();
+      if (bytes.length == 4) {
+        // Java converts an IPv4 mapped address to an IPv4 address.
+        assertTrue(text, address.isIPv4Mapped());
+        assertEquals(text, IPv4.fromBytes(bytes, 0), address.toIPv4());
+      } else {
+        assertArrayEquals(text, bytes, address.toBytes());
+        assertEquals(address, IPv6Address.of(expected));
+        assertEquals(address, IPv6Address.parse(address.toString()));
+      }
+    }
+    assertEquals("2001:db8::1", IPv6Address.parse("2001:0db8:0000:0000:0000:0000:0000:0001")
+        .toString());
+    assertEquals("1:0:0:2::3", IPv6Address.parse("1:0:0:2:0:0:0:3").toString());
+    assertEquals("::ffff:c0a8:101", IPv6Address.parse("::ffff:192.168.1.1").toString());
+    assertTrue(IPv6Address.parse("::1").isLoopback());
+    assertTrue(IPv6Address.parse("fd12::1").isUniqueLocal());
+    assertTrue(IPv6Address.parse("fe80::1%eth0").isLinkLocal());
+  }
+
+  @Test
+  public void testParseInvalid() {
+    String[] addresses = {"", ":", ":1", "1:", "1:::2", "1::2::3", "1:2:3:4:5:6:7:8:9",
+        "1:2:3:4:5:6:7", "12345::", "1::2:3:4:5:6:7:8", "::1.2.3", "g::1"};
+    for (String text : addresses) {
+      try {
+        IPv6Address.parse(text);
+        throw new AssertionError("Expected invalid address: " + text);
+      } catch (IllegalArgumentException expected) {
+        // Expected.
+      }
+    }
+  }
+
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright 2015-2025 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package sockslib.test.common;
+
+import org.junit.Test;
+import sockslib.common.SSLConfiguration;
+
+import javax.net.ssl.SSLContext;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+/**
+ * The class <code>TestSSLConfiguration</code> tests SSL context caching and reloading of
+ * {@link SSLConfiguration}.
+ *
+ * @version 1.0
+ */
+public class TestSSLConfiguration {
+
+  @Test
+  public void testContextIsCached() throws Exception {
+    SSLConfiguration configuration = SSLConfiguration.loadClassPath("server-ssl.properties");
+    SSLContext context = configuration.getServerSSLContext();
+    assertSame(context, configuration.getServerSSLContext());
+    assertSame(configuration.getSSLContext(), configuration.getSSLContext());
+  }
+
+  @Test
+  public void testReload() throws Exception {
+    SSLConfiguration configuration = SSLConfiguration.loadClassPath("client-ssl.properties");
+    configuration.setSessionCacheSize(100);
+    configuration.setSessionTimeout(600);
+    SSLContext context = configuration.getSSLContext();
+    configuration.reload();
+    SSLContext reloaded = configuration.getSSLContext();
+    assertNotSame(context, reloaded);
+    assertEquals(1, configuration.getReloadCount());
+    assertEquals(100, reloaded.getClientSessionContext().getSessionCacheSize());
+    assertEquals(600, reloaded.getClientSessionContext().getSessionTimeout());
+  }
+
+}
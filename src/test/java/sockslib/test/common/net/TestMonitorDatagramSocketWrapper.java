@@ -0,0 +1,77 @@
+/*
+ * Copyright 2015-2025 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package sockslib.test.common.net;
+
+import org.junit.Assert;
+import org.junit.Test;
+import sockslib.common.net.DatagramSocketMonitor;
+import sockslib.common.net.MonitorDatagramSocketWrapper;
+
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The class <code>TestMonitorDatagramSocketWrapper</code> is a test class for
+ * {@link MonitorDatagramSocketWrapper}.
+ *
+ * @version 1.0
+ */
+public class TestMonitorDatagramSocketWrapper {
+
+  @Test
+  public void testMonitorsChangedWhileSending() throws Exception {
+    final AtomicInteger sent = new AtomicInteger();
+    final DatagramSocketMonitor counter = new CountingMonitor(sent);
+    try (DatagramSocket receiver = new DatagramSocket(0, InetAddress.getLoopbackAddress());
+         MonitorDatagramSocketWrapper socket =
+             new MonitorDatagramSocketWrapper(new DatagramSocket())) {
+      // The first monitor changes the monitors while they are being iterated.
+      socket.addMonitor(new CountingMonitor(sent) {
+        @Override
+        public void onSend(DatagramPacket packet) {
+          super.onSend(packet);
+          socket.removeMonitor(this);
+          socket.addMonitor(counter);
+        }
+      }).addMonitor(new CountingMonitor(sent));
+      DatagramPacket packet =
+          new DatagramPacket(new byte[4], 4, receiver.getLocalSocketAddress());
+      socket.send(packet);
+      Assert.assertEquals(2, sent.get());
+      socket.send(packet);
+      Assert.assertEquals(4, sent.get());
+      Assert.assertEquals(2, socket.getMonitors().size());
+    }
+  }
+
+  private static class CountingMonitor implements DatagramSocketMonitor {
+
+    private final AtomicInteger sent;
+
+    CountingMonitor(AtomicInteger sent) {
+      this.sent = sent;
+    }
+
+    @Override
+    public void onReceive(DatagramPacket packet) {
+    }
+
+    @Override
+    public void onSend(DatagramPacket packet) {
+      sent.incrementAndGet();
+    }
+  }
+}
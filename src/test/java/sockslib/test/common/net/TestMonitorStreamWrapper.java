@@ -0,0 +1,94 @@
+/*
+ * Copyright 2015-2025 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package sockslib.test.common.net;
+
+import org.junit.Assert;
+import org.junit.Test;
+import sockslib.common.net.InputStreamMonitor;
+import sockslib.common.net.MonitorInputStreamWrapper;
+import sockslib.common.net.MonitorOutputStreamWrapper;
+import sockslib.common.net.NetworkMonitor;
+import sockslib.common.net.OutputStreamMonitor;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * The class <code>TestMonitorStreamWrapper</code> is a test class for
+ * {@link MonitorInputStreamWrapper} and {@link MonitorOutputStreamWrapper}.
+ *
+ * @version 1.0
+ */
+public class TestMonitorStreamWrapper {
+
+  @Test
+  public void testMonitorSeesCallerBuffer() throws Exception {
+    final byte[] buffer = new byte[16];
+    final int[] range = new int[2];
+    InputStream inputStream =
+        MonitorInputStreamWrapper.wrap(new ByteArrayInputStream(new byte[5]),
+            new InputStreamMonitor() {
+              @Override
+              public void onRead(byte[] b) {
+                Assert.fail("The range must be passed without a copy");
+              }
+
+              @Override
+              public void onRead(byte[] b, int offset, int length) {
+                Assert.assertSame(buffer, b);
+                range[0] = offset;
+                range[1] = length;
+              }
+            });
+    Assert.assertEquals(5, inputStream.read(buffer, 3, 10));
+    Assert.assertEquals(3, range[0]);
+    Assert.assertEquals(5, range[1]);
+  }
+
+  @Test
+  public void testCount() throws Exception {
+    NetworkMonitor monitor = new NetworkMonitor();
+    InputStream inputStream =
+        MonitorInputStreamWrapper.wrap(new ByteArrayInputStream(new byte[3]), monitor);
+    Assert.assertEquals(0, inputStream.read());
+    Assert.assertEquals(2, inputStream.read(new byte[8]));
+    // End of stream is not traffic.
+    Assert.assertEquals(-1, inputStream.read());
+    Assert.assertEquals(-1, inputStream.read(new byte[8]));
+    Assert.assertEquals(3, monitor.getReceiveTCP());
+
+    OutputStream outputStream =
+        MonitorOutputStreamWrapper.wrap(new ByteArrayOutputStream(), monitor);
+    outputStream.write(1);
+    outputStream.write(new byte[4]);
+    outputStream.write(new byte[10], 2, 6);
+    Assert.assertEquals(11, monitor.getSendTCP());
+  }
+
+  @Test
+  public void testArrayMonitor() throws Exception {
+    final ByteArrayOutputStream written = new ByteArrayOutputStream();
+    OutputStream outputStream =
+        MonitorOutputStreamWrapper.wrap(new ByteArrayOutputStream(), new OutputStreamMonitor() {
+          @Override
+          public void onWrite(byte[] bytes) {
+            written.write(bytes, 0, bytes.length);
+          }
+        });
+    outputStream.write(new byte[] {1, 2, 3, 4, 5}, 1, 3);
+    Assert.assertArrayEquals(new byte[] {2, 3, 4}, written.toByteArray());
+  }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2015-2025 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package sockslib.test.common.net;
+
+import org.junit.Assert;
+import org.junit.Test;
+import sockslib.common.net.NetworkMonitor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * The class <code>TestNetworkMonitor</code> is a test class for {@link NetworkMonitor}.
+ *
+ * @version 1.0
+ */
+public class TestNetworkMonitor {
+
+  @Test
+  public void testConcurrentCount() throws Exception {
+    final NetworkMonitor global = new NetworkMonitor();
+    final NetworkMonitor user = new NetworkMonitor(global);
+    final byte[] bytes = new byte[10];
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    List<Future<?>> futures = new ArrayList<>();
+    for (int i = 0; i < 8; i++) {
+      futures.add(executor.submit(() -> {
+        NetworkMonitor session = new NetworkMonitor(user);
+        for (int j = 0; j < 10000; j++) {
+          session.onRead(bytes, 0, bytes.length);
+          session.onWrite(bytes, 0, bytes.length);
+        }
+        Assert.assertEquals(100000, session.getReceiveTCP());
+      }));
+    }
+    for (Future<?> future : futures) {
+      future.get();
+    }
+    executor.shutdown();
+    Assert.assertEquals(800000, user.getReceiveTCP());
+    Assert.assertEquals(800000, user.getSendTCP());
+    Assert.assertEquals(1600000, global.getTotal());
+  }
+
+  @Test
+  public void testParents() {
+    NetworkMonitor parent = new NetworkMonitor();
+    NetworkMonitor monitor = new NetworkMonitor();
+    monitor.addSendUDP(5);
+    monitor.addParent(parent);
+    monitor.addReceiveUDP(3);
+    monitor.removeParent(parent);
+    monitor.addReceiveTCP(7);
+    Assert.assertEquals(15, monitor.getTotal());
+    Assert.assertEquals(3, parent.getTotal());
+    monitor.reset();
+    Assert.assertEquals(0, monitor.getTotal());
+    Assert.assertEquals(3, parent.getTotalReceive());
+  }
+}
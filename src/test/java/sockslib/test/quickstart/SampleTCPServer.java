@@ -39,6 +39,13 @@ public final class SampleTCPServer implements Runnable {
 
   public void start(int port) {
     this.port = port;
+    try {
+      // Bind before returning, so that clients never connect before the server is ready.
+      serverSocket = new ServerSocket(port);
+    } catch (IOException e) {
+      logger.error(e.getMessage());
+      return;
+    }
     Thread thread = new Thread(this);
     thread.setDaemon(true);
     thread.start();
@@ -60,7 +67,6 @@ public final class SampleTCPServer implements Runnable {
     InputStream inputStream = null;
     OutputStream outputStream = null;
     try {
-      serverSocket = new ServerSocket(port);
       socket = serverSocket.accept();
       inputStream = socket.getInputStream();
       outputStream = socket.getOutputStream();
@@ -77,6 +83,7 @@ public final class SampleTCPServer implements Runnable {
       ResourceUtil.close(inputStream);
       ResourceUtil.close(outputStream);
       ResourceUtil.close(socket);
+      shutdown();
     }
   }
 }
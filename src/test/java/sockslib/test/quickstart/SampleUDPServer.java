@@ -37,6 +37,7 @@ public final class SampleUDPServer implements Runnable {
   }
 
   public void shutdown() {
+    DatagramSocket socket = this.socket;
     if (socket != null && socket.isBound()) {
       socket.close();
     }
@@ -142,8 +142,12 @@ public final class TestSocks5Server {
     server.start(REMOTE_TCP_SERVER_PORT);
     Telnet telnet = new TCPTelnet(proxy);
     String requestMessage = "hello fucksocks\n";
-    byte[] data = telnet.request(requestMessage.getBytes(), remoteTCPServerAddress);
-    server.shutdown();
+    byte[] data;
+    try {
+      data = telnet.request(requestMessage.getBytes(), remoteTCPServerAddress);
+    } finally {
+      server.shutdown();
+    }
     Assert.assertEquals(requestMessage, new String(data));
   }
 
@@ -152,8 +156,12 @@ public final class TestSocks5Server {
     server.start(REMOTE_UDP_SERVER_PORT);
     Telnet telnet = new UDPTelnet(proxy);
     String requestMessage = "hello fucksocks\n";
-    byte[] data = telnet.request(requestMessage.getBytes(), remoteUDPServerAddress);
-    server.shutdown();
+    byte[] data;
+    try {
+      data = telnet.request(requestMessage.getBytes(), remoteUDPServerAddress);
+    } finally {
+      server.shutdown();
+    }
     Assert.assertEquals(requestMessage, new String(data));
   }
 
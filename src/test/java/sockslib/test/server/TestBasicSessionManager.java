@@ -0,0 +1,85 @@
+/*
+ * Copyright 2015-2025 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package sockslib.test.server;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import sockslib.common.net.MonitorSocketWrapper;
+import sockslib.server.BasicSessionManager;
+import sockslib.server.Session;
+import sockslib.server.UsernamePasswordAuthenticator;
+import sockslib.server.manager.User;
+import sockslib.server.msg.CommandMessage;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The class <code>TestBasicSessionManager</code> is a test class for {@link BasicSessionManager}.
+ *
+ * @version 1.0
+ */
+public class TestBasicSessionManager {
+
+  private ServerSocket serverSocket;
+  private final List<Socket> sockets = new ArrayList<>();
+
+  @Before
+  public void setUp() throws IOException {
+    serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    for (Socket socket : sockets) {
+      socket.close();
+    }
+    serverSocket.close();
+  }
+
+  @Test
+  public void testUserNetworkMonitorEvictedWithLastSession() throws Exception {
+    BasicSessionManager sessionManager = new BasicSessionManager();
+    Session session1 = newUserSession(sessionManager, "alice");
+    Session session2 = newUserSession(sessionManager, "alice");
+    Assert.assertNotNull(sessionManager.getUserNetworkMonitor("alice"));
+
+    session1.getNetworkMonitor().addReceiveTCP(10);
+    session1.close();
+    sessionManager.sessionOnClose(session1);
+    Assert.assertEquals(10, sessionManager.getUserNetworkMonitor("alice").getReceiveTCP());
+
+    session2.close();
+    sessionManager.sessionOnClose(session2);
+    Assert.assertNull(sessionManager.getUserNetworkMonitor("alice"));
+    Assert.assertTrue(sessionManager.getUserNetworkMonitors().isEmpty());
+  }
+
+  private Session newUserSession(BasicSessionManager sessionManager, String username)
+      throws Exception {
+    Socket socket = new Socket(serverSocket.getInetAddress(), serverSocket.getLocalPort());
+    sockets.add(socket);
+    sockets.add(serverSocket.accept());
+    Session session = sessionManager.newSession(new MonitorSocketWrapper(socket));
+    session.setAttribute(UsernamePasswordAuthenticator.USER_KEY, new User(username, "secret"));
+    sessionManager.sessionOnCommand(session, new CommandMessage());
+    return session;
+  }
+}
@@ -0,0 +1,240 @@
+/*
+ * Copyright 2015-2025 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package sockslib.test.server;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import sockslib.client.Socks5;
+import sockslib.client.SocksProxy;
+import sockslib.client.SocksSocket;
+import sockslib.common.SocksException;
+import sockslib.server.BasicSocksProxyServer;
+import sockslib.server.Socks5Handler;
+import sockslib.server.SocksHandler;
+import sockslib.server.SocksProxyServer;
+import sockslib.server.SocksServerBuilder;
+import sockslib.server.acl.AccessControlList;
+import sockslib.server.acl.AccessControlList.Action;
+import sockslib.server.connector.HappyEyeballsConnector;
+import sockslib.server.dns.SystemDnsResolver;
+import sockslib.utils.ResourceUtil;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketAddress;
+import java.net.UnknownHostException;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The class <code>TestBasicSocksProxyServer</code> is a test class for
+ * {@link BasicSocksProxyServer}.
+ *
+ * @version 1.0
+ */
+public class TestBasicSocksProxyServer {
+
+  private static final int SOCKS_SERVER_PORT = 1082;
+  private final SocketAddress socks5ServerAddress =
+      new InetSocketAddress("127.0.0.1", SOCKS_SERVER_PORT);
+  private SocksProxyServer socksProxyServer;
+  private ServerSocket echoServer;
+
+  @Before
+  public void setUp() throws IOException {
+    echoServer = new ServerSocket(0);
+    Thread thread = new Thread(() -> {
+      while (!echoServer.isClosed()) {
+        try {
+          Socket socket = echoServer.accept();
+          new Thread(() -> echo(socket)).start();
+        } catch (IOException e) {
+          return;
+        }
+      }
+    });
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  @After
+  public void destroy() throws IOException, InterruptedException {
+    if (socksProxyServer != null) {
+      socksProxyServer.shutdown();
+    }
+    echoServer.close();
+    Thread.sleep(100);
+  }
+
+  @Test
+  public void testMultipleAcceptors() throws IOException {
+    socksProxyServer = SocksServerBuilder.newSocks5ServerBuilder().setBindPort(SOCKS_SERVER_PORT)
+        .setAcceptorCount(3).build();
+    Assert.assertEquals(SocksProxyServer.DEFAULT_BACKLOG, socksProxyServer.getBacklog());
+    socksProxyServer.start();
+    for (int i = 0; i < 20; i++) {
+      checkEcho(new Socks5(socks5ServerAddress), "Hello sockslib " + i + "!\n");
+    }
+  }
+
+  @Test
+  public void testSessionRemovedWhenSetupFails() throws Exception {
+    socksProxyServer = new BasicSocksProxyServer(Socks5Handler.class, SOCKS_SERVER_PORT) {
+      @Override
+      public SocksHandler createSocksHandler() {
+        throw new IllegalStateException("No handler");
+      }
+    };
+    socksProxyServer.start();
+    try (Socket socket = new Socket("127.0.0.1", SOCKS_SERVER_PORT)) {
+      socket.setSoTimeout(5000);
+      // The server closes the connection without a reply.
+      Assert.assertEquals(-1, socket.getInputStream().read());
+    }
+    // The session is removed right after its socket is closed.
+    for (int i = 0; i < 50 && !socksProxyServer.getManagedSessions().isEmpty(); i++) {
+      Thread.sleep(10);
+    }
+    Assert.assertTrue(socksProxyServer.getManagedSessions().isEmpty());
+  }
+
+  @Test
+  public void testDestinationAccessControl() throws IOException {
+    AccessControlList destinations =
+        AccessControlList.parse(new StringReader("127.0.0.0/8\n::1\n"), Action.ALLOW);
+    socksProxyServer = SocksServerBuilder.newSocks5ServerBuilder().setBindPort(SOCKS_SERVER_PORT)
+        .setAccessControl(null, destinations).build();
+    socksProxyServer.start();
+    Socket socket = null;
+    try {
+      // The domain name is resolved by the server, then its address is denied.
+      socket = new SocksSocket(new Socks5(socks5ServerAddress), "localhost",
+          echoServer.getLocalPort());
+      Assert.fail("Connecting a denied destination should fail");
+    } catch (SocksException e) {
+      Assert.assertEquals("Connection not allowed by ruleset", e.getMessage());
+    } finally {
+      ResourceUtil.close(socket);
+    }
+  }
+
+  @Test
+  public void testDestinationAccessControlOfAllAddresses() throws IOException {
+    // The first address is allowed, but the connector may fall back to the second one.
+    SystemDnsResolver resolver = new SystemDnsResolver() {
+      @Override
+      public InetAddress[] resolveAll(String host) throws UnknownHostException {
+        if (host.equals("multi.test")) {
+          return new InetAddress[] {InetAddress.getByName("127.0.0.1"),
+              InetAddress.getByName("10.0.0.1")};
+        }
+        return super.resolveAll(host);
+      }
+    };
+    AccessControlList destinations =
+        AccessControlList.parse(new StringReader("10.0.0.0/8\n"), Action.ALLOW);
+    socksProxyServer = SocksServerBuilder.newSocks5ServerBuilder().setBindPort(SOCKS_SERVER_PORT)
+        .setDnsResolver(resolver).setAccessControl(null, destinations).build();
+    socksProxyServer.start();
+    Socket socket = null;
+    try {
+      socket = new SocksSocket(new Socks5(socks5ServerAddress), "multi.test",
+          echoServer.getLocalPort());
+      Assert.fail("A host with a denied address should be refused");
+    } catch (SocksException e) {
+      Assert.assertEquals("Connection not allowed by ruleset", e.getMessage());
+    } finally {
+      ResourceUtil.close(socket);
+    }
+  }
+
+  @Test
+  public void testConnectTimeoutReply() throws IOException {
+    HappyEyeballsConnector connector = new HappyEyeballsConnector();
+    connector.setConnectTimeout(300);
+    socksProxyServer = SocksServerBuilder.newSocks5ServerBuilder().setBindPort(SOCKS_SERVER_PORT)
+        .setConnector(connector).build();
+    socksProxyServer.start();
+    // A server which never accepts, once its backlog is full new SYNs are dropped.
+    List<SocketChannel> pending = new ArrayList<>();
+    try (ServerSocket blackhole = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+      for (int i = 0; i < 8; i++) {
+        SocketChannel channel = SocketChannel.open();
+        channel.configureBlocking(false);
+        channel.connect(blackhole.getLocalSocketAddress());
+        pending.add(channel);
+      }
+      try {
+        new SocksSocket(new Socks5(socks5ServerAddress), blackhole.getLocalSocketAddress());
+        Assert.fail("Connecting a server with a full backlog should time out");
+      } catch (SocksException e) {
+        Assert.assertEquals("TTL expired", e.getMessage());
+      }
+    } finally {
+      for (SocketChannel channel : pending) {
+        channel.close();
+      }
+    }
+  }
+
+  private void checkEcho(SocksProxy proxy, String message) throws IOException {
+    Socket socket = null;
+    ByteArrayOutputStream cache = new ByteArrayOutputStream();
+    try {
+      socket = new SocksSocket(proxy, new InetSocketAddress("127.0.0.1", echoServer
+          .getLocalPort()));
+      OutputStream outputStream = socket.getOutputStream();
+      outputStream.write(message.getBytes());
+      outputStream.flush();
+      InputStream inputStream = socket.getInputStream();
+      byte[] buffer = new byte[1024 * 5];
+      int length;
+      while ((length = inputStream.read(buffer)) > 0) {
+        cache.write(buffer, 0, length);
+      }
+    } finally {
+      ResourceUtil.close(socket);
+    }
+    Assert.assertEquals(message, new String(cache.toByteArray()));
+  }
+
+  private static void echo(Socket socket) {
+    try {
+      InputStream inputStream = socket.getInputStream();
+      OutputStream outputStream = socket.getOutputStream();
+      byte[] buffer = new byte[1024];
+      int length;
+      while ((length = inputStream.read(buffer)) > 0) {
+        outputStream.write(buffer, 0, length);
+        if (buffer[length - 1] == '\n') {
+          break;
+        }
+      }
+    } catch (IOException ignored) {
+      // Test will fail.
+    } finally {
+      ResourceUtil.close(socket);
+    }
+  }
+}
@@ -0,0 +1,326 @@
+/*
+ * Copyright 2015-2025 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package sockslib.test.server;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import sockslib.client.SSLSocks5;
+import sockslib.client.Socks5;
+import sockslib.client.SocksProxy;
+import sockslib.client.SocksSocket;
+import sockslib.common.AuthenticationException;
+import sockslib.common.KeyStoreInfo;
+import sockslib.common.SSLConfiguration;
+import sockslib.common.SocksException;
+import sockslib.common.UsernamePasswordCredentials;
+import sockslib.common.methods.UsernamePasswordMethod;
+import sockslib.server.SocksProxyServer;
+import sockslib.server.SocksServerBuilder;
+import sockslib.server.acl.AccessControlList;
+import sockslib.server.acl.AccessControlList.Action;
+import sockslib.server.acl.DomainAccessList;
+import sockslib.server.manager.MemoryBasedUserManager;
+import sockslib.server.manager.UserManager;
+import sockslib.server.nio.NioSocksProxyServer;
+import sockslib.utils.ResourceUtil;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketAddress;
+import java.net.SocketException;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The class <code>TestNioSocksProxyServer</code> is a test class for {@link NioSocksProxyServer}.
+ *
+ * @version 1.0
+ */
+public class TestNioSocksProxyServer {
+
+  private static final int SOCKS_SERVER_PORT = 1081;
+  private final SocketAddress socks5ServerAddress =
+      new InetSocketAddress("127.0.0.1", SOCKS_SERVER_PORT);
+  private SocksProxyServer socksProxyServer;
+  private ServerSocket echoServer;
+
+  @Before
+  public void setUp() throws IOException {
+    echoServer = new ServerSocket(0);
+    Thread thread = new Thread(() -> {
+      while (!echoServer.isClosed()) {
+        try {
+          Socket socket = echoServer.accept();
+          new Thread(() -> echo(socket)).start();
+        } catch (IOException e) {
+          return;
+        }
+      }
+    });
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  @After
+  public void destroy() throws IOException, InterruptedException {
+    if (socksProxyServer != null) {
+      socksProxyServer.shutdown();
+    }
+    echoServer.close();
+    Thread.sleep(100);
+  }
+
+  @Test
+  public void testNoAuth() throws IOException {
+    socksProxyServer = SocksServerBuilder.newSocks5ServerBuilder().setBindPort(SOCKS_SERVER_PORT)
+        .useNio(2).build();
+    Assert.assertTrue(socksProxyServer instanceof NioSocksProxyServer);
+    socksProxyServer.start();
+    checkEcho(new Socks5(socks5ServerAddress), "Hello sockslib!\n");
+  }
+
+  @Test
+  public void testLargeData() throws IOException {
+    socksProxyServer = SocksServerBuilder.newSocks5ServerBuilder().setBindPort(SOCKS_SERVER_PORT)
+        .useNio(1).build();
+    socksProxyServer.start();
+    StringBuilder builder = new StringBuilder();
+    for (int i = 0; i < 100000; i++) {
+      builder.append(i % 10);
+    }
+    builder.append('\n');
+    checkEcho(new Socks5(socks5ServerAddress), builder.toString());
+  }
+
+  @Test
+  public void testUsernamePasswordAuth() throws IOException {
+    startAuthServer();
+    SocksProxy proxy = new Socks5(socks5ServerAddress);
+    proxy.setCredentials(new UsernamePasswordCredentials("admin", "12345"));
+    checkEcho(proxy, "Hello sockslib!\n");
+  }
+
+  @Test(expected = AuthenticationException.class)
+  public void testUsernamePasswordAuthFailed() throws IOException {
+    startAuthServer();
+    SocksProxy proxy = new Socks5(socks5ServerAddress);
+    proxy.setCredentials(new UsernamePasswordCredentials("admin", "wrong password"));
+    checkEcho(proxy, "Hello sockslib!\n");
+  }
+
+  @Test
+  public void testMultipleAcceptors() throws IOException {
+    socksProxyServer = SocksServerBuilder.newSocks5ServerBuilder().setBindPort(SOCKS_SERVER_PORT)
+        .setBacklog(256).setAcceptorCount(4).useNio(2).build();
+    Assert.assertEquals(4, socksProxyServer.getAcceptorCount());
+    socksProxyServer.start();
+    for (int i = 0; i < 20; i++) {
+      checkEcho(new Socks5(socks5ServerAddress), "Hello sockslib " + i + "!\n");
+    }
+  }
+
+  @Test
+  public void testSSL() throws Exception {
+    String keyStorePath = getClass().getResource("/nio-ssl-config/server.jks").getPath();
+    KeyStoreInfo keyStoreInfo = new KeyStoreInfo(keyStorePath, "123456");
+    SSLConfiguration serverConfiguration = new SSLConfiguration(keyStoreInfo, null);
+    socksProxyServer = SocksServerBuilder.newSocks5ServerBuilder().setBindPort(SOCKS_SERVER_PORT)
+        .useSSL(serverConfiguration).useNio(1).build();
+    socksProxyServer.start();
+    SSLConfiguration clientConfiguration = new SSLConfiguration(null, keyStoreInfo);
+    StringBuilder builder = new StringBuilder();
+    for (int i = 0; i < 50000; i++) {
+      builder.append(i % 10);
+    }
+    builder.append('\n');
+    for (int i = 0; i < 3; i++) {
+      checkEcho(new SSLSocks5(socks5ServerAddress, clientConfiguration), builder.toString());
+    }
+    Assert.assertEquals(3, serverConfiguration.getHandshakeCount());
+  }
+
+  @Test
+  public void testConnectTimeout() throws IOException {
+    socksProxyServer = SocksServerBuilder.newSocks5ServerBuilder().setBindPort(SOCKS_SERVER_PORT)
+        .setConnectTimeout(300).useNio(1).build();
+    socksProxyServer.start();
+    // A server which never accepts, once its backlog is full new SYNs are dropped.
+    List<SocketChannel> pending = new ArrayList<>();
+    try (ServerSocket blackhole = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+      for (int i = 0; i < 8; i++) {
+        SocketChannel channel = SocketChannel.open();
+        channel.configureBlocking(false);
+        channel.connect(blackhole.getLocalSocketAddress());
+        pending.add(channel);
+      }
+      long start = System.currentTimeMillis();
+      try {
+        new SocksSocket(new Socks5(socks5ServerAddress), blackhole.getLocalSocketAddress());
+        Assert.fail("Connecting a server with a full backlog should time out");
+      } catch (SocksException e) {
+        Assert.assertEquals("TTL expired", e.getMessage());
+        Assert.assertTrue(System.currentTimeMillis() - start < 5000);
+      }
+    } finally {
+      for (SocketChannel channel : pending) {
+        channel.close();
+      }
+    }
+  }
+
+  @Test
+  public void testDomainAccessControl() throws IOException {
+    DomainAccessList domains =
+        DomainAccessList.parse(new StringReader("deny localhost\n"), Action.ALLOW);
+    socksProxyServer = SocksServerBuilder.newSocks5ServerBuilder().setBindPort(SOCKS_SERVER_PORT)
+        .setDomainAccessControl(domains).useNio(1).build();
+    socksProxyServer.start();
+    // The address isn't a domain name, so the domain rules don't apply.
+    checkEcho(new Socks5(socks5ServerAddress), "Hello sockslib!\n");
+    Socket socket = null;
+    try {
+      socket = new SocksSocket(new Socks5(socks5ServerAddress), "localhost",
+          echoServer.getLocalPort());
+      Assert.fail("Connecting a denied domain should fail");
+    } catch (SocksException e) {
+      Assert.assertEquals("Connection not allowed by ruleset", e.getMessage());
+    } finally {
+      ResourceUtil.close(socket);
+    }
+  }
+
+  @Test
+  public void testDestinationAccessControl() throws IOException {
+    AccessControlList destinations =
+        AccessControlList.parse(new StringReader("127.0.0.0/8\n::1\n"), Action.ALLOW);
+    socksProxyServer = SocksServerBuilder.newSocks5ServerBuilder().setBindPort(SOCKS_SERVER_PORT)
+        .setAccessControl(null, destinations).useNio(1).build();
+    socksProxyServer.start();
+    Socket socket = null;
+    try {
+      // The domain name is resolved by the server, then its address is denied.
+      socket = new SocksSocket(new Socks5(socks5ServerAddress), "localhost",
+          echoServer.getLocalPort());
+      Assert.fail("Connecting a denied destination should fail");
+    } catch (SocksException e) {
+      Assert.assertEquals("Connection not allowed by ruleset", e.getMessage());
+    } finally {
+      ResourceUtil.close(socket);
+    }
+  }
+
+  @Test
+  public void testWrongRequestVersion() throws IOException {
+    socksProxyServer = SocksServerBuilder.newSocks5ServerBuilder().setBindPort(SOCKS_SERVER_PORT)
+        .useNio(1).build();
+    socksProxyServer.start();
+    int port = echoServer.getLocalPort();
+    // A CONNECT request to the echo server which carries version 4.
+    assertRejected(new byte[] {0x05, 0x01, 0x00}, 2,
+        new byte[] {0x04, 0x01, 0x00, 0x01, 127, 0, 0, 1, (byte) (port >> 8), (byte) port});
+  }
+
+  @Test
+  public void testWrongAuthVersion() throws IOException {
+    startAuthServer();
+    byte[] credentials = {0x02, 5, 'a', 'd', 'm', 'i', 'n', 5, '1', '2', '3', '4', '5'};
+    assertRejected(new byte[] {0x05, 0x01, 0x02}, 2, credentials);
+  }
+
+  /**
+   * Completes the method selection and asserts that the server closes the connection without
+   * replying to the next frame.
+   */
+  private void assertRejected(byte[] greeting, int greetingReplyLength, byte[] frame)
+      throws IOException {
+    try (Socket socket = new Socket()) {
+      socket.connect(socks5ServerAddress);
+      socket.setSoTimeout(5000);
+      OutputStream outputStream = socket.getOutputStream();
+      InputStream inputStream = socket.getInputStream();
+      outputStream.write(greeting);
+      outputStream.flush();
+      for (int i = 0; i < greetingReplyLength; i++) {
+        Assert.assertTrue(inputStream.read() >= 0);
+      }
+      outputStream.write(frame);
+      outputStream.flush();
+      try {
+        Assert.assertEquals(-1, inputStream.read());
+      } catch (SocketException ignored) {
+        // Connection reset also means the frame is rejected.
+      }
+    }
+  }
+
+  private void startAuthServer() throws IOException {
+    UserManager userManager = new MemoryBasedUserManager();
+    userManager.addUser("admin", "12345");
+    socksProxyServer = SocksServerBuilder.newSocks5ServerBuilder().setBindPort(SOCKS_SERVER_PORT)
+        .setSocksMethods(new UsernamePasswordMethod()).setUserManager(userManager).useNio()
+        .build();
+    socksProxyServer.start();
+  }
+
+  private void checkEcho(SocksProxy proxy, String message) throws IOException {
+    Socket socket = null;
+    ByteArrayOutputStream cache = new ByteArrayOutputStream();
+    try {
+      socket = new SocksSocket(proxy, new InetSocketAddress("127.0.0.1", echoServer
+          .getLocalPort()));
+      OutputStream outputStream = socket.getOutputStream();
+      outputStream.write(message.getBytes());
+      outputStream.flush();
+      InputStream inputStream = socket.getInputStream();
+      byte[] buffer = new byte[1024 * 5];
+      int length;
+      while ((length = inputStream.read(buffer)) > 0) {
+        cache.write(buffer, 0, length);
+      }
+    } finally {
+      ResourceUtil.close(socket);
+    }
+    Assert.assertEquals(message, new String(cache.toByteArray()));
+  }
+
+  private static void echo(Socket socket) {
+    try {
+      InputStream inputStream = socket.getInputStream();
+      OutputStream outputStream = socket.getOutputStream();
+      byte[] buffer = new byte[1024];
+      int length;
+      while ((length = inputStream.read(buffer)) > 0) {
+        outputStream.write(buffer, 0, length);
+        if (buffer[length - 1] == '\n') {
+          break;
+        }
+      }
+    } catch (IOException ignored) {
+      // Test will fail.
+    } finally {
+      ResourceUtil.close(socket);
+    }
+  }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright 2015-2025 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package sockslib.test.server;
+
+import org.junit.Assert;
+import org.junit.Test;
+import sockslib.client.Socks5;
+import sockslib.client.SocksSocket;
+import sockslib.server.SessionTimeoutException;
+import sockslib.server.SocksProxyServer;
+import sockslib.server.SocksServerBuilder;
+import sockslib.utils.ResourceUtil;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The class <code>TestSessionDeadlines</code> tests handshake and idle deadlines of sessions.
+ *
+ * @version 1.0
+ */
+public class TestSessionDeadlines {
+
+  private static final int SOCKS_SERVER_PORT = 1083;
+
+  @Test
+  public void testHandshakeTimeout() throws Exception {
+    BlockingQueue<Exception> exceptions = new LinkedBlockingQueue<>();
+    BlockingQueue<Long> closedSessions = new LinkedBlockingQueue<>();
+    SocksProxyServer server = SocksServerBuilder.newSocks5ServerBuilder()
+        .setBindAddr(InetAddress.getLoopbackAddress()).setBindPort(SOCKS_SERVER_PORT)
+        .setHandshakeTimeout(200, TimeUnit.MILLISECONDS).build();
+    server.getSessionManager().onException("test", (session, e) -> exceptions.add(e));
+    server.getSessionManager()
+        .onSessionClose("test", session -> closedSessions.add(session.getId()));
+    server.start();
+    Socket socket = null;
+    try {
+      // The client never sends its greeting.
+      socket = new Socket(InetAddress.getLoopbackAddress(), SOCKS_SERVER_PORT);
+      socket.setSoTimeout(5000);
+      Assert.assertEquals(-1, socket.getInputStream().read());
+
+      Exception exception = exceptions.poll(5, TimeUnit.SECONDS);
+      Assert.assertTrue(exception instanceof SessionTimeoutException);
+      Assert.assertEquals(SessionTimeoutException.Type.HANDSHAKE,
+          ((SessionTimeoutException) exception).getType());
+      Assert.assertNotNull(closedSessions.poll(5, TimeUnit.SECONDS));
+      Assert.assertNull(exceptions.poll(100, TimeUnit.MILLISECONDS));
+    } finally {
+      ResourceUtil.close(socket);
+      server.shutdown();
+    }
+  }
+
+  @Test
+  public void testIdleTimeout() throws Exception {
+    BlockingQueue<Exception> exceptions = new LinkedBlockingQueue<>();
+    final ServerSocket echoServer = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+    Thread echoThread = new Thread(() -> echo(echoServer), "echo-server");
+    echoThread.setDaemon(true);
+    echoThread.start();
+    // Relay reads would time out after 200 ms without the idle deadline.
+    SocksProxyServer server = SocksServerBuilder.newSocks5ServerBuilder()
+        .setBindAddr(InetAddress.getLoopbackAddress()).setBindPort(SOCKS_SERVER_PORT)
+        .setTimeout(200).setIdleTimeout(600, TimeUnit.MILLISECONDS).build();
+    server.getSessionManager().onException("test", (session, e) -> exceptions.add(e));
+    server.start();
+    Socket socket = null;
+    try {
+      socket = new SocksSocket(new Socks5(new InetSocketAddress("127.0.0.1", SOCKS_SERVER_PORT)),
+          new InetSocketAddress("127.0.0.1", echoServer.getLocalPort()));
+      socket.setSoTimeout(5000);
+      InputStream inputStream = socket.getInputStream();
+      OutputStream outputStream = socket.getOutputStream();
+      for (int i = 0; i < 3; i++) {
+        Thread.sleep(400);
+        outputStream.write(i);
+        outputStream.flush();
+        Assert.assertEquals(i, inputStream.read());
+      }
+
+      long start = System.nanoTime();
+      Assert.assertEquals(-1, inputStream.read());
+      Assert.assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(500));
+      Exception exception = exceptions.poll(5, TimeUnit.SECONDS);
+      Assert.assertTrue(exception instanceof SessionTimeoutException);
+      Assert.assertEquals(SessionTimeoutException.Type.IDLE,
+          ((SessionTimeoutException) exception).getType());
+    } finally {
+      ResourceUtil.close(socket);
+      ResourceUtil.close(echoServer);
+      server.shutdown();
+    }
+  }
+
+  private static void echo(ServerSocket serverSocket) {
+    try (Socket socket = serverSocket.accept()) {
+      InputStream inputStream = socket.getInputStream();
+      OutputStream outputStream = socket.getOutputStream();
+      int b;
+      while ((b = inputStream.read()) != -1) {
+        outputStream.write(b);
+        outputStream.flush();
+      }
+    } catch (IOException e) {
+      // The server socket or the connection is closed.
+    }
+  }
+}
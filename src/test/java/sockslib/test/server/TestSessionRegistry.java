@@ -0,0 +1,123 @@
+/*
+ * Copyright 2015-2025 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package sockslib.test.server;
+
+import org.junit.Assert;
+import org.junit.Test;
+import sockslib.server.Session;
+import sockslib.server.SessionRegistry;
+
+import java.lang.reflect.Proxy;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The class <code>TestSessionRegistry</code> is a test class for {@link SessionRegistry}.
+ *
+ * @version 1.0
+ */
+public class TestSessionRegistry {
+
+  @Test
+  public void testIndexes() throws Exception {
+    SessionRegistry registry = new SessionRegistry();
+    InetAddress client1 = InetAddress.getByName("10.0.0.1");
+    InetAddress client2 = InetAddress.getByName("10.0.0.2");
+    Session session1 = newSession(registry.nextId(), client1);
+    Session session2 = newSession(registry.nextId(), client1);
+    Session session3 = newSession(registry.nextId(), client2);
+    registry.add(session1);
+    registry.add(session2);
+    registry.add(session3);
+    registry.setUser(session2, "alice");
+    registry.setUser(session3, "alice");
+
+    Assert.assertSame(session2, registry.get(session2.getId()));
+    Assert.assertEquals(2, registry.getByClientAddress(client1).size());
+    Assert.assertEquals(2, registry.getByUser("alice").size());
+    Assert.assertEquals("alice", registry.getUser(session3.getId()));
+
+    // Sessions remove themselves through the map view.
+    Map<Long, Session> map = registry.asMap();
+    Assert.assertSame(session2, map.remove(session2.getId()));
+    Assert.assertEquals(1, registry.getByClientAddress(client1).size());
+    Assert.assertEquals(1, registry.getByUser("alice").size());
+    Assert.assertEquals(2, map.size());
+
+    registry.remove(session3.getId());
+    Assert.assertTrue(registry.getByClientAddress(client2).isEmpty());
+    Assert.assertTrue(registry.getByUser("alice").isEmpty());
+    Assert.assertNull(registry.getUser(session3.getId()));
+  }
+
+  @Test
+  public void testConcurrentAddAndRemove() throws Exception {
+    final SessionRegistry registry = new SessionRegistry();
+    final InetAddress client = InetAddress.getByName("10.0.0.1");
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    List<Future<?>> futures = new ArrayList<>();
+    for (int i = 0; i < 8; i++) {
+      futures.add(executor.submit(() -> {
+        for (int j = 0; j < 1000; j++) {
+          Session session = newSession(registry.nextId(), client);
+          registry.add(session);
+          registry.setUser(session, "user");
+          // Iterating while others modify the registry must be safe.
+          for (Session ignored : registry.asMap().values()) {
+            break;
+          }
+          registry.asMap().remove(session.getId());
+        }
+      }));
+    }
+    for (Future<?> future : futures) {
+      future.get();
+    }
+    executor.shutdown();
+    executor.awaitTermination(10, TimeUnit.SECONDS);
+
+    Assert.assertEquals(8001, registry.nextId());
+    Assert.assertEquals(0, registry.size());
+    Assert.assertTrue(registry.getByClientAddress(client).isEmpty());
+    Assert.assertTrue(registry.getByUser("user").isEmpty());
+  }
+
+  private static Session newSession(final long id, InetAddress clientAddress) {
+    final InetSocketAddress socketAddress = new InetSocketAddress(clientAddress, 1234);
+    return (Session) Proxy.newProxyInstance(Session.class.getClassLoader(),
+        new Class<?>[] {Session.class}, (proxy, method, args) -> {
+          switch (method.getName()) {
+            case "getId":
+              return id;
+            case "getClientAddress":
+              return socketAddress;
+            case "hashCode":
+              return System.identityHashCode(proxy);
+            case "equals":
+              return proxy == args[0];
+            case "toString":
+              return "SESSION[" + id + "]";
+            default:
+              throw new UnsupportedOperationException(method.getName());
+          }
+        });
+  }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2015-2025 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package sockslib.test.server.acl;
+
+import org.junit.Test;
+import sockslib.server.acl.AccessControlList;
+import sockslib.server.acl.AccessControlList.Action;
+import sockslib.server.acl.CIDRTrie;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.net.InetAddress;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The class <code>TestAccessControlList</code> tests {@link CIDRTrie} and
+ * {@link AccessControlList}.
+ *
+ * @version 1.0
+ */
+public class TestAccessControlList {
+
+  @Test
+  public void testLongestPrefixMatch() throws IOException {
+    CIDRTrie<String> trie = new CIDRTrie<>();
+    trie.put("10.0.0.0/8", "a");
+    trie.put("10.1.0.0/16", "b");
+    trie.put("10.1.2.3", "c");
+    trie.put("2001:db8::/32", "d");
+    trie.put("2001:db8:1::/48", "e");
+    assertEquals(5, trie.size());
+    assertEquals("a", trie.lookup(InetAddress.getByName("10.2.0.1")));
+    assertEquals("b", trie.lookup(InetAddress.getByName("10.1.2.4")));
+    assertEquals("c", trie.lookup(InetAddress.getByName("10.1.2.3")));
+    assertNull(trie.lookup(InetAddress.getByName("11.0.0.1")));
+    assertEquals("d", trie.lookup(InetAddress.getByName("2001:db8:2::1")));
+    assertEquals("e", trie.lookup(InetAddress.getByName("2001:db8:1::1")));
+    assertNull(trie.lookup(InetAddress.getByName("::1")));
+
+    trie.put("0.0.0.0/0", "default");
+    assertEquals("default", trie.lookup(InetAddress.getByName("11.0.0.1")));
+    assertNull(trie.lookup(InetAddress.getByName("::1")));
+  }
+
+  @Test
+  public void testParseRules() throws IOException {
+    String rules = "# private networks\n"
+        + "deny 10.0.0.0/8\n"
+        + "deny fc00::/7\n"
+        + "\n"
+        + "allow 10.1.2.3\n"
+        + "192.168.0.0/16\n";
+    AccessControlList acl = AccessControlList.parse(new StringReader(rules), Action.ALLOW);
+    assertEquals(4, acl.size());
+    assertFalse(acl.isAllowed(InetAddress.getByName("10.9.9.9")));
+    assertTrue(acl.isAllowed(InetAddress.getByName("10.1.2.3")));
+    assertFalse(acl.isAllowed(InetAddress.getByName("fd00::1")));
+    // A rule without an action gets the opposite of the default action.
+    assertFalse(acl.isAllowed(InetAddress.getByName("192.168.1.1")));
+    assertTrue(acl.isAllowed(InetAddress.getByName("8.8.8.8")));
+
+    AccessControlList whitelist =
+        AccessControlList.parse(new StringReader("127.0.0.0/8\n::1\n"), Action.DENY);
+    assertTrue(whitelist.isAllowed(InetAddress.getByName("127.0.0.1")));
+    assertTrue(whitelist.isAllowed(InetAddress.getByName("::1")));
+    assertFalse(whitelist.isAllowed(InetAddress.getByName("8.8.8.8")));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidRule() throws IOException {
+    AccessControlList.parse(new StringReader("deny example.com\n"), Action.ALLOW);
+  }
+
+}
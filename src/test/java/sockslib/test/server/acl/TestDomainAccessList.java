@@ -0,0 +1,79 @@
+/*
+ * Copyright 2015-2025 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package sockslib.test.server.acl;
+
+import org.junit.Test;
+import sockslib.server.acl.AccessControlList.Action;
+import sockslib.server.acl.DomainAccessList;
+import sockslib.server.acl.DomainTrie;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The class <code>TestDomainAccessList</code> tests {@link DomainTrie} and
+ * {@link DomainAccessList}.
+ *
+ * @version 1.0
+ */
+public class TestDomainAccessList {
+
+  @Test
+  public void testSuffixMatch() {
+    DomainTrie<String> trie = new DomainTrie<>();
+    trie.put("example.com", "exact");
+    trie.put("*.example.com", "wildcard");
+    trie.put(".ads.example.com", "suffix");
+    trie.put(".org", "org");
+    assertEquals(4, trie.size());
+    assertEquals("exact", trie.lookup("example.com"));
+    assertEquals("exact", trie.lookup("EXAMPLE.com."));
+    assertEquals("wildcard", trie.lookup("www.example.com"));
+    assertEquals("suffix", trie.lookup("ads.example.com"));
+    assertEquals("suffix", trie.lookup("x.y.ads.example.com"));
+    assertEquals("org", trie.lookup("org"));
+    assertEquals("org", trie.lookup("apache.org"));
+    assertNull(trie.lookup("example.net"));
+    assertNull(trie.lookup("badexample.com"));
+  }
+
+  @Test
+  public void testParseRules() throws IOException {
+    String rules = "# trackers\n"
+        + "deny .tracker.net\n"
+        + "allow safe.tracker.net\n"
+        + "\n"
+        + "*.casino.com\n";
+    DomainAccessList acl = DomainAccessList.parse(new StringReader(rules), Action.ALLOW);
+    assertEquals(3, acl.size());
+    assertFalse(acl.isAllowed("tracker.net"));
+    assertFalse(acl.isAllowed("a.tracker.net"));
+    assertTrue(acl.isAllowed("safe.tracker.net"));
+    // A rule without an action gets the opposite of the default action.
+    assertFalse(acl.isAllowed("www.casino.com"));
+    assertTrue(acl.isAllowed("casino.com"));
+    assertTrue(acl.isAllowed("example.com"));
+
+    assertFalse(acl.isAllowed("A.Tracker.Net"));
+    assertFalse(acl.isAllowed("a.tracker.net"));
+    assertTrue(acl.getCacheStats().hitCount() > 0);
+  }
+
+}
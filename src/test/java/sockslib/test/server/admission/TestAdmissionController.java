@@ -0,0 +1,138 @@
+/*
+ * Copyright 2015-2025 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package sockslib.test.server.admission;
+
+import org.junit.Assert;
+import org.junit.Test;
+import sockslib.server.BasicSocksProxyServer;
+import sockslib.server.SocksProxyServer;
+import sockslib.server.SocksServerBuilder;
+import sockslib.server.admission.AdmissionController;
+import sockslib.server.admission.HeapLoadShedder;
+import sockslib.utils.ResourceUtil;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * The class <code>TestAdmissionController</code> is a test class for {@link AdmissionController}.
+ *
+ * @version 1.0
+ */
+public class TestAdmissionController {
+
+  private static final int SOCKS_SERVER_PORT = 1082;
+
+  @Test
+  public void testLimits() throws IOException {
+    InetAddress client1 = InetAddress.getByName("10.0.0.1");
+    InetAddress client2 = InetAddress.getByName("10.0.0.2");
+    AdmissionController admissionController = new AdmissionController();
+    admissionController.setMaxSessions(3);
+    admissionController.setMaxSessionsPerAddress(2);
+
+    Assert.assertTrue(admissionController.tryAcquire(client1));
+    Assert.assertTrue(admissionController.tryAcquire(client1));
+    Assert.assertFalse(admissionController.tryAcquire(client1));
+    Assert.assertTrue(admissionController.tryAcquire(client2));
+    Assert.assertFalse(admissionController.tryAcquire(client2));
+    Assert.assertEquals(3, admissionController.getSessionCount());
+    Assert.assertEquals(3, admissionController.getQueuedHandshakeCount());
+    Assert.assertEquals(2, admissionController.getRejectedCount());
+
+    admissionController.onHandshakeStarted();
+    admissionController.release(client1);
+    Assert.assertEquals(1, admissionController.getSessionCount(client1));
+    Assert.assertTrue(admissionController.tryAcquire(client2));
+    Assert.assertEquals(2, admissionController.getSessionCount(client2));
+  }
+
+  @Test
+  public void testQueuedHandshakesAndShedding() throws IOException {
+    InetAddress client = InetAddress.getByName("10.0.0.1");
+    final AtomicBoolean overloaded = new AtomicBoolean();
+    AdmissionController admissionController = new AdmissionController();
+    admissionController.setMaxQueuedHandshakes(1);
+    admissionController.addLoadShedder(overloaded::get);
+
+    Assert.assertTrue(admissionController.tryAcquire(client));
+    Assert.assertFalse(admissionController.tryAcquire(client));
+    admissionController.onHandshakeStarted();
+    Assert.assertTrue(admissionController.tryAcquire(client));
+    admissionController.onHandshakeStarted();
+
+    // The tenured heap can't stay above its max after a collection.
+    admissionController.addLoadShedder(new HeapLoadShedder(1));
+    Assert.assertTrue(admissionController.tryAcquire(client));
+    admissionController.onHandshakeStarted();
+
+    overloaded.set(true);
+    Assert.assertFalse(admissionController.tryAcquire(client));
+    Assert.assertEquals(1, admissionController.getShedCount());
+    Assert.assertEquals(3, admissionController.getSessionCount());
+  }
+
+  @Test
+  public void testServerRejectsAndReleases() throws Exception {
+    AdmissionController admissionController = new AdmissionController();
+    admissionController.setMaxSessionsPerAddress(1);
+    admissionController.setRejectMode(AdmissionController.RejectMode.REPLY);
+    SocksProxyServer server = SocksServerBuilder.newSocks5ServerBuilder()
+        .setBindAddr(InetAddress.getLoopbackAddress()).setBindPort(SOCKS_SERVER_PORT)
+        .setAdmissionController(admissionController).build();
+    Assert.assertSame(admissionController,
+        ((BasicSocksProxyServer) server).getAdmissionController());
+    server.start();
+    Socket first = null;
+    Socket second = null;
+    try {
+      // The first client holds its session without sending the greeting.
+      first = new Socket(InetAddress.getLoopbackAddress(), SOCKS_SERVER_PORT);
+      waitForSessions(admissionController, 1);
+
+      second = new Socket(InetAddress.getLoopbackAddress(), SOCKS_SERVER_PORT);
+      second.getOutputStream().write(new byte[] {0x05, 0x02, 0x00, 0x02});
+      InputStream inputStream = second.getInputStream();
+      Assert.assertEquals(0x05, inputStream.read());
+      Assert.assertEquals(0xFF, inputStream.read());
+      Assert.assertEquals(-1, inputStream.read());
+      Assert.assertEquals(1, admissionController.getRejectedCount());
+
+      // A rejected client which never sends its greeting is closed without a reply.
+      try (Socket silent = new Socket(InetAddress.getLoopbackAddress(), SOCKS_SERVER_PORT)) {
+        silent.setSoTimeout(5000);
+        Assert.assertEquals(-1, silent.getInputStream().read());
+      }
+      Assert.assertEquals(2, admissionController.getRejectedCount());
+
+      first.close();
+      waitForSessions(admissionController, 0);
+    } finally {
+      ResourceUtil.close(first);
+      ResourceUtil.close(second);
+      server.shutdown();
+    }
+  }
+
+  private static void waitForSessions(AdmissionController admissionController, int count)
+      throws InterruptedException {
+    for (int i = 0; i < 100 && admissionController.getSessionCount() != count; i++) {
+      Thread.sleep(20);
+    }
+    Assert.assertEquals(count, admissionController.getSessionCount());
+  }
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright 2015-2025 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package sockslib.test.server.connector;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import sockslib.server.connector.HappyEyeballsConnector;
+import sockslib.server.msg.ServerReply;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The class <code>TestHappyEyeballsConnector</code> is a test class for
+ * {@link HappyEyeballsConnector}.
+ *
+ * @version 1.0
+ */
+public class TestHappyEyeballsConnector {
+
+  private ServerSocket serverSocket;
+  private InetAddress loopback;
+  private int closedPort;
+
+  @Before
+  public void setUp() throws IOException {
+    loopback = InetAddress.getByName("127.0.0.1");
+    serverSocket = new ServerSocket(0, 50, loopback);
+    ServerSocket closed = new ServerSocket(0, 50, loopback);
+    closedPort = closed.getLocalPort();
+    closed.close();
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    serverSocket.close();
+  }
+
+  @Test
+  public void testFallbackToReachableAddress() throws IOException {
+    HappyEyeballsConnector connector = new HappyEyeballsConnector();
+    connector.setAttemptDelay(5000);
+    // The server only listens on 127.0.0.1, so 127.0.0.2 refuses the connection.
+    InetAddress refused = InetAddress.getByName("127.0.0.2");
+    long start = System.currentTimeMillis();
+    Socket socket =
+        connector.connect(new InetAddress[] {refused, loopback}, serverSocket.getLocalPort());
+    try {
+      Assert.assertEquals(loopback, socket.getInetAddress());
+      // The next attempt starts as soon as the previous one fails.
+      Assert.assertTrue(System.currentTimeMillis() - start < 2000);
+      Assert.assertEquals(1, connector.getStats(loopback).getSuccessCount());
+      Assert.assertEquals(1, connector.getStats(refused).getFailureCount());
+    } finally {
+      socket.close();
+    }
+  }
+
+  @Test
+  public void testAllAddressesFail() {
+    HappyEyeballsConnector connector = new HappyEyeballsConnector();
+    try {
+      connector.connect(new InetAddress[] {loopback, loopback}, closedPort);
+      Assert.fail("Should throw IOException");
+    } catch (IOException expected) {
+    }
+    Assert.assertTrue(connector.getStats(loopback).isLastFailed());
+  }
+
+  @Test
+  public void testConnectTimeout() throws IOException {
+    HappyEyeballsConnector connector = new HappyEyeballsConnector();
+    connector.setConnectTimeout(300);
+    // A server which never accepts, once its backlog is full new SYNs are dropped.
+    List<SocketChannel> pending = new ArrayList<>();
+    try (ServerSocket blackhole = new ServerSocket(0, 1, loopback)) {
+      for (int i = 0; i < 8; i++) {
+        SocketChannel channel = SocketChannel.open();
+        channel.configureBlocking(false);
+        channel.connect(blackhole.getLocalSocketAddress());
+        pending.add(channel);
+      }
+      try {
+        connector.connect(new InetAddress[] {loopback}, blackhole.getLocalPort());
+        Assert.fail("Connecting a server with a full backlog should time out");
+      } catch (SocketTimeoutException e) {
+        // The blocking handler replies TTL expired, like the NIO server.
+        Assert.assertEquals(ServerReply.TTL_EXPIRED, ServerReply.fromConnectException(e));
+      }
+    } finally {
+      for (SocketChannel channel : pending) {
+        channel.close();
+      }
+    }
+  }
+
+  @Test
+  public void testSortByHistory() throws IOException {
+    HappyEyeballsConnector connector = new HappyEyeballsConnector();
+    InetAddress ipv4 = InetAddress.getByName("127.0.0.2");
+    InetAddress ipv6 = InetAddress.getByName("::2");
+    InetAddress ipv4Other = InetAddress.getByName("127.0.0.3");
+    // Address families are interleaved.
+    List<InetAddress> sorted = connector.sort(new InetAddress[] {ipv4, ipv4Other, ipv6});
+    Assert.assertEquals(ipv4, sorted.get(0));
+    Assert.assertEquals(ipv6, sorted.get(1));
+    Assert.assertEquals(ipv4Other, sorted.get(2));
+
+    // An address which failed goes last.
+    try {
+      connector.connect(new InetAddress[] {loopback}, closedPort);
+      Assert.fail("Should throw IOException");
+    } catch (IOException expected) {
+    }
+    sorted = connector.sort(new InetAddress[] {loopback, ipv4});
+    Assert.assertEquals(ipv4, sorted.get(0));
+    Assert.assertEquals(loopback, sorted.get(1));
+  }
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright 2015-2025 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package sockslib.test.server.dns;
+
+import org.junit.Assert;
+import org.junit.Test;
+import sockslib.server.dns.CachingDnsResolver;
+import sockslib.server.dns.DnsResolver;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The class <code>TestCachingDnsResolver</code> is a test class for {@link CachingDnsResolver}.
+ *
+ * @version 1.0
+ */
+public class TestCachingDnsResolver {
+
+  @Test
+  public void testCache() throws UnknownHostException {
+    FakeResolver fakeResolver = new FakeResolver();
+    CachingDnsResolver resolver = new CachingDnsResolver(fakeResolver, 60, 60, 100);
+    InetAddress address = resolver.resolve("example.com");
+    Assert.assertEquals("10.0.0.1", address.getHostAddress());
+    Assert.assertSame(address, resolver.resolve("EXAMPLE.com"));
+    Assert.assertEquals(1, fakeResolver.lookups.get());
+    Assert.assertEquals(1, resolver.getHitCount());
+    Assert.assertEquals(0.5, resolver.getHitRate(), 0.001);
+  }
+
+  @Test
+  public void testNegativeCache() {
+    FakeResolver fakeResolver = new FakeResolver();
+    CachingDnsResolver resolver = new CachingDnsResolver(fakeResolver, 60, 60, 100);
+    for (int i = 0; i < 3; i++) {
+      try {
+        resolver.resolve("unknown.invalid");
+        Assert.fail("Should throw UnknownHostException");
+      } catch (UnknownHostException expected) {
+      }
+    }
+    Assert.assertEquals(1, fakeResolver.lookups.get());
+    Assert.assertEquals(2, resolver.getNegativeHitCount());
+    Assert.assertEquals(1, resolver.getFailureCount());
+  }
+
+  @Test
+  public void testDisabledCache() throws UnknownHostException {
+    FakeResolver fakeResolver = new FakeResolver();
+    CachingDnsResolver resolver = new CachingDnsResolver(fakeResolver, 0, 0, 100);
+    resolver.resolve("example.com");
+    resolver.resolve("example.com");
+    Assert.assertEquals(2, fakeResolver.lookups.get());
+  }
+
+  @Test
+  public void testCoalesceConcurrentLookups() throws Exception {
+    FakeResolver fakeResolver = new FakeResolver();
+    fakeResolver.pending = new CompletableFuture<>();
+    CachingDnsResolver resolver = new CachingDnsResolver(fakeResolver, 60, 60, 100);
+    CompletableFuture<InetAddress> first = resolver.resolveAsync("example.com");
+    CompletableFuture<InetAddress> second = resolver.resolveAsync("example.com");
+    Assert.assertFalse(first.isDone());
+    Assert.assertEquals(1, fakeResolver.lookups.get());
+    Assert.assertEquals(1, resolver.getCoalescedCount());
+
+    InetAddress address = InetAddress.getByAddress("example.com", new byte[] {10, 0, 0, 2});
+    fakeResolver.pending.complete(new InetAddress[] {address});
+    Assert.assertSame(address, first.get());
+    Assert.assertSame(address, second.get());
+    Assert.assertSame(address, resolver.resolveAsync("example.com").get());
+    Assert.assertEquals(1, fakeResolver.lookups.get());
+  }
+
+  @Test(expected = UnknownHostException.class)
+  public void testAsyncFailure() throws Throwable {
+    CachingDnsResolver resolver = new CachingDnsResolver(new FakeResolver(), 60, 60, 100);
+    try {
+      resolver.resolveAsync("unknown.invalid").get();
+    } catch (ExecutionException e) {
+      throw e.getCause();
+    }
+  }
+
+  /**
+   * Resolves every host except the ones end with <code>.invalid</code> to 10.0.0.1.
+   */
+  private static class FakeResolver implements DnsResolver {
+
+    private final AtomicInteger lookups = new AtomicInteger();
+
+    /**
+     * If it's set, asynchronous lookups return it.
+     */
+    private CompletableFuture<InetAddress[]> pending;
+
+    @Override
+    public InetAddress resolve(String host) throws UnknownHostException {
+      return resolveAll(host)[0];
+    }
+
+    @Override
+    public CompletableFuture<InetAddress> resolveAsync(String host) {
+      return resolveAllAsync(host).thenApply(addresses -> addresses[0]);
+    }
+
+    @Override
+    public InetAddress[] resolveAll(String host) throws UnknownHostException {
+      lookups.incrementAndGet();
+      if (host.endsWith(".invalid")) {
+        throw new UnknownHostException(host);
+      }
+      return new InetAddress[] {InetAddress.getByAddress(host, new byte[] {10, 0, 0, 1})};
+    }
+
+    @Override
+    public CompletableFuture<InetAddress[]> resolveAllAsync(String host) {
+      if (pending != null) {
+        lookups.incrementAndGet();
+        return pending;
+      }
+      CompletableFuture<InetAddress[]> future = new CompletableFuture<>();
+      try {
+        future.complete(resolveAll(host));
+      } catch (UnknownHostException e) {
+        future.completeExceptionally(e);
+      }
+      return future;
+    }
+  }
+}
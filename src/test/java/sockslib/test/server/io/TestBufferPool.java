@@ -0,0 +1,80 @@
+/*
+ * Copyright 2015-2025 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package sockslib.test.server.io;
+
+import org.junit.Assert;
+import org.junit.Test;
+import sockslib.server.io.DirectBufferPool;
+import sockslib.server.io.HeapBufferPool;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The class <code>TestBufferPool</code> is a test class for {@link sockslib.server.io.BufferPool}.
+ *
+ * @version 1.0
+ */
+public class TestBufferPool {
+
+  @Test
+  public void testSlabClass() {
+    HeapBufferPool pool = new HeapBufferPool(new int[] {4096, 16384, 65536}, 2);
+    Assert.assertEquals(4096, pool.acquire(1).length);
+    Assert.assertEquals(16384, pool.acquire(4097).length);
+    Assert.assertEquals(65536, pool.acquire(65536).length);
+    // Larger than any slab class.
+    Assert.assertEquals(100000, pool.acquire(100000).length);
+    Assert.assertEquals(16384, pool.nextSize(4096));
+    Assert.assertEquals(65536, pool.nextSize(65536));
+  }
+
+  @Test
+  public void testReuse() {
+    HeapBufferPool pool = new HeapBufferPool(new int[] {4096, 16384}, 1);
+    byte[] buffer = pool.acquire(4096);
+    Assert.assertEquals(1, pool.getMissCount());
+    Assert.assertEquals(1, pool.getInUseCount());
+    pool.release(buffer);
+    Assert.assertEquals(1, pool.getIdleCount());
+    Assert.assertEquals(4096, pool.getIdleBytes());
+    Assert.assertSame(buffer, pool.acquire(100));
+    Assert.assertEquals(1, pool.getMissCount());
+    Assert.assertEquals(2, pool.getAcquireCount());
+  }
+
+  @Test
+  public void testDiscard() {
+    HeapBufferPool pool = new HeapBufferPool(new int[] {4096}, 1);
+    byte[] buffer1 = pool.acquire(4096);
+    byte[] buffer2 = pool.acquire(4096);
+    pool.release(buffer1);
+    pool.release(buffer2);
+    pool.release(new byte[100]);
+    Assert.assertEquals(1, pool.getIdleCount());
+    Assert.assertEquals(2, pool.getDiscardCount());
+  }
+
+  @Test
+  public void testDirectBufferIsCleared() {
+    DirectBufferPool pool = new DirectBufferPool(new int[] {4096}, 4);
+    ByteBuffer buffer = pool.acquire(4096);
+    Assert.assertTrue(buffer.isDirect());
+    buffer.put((byte) 1).flip();
+    pool.release(buffer);
+    buffer = pool.acquire(4096);
+    Assert.assertEquals(0, buffer.position());
+    Assert.assertEquals(4096, buffer.limit());
+  }
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright 2015-2025 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package sockslib.test.server.listener;
+
+import org.junit.Assert;
+import org.junit.Test;
+import sockslib.server.BasicSessionManager;
+import sockslib.server.Session;
+import sockslib.server.listener.SessionCloseListener;
+import sockslib.server.listener.SessionEventDispatcher;
+import sockslib.server.listener.SynchronousListener;
+
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The class <code>TestSessionEventDispatcher</code> is a test class for
+ * {@link SessionEventDispatcher}.
+ *
+ * @version 1.0
+ */
+public class TestSessionEventDispatcher {
+
+  @Test
+  public void testOrderAndMetrics() throws InterruptedException {
+    SessionEventDispatcher dispatcher =
+        new SessionEventDispatcher(4, 1024, SessionEventDispatcher.OverflowPolicy.BLOCK);
+    final List<Integer> events = Collections.synchronizedList(new ArrayList<>());
+    for (int i = 0; i < 5000; i++) {
+      final int event = i;
+      Assert.assertTrue(dispatcher.publish(7, () -> events.add(event)));
+    }
+    dispatcher.shutdown();
+    Assert.assertTrue(dispatcher.awaitTermination(10, TimeUnit.SECONDS));
+    Assert.assertEquals(5000, events.size());
+    for (int i = 0; i < events.size(); i++) {
+      Assert.assertEquals(Integer.valueOf(i), events.get(i));
+    }
+    Assert.assertEquals(5000, dispatcher.getPublishedCount());
+    Assert.assertEquals(5000, dispatcher.getDispatchedCount());
+    Assert.assertEquals(0, dispatcher.getDroppedCount());
+    Assert.assertEquals(0, dispatcher.getPendingCount());
+    Assert.assertTrue(dispatcher.getMaxLag(TimeUnit.NANOSECONDS) > 0);
+  }
+
+  @Test
+  public void testPublishWhileShuttingDown() throws Exception {
+    final SessionEventDispatcher dispatcher =
+        new SessionEventDispatcher(2, 64, SessionEventDispatcher.OverflowPolicy.BLOCK);
+    final AtomicInteger dispatched = new AtomicInteger();
+    List<Thread> publishers = new ArrayList<>();
+    for (int i = 0; i < 4; i++) {
+      final long key = i;
+      Thread publisher = new Thread(() -> {
+        for (int j = 0; j < 20000; j++) {
+          dispatcher.publish(key, dispatched::incrementAndGet);
+        }
+      });
+      publishers.add(publisher);
+      publisher.start();
+    }
+    Thread.sleep(5);
+    dispatcher.shutdown();
+    for (Thread publisher : publishers) {
+      publisher.join();
+    }
+    Assert.assertTrue(dispatcher.awaitTermination(5, TimeUnit.SECONDS));
+    // No event is stranded in a ring buffer whose worker has stopped.
+    Assert.assertEquals(80000, dispatched.get());
+    Assert.assertEquals(0, dispatcher.getPendingCount());
+  }
+
+  @Test
+  public void testDropWhenFull() throws InterruptedException {
+    SessionEventDispatcher dispatcher =
+        new SessionEventDispatcher(1, 2, SessionEventDispatcher.OverflowPolicy.DROP);
+    final CountDownLatch started = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+    dispatcher.publish(1, () -> {
+      started.countDown();
+      try {
+        release.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    });
+    Assert.assertTrue(started.await(5, TimeUnit.SECONDS));
+    Assert.assertTrue(dispatcher.publish(1, () -> {
+    }));
+    Assert.assertTrue(dispatcher.publish(1, () -> {
+    }));
+    Assert.assertFalse(dispatcher.publish(1, () -> {
+    }));
+    Assert.assertEquals(1, dispatcher.getDroppedCount());
+    Assert.assertEquals(2, dispatcher.getPendingCount());
+    release.countDown();
+    dispatcher.shutdown();
+    Assert.assertTrue(dispatcher.awaitTermination(5, TimeUnit.SECONDS));
+    Assert.assertEquals(3, dispatcher.getDispatchedCount());
+  }
+
+  @Test
+  public void testSessionManager() throws Exception {
+    SessionEventDispatcher dispatcher = new SessionEventDispatcher();
+    BasicSessionManager sessionManager = new BasicSessionManager();
+    sessionManager.setEventDispatcher(dispatcher);
+    final Thread caller = Thread.currentThread();
+    final List<Thread> syncThreads = Collections.synchronizedList(new ArrayList<>());
+    final List<Thread> asyncThreads = Collections.synchronizedList(new ArrayList<>());
+    final CountDownLatch closed = new CountDownLatch(1);
+    sessionManager.onSessionClose("sync", new SyncCloseListener(syncThreads));
+    sessionManager.onSessionClose("async", session -> {
+      asyncThreads.add(Thread.currentThread());
+      closed.countDown();
+    });
+    try (ServerSocket serverSocket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+         Socket client = new Socket(InetAddress.getLoopbackAddress(), serverSocket.getLocalPort());
+         Socket socket = serverSocket.accept()) {
+      Session session = sessionManager.newSession(socket);
+      sessionManager.sessionOnClose(session);
+      Assert.assertEquals(Collections.singletonList(caller), syncThreads);
+      Assert.assertTrue(closed.await(5, TimeUnit.SECONDS));
+      Assert.assertNotSame(caller, asyncThreads.get(0));
+    } finally {
+      dispatcher.shutdown();
+    }
+  }
+
+  private static class SyncCloseListener implements SessionCloseListener, SynchronousListener {
+
+    private final List<Thread> threads;
+
+    SyncCloseListener(List<Thread> threads) {
+      this.threads = threads;
+    }
+
+    @Override
+    public void onClose(Session session) {
+      threads.add(Thread.currentThread());
+    }
+  }
+}
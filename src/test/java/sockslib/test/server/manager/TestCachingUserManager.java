@@ -0,0 +1,115 @@
+/*
+ * Copyright 2015-2025 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package sockslib.test.server.manager;
+
+import org.junit.Assert;
+import org.junit.Test;
+import sockslib.server.manager.CachingUserManager;
+import sockslib.server.manager.MemoryBasedUserManager;
+import sockslib.server.manager.User;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The class <code>TestCachingUserManager</code> is a test class for {@link CachingUserManager}.
+ *
+ * @version 1.0
+ */
+public class TestCachingUserManager {
+
+  @Test
+  public void testCheck() {
+    CountingUserManager memory = new CountingUserManager();
+    memory.addUser("alice", "secret");
+    CachingUserManager userManager = new CachingUserManager(memory);
+
+    Assert.assertNotNull(userManager.check("alice", "secret"));
+    Assert.assertNotNull(userManager.check("alice", "secret"));
+    Assert.assertNotNull(userManager.check("alice", "secret"));
+    // MemoryBasedUserManager.check() calls find() too.
+    Assert.assertEquals(2, memory.finds.get());
+    Assert.assertEquals(1, memory.checks.get());
+    Assert.assertEquals(2, userManager.getCheckHitCount());
+
+    // A wrong password is never answered from the cache.
+    Assert.assertNull(userManager.check("alice", "wrong"));
+    Assert.assertEquals(2, memory.checks.get());
+
+    // Unknown users are cached too.
+    Assert.assertNull(userManager.check("bob", "secret"));
+    Assert.assertNull(userManager.check("bob", "secret"));
+    Assert.assertEquals(4, memory.finds.get());
+    Assert.assertEquals(2, userManager.getNegativeHitCount());
+    Assert.assertEquals(2, memory.checks.get());
+  }
+
+  @Test
+  public void testInvalidation() {
+    CountingUserManager memory = new CountingUserManager();
+    memory.addUser("alice", "secret");
+    CachingUserManager userManager = new CachingUserManager(memory);
+    Assert.assertNull(userManager.check("bob", "secret"));
+    Assert.assertNotNull(userManager.check("alice", "secret"));
+
+    userManager.addUser("bob", "secret");
+    Assert.assertNotNull(userManager.check("bob", "secret"));
+
+    userManager.update(new User("alice", "changed"));
+    Assert.assertNull(userManager.check("alice", "secret"));
+    Assert.assertNotNull(userManager.check("alice", "changed"));
+
+    userManager.delete("alice");
+    Assert.assertNull(userManager.check("alice", "changed"));
+    Assert.assertNull(userManager.find("alice"));
+  }
+
+  @Test
+  public void testRefresh() throws InterruptedException {
+    CountingUserManager memory = new CountingUserManager();
+    memory.addUser("alice", "secret");
+    // Refreshes in the calling thread.
+    CachingUserManager userManager =
+        new CachingUserManager(memory, 100, 10000, 50, TimeUnit.MILLISECONDS, Runnable::run);
+    Assert.assertNotNull(userManager.check("alice", "secret"));
+    // Changes which bypass the cache are seen after a refresh.
+    memory.update(new User("alice", "changed"));
+    Thread.sleep(100);
+    Assert.assertEquals("changed", userManager.find("alice").getPassword());
+    Assert.assertNull(userManager.check("alice", "secret"));
+    Assert.assertTrue(userManager.getStats().loadCount() >= 2);
+  }
+
+  /**
+   * A {@link MemoryBasedUserManager} which counts queries.
+   */
+  private static class CountingUserManager extends MemoryBasedUserManager {
+
+    private final AtomicInteger finds = new AtomicInteger();
+    private final AtomicInteger checks = new AtomicInteger();
+
+    @Override
+    public User check(String username, String password) {
+      checks.incrementAndGet();
+      return super.check(username, password);
+    }
+
+    @Override
+    public User find(String username) {
+      finds.incrementAndGet();
+      return super.find(username);
+    }
+  }
+}
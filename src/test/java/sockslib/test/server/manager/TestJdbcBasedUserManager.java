@@ -61,6 +61,7 @@ public class TestJdbcBasedUserManager {
   @After
   public void after() {
     jdbcTemplate.execute(SQL_DROP_TABLE);
+    userManager.close();
   }
 
   @Test
@@ -0,0 +1,176 @@
+/*
+ * Copyright 2015-2025 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package sockslib.test.server.msg;
+
+import org.junit.Assert;
+import org.junit.Test;
+import sockslib.common.AddressType;
+import sockslib.common.SocksCommand;
+import sockslib.server.msg.CommandMessage;
+import sockslib.server.msg.CommandResponseMessage;
+import sockslib.server.msg.HandshakeCodec;
+import sockslib.server.msg.MethodSelectionMessage;
+import sockslib.server.msg.ServerReply;
+import sockslib.server.msg.UsernamePasswordMessage;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+
+/**
+ * The class <code>TestHandshakeCodec</code> is a test class for {@link HandshakeCodec}.
+ *
+ * @version 1.0
+ */
+public class TestHandshakeCodec {
+
+  @Test
+  public void testReadPipelinedHandshake() throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    out.write(new byte[] {0x05, 0x02, 0x00, 0x02});
+    out.write(new UsernamePasswordMessage("user", "secret").getBytes());
+    out.write(new byte[] {0x05, 0x01, 0x00, 0x03, 0x09});
+    out.write("localhost".getBytes());
+    out.write(new byte[] {0x1F, (byte) 0x90});
+    out.write("payload".getBytes());
+    CountingInputStream inputStream =
+        new CountingInputStream(new ByteArrayInputStream(out.toByteArray()));
+    HandshakeCodec codec = new HandshakeCodec();
+
+    MethodSelectionMessage methodSelection = new MethodSelectionMessage();
+    Assert.assertEquals(4, codec.read(inputStream, methodSelection));
+    Assert.assertEquals(5, methodSelection.getVersion());
+    Assert.assertArrayEquals(new int[] {0x00, 0x02}, methodSelection.getMethods());
+    Assert.assertEquals(2, inputStream.reads);
+
+    UsernamePasswordMessage usernamePassword = new UsernamePasswordMessage();
+    codec.read(inputStream, usernamePassword);
+    Assert.assertEquals("user", usernamePassword.getUsername());
+    Assert.assertEquals("secret", usernamePassword.getPassword());
+    Assert.assertEquals(5, inputStream.reads);
+
+    CommandMessage command = new CommandMessage();
+    codec.read(inputStream, command);
+    Assert.assertEquals(SocksCommand.CONNECT, command.getCommand());
+    Assert.assertEquals(AddressType.DOMAIN_NAME, command.getAddressType());
+    Assert.assertEquals("localhost", command.getHost());
+    Assert.assertEquals(8080, command.getPort());
+    Assert.assertEquals(7, inputStream.reads);
+
+    // Data after the handshake must stay in the stream.
+    Assert.assertEquals('p', inputStream.read());
+  }
+
+  @Test
+  public void testReadIPv4Command() throws IOException {
+    byte[] frame = {0x05, 0x03, 0x00, 0x01, 127, 0, 0, 1, 0x00, 0x50};
+    CommandMessage command = new CommandMessage();
+    command.read(new ByteArrayInputStream(frame));
+    Assert.assertEquals(SocksCommand.UDP_ASSOCIATE, command.getCommand());
+    Assert.assertEquals(InetAddress.getByName("127.0.0.1"), command.getInetAddress());
+    Assert.assertEquals(80, command.getPort());
+    Assert.assertArrayEquals(frame, command.getBytes());
+  }
+
+  @Test
+  public void testSequentialSessionsOnThread() throws IOException {
+    // A long handshake fills the buffer of the thread's codec.
+    InputStream first = handshake(new UsernamePasswordMessage("a-rather-long-username",
+        "a-rather-long-password"), "a-rather-long-domain.example.com", 'A');
+    readHandshake(first, "a-rather-long-username", "a-rather-long-password",
+        "a-rather-long-domain.example.com");
+    Assert.assertEquals('A', first.read());
+
+    // The next session on the same thread must not see bytes left by the first one.
+    InputStream second = handshake(new UsernamePasswordMessage("u", "p"), "b.io", 'B');
+    readHandshake(second, "u", "p", "b.io");
+    Assert.assertEquals('B', second.read());
+    Assert.assertEquals(-1, second.read());
+  }
+
+  @Test(expected = IOException.class)
+  public void testEndOfStream() throws IOException {
+    new MethodSelectionMessage().read(new ByteArrayInputStream(new byte[] {0x05, 0x02, 0x00}));
+  }
+
+  @Test
+  public void testCommandResponse() throws IOException {
+    CommandResponseMessage response =
+        new CommandResponseMessage(5, ServerReply.SUCCEEDED, InetAddress.getByName("::1"), 1080);
+    byte[] bytes = response.getBytes();
+    Assert.assertEquals(22, bytes.length);
+    Assert.assertEquals(22, response.getLength());
+    Assert.assertEquals(AddressType.IPV6, bytes[3]);
+    Assert.assertEquals(1, bytes[19]);
+    Assert.assertEquals(0x04, bytes[20]);
+    Assert.assertEquals(0x38, bytes[21]);
+  }
+
+  private static InputStream handshake(UsernamePasswordMessage credentials, String host,
+                                       char payload) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    out.write(new byte[] {0x05, 0x01, 0x02});
+    out.write(credentials.getBytes());
+    out.write(new byte[] {0x05, 0x01, 0x00, 0x03, (byte) host.length()});
+    out.write(host.getBytes());
+    out.write(new byte[] {0x00, 0x50});
+    out.write(payload);
+    return new ByteArrayInputStream(out.toByteArray());
+  }
+
+  private static void readHandshake(InputStream inputStream, String username, String password,
+                                    String host) throws IOException {
+    MethodSelectionMessage methodSelection = new MethodSelectionMessage();
+    methodSelection.read(inputStream);
+    Assert.assertArrayEquals(new int[] {0x02}, methodSelection.getMethods());
+
+    UsernamePasswordMessage usernamePassword = new UsernamePasswordMessage();
+    usernamePassword.read(inputStream);
+    Assert.assertEquals(username, usernamePassword.getUsername());
+    Assert.assertEquals(password, usernamePassword.getPassword());
+
+    CommandMessage command = new CommandMessage();
+    command.read(inputStream);
+    Assert.assertEquals(SocksCommand.CONNECT, command.getCommand());
+    Assert.assertEquals(host, command.getHost());
+    Assert.assertEquals(80, command.getPort());
+  }
+
+  /**
+   * Counts the calls to read, each of them is a system call on a socket stream.
+   */
+  private static class CountingInputStream extends InputStream {
+
+    private final InputStream inputStream;
+    private int reads = 0;
+
+    CountingInputStream(InputStream inputStream) {
+      this.inputStream = inputStream;
+    }
+
+    @Override
+    public int read() throws IOException {
+      reads++;
+      return inputStream.read();
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      reads++;
+      return inputStream.read(b, off, len);
+    }
+  }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2015-2025 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package sockslib.test.server.routing;
+
+import org.junit.Test;
+import sockslib.client.Socks5;
+import sockslib.server.routing.Route;
+import sockslib.server.routing.RoutingRule;
+import sockslib.server.routing.RoutingTable;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The class <code>TestRoutingTable</code> tests {@link RoutingTable}.
+ *
+ * @version 1.0
+ */
+public class TestRoutingTable {
+
+  private final Route corporate = Route.via(new Socks5(new InetSocketAddress("10.0.0.1", 1080)));
+
+  private final Route partner = Route.via(new Socks5(new InetSocketAddress("10.0.0.2", 1080)));
+
+  @Test
+  public void testFirstMatchWins() throws UnknownHostException {
+    List<RoutingRule> rules = new ArrayList<>();
+    rules.add(new RoutingRule(Route.DIRECT).addCidr("10.1.2.0/24"));
+    rules.add(new RoutingRule(Route.REJECT).addCidr("10.0.0.0/8").addCidr("fc00::/7"));
+    rules.add(new RoutingRule(corporate).addDomain(".corp.example.com"));
+    rules.add(new RoutingRule(partner).addDomain("*.example.com").addPortRange(8000, 8999));
+    rules.add(new RoutingRule(Route.REJECT).addPort(25));
+    RoutingTable table = new RoutingTable(rules, Route.DIRECT);
+    assertEquals(5, table.size());
+    assertTrue(table.hasProxyRoute());
+
+    assertSame(Route.DIRECT, route(table, null, "10.1.2.3", 80));
+    assertSame(Route.REJECT, route(table, null, "10.1.3.3", 80));
+    assertSame(Route.REJECT, route(table, null, "fd00::1", 443));
+    assertSame(Route.DIRECT, route(table, null, "8.8.8.8", 443));
+    assertSame(Route.REJECT, route(table, null, "8.8.8.8", 25));
+    // A rule without destination conditions matches domain names too.
+    assertSame(Route.REJECT, table.route(null, null, "mail.example.net", 25));
+
+    assertSame(corporate, table.route(null, null, "corp.example.com", 443));
+    assertSame(corporate, table.route(null, null, "git.corp.example.com", 8080));
+    assertSame(partner, table.route(null, null, "api.example.com", 8080));
+    assertSame(Route.DIRECT, table.route(null, null, "api.example.com", 443));
+    assertSame(Route.DIRECT, table.route(null, null, "example.com", 8080));
+  }
+
+  @Test
+  public void testResolvedDomain() throws UnknownHostException {
+    List<RoutingRule> rules = new ArrayList<>();
+    rules.add(new RoutingRule(Route.REJECT).addCidr("10.0.0.0/8"));
+    rules.add(new RoutingRule(partner).addCidr("1.1.1.0/24"));
+    RoutingTable table = new RoutingTable(rules, Route.DIRECT);
+    InetAddress[] rejected = {InetAddress.getByName("8.8.8.8"),
+        InetAddress.getByName("10.0.0.1")};
+    InetAddress[] allowed = {InetAddress.getByName("8.8.8.8")};
+
+    // A name which isn't resolved yet is routed by its name only.
+    assertSame(Route.DIRECT, table.routeResolved(null, "www.example.com", null, 80));
+    assertSame(Route.REJECT, table.routeResolved(null, "www.example.com", rejected, 80));
+    assertSame(Route.DIRECT, table.routeResolved(null, "www.example.com", allowed, 80));
+    // Routes other than rejection don't apply to names.
+    assertSame(Route.DIRECT, table.routeResolved(null, "www.example.com",
+        new InetAddress[] {InetAddress.getByName("1.1.1.1")}, 80));
+  }
+
+  @Test
+  public void testUsers() throws UnknownHostException {
+    List<RoutingRule> rules = new ArrayList<>();
+    rules.add(new RoutingRule(corporate).addUser("alice").addUser("bob"));
+    rules.add(new RoutingRule(Route.REJECT).addDomain(".example.com").addUser("guest"));
+    RoutingTable table = new RoutingTable(rules, Route.DIRECT);
+
+    assertSame(corporate, table.route("alice", null, "www.example.com", 80));
+    assertSame(corporate, route(table, "bob", "1.1.1.1", 80));
+    assertSame(Route.REJECT, table.route("guest", null, "www.example.com", 80));
+    assertSame(Route.DIRECT, table.route("guest", null, "www.example.org", 80));
+    assertSame(Route.DIRECT, table.route(null, null, "www.example.com", 80));
+
+    assertSame(Route.REJECT, table.route("guest", null, "www.example.com", 80));
+    assertEquals(1, table.getCacheStats().hitCount());
+  }
+
+  @Test
+  public void testNoProxyRoute() {
+    List<RoutingRule> rules = new ArrayList<>();
+    rules.add(new RoutingRule(Route.REJECT).addDomain(".example.com"));
+    assertFalse(new RoutingTable(rules, Route.DIRECT).hasProxyRoute());
+    assertTrue(new RoutingTable(rules, corporate).hasProxyRoute());
+  }
+
+  private static Route route(RoutingTable table, String username, String address, int port)
+      throws UnknownHostException {
+    return table.route(username, InetAddress.getByName(address), null, port);
+  }
+
+}
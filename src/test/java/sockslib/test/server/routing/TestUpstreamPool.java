@@ -0,0 +1,243 @@
+/*
+ * Copyright 2015-2025 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package sockslib.test.server.routing;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import sockslib.client.Socks5;
+import sockslib.client.SocksProxy;
+import sockslib.client.SocksSocket;
+import sockslib.common.SocksException;
+import sockslib.server.SocksProxyServer;
+import sockslib.server.SocksServerBuilder;
+import sockslib.server.acl.AccessControlList;
+import sockslib.server.acl.AccessControlList.Action;
+import sockslib.server.routing.LoadBalancing;
+import sockslib.server.routing.Upstream;
+import sockslib.server.routing.UpstreamPool;
+import sockslib.utils.ResourceUtil;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * The class <code>TestUpstreamPool</code> tests {@link UpstreamPool}.
+ *
+ * @version 1.0
+ */
+public class TestUpstreamPool {
+
+  private static final int UPSTREAM_PORT_1 = 1084;
+  private static final int UPSTREAM_PORT_2 = 1085;
+  private static final int SOCKS_SERVER_PORT = 1086;
+
+  private final List<SocksProxyServer> servers = new ArrayList<>();
+  private ServerSocket destination;
+
+  @Before
+  public void setUp() throws IOException {
+    // Connections are accepted by the backlog, nothing needs to be read.
+    destination = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+  }
+
+  @After
+  public void destroy() throws IOException, InterruptedException {
+    for (SocksProxyServer server : servers) {
+      server.shutdown();
+    }
+    destination.close();
+    Thread.sleep(100);
+  }
+
+  @Test
+  public void testEjectAndReadmit() throws IOException, InterruptedException {
+    startServer(SocksServerBuilder.newSocks5ServerBuilder().setBindPort(UPSTREAM_PORT_1));
+    UpstreamPool pool = new UpstreamPool(Arrays.asList(proxy(UPSTREAM_PORT_1),
+        proxy(UPSTREAM_PORT_2)), LoadBalancing.ROUND_ROBIN);
+    pool.setFailureThreshold(1);
+    pool.setEjectionTime(1, TimeUnit.SECONDS);
+    startServer(SocksServerBuilder.newSocks5ServerBuilder().setBindPort(SOCKS_SERVER_PORT)
+        .setUpstreamPool(pool));
+    Upstream live = pool.getUpstreams().get(0);
+    Upstream dead = pool.getUpstreams().get(1);
+
+    for (int i = 0; i < 4; i++) {
+      ResourceUtil.close(new SocksSocket(proxy(SOCKS_SERVER_PORT),
+          destination.getLocalSocketAddress()));
+    }
+    assertEquals(4, live.getTotalConnections());
+    assertEquals(Upstream.State.OPEN, dead.getState());
+    assertEquals(1, dead.getEjectionCount());
+
+    startServer(SocksServerBuilder.newSocks5ServerBuilder().setBindPort(UPSTREAM_PORT_2));
+    Thread.sleep(1100);
+    pool.checkHealth();
+    assertEquals(Upstream.State.CLOSED, dead.getState());
+    assertEquals(Upstream.State.CLOSED, live.getState());
+  }
+
+  @Test
+  public void testConsistentHash() throws IOException {
+    startServer(SocksServerBuilder.newSocks5ServerBuilder().setBindPort(UPSTREAM_PORT_1));
+    startServer(SocksServerBuilder.newSocks5ServerBuilder().setBindPort(UPSTREAM_PORT_2));
+    UpstreamPool pool = new UpstreamPool(Arrays.asList(proxy(UPSTREAM_PORT_1),
+        proxy(UPSTREAM_PORT_2)), LoadBalancing.CONSISTENT_HASH);
+    List<Socket> sockets = new ArrayList<>();
+    for (int i = 0; i < 5; i++) {
+      sockets.add(pool.connect(destination.getInetAddress(), null, destination.getLocalPort()));
+    }
+    Upstream first = pool.getUpstreams().get(0);
+    Upstream second = pool.getUpstreams().get(1);
+    assertEquals(5, Math.max(first.getActiveConnections(), second.getActiveConnections()));
+    assertEquals(5, first.getTotalConnections() + second.getTotalConnections());
+    for (Socket socket : sockets) {
+      socket.close();
+    }
+    assertEquals(0, first.getActiveConnections() + second.getActiveConnections());
+  }
+
+  @Test
+  public void testRefusedTrialReadmits() throws IOException, InterruptedException {
+    UpstreamPool pool =
+        new UpstreamPool(Arrays.asList(proxy(UPSTREAM_PORT_1)), LoadBalancing.ROUND_ROBIN);
+    pool.setFailureThreshold(1);
+    pool.setEjectionTime(100, TimeUnit.MILLISECONDS);
+    Upstream upstream = pool.getUpstreams().get(0);
+    try {
+      pool.connect(destination.getInetAddress(), null, destination.getLocalPort());
+      fail("Connecting a dead upstream should fail");
+    } catch (SocksException e) {
+      fail("A dead upstream doesn't reply");
+    } catch (IOException e) {
+      assertEquals(Upstream.State.OPEN, upstream.getState());
+    }
+
+    AccessControlList destinations =
+        AccessControlList.parse(new StringReader("127.0.0.0/8\n"), Action.ALLOW);
+    startServer(SocksServerBuilder.newSocks5ServerBuilder().setBindPort(UPSTREAM_PORT_1)
+        .setAccessControl(null, destinations));
+    Thread.sleep(150);
+    try {
+      pool.connect(destination.getInetAddress(), null, destination.getLocalPort());
+      fail("The upstream should refuse the destination");
+    } catch (SocksException e) {
+      // The upstream replied, so the trial connection re-admits it.
+      assertEquals(Upstream.State.CLOSED, upstream.getState());
+      assertEquals(0, upstream.getActiveConnections());
+    }
+  }
+
+  @Test
+  public void testUnexpectedErrorEndsTrial() throws IOException, InterruptedException {
+    startServer(SocksServerBuilder.newSocks5ServerBuilder().setBindPort(UPSTREAM_PORT_1));
+    FaultyProxy proxy = new FaultyProxy(UPSTREAM_PORT_1);
+    UpstreamPool pool = new UpstreamPool(Arrays.asList(proxy), LoadBalancing.ROUND_ROBIN);
+    pool.setFailureThreshold(1);
+    pool.setEjectionTime(100, TimeUnit.MILLISECONDS);
+    Upstream upstream = pool.getUpstreams().get(0);
+
+    proxy.error = new IOException("Unreachable");
+    try {
+      pool.connect(destination.getInetAddress(), null, destination.getLocalPort());
+      fail("Connecting a failed upstream should fail");
+    } catch (IOException e) {
+      assertEquals(Upstream.State.OPEN, upstream.getState());
+    }
+    Thread.sleep(150);
+    proxy.error = new IllegalStateException("Broken proxy");
+    try {
+      pool.connect(destination.getInetAddress(), null, destination.getLocalPort());
+      fail("An unexpected error should be thrown");
+    } catch (IllegalStateException e) {
+      assertEquals(Upstream.State.OPEN, upstream.getState());
+      assertEquals(0, upstream.getActiveConnections());
+    }
+
+    // The aborted trial doesn't leave the upstream half open.
+    proxy.error = null;
+    ResourceUtil.close(
+        pool.connect(destination.getInetAddress(), null, destination.getLocalPort()));
+    assertEquals(Upstream.State.CLOSED, upstream.getState());
+  }
+
+  @Test
+  public void testConnectTimeout() throws IOException {
+    // An upstream which accepts connections by its backlog but never replies.
+    try (ServerSocket silent = new ServerSocket(0, 50, InetAddress.getLoopbackAddress())) {
+      UpstreamPool pool = new UpstreamPool(Arrays.asList(proxy(silent.getLocalPort())),
+          LoadBalancing.ROUND_ROBIN);
+      pool.setConnectTimeout(300);
+      long start = System.currentTimeMillis();
+      try {
+        pool.connect(destination.getInetAddress(), null, destination.getLocalPort());
+        fail("Connecting a silent upstream should time out");
+      } catch (SocketTimeoutException e) {
+        assertTrue(System.currentTimeMillis() - start < 5000);
+      }
+      Upstream upstream = pool.getUpstreams().get(0);
+      assertEquals(1, upstream.getFailedConnections());
+      assertEquals(0, upstream.getActiveConnections());
+    }
+  }
+
+  private void startServer(SocksServerBuilder builder) throws IOException {
+    SocksProxyServer server = builder.setDaemon(true).build();
+    server.start();
+    servers.add(server);
+  }
+
+  private static SocksProxy proxy(int port) {
+    return new Socks5(new InetSocketAddress("127.0.0.1", port));
+  }
+
+  /**
+   * A proxy which fails to create its socket while {@link #error} is set.
+   */
+  private static class FaultyProxy extends Socks5 {
+
+    private volatile Exception error;
+
+    FaultyProxy(int port) {
+      super(new InetSocketAddress("127.0.0.1", port));
+    }
+
+    @Override
+    public Socket createProxySocket() throws IOException {
+      Exception exception = error;
+      if (exception instanceof IOException) {
+        throw (IOException) exception;
+      }
+      if (exception instanceof RuntimeException) {
+        throw (RuntimeException) exception;
+      }
+      return super.createProxySocket();
+    }
+  }
+
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2015-2025 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package sockslib.test.utils;
+
+import org.junit.Assert;
+import org.junit.Test;
+import sockslib.utils.HashedWheelTimer;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The class <code>TestHashedWheelTimer</code> is a test class for {@link HashedWheelTimer}.
+ *
+ * @version 1.0
+ */
+public class TestHashedWheelTimer {
+
+  @Test
+  public void testExpireAndCancel() throws InterruptedException {
+    // A small wheel, so that the long timeouts need several rounds.
+    HashedWheelTimer timer = new HashedWheelTimer("test-timer", 10, TimeUnit.MILLISECONDS, 8);
+    try {
+      final CountDownLatch latch = new CountDownLatch(2);
+      final AtomicInteger cancelledRuns = new AtomicInteger();
+      long start = System.nanoTime();
+      HashedWheelTimer.Timeout shortTimeout =
+          timer.newTimeout(latch::countDown, 50, TimeUnit.MILLISECONDS);
+      HashedWheelTimer.Timeout longTimeout =
+          timer.newTimeout(latch::countDown, 300, TimeUnit.MILLISECONDS);
+      HashedWheelTimer.Timeout cancelled =
+          timer.newTimeout(cancelledRuns::incrementAndGet, 100, TimeUnit.MILLISECONDS);
+      Assert.assertTrue(cancelled.cancel());
+      Assert.assertFalse(cancelled.cancel());
+
+      Assert.assertTrue(latch.await(5, TimeUnit.SECONDS));
+      Assert.assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(300));
+      Assert.assertTrue(shortTimeout.isExpired());
+      Assert.assertTrue(longTimeout.isExpired());
+      Assert.assertFalse(longTimeout.cancel());
+      Assert.assertTrue(cancelled.isCancelled());
+      Assert.assertEquals(0, cancelledRuns.get());
+      Assert.assertEquals(0, timer.getPendingTimeouts());
+    } finally {
+      timer.stop();
+    }
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testStopped() {
+    HashedWheelTimer timer = new HashedWheelTimer("test-timer");
+    timer.start();
+    timer.stop();
+    timer.newTimeout(() -> {
+    }, 1, TimeUnit.SECONDS);
+  }
+}
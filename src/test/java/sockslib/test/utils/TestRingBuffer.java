@@ -0,0 +1,83 @@
+/*
+ * Copyright 2015-2025 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package sockslib.test.utils;
+
+import org.junit.Assert;
+import org.junit.Test;
+import sockslib.utils.RingBuffer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The class <code>TestRingBuffer</code> is a test class for {@link RingBuffer}.
+ *
+ * @version 1.0
+ */
+public class TestRingBuffer {
+
+  @Test
+  public void testOfferAndPoll() {
+    RingBuffer<Integer> ringBuffer = new RingBuffer<>(3);
+    Assert.assertEquals(4, ringBuffer.capacity());
+    Assert.assertNull(ringBuffer.poll());
+    // Several laps around the ring.
+    for (int lap = 0; lap < 3; lap++) {
+      for (int i = 0; i < 4; i++) {
+        Assert.assertTrue(ringBuffer.offer(i));
+      }
+      Assert.assertFalse(ringBuffer.offer(4));
+      Assert.assertEquals(4, ringBuffer.size());
+      for (int i = 0; i < 4; i++) {
+        Assert.assertEquals(Integer.valueOf(i), ringBuffer.poll());
+      }
+      Assert.assertTrue(ringBuffer.isEmpty());
+    }
+  }
+
+  @Test
+  public void testConcurrentProducers() throws InterruptedException {
+    final RingBuffer<Long> ringBuffer = new RingBuffer<>(1024);
+    final int producers = 4;
+    final int perProducer = 20000;
+    List<Thread> threads = new ArrayList<>();
+    for (int p = 0; p < producers; p++) {
+      Thread thread = new Thread(() -> {
+        for (long i = 1; i <= perProducer; i++) {
+          while (!ringBuffer.offer(i)) {
+            Thread.yield();
+          }
+        }
+      });
+      threads.add(thread);
+      thread.start();
+    }
+    AtomicLong sum = new AtomicLong();
+    long received = 0;
+    while (received < (long) producers * perProducer) {
+      Long value = ringBuffer.poll();
+      if (value != null) {
+        sum.addAndGet(value);
+        received++;
+      }
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    Assert.assertEquals((long) producers * perProducer * (perProducer + 1) / 2, sum.get());
+    Assert.assertNull(ringBuffer.poll());
+  }
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright 2015-2025 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package sockslib.test.utils.jdbc;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import sockslib.utils.jdbc.JdbcTemplate;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The class <code>TestJdbcTemplate</code> is a test class for {@link JdbcTemplate}.
+ *
+ * @version 1.0
+ */
+public class TestJdbcTemplate {
+
+  private static final String INSERT_SQL = "INSERT INTO TRAFFIC (`username`, `bytes`) VALUES (?,?)";
+  private static final String QUERY_SQL =
+      "SELECT * FROM TRAFFIC WHERE `bytes` > ? ORDER BY `bytes`";
+
+  private CountingDataSource dataSource;
+  private JdbcTemplate jdbcTemplate;
+
+  @Before
+  public void before() {
+    dataSource = new CountingDataSource();
+    dataSource.setURL("jdbc:h2:mem:test-jdbc-template;DB_CLOSE_DELAY=-1");
+    jdbcTemplate = new JdbcTemplate(dataSource);
+    jdbcTemplate.execute("DROP TABLE `TRAFFIC` IF EXISTS");
+    jdbcTemplate.execute("CREATE TABLE TRAFFIC (`username` varchar(50), `bytes` bigint)");
+  }
+
+  @After
+  public void after() {
+    jdbcTemplate.execute("DROP TABLE `TRAFFIC` IF EXISTS");
+    jdbcTemplate.close();
+  }
+
+  @Test
+  public void testBatchAndStreamingQuery() {
+    List<Object[]> argsList = new ArrayList<>();
+    for (long i = 1; i <= 100; i++) {
+      argsList.add(new Object[] {"user" + i, i});
+    }
+    int[] counts = jdbcTemplate.batchExecute(INSERT_SQL, argsList);
+    Assert.assertEquals(100, counts.length);
+
+    final List<Long> bytes = new ArrayList<>();
+    int rows = jdbcTemplate.query(QUERY_SQL, new Object[] {90L},
+        resultSet -> resultSet.getLong("bytes"), bytes::add);
+    Assert.assertEquals(10, rows);
+    Assert.assertEquals(Long.valueOf(91), bytes.get(0));
+    Assert.assertEquals(Long.valueOf(100), bytes.get(9));
+    Assert.assertEquals(100, jdbcTemplate.query(QUERY_SQL, new Object[] {0L},
+        resultSet -> resultSet.getString("username")).size());
+  }
+
+  @Test
+  public void testConnectionReuse() {
+    for (long i = 0; i < 50; i++) {
+      Assert.assertEquals(1, jdbcTemplate.execute(INSERT_SQL, new Object[] {"user", i}));
+    }
+    Assert.assertEquals(1, dataSource.connections.get());
+
+    jdbcTemplate.setStatementCacheSize(0);
+    jdbcTemplate.execute(INSERT_SQL, new Object[] {"user", 50L});
+    jdbcTemplate.execute(INSERT_SQL, new Object[] {"user", 51L});
+    Assert.assertEquals(3, dataSource.connections.get());
+    Assert.assertEquals(52, jdbcTemplate.query(QUERY_SQL, new Object[] {-1L},
+        resultSet -> resultSet.getLong("bytes")).size());
+  }
+
+  @Test
+  public void testTransactions() {
+    jdbcTemplate.execute("DROP TABLE `USERS` IF EXISTS");
+    jdbcTemplate.execute("CREATE TABLE USERS (`username` varchar(50) PRIMARY KEY)");
+    String insertSql = "INSERT INTO USERS (`username`) VALUES (?)";
+    Assert.assertEquals(1, jdbcTemplate.execute(insertSql, new Object[] {"alice"}));
+
+    // Another connection sees the committed row.
+    JdbcTemplate other = new JdbcTemplate(dataSource);
+    other.setStatementCacheSize(0);
+    String countSql = "SELECT * FROM USERS";
+    Assert.assertEquals(1, other.query(countSql, resultSet -> 1).size());
+
+    // A batch which fails is rolled back as a whole.
+    List<Object[]> argsList = new ArrayList<>();
+    argsList.add(new Object[] {"bob"});
+    argsList.add(new Object[] {"alice"});
+    Assert.assertEquals(0, jdbcTemplate.batchExecute(insertSql, argsList).length);
+    Assert.assertEquals(1, other.query(countSql, resultSet -> 1).size());
+    Assert.assertEquals(1, jdbcTemplate.execute(insertSql, new Object[] {"bob"}));
+    Assert.assertEquals(2, other.query(countSql, resultSet -> 1).size());
+    jdbcTemplate.execute("DROP TABLE `USERS` IF EXISTS");
+  }
+
+  @Test
+  public void testBrokenIdleConnection() throws SQLException {
+    for (long i = 1; i <= 10; i++) {
+      jdbcTemplate.execute(INSERT_SQL, new Object[] {"user" + i, i});
+    }
+    // The database closes the idle connection.
+    dataSource.lastConnection.close();
+
+    final List<Long> bytes = new ArrayList<>();
+    int rows = jdbcTemplate.query(QUERY_SQL, new Object[] {0L},
+        resultSet -> resultSet.getLong("bytes"), bytes::add);
+    Assert.assertEquals(10, rows);
+    Assert.assertEquals(10, bytes.size());
+    Assert.assertEquals(2, dataSource.connections.get());
+  }
+
+  /**
+   * A data source which counts new connections and keeps the last one.
+   */
+  private static class CountingDataSource extends JdbcDataSource {
+
+    private final AtomicInteger connections = new AtomicInteger();
+
+    private volatile Connection lastConnection;
+
+    @Override
+    public Connection getConnection() throws SQLException {
+      connections.incrementAndGet();
+      lastConnection = super.getConnection();
+      return lastConnection;
+    }
+  }
+}